@@ -0,0 +1,129 @@
+package org.pytorch.demo.aslrecognition;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.SystemClock;
+
+import org.pytorch.IValue;
+import org.pytorch.Module;
+import org.pytorch.Tensor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the model over the alphabet assets {@code A1.jpg} to {@code Z1.jpg}. The images are
+ * decoded in parallel, then classified once one at a time and once in {@code [N,3,200,200]}
+ * batches, so a new model export can be checked for accuracy and batched throughput together.
+ */
+public class AslEvaluator {
+    public static final int DEFAULT_BATCH_SIZE = 8;
+    public static final float DEFAULT_MIN_ACCURACY = 0.9f;
+    private static final int LETTER_COUNT = 26;
+    private static final int PIXELS = MainActivity.SIZE * MainActivity.SIZE;
+
+    public static EvaluationReport evaluate(Context context, Module module, int batchSize,
+                                            float minAccuracy)
+            throws IOException, InterruptedException {
+        final String[] imageNames = new String[LETTER_COUNT];
+        final int[] expected = new int[LETTER_COUNT];
+        for (int i = 0; i < LETTER_COUNT; i++) {
+            imageNames[i] = (char) ('A' + i) + "1.jpg";
+            expected[i] = i;
+        }
+        final EvaluationReport report =
+                new EvaluationReport(imageNames, expected, batchSize, minAccuracy);
+
+        final long decodeStartTime = SystemClock.elapsedRealtimeNanos();
+        final float[][] inputs = decodeAll(context, imageNames);
+        report.setDecodeNanos(SystemClock.elapsedRealtimeNanos() - decodeStartTime);
+
+        // Warm up with the first batch shape so neither pass pays for the first forward.
+        forward(module, inputs, 0, Math.min(batchSize, inputs.length));
+
+        for (int i = 0; i < inputs.length; i++) {
+            final long startTime = SystemClock.elapsedRealtimeNanos();
+            final float[] scores = forward(module, inputs, i, 1);
+            report.recordSingle(i, argmax(scores, 0), SystemClock.elapsedRealtimeNanos() - startTime);
+        }
+
+        for (int start = 0; start < inputs.length; start += batchSize) {
+            final int count = Math.min(batchSize, inputs.length - start);
+            final long startTime = SystemClock.elapsedRealtimeNanos();
+            final float[] scores = forward(module, inputs, start, count);
+            final long perImage = (SystemClock.elapsedRealtimeNanos() - startTime) / count;
+            for (int j = 0; j < count; j++) {
+                report.recordBatched(start + j, argmax(scores, j * GestureDecoder.CLASS_COUNT),
+                        perImage);
+            }
+        }
+        return report;
+    }
+
+    private static float[][] decodeAll(Context context, String[] imageNames)
+            throws IOException, InterruptedException {
+        final ExecutorService executor =
+                Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            final List<Future<float[]>> futures = new ArrayList<>(imageNames.length);
+            for (String imageName : imageNames) {
+                futures.add(executor.submit(() -> decode(context, imageName)));
+            }
+            final float[][] inputs = new float[imageNames.length][];
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = futures.get(i).get();
+            }
+            return inputs;
+        } catch (ExecutionException e) {
+            throw new IOException("Error decoding evaluation images", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static float[] decode(Context context, String imageName) throws IOException {
+        Bitmap bitmap;
+        try (InputStream is = context.getAssets().open(imageName)) {
+            bitmap = BitmapFactory.decodeStream(is);
+        }
+        if (bitmap == null) {
+            throw new IOException("Cannot decode " + imageName);
+        }
+        if (bitmap.getWidth() != MainActivity.SIZE || bitmap.getHeight() != MainActivity.SIZE) {
+            bitmap = Bitmap.createScaledBitmap(bitmap, MainActivity.SIZE, MainActivity.SIZE, true);
+        }
+        final int[] pixels = new int[PIXELS];
+        bitmap.getPixels(pixels, 0, MainActivity.SIZE, 0, 0, MainActivity.SIZE, MainActivity.SIZE);
+        final float[] planar = new float[3 * PIXELS];
+        BgrPlanarConverter.argbToBgrPlanar(pixels, PIXELS, planar);
+        return planar;
+    }
+
+    private static float[] forward(Module module, float[][] inputs, int start, int count) {
+        final FloatBuffer buffer = Tensor.allocateFloatBuffer(count * 3 * PIXELS);
+        for (int i = start; i < start + count; i++) {
+            buffer.put(inputs[i]);
+        }
+        final Tensor batch = Tensor.fromBlob(buffer,
+                new long[]{count, 3, MainActivity.SIZE, MainActivity.SIZE});
+        return module.forward(IValue.from(batch)).toTensor().getDataAsFloatArray();
+    }
+
+    private static int argmax(float[] scores, int offset) {
+        int best = 0;
+        for (int c = 1; c < GestureDecoder.CLASS_COUNT; c++) {
+            if (scores[offset + c] > scores[offset + best]) {
+                best = c;
+            }
+        }
+        return best;
+    }
+}
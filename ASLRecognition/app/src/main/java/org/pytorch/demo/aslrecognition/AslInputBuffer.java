@@ -0,0 +1,59 @@
+package org.pytorch.demo.aslrecognition;
+
+import android.graphics.Bitmap;
+
+import org.pytorch.Tensor;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Reusable input for the ASL model: the pixel array, the planar staging array and the tensor
+ * are allocated once and refilled for every bitmap. An instance is used by one thread at a time;
+ * {@link #get()} hands out one per thread, for long-lived threads such as the camera analyzer.
+ */
+public class AslInputBuffer {
+    private static final ThreadLocal<AslInputBuffer> sBuffers = new ThreadLocal<AslInputBuffer>() {
+        @Override
+        protected AslInputBuffer initialValue() {
+            return new AslInputBuffer(MainActivity.SIZE, MainActivity.SIZE);
+        }
+    };
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int[] mPixels;
+    private final float[] mPlanar;
+    private final FloatBuffer mBuffer;
+    private final Tensor mTensor;
+
+    AslInputBuffer(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        mPixels = new int[width * height];
+        mPlanar = new float[3 * width * height];
+        mBuffer = Tensor.allocateFloatBuffer(3 * width * height);
+        mTensor = Tensor.fromBlob(mBuffer, new long[]{1, 3, height, width});
+    }
+
+    /** The calling thread's buffer. */
+    public static AslInputBuffer get() {
+        return sBuffers.get();
+    }
+
+    /**
+     * Fills the tensor from {@code bitmap}, which must be at least the model input size. The
+     * returned tensor is overwritten by the next call.
+     */
+    public Tensor write(Bitmap bitmap) {
+        bitmap.getPixels(mPixels, 0, mWidth, 0, 0, mWidth, mHeight);
+        return write(mPixels);
+    }
+
+    /** Fills the tensor from ARGB pixels already at the model input size. */
+    public Tensor write(int[] argb) {
+        BgrPlanarConverter.argbToBgrPlanar(argb, mWidth * mHeight, mPlanar);
+        mBuffer.rewind();
+        mBuffer.put(mPlanar);
+        return mTensor;
+    }
+}
@@ -0,0 +1,24 @@
+package org.pytorch.demo.aslrecognition;
+
+/**
+ * Converts packed ARGB pixels, as returned by {@code Bitmap.getPixels}, into the planar
+ * B, G, R float layout the ASL model was trained on (raw 0-255 values, no normalization).
+ * Plain Java so it can be checked and timed off device.
+ */
+public class BgrPlanarConverter {
+
+    /**
+     * Writes {@code pixelCount} pixels of {@code argb} into {@code out} as three consecutive planes
+     * (blue, green, red). Pixels are read in row-major order, the order {@code getPixels} returns.
+     */
+    public static void argbToBgrPlanar(int[] argb, int pixelCount, float[] out) {
+        final int greenOffset = pixelCount;
+        final int redOffset = 2 * pixelCount;
+        for (int i = 0; i < pixelCount; i++) {
+            final int colour = argb[i];
+            out[i] = colour & 0xff;
+            out[greenOffset + i] = (colour >> 8) & 0xff;
+            out[redOffset + i] = (colour >> 16) & 0xff;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.pytorch.demo.aslrecognition;
+
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.TextView;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import org.pytorch.LiteModuleLoader;
+import org.pytorch.Module;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Evaluates {@code asl.ptl} on the bundled alphabet images and writes {@code asl_evaluation.json}
+ * to the app's external files dir. Can be started from adb to gate a new model export, e.g.
+ * {@code adb shell am start -n org.pytorch.demo.aslrecognition/.EvaluationActivity --ei batch 13
+ * --ef min_accuracy 0.95}; the verdict is logged as {@code Evaluation PASSED} or
+ * {@code Evaluation FAILED} and stored as {@code "passed"} in the report.
+ */
+public class EvaluationActivity extends BaseModuleActivity {
+    public static final String INTENT_BATCH_SIZE = "batch";
+    public static final String INTENT_MIN_ACCURACY = "min_accuracy";
+    private static final String REPORT_FILE_NAME = "asl_evaluation.json";
+    private static final String STATE_REPORT_TEXT = "report_text";
+
+    private TextView mReportView;
+    // Set on the UI thread once the evaluation has finished.
+    private String mReportText;
+
+    @Override
+    protected void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_evaluation);
+        mReportView = findViewById(R.id.evaluationReport);
+    }
+
+    @Override
+    protected void onPostCreate(@Nullable Bundle savedInstanceState) {
+        super.onPostCreate(savedInstanceState);
+        mReportText = savedInstanceState != null
+                ? savedInstanceState.getString(STATE_REPORT_TEXT)
+                : null;
+        if (mReportText != null) {
+            // Recreated after the evaluation finished; show it rather than run it again.
+            mReportView.setText(mReportText);
+        } else {
+            mBackgroundHandler.post(this::runEvaluation);
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_REPORT_TEXT, mReportText);
+    }
+
+    @WorkerThread
+    private void runEvaluation() {
+        final int batchSize = Math.max(1,
+                getIntent().getIntExtra(INTENT_BATCH_SIZE, AslEvaluator.DEFAULT_BATCH_SIZE));
+        final float minAccuracy =
+                getIntent().getFloatExtra(INTENT_MIN_ACCURACY, AslEvaluator.DEFAULT_MIN_ACCURACY);
+        Module module = null;
+        try {
+            module = LiteModuleLoader.load(MainActivity.assetFilePath(getApplicationContext(), "asl.ptl"));
+            final EvaluationReport report =
+                    AslEvaluator.evaluate(this, module, batchSize, minAccuracy);
+            final String json = report.toJson();
+            Log.i("ASLRecognition", "Evaluation " + (report.isPassed() ? "PASSED" : "FAILED")
+                    + ": " + json);
+            writeReport(json);
+            showReport(report.summary() + "\n\n" + report.details());
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            Log.e("ASLRecognition", "Evaluation FAILED with an error", e);
+            showReport(getString(R.string.evaluation_failed, e.getMessage()));
+        } finally {
+            if (module != null) {
+                module.destroy();
+            }
+        }
+    }
+
+    private void showReport(String text) {
+        runOnUiThread(() -> {
+            mReportText = text;
+            mReportView.setText(text);
+        });
+    }
+
+    private void writeReport(String json) {
+        final File dir = getExternalFilesDir(null);
+        if (dir == null) {
+            return;
+        }
+        try (OutputStream os = new FileOutputStream(new File(dir, REPORT_FILE_NAME))) {
+            os.write(json.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Log.e("ASLRecognition", "Error writing evaluation report", e);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package org.pytorch.demo.aslrecognition;
+
+import java.util.Locale;
+
+/**
+ * Results of running the model over the labelled alphabet images: accuracy, the confusion matrix
+ * (expected letter by predicted class) and per-image latency of single-image and batched forwards.
+ * The run passes if accuracy reaches {@code minAccuracy} and batching changes no prediction.
+ */
+public class EvaluationReport {
+    private final String[] mImageNames;
+    private final int[] mExpected;
+    private final int[] mPredicted;
+    private final int[] mSinglePredicted;
+    private final long[] mSingleLatencyNanos;
+    private final long[] mBatchedLatencyNanos;
+    private final int mBatchSize;
+    private final float mMinAccuracy;
+    private long mDecodeNanos;
+
+    public EvaluationReport(String[] imageNames, int[] expected, int batchSize, float minAccuracy) {
+        mImageNames = imageNames;
+        mExpected = expected;
+        mBatchSize = batchSize;
+        mMinAccuracy = minAccuracy;
+        mPredicted = new int[imageNames.length];
+        mSinglePredicted = new int[imageNames.length];
+        mSingleLatencyNanos = new long[imageNames.length];
+        mBatchedLatencyNanos = new long[imageNames.length];
+    }
+
+    public void setDecodeNanos(long decodeNanos) {
+        mDecodeNanos = decodeNanos;
+    }
+
+    public void recordSingle(int image, int predicted, long latencyNanos) {
+        mSinglePredicted[image] = predicted;
+        mSingleLatencyNanos[image] = latencyNanos;
+    }
+
+    /** Records the batched prediction; {@code latencyNanos} is the image's share of its batch. */
+    public void recordBatched(int image, int predicted, long latencyNanos) {
+        mPredicted[image] = predicted;
+        mBatchedLatencyNanos[image] = latencyNanos;
+    }
+
+    public int getCorrect() {
+        int correct = 0;
+        for (int i = 0; i < mExpected.length; i++) {
+            if (mPredicted[i] == mExpected[i]) {
+                correct++;
+            }
+        }
+        return correct;
+    }
+
+    public float getAccuracy() {
+        return mExpected.length == 0 ? 0f : (float) getCorrect() / mExpected.length;
+    }
+
+    /** Images whose batched and single-image predictions differ; should be zero. */
+    public int getBatchMismatches() {
+        int mismatches = 0;
+        for (int i = 0; i < mPredicted.length; i++) {
+            if (mPredicted[i] != mSinglePredicted[i]) {
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    /** Whether the export may ship: accuracy at least {@code minAccuracy}, no batch mismatches. */
+    public boolean isPassed() {
+        return getAccuracy() >= mMinAccuracy && getBatchMismatches() == 0;
+    }
+
+    public int[][] confusionMatrix() {
+        final int[][] matrix = new int[GestureDecoder.CLASS_COUNT][GestureDecoder.CLASS_COUNT];
+        for (int i = 0; i < mExpected.length; i++) {
+            matrix[mExpected[i]][mPredicted[i]]++;
+        }
+        return matrix;
+    }
+
+    public static double meanMillis(long[] nanos) {
+        if (nanos.length == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (long n : nanos) {
+            sum += n;
+        }
+        return sum / 1e6 / nanos.length;
+    }
+
+    public String summary() {
+        final double single = meanMillis(mSingleLatencyNanos);
+        final double batched = meanMillis(mBatchedLatencyNanos);
+        return String.format(Locale.US,
+                "%s (minimum accuracy %.1f%%)\nAccuracy %d/%d (%.1f%%)\n"
+                        + "Single %.1fms/img, batch of %d %.1fms/img (%.2fx)\n"
+                        + "Batch mismatches %d, decode %.0fms",
+                isPassed() ? "PASSED" : "FAILED", 100f * mMinAccuracy,
+                getCorrect(), mExpected.length, 100f * getAccuracy(), single, mBatchSize, batched,
+                batched > 0 ? single / batched : 0, getBatchMismatches(), mDecodeNanos / 1e6);
+    }
+
+    /** Per-image lines followed by the confusion matrix, rows limited to expected classes. */
+    public String details() {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < mImageNames.length; i++) {
+            sb.append(String.format(Locale.US, "%-7s %-7s %s single %5.1fms batched %5.1fms\n",
+                    mImageNames[i], GestureDecoder.labelToString(mPredicted[i]),
+                    mPredicted[i] == mExpected[i] ? "ok  " : "FAIL",
+                    mSingleLatencyNanos[i] / 1e6, mBatchedLatencyNanos[i] / 1e6));
+        }
+        final int[][] matrix = confusionMatrix();
+        sb.append("\nConfusion (rows expected, columns predicted, 0 shown as .)\n  ");
+        for (int c = 0; c < GestureDecoder.CLASS_COUNT; c++) {
+            sb.append(shortLabel(c));
+        }
+        for (int r = 0; r < GestureDecoder.CLASS_COUNT; r++) {
+            if (!isExpected(r)) {
+                continue;
+            }
+            sb.append('\n').append(shortLabel(r)).append(' ');
+            for (int c = 0; c < GestureDecoder.CLASS_COUNT; c++) {
+                sb.append(matrix[r][c] == 0 ? "." : Integer.toString(Math.min(matrix[r][c], 9)));
+            }
+        }
+        return sb.append('\n').toString();
+    }
+
+    public String toJson() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US,
+                "{\"images\":%d,\"correct\":%d,\"accuracy\":%.4f,\"min_accuracy\":%.4f,"
+                        + "\"passed\":%b,\"batch_size\":%d,"
+                        + "\"single_ms_per_image\":%.3f,\"batched_ms_per_image\":%.3f,"
+                        + "\"batch_mismatches\":%d,\"decode_ms\":%.3f,\"results\":[",
+                mExpected.length, getCorrect(), getAccuracy(), mMinAccuracy, isPassed(), mBatchSize,
+                meanMillis(mSingleLatencyNanos), meanMillis(mBatchedLatencyNanos),
+                getBatchMismatches(), mDecodeNanos / 1e6));
+        for (int i = 0; i < mImageNames.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(String.format(Locale.US,
+                    "{\"image\":\"%s\",\"expected\":\"%s\",\"predicted\":\"%s\","
+                            + "\"single_ms\":%.3f,\"batched_ms\":%.3f}",
+                    mImageNames[i], GestureDecoder.labelToString(mExpected[i]),
+                    GestureDecoder.labelToString(mPredicted[i]),
+                    mSingleLatencyNanos[i] / 1e6, mBatchedLatencyNanos[i] / 1e6));
+        }
+        sb.append("],\"confusion\":[");
+        final int[][] matrix = confusionMatrix();
+        for (int r = 0; r < matrix.length; r++) {
+            if (r > 0) {
+                sb.append(',');
+            }
+            sb.append('[');
+            for (int c = 0; c < matrix[r].length; c++) {
+                if (c > 0) {
+                    sb.append(',');
+                }
+                sb.append(matrix[r][c]);
+            }
+            sb.append(']');
+        }
+        return sb.append("]}").toString();
+    }
+
+    private boolean isExpected(int label) {
+        for (int expected : mExpected) {
+            if (expected == label) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static char shortLabel(int label) {
+        switch (label) {
+            case GestureDecoder.DELETE:
+                return '<';
+            case GestureDecoder.NOTHING:
+                return '-';
+            case GestureDecoder.SPACE:
+                return '_';
+            default:
+                return (char) ('A' + label);
+        }
+    }
+}
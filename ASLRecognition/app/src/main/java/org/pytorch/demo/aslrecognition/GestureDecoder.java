@@ -0,0 +1,159 @@
+package org.pytorch.demo.aslrecognition;
+
+/**
+ * Turns the per-frame class probabilities of the ASL model into text.
+ *
+ * <p>The last {@code window} probability vectors are kept in a ring buffer and averaged; the
+ * argmax of the average is the smoothed label. A label is committed once it has been the smoothed
+ * label for {@code stableFrames} frames in a row with enough confidence: letters are appended,
+ * SPACE appends a space and DELETE removes the last character. The same label is not committed
+ * again until a different one (usually NOTHING) has been seen, so holding a sign types it once.
+ *
+ * <p>While a committed label stays stable, {@link #shouldSkipInference()} lets the caller skip
+ * some frames. Plain Java, driven only by score arrays.
+ */
+public class GestureDecoder {
+    public static final int CLASS_COUNT = 29;
+    public static final int DELETE = 26;
+    public static final int NOTHING = 27;
+    public static final int SPACE = 28;
+
+    public static final int NO_LABEL = -1;
+
+    static final float MIN_CONFIDENCE = 0.5f;
+    static final int MAX_SKIPPED_FRAMES = 1;
+
+    private final int mWindow;
+    private final int mStableFrames;
+    private final float[][] mHistory;
+    private final float[] mAverage = new float[CLASS_COUNT];
+    private int mHistoryCount;
+    private int mHistoryNext;
+
+    private int mLabel = NO_LABEL;
+    private float mConfidence;
+    private int mRunLength;
+    private int mCommittedLabel = NO_LABEL;
+    private int mSkippedFrames;
+    private final StringBuilder mText = new StringBuilder();
+
+    public GestureDecoder(int window, int stableFrames) {
+        if (window < 1 || stableFrames < 1) {
+            throw new IllegalArgumentException("window and stableFrames must be positive");
+        }
+        mWindow = window;
+        mStableFrames = stableFrames;
+        mHistory = new float[window][CLASS_COUNT];
+    }
+
+    /**
+     * Adds the probabilities of one frame.
+     *
+     * @return the label committed by this frame, or {@link #NO_LABEL}
+     */
+    public int accept(float[] probabilities) {
+        if (probabilities.length != CLASS_COUNT) {
+            throw new IllegalArgumentException(
+                    "Expected " + CLASS_COUNT + " probabilities, got " + probabilities.length);
+        }
+        mSkippedFrames = 0;
+        System.arraycopy(probabilities, 0, mHistory[mHistoryNext], 0, CLASS_COUNT);
+        mHistoryNext = (mHistoryNext + 1) % mWindow;
+        mHistoryCount = Math.min(mHistoryCount + 1, mWindow);
+
+        int label = 0;
+        for (int c = 0; c < CLASS_COUNT; c++) {
+            float sum = 0;
+            for (int i = 0; i < mHistoryCount; i++) {
+                sum += mHistory[i][c];
+            }
+            mAverage[c] = sum / mHistoryCount;
+            if (mAverage[c] > mAverage[label]) {
+                label = c;
+            }
+        }
+        mConfidence = mAverage[label];
+        if (mConfidence < MIN_CONFIDENCE) {
+            label = NO_LABEL;
+        }
+        mRunLength = label == mLabel ? mRunLength + 1 : 1;
+        mLabel = label;
+
+        if (label == NO_LABEL || mRunLength < mStableFrames || label == mCommittedLabel) {
+            return NO_LABEL;
+        }
+        mCommittedLabel = label;
+        apply(label);
+        return label;
+    }
+
+    private void apply(int label) {
+        if (label == DELETE) {
+            if (mText.length() > 0) {
+                mText.setLength(mText.length() - 1);
+            }
+        } else if (label == SPACE) {
+            mText.append(' ');
+        } else if (label != NOTHING) {
+            mText.append(labelToString(label));
+        }
+    }
+
+    /**
+     * True if the next frame can be skipped: the committed label is still the smoothed one and
+     * fewer than {@link #MAX_SKIPPED_FRAMES} frames were skipped since the last {@link #accept}.
+     * The caller reports skipped frames through {@link #onFrameSkipped()}.
+     */
+    public boolean shouldSkipInference() {
+        return mLabel != NO_LABEL && mLabel == mCommittedLabel && mRunLength > mStableFrames
+                && mSkippedFrames < MAX_SKIPPED_FRAMES;
+    }
+
+    public void onFrameSkipped() {
+        mSkippedFrames++;
+    }
+
+    /** Smoothed label of the last frame, or {@link #NO_LABEL} if nothing is confident enough. */
+    public int getLabel() {
+        return mLabel;
+    }
+
+    public float getConfidence() {
+        return mConfidence;
+    }
+
+    public String getText() {
+        return mText.toString();
+    }
+
+    public void clearText() {
+        mText.setLength(0);
+    }
+
+    /** Forgets the frame history and the committed label, and clears the text. */
+    public void reset() {
+        mHistoryCount = 0;
+        mHistoryNext = 0;
+        mLabel = NO_LABEL;
+        mConfidence = 0;
+        mRunLength = 0;
+        mCommittedLabel = NO_LABEL;
+        mSkippedFrames = 0;
+        mText.setLength(0);
+    }
+
+    public static String labelToString(int label) {
+        switch (label) {
+            case DELETE:
+                return "DELETE";
+            case NOTHING:
+                return "NOTHING";
+            case SPACE:
+                return "SPACE";
+            case NO_LABEL:
+                return "?";
+            default:
+                return String.valueOf((char) ('A' + label));
+        }
+    }
+}
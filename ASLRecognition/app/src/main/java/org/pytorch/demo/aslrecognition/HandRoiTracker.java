@@ -0,0 +1,190 @@
+package org.pytorch.demo.aslrecognition;
+
+/**
+ * Tracks the region of the camera frame that holds the signing hand, so only that region is
+ * scaled to the model input instead of the whole frame.
+ *
+ * <p>Each frame is given as a small ARGB thumbnail. Candidate pixels are skin-coloured (YCbCr
+ * thresholds), preferring those that also moved since the previous thumbnail. Their bounding box
+ * is padded, made square and smoothed over frames. The confidence of the previous classification
+ * steers the tracker: confident results keep the region steady, and a run of unconfident ones
+ * falls back to the full frame for a while before tracking is tried again.
+ *
+ * <p>Plain Java, so recorded frames can be replayed through it off device.
+ */
+public class HandRoiTracker {
+
+    /** Square region in coordinates normalized to the frame, 0 to 1. */
+    public static class Roi {
+        public static final Roi FULL_FRAME = new Roi(0f, 0f, 1f, 1f);
+
+        public final float left;
+        public final float top;
+        public final float right;
+        public final float bottom;
+
+        public Roi(float left, float top, float right, float bottom) {
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+        }
+
+        public boolean isFullFrame() {
+            return left <= 0f && top <= 0f && right >= 1f && bottom >= 1f;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(java.util.Locale.US, "[%.2f, %.2f - %.2f, %.2f]",
+                    left, top, right, bottom);
+        }
+    }
+
+    static final float HIGH_CONFIDENCE = 0.6f;
+    static final float LOW_CONFIDENCE = 0.3f;
+    static final int LOST_FRAMES = 3;
+    static final int FALLBACK_FRAMES = 10;
+
+    private static final float MIN_CANDIDATE_FRACTION = 0.02f;
+    private static final float MARGIN = 0.3f;
+    private static final float TRACKING_SMOOTHING = 0.5f;
+    private static final float CONFIDENT_SMOOTHING = 0.15f;
+    private static final int MOTION_THRESHOLD = 24;
+
+    private int[] mPreviousLuma;
+    private int[] mLuma;
+    private Roi mRoi = Roi.FULL_FRAME;
+    private int mLowConfidenceFrames;
+    private int mFallbackFramesLeft;
+
+    /**
+     * Returns the region to classify in the frame {@code argb} ({@code width x height}).
+     *
+     * @param lastConfidence top probability of the previous classification, or 0 if none
+     */
+    public Roi update(int[] argb, int width, int height, float lastConfidence) {
+        final int pixelCount = width * height;
+        if (mLuma == null || mLuma.length != pixelCount) {
+            mLuma = new int[pixelCount];
+            mPreviousLuma = null;
+        }
+
+        final boolean confident = lastConfidence >= HIGH_CONFIDENCE;
+        if (lastConfidence < LOW_CONFIDENCE && !mRoi.isFullFrame()) {
+            mLowConfidenceFrames++;
+        } else {
+            mLowConfidenceFrames = 0;
+        }
+        if (mLowConfidenceFrames >= LOST_FRAMES) {
+            mLowConfidenceFrames = 0;
+            mFallbackFramesLeft = FALLBACK_FRAMES;
+        }
+
+        final Roi candidate = findCandidate(argb, width, height);
+        swapLuma();
+
+        if (mFallbackFramesLeft > 0) {
+            mFallbackFramesLeft--;
+            mRoi = Roi.FULL_FRAME;
+        } else if (candidate == null) {
+            if (!confident) {
+                mRoi = Roi.FULL_FRAME;
+            }
+        } else if (mRoi.isFullFrame()) {
+            mRoi = candidate;
+        } else {
+            mRoi = blend(mRoi, candidate, confident ? CONFIDENT_SMOOTHING : TRACKING_SMOOTHING);
+        }
+        return mRoi;
+    }
+
+    public Roi getRoi() {
+        return mRoi;
+    }
+
+    public void reset() {
+        mPreviousLuma = null;
+        mRoi = Roi.FULL_FRAME;
+        mLowConfidenceFrames = 0;
+        mFallbackFramesLeft = 0;
+    }
+
+    private Roi findCandidate(int[] argb, int width, int height) {
+        final boolean hasPrevious = mPreviousLuma != null;
+        int skinLeft = width, skinTop = height, skinRight = -1, skinBottom = -1, skinCount = 0;
+        int movingLeft = width, movingTop = height, movingRight = -1, movingBottom = -1;
+        int movingCount = 0;
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, i++) {
+                final int colour = argb[i];
+                final int r = (colour >> 16) & 0xff;
+                final int g = (colour >> 8) & 0xff;
+                final int b = colour & 0xff;
+                final int luma = (77 * r + 150 * g + 29 * b) >> 8;
+                mLuma[i] = luma;
+                if (!isSkin(r, g, b, luma)) {
+                    continue;
+                }
+                skinCount++;
+                skinLeft = Math.min(skinLeft, x);
+                skinRight = Math.max(skinRight, x);
+                skinTop = Math.min(skinTop, y);
+                skinBottom = Math.max(skinBottom, y);
+                if (hasPrevious && Math.abs(luma - mPreviousLuma[i]) > MOTION_THRESHOLD) {
+                    movingCount++;
+                    movingLeft = Math.min(movingLeft, x);
+                    movingRight = Math.max(movingRight, x);
+                    movingTop = Math.min(movingTop, y);
+                    movingBottom = Math.max(movingBottom, y);
+                }
+            }
+        }
+
+        final int minCount = Math.max(1, (int) (MIN_CANDIDATE_FRACTION * width * height));
+        if (movingCount >= minCount) {
+            return square(movingLeft, movingTop, movingRight, movingBottom, width, height);
+        }
+        if (skinCount >= minCount) {
+            return square(skinLeft, skinTop, skinRight, skinBottom, width, height);
+        }
+        return null;
+    }
+
+    private void swapLuma() {
+        final int[] previous = mPreviousLuma;
+        mPreviousLuma = mLuma;
+        mLuma = previous != null ? previous : new int[mLuma.length];
+    }
+
+    static boolean isSkin(int r, int g, int b, int luma) {
+        final int cb = 128 + ((-43 * r - 85 * g + 128 * b) >> 8);
+        final int cr = 128 + ((128 * r - 107 * g - 21 * b) >> 8);
+        return luma > 40 && cb >= 77 && cb <= 127 && cr >= 133 && cr <= 173;
+    }
+
+    /** Pads the pixel box {@code [left, right] x [top, bottom]} and squares it inside the frame. */
+    private static Roi square(int left, int top, int right, int bottom, int width, int height) {
+        final float boxWidth = right - left + 1;
+        final float boxHeight = bottom - top + 1;
+        final float side = Math.min(Math.min(width, height),
+                Math.max(boxWidth, boxHeight) * (1f + 2f * MARGIN));
+        final float centerX = left + boxWidth / 2f;
+        final float centerY = top + boxHeight / 2f;
+        final float x0 = clamp(centerX - side / 2f, 0f, width - side);
+        final float y0 = clamp(centerY - side / 2f, 0f, height - side);
+        return new Roi(x0 / width, y0 / height, (x0 + side) / width, (y0 + side) / height);
+    }
+
+    private static Roi blend(Roi from, Roi to, float alpha) {
+        return new Roi(
+                from.left + alpha * (to.left - from.left),
+                from.top + alpha * (to.top - from.top),
+                from.right + alpha * (to.right - from.right),
+                from.bottom + alpha * (to.bottom - from.bottom));
+    }
+
+    private static float clamp(float value, float min, float max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,115 @@
+package org.pytorch.demo.aslrecognition;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-bucket log-linear latency histogram in microseconds.
+ *
+ * <p>Each power of two is split into {@value #SUB_BUCKETS} linear sub-buckets, so a reported
+ * percentile is within ~6% of the recorded value, from 1us up to ~67s. Recording does not allocate
+ * and only touches atomics; one thread can record while others read percentiles.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 26;
+    private static final int BUCKET_COUNT =
+            SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mTotalCount = new AtomicLong();
+    private final AtomicLong mTotalMicros = new AtomicLong();
+    private final AtomicLong mMaxMicros = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1000);
+    }
+
+    public void recordMicros(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        mCounts.incrementAndGet(bucketIndex(micros));
+        mTotalCount.incrementAndGet();
+        mTotalMicros.addAndGet(micros);
+        long max;
+        while (micros > (max = mMaxMicros.get()) && !mMaxMicros.compareAndSet(max, micros)) {
+            // retry
+        }
+    }
+
+    public long getCount() {
+        return mTotalCount.get();
+    }
+
+    public double getMeanMicros() {
+        final long count = mTotalCount.get();
+        return count == 0 ? 0 : (double) mTotalMicros.get() / count;
+    }
+
+    public long getMaxMicros() {
+        return mMaxMicros.get();
+    }
+
+    /** Value at {@code percentile} (0..100), as the midpoint of the matching bucket; 0 if empty. */
+    public long percentileMicros(double percentile) {
+        final long count = mTotalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        final long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += mCounts.get(i);
+            if (cumulative >= target) {
+                return Math.min(bucketLowerBound(i) + bucketWidth(i) / 2, mMaxMicros.get());
+            }
+        }
+        return mMaxMicros.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mCounts.set(i, 0);
+        }
+        mTotalCount.set(0);
+        mTotalMicros.set(0);
+        mMaxMicros.set(0);
+    }
+
+    public String toJson() {
+        return String.format(Locale.US,
+                "{\"count\":%d,\"mean_us\":%.1f,\"p50_us\":%d,\"p90_us\":%d,\"p99_us\":%d,\"max_us\":%d}",
+                getCount(), getMeanMicros(), percentileMicros(50), percentileMicros(90),
+                percentileMicros(99), getMaxMicros());
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        final int shift = exponent - SUB_BUCKET_BITS;
+        final int subBucket = (int) (micros >> shift) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketLowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        final int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket) << shift;
+    }
+
+    static long bucketWidth(int index) {
+        return index < SUB_BUCKETS ? 1 : 1L << ((index - SUB_BUCKETS) / SUB_BUCKETS);
+    }
+}
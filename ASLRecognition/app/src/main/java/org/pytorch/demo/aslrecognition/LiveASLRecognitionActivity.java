@@ -1,36 +1,39 @@
 package org.pytorch.demo.aslrecognition;
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.ImageFormat;
-import android.graphics.Matrix;
-import android.graphics.Rect;
-import android.graphics.YuvImage;
 import android.media.Image;
-import android.util.Pair;
+import android.os.SystemClock;
 import android.view.ViewStub;
 import android.widget.TextView;
 
 import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
+import androidx.camera.core.CameraSelector;
 import androidx.camera.core.ImageProxy;
 import androidx.camera.view.PreviewView;
 
+import org.pytorch.IValue;
 import org.pytorch.LiteModuleLoader;
 import org.pytorch.Module;
+import org.pytorch.Tensor;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 
 
 public class LiveASLRecognitionActivity extends org.pytorch.demo.aslrecognition.AbstractCameraXActivity<LiveASLRecognitionActivity.AnalysisResult> {
     private Module mModule = null;
     private TextView mResultView;
-
-    private final static int DELETE = 26;
-    private final static int NOTHING = 27;
-    private final static int SPACE = 28;
+    private final HandRoiTracker mRoiTracker = new HandRoiTracker();
+    private int[] mThumbnailPixels;
+    private final int[] mInputPixels = new int[MainActivity.SIZE * MainActivity.SIZE];
+    private float mLastConfidence;
+    private final GestureDecoder mDecoder = new GestureDecoder(DECODER_WINDOW, DECODER_STABLE_FRAMES);
+    private long mLastInferenceTime;
+
+    private final static int ROI_THUMBNAIL_WIDTH = 64;
+    private final static int DECODER_WINDOW = 4;
+    private final static int DECODER_STABLE_FRAMES = 3;
+    // A hand at arm's length spans about half of each frame side.
+    private final static float MIN_ROI_FRACTION = 0.5f;
 
     static class AnalysisResult {
         private final String mResults;
@@ -51,36 +54,19 @@ public class LiveASLRecognitionActivity extends org.pytorch.demo.aslrecognition.
         return findViewById(R.id.preview_view);
     }
 
+    @Override
+    protected CameraConfigNegotiator getCameraConfigNegotiator() {
+        // The hand crop is scaled straight from the YUV planes, the only converter here.
+        return new CameraConfigNegotiator(MainActivity.SIZE, MainActivity.SIZE, MIN_ROI_FRACTION)
+                .addConverter(CameraConfigNegotiator.Format.YUV_420_888, 1f);
+    }
+
     @Override
     protected void applyToUiAnalyzeImageResult(AnalysisResult result) {
         mResultView.setText(result.mResults);
         mResultView.invalidate();
     }
 
-    private Bitmap imgToBitmap(Image image) {
-        Image.Plane[] planes = image.getPlanes();
-        ByteBuffer yBuffer = planes[0].getBuffer();
-        ByteBuffer uBuffer = planes[1].getBuffer();
-        ByteBuffer vBuffer = planes[2].getBuffer();
-
-        int ySize = yBuffer.remaining();
-        int uSize = uBuffer.remaining();
-        int vSize = vBuffer.remaining();
-
-        byte[] nv21 = new byte[ySize + uSize + vSize];
-        yBuffer.get(nv21, 0, ySize);
-        vBuffer.get(nv21, ySize, vSize);
-        uBuffer.get(nv21, ySize + vSize, uSize);
-
-        YuvImage yuvImage = new YuvImage(nv21, ImageFormat.NV21, image.getWidth(), image.getHeight(), null);
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        yuvImage.compressToJpeg(new Rect(0, 0, yuvImage.getWidth(), yuvImage.getHeight()), 75, out);
-
-        byte[] imageBytes = out.toByteArray();
-        return BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
-    }
-
-
     @Override
     @WorkerThread
     @Nullable
@@ -93,26 +79,79 @@ public class LiveASLRecognitionActivity extends org.pytorch.demo.aslrecognition.
             }
         }
 
-        Bitmap bitmap = imgToBitmap(image.getImage());
-        Matrix matrix = new Matrix();
-        matrix.postRotate(90.0f);
-        bitmap = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
-        bitmap = Bitmap.createScaledBitmap(bitmap, MainActivity.SIZE, MainActivity.SIZE, true);
+        if (mDecoder.shouldSkipInference()) {
+            // The committed sign is still held; save the inference.
+            mDecoder.onFrameSkipped();
+            return newAnalysisResult();
+        }
+
+        // Crop, scale and rotate straight from the YUV planes; no full-size bitmap is made.
+        final long convertStart = Tracer.begin();
+        final Image.Plane[] planes = image.getImage().getPlanes();
+        final FrameScaler.Source frame = FrameScaler.yuv420(
+                planes[0].getBuffer(), planes[0].getRowStride(),
+                planes[1].getBuffer(), planes[2].getBuffer(),
+                planes[1].getRowStride(), planes[1].getPixelStride(),
+                image.getWidth(), image.getHeight());
+        final boolean mirror = getLensFacing() == CameraSelector.LENS_FACING_FRONT;
+        HandRoiTracker.Roi roi = trackHand(frame, rotationDegrees, mirror);
+        final int[] crop = FrameScaler.cropForRotatedRegion(roi.left, roi.top, roi.right, roi.bottom,
+                frame.width, frame.height, rotationDegrees, mirror);
+        FrameScaler.scale(frame, crop[0], crop[1], crop[2], crop[3], rotationDegrees, mirror,
+                FrameScaler.Mode.AUTO, MainActivity.SIZE, MainActivity.SIZE, mInputPixels);
+
+        final long startTime = SystemClock.elapsedRealtime();
+        final Tensor inputTensor = AslInputBuffer.get().write(mInputPixels);
+        Tracer.end(Tracer.CONVERT, convertStart);
+        final long forwardStart = Tracer.begin();
+        final float[] scores = mModule.forward(IValue.from(inputTensor)).toTensor().getDataAsFloatArray();
+        Tracer.end(Tracer.FORWARD, forwardStart);
+        final long decodeStart = Tracer.begin();
+        final float[] probabilities = softmax(scores);
+        mLastInferenceTime = SystemClock.elapsedRealtime() - startTime;
+        float maxProbability = 0;
+        for (float probability : probabilities) {
+            maxProbability = Math.max(maxProbability, probability);
+        }
+        mLastConfidence = maxProbability;
+        mDecoder.accept(probabilities);
+        Tracer.end(Tracer.DECODE, decodeStart);
+        return newAnalysisResult();
+    }
 
-        Pair<Integer, Long> idxTm = MainActivity.bitmapRecognition(bitmap, mModule);
-        int maxScoreIdx = idxTm.first;
-        long inferenceTime = idxTm.second;
+    private AnalysisResult newAnalysisResult() {
+        return new AnalysisResult(String.format("%s_\n%s - %dms", mDecoder.getText(),
+                GestureDecoder.labelToString(mDecoder.getLabel()), mLastInferenceTime));
+    }
+
+    private HandRoiTracker.Roi trackHand(FrameScaler.Source frame, int rotationDegrees, boolean mirror) {
+        final boolean swap = rotationDegrees % 180 != 0;
+        final int frameWidth = swap ? frame.height : frame.width;
+        final int frameHeight = swap ? frame.width : frame.height;
+        final int width = ROI_THUMBNAIL_WIDTH;
+        final int height = Math.max(1, ROI_THUMBNAIL_WIDTH * frameHeight / frameWidth);
+        if (mThumbnailPixels == null || mThumbnailPixels.length != width * height) {
+            mThumbnailPixels = new int[width * height];
+        }
+        FrameScaler.scale(frame, 0, 0, frame.width, frame.height, rotationDegrees, mirror,
+                FrameScaler.Mode.BOX, width, height, mThumbnailPixels);
+        return mRoiTracker.update(mThumbnailPixels, width, height, mLastConfidence);
+    }
 
-        String result = String.valueOf((char)(1 + maxScoreIdx + 64));
-        if (maxScoreIdx == DELETE) {
-            result = "DELETE";
+    private static float[] softmax(float[] scores) {
+        float max = Float.NEGATIVE_INFINITY;
+        for (float score : scores) {
+            max = Math.max(max, score);
         }
-        else if (maxScoreIdx == NOTHING) {
-            result = "NOTHING";
+        final float[] probabilities = new float[scores.length];
+        float sum = 0;
+        for (int i = 0; i < scores.length; i++) {
+            probabilities[i] = (float) Math.exp(scores[i] - max);
+            sum += probabilities[i];
         }
-        else if (maxScoreIdx == SPACE) {
-            result = "SPACE";
+        for (int i = 0; i < scores.length; i++) {
+            probabilities[i] /= sum;
         }
-        return new AnalysisResult(String.format("%s - %dms", result, inferenceTime));
+        return probabilities;
     }
-}
\ No newline at end of file
+}
@@ -6,7 +6,6 @@ import android.content.Context;
 import android.content.Intent;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.graphics.Color;
 import android.os.Bundle;
 import android.os.SystemClock;
 import android.util.Log;
@@ -16,6 +15,7 @@ import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import org.pytorch.IValue;
 import org.pytorch.LiteModuleLoader;
@@ -27,7 +27,6 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.FloatBuffer;
 
 public class MainActivity extends AppCompatActivity implements Runnable {
     private ImageView mImageView;
@@ -38,6 +37,8 @@ public class MainActivity extends AppCompatActivity implements Runnable {
     private int mStartLetterPos = 1;
     private String mLetter = "A";
     public final static int SIZE = 200;
+    // One instance for the click handler, whose work runs on the interactive lane.
+    private final AslInputBuffer mInputBuffer = new AslInputBuffer(SIZE, SIZE);
 
     public static String assetFilePath(Context context, String assetName) throws IOException {
         File file = new File(context.getFilesDir(), assetName);
@@ -99,8 +100,9 @@ public class MainActivity extends AppCompatActivity implements Runnable {
         mButtonRecognize = findViewById(R.id.recognizeButton);
         mButtonRecognize.setOnClickListener(new View.OnClickListener() {
             public void onClick(View v) {
-                Thread thread = new Thread(MainActivity.this);
-                thread.start();
+                if (!InferenceExecutor.get().tryExecute(InferenceExecutor.Lane.INTERACTIVE, MainActivity.this)) {
+                    Toast.makeText(MainActivity.this, R.string.inference_busy, Toast.LENGTH_SHORT).show();
+                }
             }
         });
 
@@ -112,6 +114,13 @@ public class MainActivity extends AppCompatActivity implements Runnable {
             }
         });
 
+        final Button buttonEvaluate = findViewById(R.id.evaluateButton);
+        buttonEvaluate.setOnClickListener(new View.OnClickListener() {
+            public void onClick(View v) {
+                startActivity(new Intent(MainActivity.this, EvaluationActivity.class));
+            }
+        });
+
         try {
             mModule = LiteModuleLoader.load(MainActivity.assetFilePath(getApplicationContext(), "asl.ptl"));
         } catch (IOException e) {
@@ -120,22 +129,8 @@ public class MainActivity extends AppCompatActivity implements Runnable {
         }
     }
 
-    public static Pair<Integer, Long> bitmapRecognition(Bitmap bitmap, Module module) {
-        FloatBuffer inTensorBuffer = Tensor.allocateFloatBuffer(3 * SIZE * SIZE);
-        for (int x = 0; x < SIZE; x++) {
-            for (int y = 0; y < SIZE; y++) {
-                int colour = bitmap.getPixel(x, y);
-
-                int red = Color.red(colour);
-                int blue = Color.blue(colour);
-                int green = Color.green(colour);
-                inTensorBuffer.put(x + SIZE * y, (float) blue);
-                inTensorBuffer.put(SIZE * SIZE + x + SIZE * y, (float) green);
-                inTensorBuffer.put(2 * SIZE * SIZE + x + SIZE * y, (float) red);
-            }
-        }
-
-        Tensor inputTensor = Tensor.fromBlob(inTensorBuffer, new long[]{1, 3, SIZE, SIZE});
+    public static Pair<Integer, Long> bitmapRecognition(Bitmap bitmap, Module module, AslInputBuffer inputBuffer) {
+        Tensor inputTensor = inputBuffer.write(bitmap);
         final long startTime = SystemClock.elapsedRealtime();
         Tensor outTensor = module.forward(IValue.from(inputTensor)).toTensor();
         final long inferenceTime = SystemClock.elapsedRealtime() - startTime;
@@ -154,7 +149,7 @@ public class MainActivity extends AppCompatActivity implements Runnable {
 
     @Override
     public void run() {
-        Pair<Integer, Long> idxTm = bitmapRecognition(mBitmap, mModule);
+        Pair<Integer, Long> idxTm = bitmapRecognition(mBitmap, mModule, mInputBuffer);
 
         int finalMaxScoreIdx = idxTm.first;
         runOnUiThread(new Runnable() {
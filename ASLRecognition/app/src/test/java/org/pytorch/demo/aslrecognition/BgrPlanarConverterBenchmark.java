@@ -0,0 +1,131 @@
+package org.pytorch.demo.aslrecognition;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Times the ASL input conversion before and after {@link BgrPlanarConverter} on a 200x200 frame,
+ * the comparison behind the per-frame figures quoted for it. Not a test: run it on a desktop JVM
+ * from the compiled test classes, e.g.
+ * {@code java -cp <test classes>:<main classes> org.pytorch.demo.aslrecognition.BgrPlanarConverterBenchmark}.
+ *
+ * <p>{@code per_pixel} is the old path: a new direct buffer per frame, filled column by column
+ * with three absolute puts per pixel. {@code converter} is {@link AslInputBuffer}'s path: the
+ * converter into a reused array, then one bulk put into a reused direct buffer. Both read the
+ * row-major pixels {@code getPixels} returns, so the JNI cost of the old per-pixel
+ * {@code getPixel} calls is left out. Each variant runs in a JVM of its own, as JMH forks do, and
+ * each figure is the median over rounds of the mean time per frame, in milliseconds.
+ */
+public class BgrPlanarConverterBenchmark {
+
+    // MainActivity.SIZE, the model input size.
+    private static final int SIZE = 200;
+    private static final String[] VARIANTS = {"per_pixel", "converter"};
+    private static final int FRAMES_PER_ROUND = 200;
+    private static final int ROUNDS = 25;
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+
+    // Keeps the results alive so the conversions cannot be optimized away.
+    private static volatile float sSink;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 1) {
+            System.out.println(time(args[0]));
+            return;
+        }
+        for (String variant : VARIANTS) {
+            System.out.println(
+                    String.format(Locale.US, "%-10s %.3f ms/frame", variant, fork(variant)));
+        }
+    }
+
+    private static double fork(String variant) throws IOException, InterruptedException {
+        final String java = System.getProperty("java.home") + File.separator + "bin"
+                + File.separator + "java";
+        final Process process = new ProcessBuilder(java,
+                "-cp", System.getProperty("java.class.path"),
+                BgrPlanarConverterBenchmark.class.getName(), variant)
+                .redirectErrorStream(true)
+                .start();
+        final double millis;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            millis = Double.parseDouble(reader.readLine());
+        }
+        if (process.waitFor() != 0) {
+            throw new IOException(variant + " fork failed");
+        }
+        return millis;
+    }
+
+    private static double time(String variant) {
+        final int[] argb = new int[SIZE * SIZE];
+        final Random random = new Random(SIZE);
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = random.nextInt();
+        }
+        final Runnable frame;
+        if ("per_pixel".equals(variant)) {
+            frame = () -> sSink += perPixel(argb).get(SIZE);
+        } else {
+            final float[] planar = new float[3 * SIZE * SIZE];
+            final FloatBuffer buffer = allocateFloatBuffer(3 * SIZE * SIZE);
+            frame = () -> sSink += converter(argb, planar, buffer).get(SIZE);
+        }
+
+        final long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() < warmupEnd) {
+            frame.run();
+        }
+        final long[] samples = new long[ROUNDS];
+        for (int r = 0; r < ROUNDS; r++) {
+            final long startTime = System.nanoTime();
+            for (int i = 0; i < FRAMES_PER_ROUND; i++) {
+                frame.run();
+            }
+            samples[r] = (System.nanoTime() - startTime) / FRAMES_PER_ROUND;
+        }
+        Arrays.sort(samples);
+        return samples[ROUNDS / 2] / 1e6;
+    }
+
+    /** The conversion MainActivity.bitmapRecognition did before the converter. */
+    private static FloatBuffer perPixel(int[] argb) {
+        final FloatBuffer inTensorBuffer = allocateFloatBuffer(3 * SIZE * SIZE);
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                final int colour = argb[y * SIZE + x];
+                final int red = (colour >> 16) & 0xff;
+                final int green = (colour >> 8) & 0xff;
+                final int blue = colour & 0xff;
+                inTensorBuffer.put(x + SIZE * y, (float) blue);
+                inTensorBuffer.put(SIZE * SIZE + x + SIZE * y, (float) green);
+                inTensorBuffer.put(2 * SIZE * SIZE + x + SIZE * y, (float) red);
+            }
+        }
+        return inTensorBuffer;
+    }
+
+    /** AslInputBuffer.write(int[]) without the tensor wrapper. */
+    private static FloatBuffer converter(int[] argb, float[] planar, FloatBuffer buffer) {
+        BgrPlanarConverter.argbToBgrPlanar(argb, SIZE * SIZE, planar);
+        buffer.rewind();
+        buffer.put(planar);
+        return buffer;
+    }
+
+    // Tensor.allocateFloatBuffer, without the native library.
+    private static FloatBuffer allocateFloatBuffer(int numElements) {
+        return ByteBuffer.allocateDirect(numElements * 4).order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+    }
+}
@@ -0,0 +1,55 @@
+package org.pytorch.demo.aslrecognition;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class BgrPlanarConverterTest {
+
+    // MainActivity.SIZE, the model input size.
+    private static final int SIZE = 200;
+
+    @Test
+    public void matchesPerPixelLoop() {
+        final Random random = new Random(SIZE);
+        final int[] argb = new int[SIZE * SIZE];
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = random.nextInt();
+        }
+        final float[] out = new float[3 * SIZE * SIZE];
+        BgrPlanarConverter.argbToBgrPlanar(argb, SIZE * SIZE, out);
+
+        assertArrayEquals(perPixelLoop(argb), out, 0f);
+    }
+
+    @Test
+    public void convertsOnlyPixelCount() {
+        final int[] argb = {0xff102030, 0x80405060, 0x00708090};
+        final float[] out = new float[9];
+        BgrPlanarConverter.argbToBgrPlanar(argb, 2, out);
+
+        assertArrayEquals(new float[]{0x30, 0x60, 0x20, 0x50, 0x10, 0x40, 0, 0, 0}, out, 0f);
+    }
+
+    /**
+     * The conversion {@code MainActivity} used before the converter: column by column through
+     * {@code Bitmap.getPixel(x, y)}, here over the row-major pixels {@code getPixels} returns.
+     */
+    private static float[] perPixelLoop(int[] argb) {
+        final float[] inTensorBuffer = new float[3 * SIZE * SIZE];
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                final int colour = argb[y * SIZE + x];
+                final int red = (colour >> 16) & 0xff;
+                final int green = (colour >> 8) & 0xff;
+                final int blue = colour & 0xff;
+                inTensorBuffer[x + SIZE * y] = (float) blue;
+                inTensorBuffer[SIZE * SIZE + x + SIZE * y] = (float) green;
+                inTensorBuffer[2 * SIZE * SIZE + x + SIZE * y] = (float) red;
+            }
+        }
+        return inTensorBuffer;
+    }
+}
@@ -0,0 +1,136 @@
+package org.pytorch.demo.aslrecognition;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EvaluationReportTest {
+
+    private static final long MS = 1_000_000L;
+    private static final String[] NAMES = {"A1.jpg", "B1.jpg", "C1.jpg", "D1.jpg"};
+    private static final int[] EXPECTED = {0, 1, 2, 3};
+
+    @Test
+    public void countsBatchedPredictions() {
+        final EvaluationReport report = newReport(0.5f,
+                new int[]{0, 1, 2, 3}, new int[]{0, 1, 2, GestureDecoder.SPACE});
+
+        assertEquals(3, report.getCorrect());
+        assertEquals(0.75f, report.getAccuracy(), 0f);
+        assertEquals(1, report.getBatchMismatches());
+    }
+
+    @Test
+    public void confusionMatrixIsExpectedByPredicted() {
+        final EvaluationReport report = newReport(0.5f,
+                new int[]{0, 1, 2, GestureDecoder.SPACE}, new int[]{0, 1, 2, GestureDecoder.SPACE});
+        final int[][] matrix = report.confusionMatrix();
+
+        assertEquals(GestureDecoder.CLASS_COUNT, matrix.length);
+        int total = 0;
+        for (int r = 0; r < matrix.length; r++) {
+            assertEquals(GestureDecoder.CLASS_COUNT, matrix[r].length);
+            for (int c = 0; c < matrix[r].length; c++) {
+                total += matrix[r][c];
+            }
+        }
+        assertEquals(NAMES.length, total);
+        assertEquals(1, matrix[0][0]);
+        assertEquals(1, matrix[2][2]);
+        assertEquals(0, matrix[3][3]);
+        assertEquals(1, matrix[3][GestureDecoder.SPACE]);
+    }
+
+    @Test
+    public void passesAtThreshold() {
+        final int[] predicted = {0, 1, 2, GestureDecoder.NOTHING};
+        assertTrue(newReport(0.75f, predicted, predicted).isPassed());
+        assertFalse(newReport(0.8f, predicted, predicted).isPassed());
+        assertTrue(newReport(0.8f, predicted, predicted).summary().startsWith("FAILED"));
+    }
+
+    @Test
+    public void failsOnBatchMismatch() {
+        final EvaluationReport report =
+                newReport(0.5f, new int[]{0, 1, 2, 1}, new int[]{0, 1, 2, 3});
+
+        assertEquals(1f, report.getAccuracy(), 0f);
+        assertFalse(report.isPassed());
+    }
+
+    @Test
+    public void emptyReport() {
+        final EvaluationReport report =
+                new EvaluationReport(new String[0], new int[0], 8, 0.9f);
+
+        assertEquals(0f, report.getAccuracy(), 0f);
+        assertFalse(report.isPassed());
+        assertEquals(0.0, EvaluationReport.meanMillis(new long[0]), 0.0);
+    }
+
+    @Test
+    public void meanMillis() {
+        assertEquals(2.5, EvaluationReport.meanMillis(new long[]{2 * MS, 3 * MS}), 1e-9);
+    }
+
+    @Test
+    public void serializesToJson() {
+        final EvaluationReport report = new EvaluationReport(
+                new String[]{"A1.jpg", "B1.jpg"}, new int[]{0, 1}, 2, 0.5f);
+        report.setDecodeNanos(5 * MS);
+        report.recordSingle(0, 0, 2 * MS);
+        report.recordSingle(1, GestureDecoder.NOTHING, 4 * MS);
+        report.recordBatched(0, 0, MS);
+        report.recordBatched(1, GestureDecoder.NOTHING, MS);
+
+        final StringBuilder confusion = new StringBuilder("[");
+        for (int r = 0; r < GestureDecoder.CLASS_COUNT; r++) {
+            confusion.append(r > 0 ? ",[" : "[");
+            for (int c = 0; c < GestureDecoder.CLASS_COUNT; c++) {
+                final boolean hit = (r == 0 && c == 0) || (r == 1 && c == GestureDecoder.NOTHING);
+                confusion.append(c > 0 ? "," : "").append(hit ? 1 : 0);
+            }
+            confusion.append(']');
+        }
+        confusion.append(']');
+
+        assertEquals("{\"images\":2,\"correct\":1,\"accuracy\":0.5000,\"min_accuracy\":0.5000,"
+                        + "\"passed\":true,\"batch_size\":2,"
+                        + "\"single_ms_per_image\":3.000,\"batched_ms_per_image\":1.000,"
+                        + "\"batch_mismatches\":0,\"decode_ms\":5.000,\"results\":["
+                        + "{\"image\":\"A1.jpg\",\"expected\":\"A\",\"predicted\":\"A\","
+                        + "\"single_ms\":2.000,\"batched_ms\":1.000},"
+                        + "{\"image\":\"B1.jpg\",\"expected\":\"B\",\"predicted\":\"NOTHING\","
+                        + "\"single_ms\":4.000,\"batched_ms\":1.000}],"
+                        + "\"confusion\":" + confusion + "}",
+                report.toJson());
+    }
+
+    @Test
+    public void detailsListEveryImage() {
+        final EvaluationReport report =
+                newReport(0.5f, new int[]{0, 1, 2, 0}, new int[]{0, 1, 2, 0});
+        final String[] lines = report.details().split("\n");
+
+        for (int i = 0; i < NAMES.length; i++) {
+            assertTrue(lines[i], lines[i].startsWith(NAMES[i]));
+        }
+        assertTrue(lines[3].contains("FAIL"));
+        // A blank line, the header and the column labels, then one row per expected letter only.
+        assertEquals(NAMES.length + 3 + EXPECTED.length, lines.length);
+        for (int r = 0; r < EXPECTED.length; r++) {
+            assertTrue(lines[NAMES.length + 3 + r].startsWith(String.valueOf((char) ('A' + r))));
+        }
+    }
+
+    private static EvaluationReport newReport(float minAccuracy, int[] single, int[] batched) {
+        final EvaluationReport report = new EvaluationReport(NAMES, EXPECTED, 2, minAccuracy);
+        for (int i = 0; i < NAMES.length; i++) {
+            report.recordSingle(i, single[i], 10 * MS);
+            report.recordBatched(i, batched[i], 4 * MS);
+        }
+        return report;
+    }
+}
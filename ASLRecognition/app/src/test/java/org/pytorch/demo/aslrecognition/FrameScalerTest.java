@@ -0,0 +1,365 @@
+package org.pytorch.demo.aslrecognition;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FrameScalerTest {
+
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+
+    @Test
+    public void areaMatchesExactAreaMean() {
+        final int width = 37;
+        final int height = 23;
+        final int[] pixels = randomPixels(width, height, 1);
+        for (int[] size : new int[][]{{10, 7}, {12, 11}, {5, 3}, {18, 11}}) {
+            final int[] dst = new int[size[0] * size[1]];
+            FrameScaler.scale(FrameScaler.argb(pixels, width, height), 0, 0, width, height,
+                    0, false, FrameScaler.Mode.AREA, size[0], size[1], dst);
+
+            assertClose(naiveArea(pixels, width, height, size[0], size[1]), dst, 1);
+        }
+    }
+
+    @Test
+    public void bilinearMatchesHalfPixelCenters() {
+        final int width = 20;
+        final int height = 16;
+        final int[] pixels = randomPixels(width, height, 2);
+        for (int[] size : new int[][]{{13, 11}, {20, 16}, {31, 25}}) {
+            final int[] dst = new int[size[0] * size[1]];
+            FrameScaler.scale(FrameScaler.argb(pixels, width, height), 0, 0, width, height,
+                    0, false, FrameScaler.Mode.BILINEAR, size[0], size[1], dst);
+
+            assertClose(naiveBilinear(pixels, width, height, size[0], size[1]), dst, 1);
+        }
+    }
+
+    @Test
+    public void boxEqualsAreaForIntegerRatios() {
+        final int[] pixels = randomPixels(40, 24, 3);
+        final int[] box = new int[10 * 6];
+        final int[] area = new int[10 * 6];
+        FrameScaler.scale(FrameScaler.argb(pixels, 40, 24), 0, 0, 40, 24, 0, false,
+                FrameScaler.Mode.BOX, 10, 6, box);
+        FrameScaler.scale(FrameScaler.argb(pixels, 40, 24), 0, 0, 40, 24, 0, false,
+                FrameScaler.Mode.AREA, 10, 6, area);
+
+        assertArrayEquals(area, box);
+    }
+
+    @Test
+    public void rotationAndMirrorMatchRotatedCopy() {
+        final int width = 29;
+        final int height = 19;
+        final int[] pixels = randomPixels(width, height, 4);
+        // Unrotated output size; the rotated outputs swap it for 90 and 270 degrees.
+        final int scaledWidth = 11;
+        final int scaledHeight = 7;
+        final int[] upright = new int[scaledWidth * scaledHeight];
+        FrameScaler.scale(FrameScaler.argb(pixels, width, height), 0, 0, width, height, 0, false,
+                FrameScaler.Mode.AREA, scaledWidth, scaledHeight, upright);
+
+        for (int rotation : ROTATIONS) {
+            for (boolean mirror : new boolean[]{false, true}) {
+                final boolean swap = rotation % 180 != 0;
+                final int dstWidth = swap ? scaledHeight : scaledWidth;
+                final int dstHeight = swap ? scaledWidth : scaledHeight;
+                final int[] dst = new int[dstWidth * dstHeight];
+                FrameScaler.scale(FrameScaler.argb(pixels, width, height), 0, 0, width, height,
+                        rotation, mirror, FrameScaler.Mode.AREA, dstWidth, dstHeight, dst);
+
+                assertArrayEquals(rotation + " " + mirror,
+                        rotate(upright, scaledWidth, scaledHeight, rotation, mirror), dst);
+            }
+        }
+    }
+
+    @Test
+    public void cropMatchesScalingACopy() {
+        final int width = 50;
+        final int height = 40;
+        final int[] pixels = randomPixels(width, height, 5);
+        final int left = 7;
+        final int top = 9;
+        final int cropWidth = 30;
+        final int cropHeight = 22;
+        final int[] copy = new int[cropWidth * cropHeight];
+        for (int y = 0; y < cropHeight; y++) {
+            System.arraycopy(pixels, (top + y) * width + left, copy, y * cropWidth, cropWidth);
+        }
+        for (FrameScaler.Mode mode : FrameScaler.Mode.values()) {
+            final int[] cropped = new int[8 * 13];
+            final int[] expected = new int[8 * 13];
+            FrameScaler.scale(FrameScaler.argb(pixels, width, height), left, top, cropWidth,
+                    cropHeight, 90, true, mode, 8, 13, cropped);
+            FrameScaler.scale(FrameScaler.argb(copy, cropWidth, cropHeight), 0, 0, cropWidth,
+                    cropHeight, 90, true, mode, 8, 13, expected);
+
+            assertArrayEquals(mode.name(), expected, cropped);
+        }
+    }
+
+    @Test
+    public void cropForRotatedRegionSelectsTheSamePixels() {
+        final int width = 40;
+        final int height = 30;
+        final int[] pixels = randomPixels(width, height, 6);
+        // Whole pixels along both sides, so rounding cannot differ between rotations.
+        final float left = 0.2f;
+        final float top = 0.1f;
+        final float right = 0.6f;
+        final float bottom = 0.7f;
+        for (int rotation : ROTATIONS) {
+            for (boolean mirror : new boolean[]{false, true}) {
+                final boolean swap = rotation % 180 != 0;
+                final int frameWidth = swap ? height : width;
+                final int frameHeight = swap ? width : height;
+                // 1:1 bilinear copies pixels, so this is the whole frame as the user sees it.
+                final int[] frame = new int[width * height];
+                FrameScaler.scale(FrameScaler.argb(pixels, width, height), 0, 0, width, height,
+                        rotation, mirror, FrameScaler.Mode.BILINEAR, frameWidth, frameHeight,
+                        frame);
+
+                final int[] crop = FrameScaler.cropForRotatedRegion(left, top, right, bottom,
+                        width, height, rotation, mirror);
+                final int regionWidth = swap ? crop[3] : crop[2];
+                final int regionHeight = swap ? crop[2] : crop[3];
+                final int[] region = new int[regionWidth * regionHeight];
+                FrameScaler.scale(FrameScaler.argb(pixels, width, height), crop[0], crop[1],
+                        crop[2], crop[3], rotation, mirror, FrameScaler.Mode.BILINEAR,
+                        regionWidth, regionHeight, region);
+
+                final int x0 = Math.round(left * frameWidth);
+                final int y0 = Math.round(top * frameHeight);
+                assertEquals(Math.round(right * frameWidth) - x0, regionWidth);
+                assertEquals(Math.round(bottom * frameHeight) - y0, regionHeight);
+                for (int y = 0; y < regionHeight; y++) {
+                    for (int x = 0; x < regionWidth; x++) {
+                        assertEquals(rotation + " " + mirror + " at " + x + "," + y,
+                                frame[(y0 + y) * frameWidth + x0 + x], region[y * regionWidth + x]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void yuvConvertsWithBt601() {
+        final int[][] yuvs = {{128, 128, 128}, {0, 128, 128}, {255, 128, 128},
+                {81, 90, 240}, {145, 54, 34}, {41, 240, 110}, {200, 20, 200}};
+        for (int[] yuv : yuvs) {
+            final ByteBuffer y = ByteBuffer.wrap(new byte[]{(byte) yuv[0], (byte) yuv[0],
+                    (byte) yuv[0], (byte) yuv[0]});
+            final ByteBuffer u = ByteBuffer.wrap(new byte[]{(byte) yuv[1]});
+            final ByteBuffer v = ByteBuffer.wrap(new byte[]{(byte) yuv[2]});
+            final int[] dst = new int[1];
+            FrameScaler.scale(FrameScaler.yuv420(y, 2, u, v, 1, 1, 2, 2), 0, 0, 2, 2, 0, false,
+                    FrameScaler.Mode.AREA, 1, 1, dst);
+
+            final double r = yuv[0] + 1.402 * (yuv[2] - 128);
+            final double g = yuv[0] - 0.344136 * (yuv[1] - 128) - 0.714136 * (yuv[2] - 128);
+            final double b = yuv[0] + 1.772 * (yuv[1] - 128);
+            assertEquals(0xff, dst[0] >>> 24);
+            assertEquals(clamp(r), (dst[0] >> 16) & 0xff, 1);
+            assertEquals(clamp(g), (dst[0] >> 8) & 0xff, 1);
+            assertEquals(clamp(b), dst[0] & 0xff, 1);
+        }
+    }
+
+    @Test
+    public void tapsAreNormalizedAndCached() {
+        for (FrameScaler.Mode mode : new FrameScaler.Mode[]{
+                FrameScaler.Mode.BOX, FrameScaler.Mode.AREA, FrameScaler.Mode.BILINEAR}) {
+            final FrameScaler.Taps taps = FrameScaler.Taps.of(mode, 97, 13);
+            for (int o = 0; o < 13; o++) {
+                float sum = 0;
+                for (int i = 0; i < taps.count[o]; i++) {
+                    sum += taps.weights[o * taps.maxTaps + i];
+                }
+                assertEquals(mode + " " + o, 1f, sum, 1e-5f);
+                assertTrue(taps.start[o] >= 0 && taps.start[o] + taps.count[o] <= 97);
+            }
+        }
+        final FrameScaler.Taps area = FrameScaler.Taps.get(FrameScaler.Mode.AREA, 640, 200);
+        assertSame(area, FrameScaler.Taps.get(FrameScaler.Mode.AREA, 640, 200));
+        assertNotSame(area, FrameScaler.Taps.get(FrameScaler.Mode.BOX, 640, 200));
+        assertNotSame(area, FrameScaler.Taps.get(FrameScaler.Mode.AREA, 640, 201));
+    }
+
+    @Test
+    public void bandsMatchNaiveReference() {
+        final int width = 640;
+        final int height = 480;
+        final int[] pixels = randomPixels(width, height, 7);
+        final int[] dst = new int[180 * 240];
+        FrameScaler.scale(FrameScaler.argb(pixels, width, height), 0, 0, width, height, 90, true,
+                FrameScaler.Mode.AREA, 180, 240, dst);
+
+        assertClose(naiveBandFrame(pixels), dst, 1);
+    }
+
+    @Test
+    public void interruptedCallerStillGetsTheWholeFrame() {
+        final int width = 640;
+        final int height = 480;
+        final int[] pixels = randomPixels(width, height, 8);
+        final int[] dst = new int[180 * 240];
+        Thread.currentThread().interrupt();
+        try {
+            FrameScaler.scale(FrameScaler.argb(pixels, width, height), 0, 0, width, height, 90,
+                    true, FrameScaler.Mode.AREA, 180, 240, dst);
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+
+        assertClose(naiveBandFrame(pixels), dst, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCropOutsideFrame() {
+        FrameScaler.scale(FrameScaler.argb(new int[100], 10, 10), 5, 0, 6, 10, 0, false,
+                FrameScaler.Mode.AUTO, 2, 2, new int[4]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnalignedRotation() {
+        FrameScaler.scale(FrameScaler.argb(new int[100], 10, 10), 0, 0, 10, 10, 45, false,
+                FrameScaler.Mode.AUTO, 2, 2, new int[4]);
+    }
+
+    /** The band tests' frame: the whole 640x480 source, scaled, rotated and mirrored naively. */
+    private static int[] naiveBandFrame(int[] pixels) {
+        return rotate(naiveArea(pixels, 640, 480, 240, 180), 240, 180, 90, true);
+    }
+
+    /** Each output pixel as the area-weighted mean of the source, in doubles. */
+    private static int[] naiveArea(int[] pixels, int width, int height,
+                                   int outWidth, int outHeight) {
+        final double sx = (double) width / outWidth;
+        final double sy = (double) height / outHeight;
+        final int[] out = new int[outWidth * outHeight];
+        for (int oy = 0; oy < outHeight; oy++) {
+            for (int ox = 0; ox < outWidth; ox++) {
+                final double[] sum = new double[3];
+                double total = 0;
+                for (int y = (int) (oy * sy); y < Math.min(height, (oy + 1) * sy); y++) {
+                    final double wy = overlap(y, oy * sy, (oy + 1) * sy);
+                    for (int x = (int) (ox * sx); x < Math.min(width, (ox + 1) * sx); x++) {
+                        final double w = wy * overlap(x, ox * sx, (ox + 1) * sx);
+                        accumulate(sum, pixels[y * width + x], w);
+                        total += w;
+                    }
+                }
+                out[oy * outWidth + ox] = toArgb(sum, total);
+            }
+        }
+        return out;
+    }
+
+    private static int[] naiveBilinear(int[] pixels, int width, int height,
+                                       int outWidth, int outHeight) {
+        final int[] out = new int[outWidth * outHeight];
+        for (int oy = 0; oy < outHeight; oy++) {
+            final double cy = clampCenter((oy + 0.5) * height / outHeight - 0.5, height);
+            final int y0 = (int) cy;
+            final int y1 = Math.min(y0 + 1, height - 1);
+            for (int ox = 0; ox < outWidth; ox++) {
+                final double cx = clampCenter((ox + 0.5) * width / outWidth - 0.5, width);
+                final int x0 = (int) cx;
+                final int x1 = Math.min(x0 + 1, width - 1);
+                final double[] sum = new double[3];
+                accumulate(sum, pixels[y0 * width + x0], (1 - (cy - y0)) * (1 - (cx - x0)));
+                accumulate(sum, pixels[y0 * width + x1], (1 - (cy - y0)) * (cx - x0));
+                accumulate(sum, pixels[y1 * width + x0], (cy - y0) * (1 - (cx - x0)));
+                accumulate(sum, pixels[y1 * width + x1], (cy - y0) * (cx - x0));
+                out[oy * outWidth + ox] = toArgb(sum, 1);
+            }
+        }
+        return out;
+    }
+
+    /** Rotates clockwise by {@code rotation}, then flips horizontally if {@code mirror}. */
+    private static int[] rotate(int[] src, int width, int height, int rotation, boolean mirror) {
+        final boolean swap = rotation % 180 != 0;
+        final int outWidth = swap ? height : width;
+        final int outHeight = swap ? width : height;
+        final int[] out = new int[src.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int rx;
+                final int ry;
+                switch (rotation) {
+                    case 90:
+                        rx = height - 1 - y; ry = x;
+                        break;
+                    case 180:
+                        rx = width - 1 - x; ry = height - 1 - y;
+                        break;
+                    case 270:
+                        rx = y; ry = width - 1 - x;
+                        break;
+                    default:
+                        rx = x; ry = y;
+                        break;
+                }
+                if (mirror) {
+                    rx = outWidth - 1 - rx;
+                }
+                out[ry * outWidth + rx] = src[y * width + x];
+            }
+        }
+        assertEquals(outWidth * outHeight, out.length);
+        return out;
+    }
+
+    private static double overlap(int pixel, double from, double to) {
+        return Math.max(0, Math.min(pixel + 1, to) - Math.max(pixel, from));
+    }
+
+    private static double clampCenter(double center, int size) {
+        return Math.max(0, Math.min(size - 1, center));
+    }
+
+    private static void accumulate(double[] sum, int argb, double weight) {
+        sum[0] += weight * ((argb >> 16) & 0xff);
+        sum[1] += weight * ((argb >> 8) & 0xff);
+        sum[2] += weight * (argb & 0xff);
+    }
+
+    private static int toArgb(double[] sum, double total) {
+        return 0xff000000 | ((int) Math.round(sum[0] / total) << 16)
+                | ((int) Math.round(sum[1] / total) << 8) | (int) Math.round(sum[2] / total);
+    }
+
+    private static int clamp(double value) {
+        return (int) Math.max(0, Math.min(255, Math.round(value)));
+    }
+
+    private static void assertClose(int[] expected, int[] actual, int tolerance) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            for (int shift = 0; shift <= 16; shift += 8) {
+                assertEquals("pixel " + i, (expected[i] >> shift) & 0xff,
+                        (actual[i] >> shift) & 0xff, tolerance);
+            }
+        }
+    }
+
+    private static int[] randomPixels(int width, int height, long seed) {
+        final Random random = new Random(seed);
+        final int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xff000000 | random.nextInt(0x1000000);
+        }
+        return pixels;
+    }
+}
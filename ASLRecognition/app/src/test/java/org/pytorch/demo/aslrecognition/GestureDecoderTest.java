@@ -0,0 +1,144 @@
+package org.pytorch.demo.aslrecognition;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GestureDecoderTest {
+
+    private static final int WINDOW = 3;
+    private static final int STABLE_FRAMES = 2;
+    private static final int A = 0;
+    private static final int B = 1;
+
+    private GestureDecoder mDecoder;
+
+    @Before
+    public void setUp() {
+        mDecoder = new GestureDecoder(WINDOW, STABLE_FRAMES);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyWindow() {
+        new GestureDecoder(0, STABLE_FRAMES);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWrongClassCount() {
+        mDecoder.accept(new float[GestureDecoder.CLASS_COUNT - 1]);
+    }
+
+    @Test
+    public void emitsStableLetterOnce() {
+        assertEquals(GestureDecoder.NO_LABEL, mDecoder.accept(frame(A)));
+        assertEquals(A, mDecoder.getLabel());
+        assertEquals(A, mDecoder.accept(frame(A)));
+        assertEquals("A", mDecoder.getText());
+
+        // Holding the sign does not type it again.
+        for (int i = 0; i < 10; i++) {
+            assertEquals(GestureDecoder.NO_LABEL, mDecoder.accept(frame(A)));
+        }
+        assertEquals("A", mDecoder.getText());
+    }
+
+    @Test
+    public void suppressesFlickerShorterThanWindow() {
+        acceptAll(GestureDecoder.NOTHING, GestureDecoder.NOTHING, B, GestureDecoder.NOTHING,
+                GestureDecoder.NOTHING);
+        assertEquals("", mDecoder.getText());
+
+        acceptAll(A, A, A, B, A, A);
+        assertEquals("A", mDecoder.getText());
+        assertEquals(A, mDecoder.getLabel());
+    }
+
+    @Test
+    public void nothingSeparatesRepeatedLetters() {
+        acceptAll(A, A, A, GestureDecoder.NOTHING, GestureDecoder.NOTHING, GestureDecoder.NOTHING);
+        assertEquals(GestureDecoder.NOTHING, mDecoder.getLabel());
+        acceptAll(A, A, A);
+        assertEquals("AA", mDecoder.getText());
+    }
+
+    @Test
+    public void spaceAndDeleteEditText() {
+        acceptAll(A, A, GestureDecoder.SPACE, GestureDecoder.SPACE, GestureDecoder.SPACE,
+                B, B, B, GestureDecoder.DELETE, GestureDecoder.DELETE, GestureDecoder.DELETE);
+        assertEquals("A ", mDecoder.getText());
+    }
+
+    @Test
+    public void deleteOnEmptyTextIsIgnored() {
+        acceptAll(GestureDecoder.DELETE, GestureDecoder.DELETE);
+        assertEquals("", mDecoder.getText());
+    }
+
+    @Test
+    public void lowConfidenceHasNoLabel() {
+        final float[] probabilities = new float[GestureDecoder.CLASS_COUNT];
+        probabilities[A] = 0.4f;
+        probabilities[B] = 0.35f;
+        probabilities[GestureDecoder.NOTHING] = 0.25f;
+        for (int i = 0; i < WINDOW; i++) {
+            assertEquals(GestureDecoder.NO_LABEL, mDecoder.accept(probabilities));
+        }
+        assertEquals(GestureDecoder.NO_LABEL, mDecoder.getLabel());
+        assertEquals(0.4f, mDecoder.getConfidence(), 1e-6f);
+    }
+
+    @Test
+    public void skipsOneFrameWhileCommittedLabelHolds() {
+        acceptAll(A, A);
+        assertFalse(mDecoder.shouldSkipInference());
+        mDecoder.accept(frame(A));
+        assertTrue(mDecoder.shouldSkipInference());
+        mDecoder.onFrameSkipped();
+        assertFalse(mDecoder.shouldSkipInference());
+        mDecoder.accept(frame(A));
+        assertTrue(mDecoder.shouldSkipInference());
+    }
+
+    @Test
+    public void resetForgetsHistoryAndCommittedLabel() {
+        acceptAll(B, B, B);
+        mDecoder.reset();
+
+        assertEquals("", mDecoder.getText());
+        assertEquals(GestureDecoder.NO_LABEL, mDecoder.getLabel());
+        assertFalse(mDecoder.shouldSkipInference());
+        // The old frames no longer outvote a new letter, and the same letter can be typed again.
+        assertEquals(GestureDecoder.NO_LABEL, mDecoder.accept(frame(A)));
+        assertEquals(A, mDecoder.accept(frame(A)));
+        mDecoder.reset();
+        acceptAll(A, A);
+        assertEquals("A", mDecoder.getText());
+    }
+
+    @Test
+    public void clearTextKeepsCommittedLabel() {
+        acceptAll(A, A);
+        mDecoder.clearText();
+        acceptAll(A, A);
+        assertEquals("", mDecoder.getText());
+    }
+
+    private void acceptAll(int... labels) {
+        for (int label : labels) {
+            mDecoder.accept(frame(label));
+        }
+    }
+
+    /** Probabilities of a frame classified as {@code label} with 90% confidence. */
+    private static float[] frame(int label) {
+        final float[] probabilities = new float[GestureDecoder.CLASS_COUNT];
+        Arrays.fill(probabilities, 0.1f / (GestureDecoder.CLASS_COUNT - 1));
+        probabilities[label] = 0.9f;
+        return probabilities;
+    }
+}
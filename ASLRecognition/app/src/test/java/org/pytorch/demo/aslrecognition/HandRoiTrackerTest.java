@@ -0,0 +1,161 @@
+package org.pytorch.demo.aslrecognition;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HandRoiTrackerTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private static final int HAND = 10;
+    private static final int SKIN = 0xffc88c6e;
+    private static final int BACKGROUND = 0xff141450;
+
+    private static final float UNSURE = 0.5f;
+    private static final float CONFIDENT = 0.9f;
+    private static final float LOST = 0.1f;
+
+    private HandRoiTracker mTracker;
+
+    @Before
+    public void setUp() {
+        mTracker = new HandRoiTracker();
+    }
+
+    @Test
+    public void syntheticColoursClassify() {
+        assertTrue(HandRoiTracker.isSkin(0xc8, 0x8c, 0x6e, luma(SKIN)));
+        assertFalse(HandRoiTracker.isSkin(0x14, 0x14, 0x50, luma(BACKGROUND)));
+    }
+
+    @Test
+    public void staysOnFullFrameWithoutHand() {
+        assertTrue(mTracker.update(frame(-1, -1), WIDTH, HEIGHT, 0f).isFullFrame());
+        assertTrue(mTracker.update(frame(-1, -1), WIDTH, HEIGHT, CONFIDENT).isFullFrame());
+    }
+
+    @Test
+    public void acquiresPaddedSquareAroundHand() {
+        final HandRoiTracker.Roi roi = mTracker.update(frame(10, 10), WIDTH, HEIGHT, 0f);
+
+        // 10px hand, padded by 30% on each side to 16px, centred on (15, 15).
+        assertRoi(7, 7, 23, 23, roi);
+        assertSame(roi, mTracker.getRoi());
+    }
+
+    @Test
+    public void clampsSquareInsideFrame() {
+        assertRoi(0, 0, 16, 16, mTracker.update(frame(0, 0), WIDTH, HEIGHT, 0f));
+    }
+
+    @Test
+    public void tracksMovingHand() {
+        mTracker.update(frame(10, 10), WIDTH, HEIGHT, 0f);
+
+        // Unsure: halfway towards the moved hand, whose square starts at (17, 17).
+        assertRoi(12, 12, 28, 28, mTracker.update(frame(20, 20), WIDTH, HEIGHT, UNSURE));
+        // Confident: 15% of the way, from (12, 12) towards (27, 27).
+        final HandRoiTracker.Roi roi = mTracker.update(frame(30, 30), WIDTH, HEIGHT, CONFIDENT);
+        assertRoi(14.25f, 14.25f, 30.25f, 30.25f, roi);
+    }
+
+    @Test
+    public void prefersMovingSkinOverStillSkin() {
+        // A still skin patch at the top left and a hand that appears at the bottom right.
+        final int[] still = frame(0, 0);
+        mTracker.update(still, WIDTH, HEIGHT, 0f);
+        final int[] both = frame(0, 0);
+        paint(both, 40, 30);
+
+        // Halfway from the still patch's square towards the moving hand's, at (37, 27).
+        assertRoi(18.5f, 13.5f, 34.5f, 29.5f, mTracker.update(both, WIDTH, HEIGHT, 0f));
+    }
+
+    @Test
+    public void confidentResultHoldsRegionWhenHandDisappears() {
+        final HandRoiTracker.Roi roi = mTracker.update(frame(10, 10), WIDTH, HEIGHT, 0f);
+
+        assertSame(roi, mTracker.update(frame(-1, -1), WIDTH, HEIGHT, CONFIDENT));
+        assertTrue(mTracker.update(frame(-1, -1), WIDTH, HEIGHT, UNSURE).isFullFrame());
+    }
+
+    @Test
+    public void losesHandAfterLowConfidenceRunAndReacquires() {
+        mTracker.update(frame(10, 10), WIDTH, HEIGHT, 0f);
+        for (int i = 1; i < HandRoiTracker.LOST_FRAMES; i++) {
+            assertFalse(mTracker.update(frame(10, 10), WIDTH, HEIGHT, LOST).isFullFrame());
+        }
+
+        // The hand is still visible, but the classifier keeps failing on it: fall back.
+        for (int i = 0; i < HandRoiTracker.FALLBACK_FRAMES; i++) {
+            assertTrue("fallback frame " + i,
+                    mTracker.update(frame(10, 10), WIDTH, HEIGHT, LOST).isFullFrame());
+        }
+
+        assertRoi(7, 7, 23, 23, mTracker.update(frame(10, 10), WIDTH, HEIGHT, LOST));
+    }
+
+    @Test
+    public void confidenceInBetweenRestartsLowConfidenceRun() {
+        mTracker.update(frame(10, 10), WIDTH, HEIGHT, 0f);
+        for (int i = 0; i < 3 * HandRoiTracker.LOST_FRAMES; i++) {
+            final float confidence = i % HandRoiTracker.LOST_FRAMES == 0 ? UNSURE : LOST;
+            assertFalse(mTracker.update(frame(10, 10), WIDTH, HEIGHT, confidence).isFullFrame());
+        }
+    }
+
+    @Test
+    public void resetReturnsToFullFrame() {
+        mTracker.update(frame(10, 10), WIDTH, HEIGHT, 0f);
+        mTracker.reset();
+
+        assertTrue(mTracker.getRoi().isFullFrame());
+        assertRoi(37, 27, 53, 43, mTracker.update(frame(40, 30), WIDTH, HEIGHT, 0f));
+    }
+
+    @Test
+    public void handlesFrameSizeChange() {
+        mTracker.update(frame(10, 10), WIDTH, HEIGHT, 0f);
+        final int[] small = new int[32 * 32];
+        Arrays.fill(small, BACKGROUND);
+        assertTrue(mTracker.update(small, 32, 32, UNSURE).isFullFrame());
+    }
+
+    private static void assertRoi(float left, float top, float right, float bottom,
+                                  HandRoiTracker.Roi roi) {
+        final String message = roi.toString();
+        assertEquals(message, left / WIDTH, roi.left, 1e-4f);
+        assertEquals(message, top / HEIGHT, roi.top, 1e-4f);
+        assertEquals(message, right / WIDTH, roi.right, 1e-4f);
+        assertEquals(message, bottom / HEIGHT, roi.bottom, 1e-4f);
+    }
+
+    /** A background frame with a skin square at ({@code left}, {@code top}), unless negative. */
+    private static int[] frame(int left, int top) {
+        final int[] argb = new int[WIDTH * HEIGHT];
+        Arrays.fill(argb, BACKGROUND);
+        if (left >= 0) {
+            paint(argb, left, top);
+        }
+        return argb;
+    }
+
+    private static void paint(int[] argb, int left, int top) {
+        for (int y = top; y < top + HAND; y++) {
+            for (int x = left; x < left + HAND; x++) {
+                argb[y * WIDTH + x] = SKIN;
+            }
+        }
+    }
+
+    private static int luma(int colour) {
+        return (77 * ((colour >> 16) & 0xff) + 150 * ((colour >> 8) & 0xff) + 29 * (colour & 0xff)) >> 8;
+    }
+}
@@ -9,7 +9,9 @@ package org.pytorch.demo.objectdetection;
 import android.Manifest;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.os.Process;
 import android.os.SystemClock;
+import android.util.Log;
 import android.util.Size;
 import android.view.TextureView;
 import android.widget.Toast;
@@ -25,9 +27,14 @@ import androidx.camera.core.Preview;
 import androidx.camera.core.PreviewConfig;
 import androidx.core.app.ActivityCompat;
 
+import java.io.File;
+import java.io.IOException;
+
 public abstract class AbstractCameraXActivity<R> extends BaseModuleActivity {
     private static final int REQUEST_CODE_CAMERA_PERMISSION = 200;
     private static final String[] PERMISSIONS = {Manifest.permission.CAMERA};
+    private static final String TRACE_FILE_NAME = "trace.json";
+    private static final long MAX_ACQUIRE_NANOS = 1000000000L;
 
     private long mLastAnalysisResultTime;
 
@@ -53,6 +60,12 @@ public abstract class AbstractCameraXActivity<R> extends BaseModuleActivity {
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        writeTrace();
+    }
+
     @Override
     public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
         if (requestCode == REQUEST_CODE_CAMERA_PERMISSION) {
@@ -71,12 +84,13 @@ public abstract class AbstractCameraXActivity<R> extends BaseModuleActivity {
 
     private void setupCameraX() {
         final TextureView textureView = getCameraPreviewTextureView();
-        final PreviewConfig previewConfig = new PreviewConfig.Builder().build();
+        final PreviewConfig previewConfig = new PreviewConfig.Builder().setLensFacing(getLensFacing()).build();
         final Preview preview = new Preview(previewConfig);
         preview.setOnPreviewOutputUpdateListener(output -> textureView.setSurfaceTexture(output.getSurfaceTexture()));
 
         final ImageAnalysisConfig imageAnalysisConfig =
             new ImageAnalysisConfig.Builder()
+                .setLensFacing(getLensFacing())
                 .setTargetResolution(new Size(480, 640))
                 .setCallbackHandler(mBackgroundHandler)
                 .setImageReaderMode(ImageAnalysis.ImageReaderMode.ACQUIRE_LATEST_IMAGE)
@@ -87,16 +101,64 @@ public abstract class AbstractCameraXActivity<R> extends BaseModuleActivity {
                 return;
             }
 
+            traceAcquire(image);
             final R result = analyzeImage(image, rotationDegrees);
             if (result != null) {
                 mLastAnalysisResultTime = SystemClock.elapsedRealtime();
-                runOnUiThread(() -> applyToUiAnalyzeImageResult(result));
+                runOnUiThread(() -> {
+                    final long renderStart = Tracer.begin();
+                    applyToUiAnalyzeImageResult(result);
+                    Tracer.end(Tracer.RENDER, renderStart);
+                });
             }
         });
 
         CameraX.bindToLifecycle(this, preview, imageAnalysis);
     }
 
+    /** Camera to analyze; the front camera image is mirrored like its preview. */
+    protected CameraX.LensFacing getLensFacing() {
+        return CameraX.LensFacing.BACK;
+    }
+
+    /**
+     * Records the span from the sensor timestamp of {@code image} to now. Skipped when the timestamp
+     * is not on the {@link System#nanoTime()} clock, e.g. boot time after the device slept.
+     */
+    private static void traceAcquire(ImageProxy image) {
+        if (!Tracer.ENABLED) {
+            return;
+        }
+        final long now = System.nanoTime();
+        final long timestamp = image.getTimestamp();
+        if (timestamp > 0 && timestamp <= now && now - timestamp < MAX_ACQUIRE_NANOS) {
+            Tracer.record(Tracer.ACQUIRE, timestamp, now);
+        }
+    }
+
+    /**
+     * Writes the recorded spans as Chrome trace JSON to the app's external files directory, on a
+     * thread of its own: formatting the ring and the file write would otherwise hold up onDestroy.
+     */
+    private void writeTrace() {
+        if (!Tracer.ENABLED || Tracer.getSpanCount() == 0) {
+            return;
+        }
+        new Thread(() -> {
+            final File dir = getExternalFilesDir(null);
+            if (dir == null) {
+                return;
+            }
+            final File file = new File(dir, TRACE_FILE_NAME);
+            try {
+                Tracer.writeChromeTrace(file, Process.myPid());
+                Log.i("D2Go", "Trace written to " + file.getAbsolutePath());
+            } catch (IOException e) {
+                Log.e("D2Go", "Error writing trace", e);
+            }
+        }, "TraceWriter").start();
+    }
+
     @WorkerThread
     @Nullable
     protected abstract R analyzeImage(ImageProxy image, int rotationDegrees);
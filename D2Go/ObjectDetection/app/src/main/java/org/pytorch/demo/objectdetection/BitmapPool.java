@@ -0,0 +1,179 @@
+package org.pytorch.demo.objectdetection;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded pool of bitmaps keyed by (width, height, config), so the per-frame conversion steps of the
+ * live analyzers reuse the same few bitmaps instead of allocating new ones every frame.
+ *
+ * <p>{@link #acquire} hands out an idle bitmap of the exact key or allocates one; {@link #release}
+ * returns it. Idle bitmaps are kept up to {@code maxIdleBytes} in total; beyond that the least
+ * recently used key gives up its oldest bitmap, which is recycled. Releasing a bitmap that is
+ * already idle is ignored, so it is never handed out twice. Hits, misses and evictions are counted.
+ *
+ * <p>The policy is plain Java over an {@link Allocator}, so it runs off device with fake bitmaps;
+ * {@link AndroidBitmapAllocator} backs it with {@code android.graphics.Bitmap}.
+ *
+ * @param <B> bitmap type
+ * @param <C> config type, e.g. {@code Bitmap.Config}
+ */
+public class BitmapPool<B, C> {
+
+    public interface Allocator<B, C> {
+        B allocate(int width, int height, C config);
+
+        /** Frees a bitmap evicted from or cleared out of the pool. */
+        void recycle(B bitmap);
+
+        int getWidth(B bitmap);
+
+        int getHeight(B bitmap);
+
+        C getConfig(B bitmap);
+
+        long getByteCount(B bitmap);
+
+        /** False for bitmaps that must not be handed out again, e.g. recycled or immutable ones. */
+        boolean isReusable(B bitmap);
+    }
+
+    private static final class Key {
+        final int width;
+        final int height;
+        final Object config;
+
+        Key(int width, int height, Object config) {
+            this.width = width;
+            this.height = height;
+            this.config = config;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return width == key.width && height == key.height && Objects.equals(config, key.config);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(width, height, config);
+        }
+    }
+
+    private final Allocator<B, C> mAllocator;
+    private final long mMaxIdleBytes;
+    // Access order, so iteration starts at the least recently used key.
+    private final LinkedHashMap<Key, ArrayDeque<B>> mIdle = new LinkedHashMap<>(16, 0.75f, true);
+    private long mIdleBytes;
+    private long mHits;
+    private long mMisses;
+    private long mEvictions;
+
+    public BitmapPool(Allocator<B, C> allocator, long maxIdleBytes) {
+        mAllocator = allocator;
+        mMaxIdleBytes = maxIdleBytes;
+    }
+
+    public synchronized B acquire(int width, int height, C config) {
+        final Key key = new Key(width, height, config);
+        final ArrayDeque<B> bitmaps = mIdle.get(key);
+        if (bitmaps != null) {
+            final B bitmap = bitmaps.pollLast();
+            if (bitmaps.isEmpty()) {
+                mIdle.remove(key);
+            }
+            if (bitmap != null) {
+                mIdleBytes -= mAllocator.getByteCount(bitmap);
+                mHits++;
+                return bitmap;
+            }
+        }
+        mMisses++;
+        return mAllocator.allocate(width, height, config);
+    }
+
+    /** Returns {@code bitmap} to the pool; it must not be used by the caller afterwards. */
+    public synchronized void release(B bitmap) {
+        if (bitmap == null) {
+            return;
+        }
+        final long byteCount = mAllocator.getByteCount(bitmap);
+        if (!mAllocator.isReusable(bitmap) || byteCount > mMaxIdleBytes) {
+            mEvictions++;
+            mAllocator.recycle(bitmap);
+            return;
+        }
+        final Key key = new Key(
+                mAllocator.getWidth(bitmap), mAllocator.getHeight(bitmap), mAllocator.getConfig(bitmap));
+        ArrayDeque<B> bitmaps = mIdle.get(key);
+        if (bitmaps == null) {
+            bitmaps = new ArrayDeque<>();
+            mIdle.put(key, bitmaps);
+        } else if (containsIdentical(bitmaps, bitmap)) {
+            return;
+        }
+        bitmaps.addLast(bitmap);
+        mIdleBytes += byteCount;
+        trimTo(mMaxIdleBytes);
+    }
+
+    /** Recycles every idle bitmap. */
+    public synchronized void clear() {
+        trimTo(0);
+    }
+
+    private static <B> boolean containsIdentical(ArrayDeque<B> bitmaps, B bitmap) {
+        for (B idle : bitmaps) {
+            if (idle == bitmap) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void trimTo(long maxBytes) {
+        final Iterator<Map.Entry<Key, ArrayDeque<B>>> it = mIdle.entrySet().iterator();
+        while (mIdleBytes > maxBytes && it.hasNext()) {
+            final ArrayDeque<B> bitmaps = it.next().getValue();
+            while (mIdleBytes > maxBytes && !bitmaps.isEmpty()) {
+                final B bitmap = bitmaps.pollFirst();
+                mIdleBytes -= mAllocator.getByteCount(bitmap);
+                mEvictions++;
+                mAllocator.recycle(bitmap);
+            }
+            if (bitmaps.isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized long getHits() {
+        return mHits;
+    }
+
+    public synchronized long getMisses() {
+        return mMisses;
+    }
+
+    public synchronized long getEvictions() {
+        return mEvictions;
+    }
+
+    public synchronized long getIdleBytes() {
+        return mIdleBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "BitmapPool hits %d, misses %d, evictions %d, idle %d bytes",
+                mHits, mMisses, mEvictions, mIdleBytes);
+    }
+}
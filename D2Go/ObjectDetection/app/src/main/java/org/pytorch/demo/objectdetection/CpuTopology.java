@@ -0,0 +1,60 @@
+package org.pytorch.demo.objectdetection;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * Core counts read from sysfs. On big.LITTLE SoCs the "big" cores are every core faster than the
+ * slowest cluster, judged by {@code cpuinfo_max_freq}; when frequencies cannot be read every core
+ * counts as big.
+ */
+public class CpuTopology {
+
+    private static final String CPU_DIR = "/sys/devices/system/cpu";
+
+    private static int sCoreCount;
+    private static int sBigCoreCount;
+
+    public static synchronized int coreCount() {
+        ensureRead();
+        return sCoreCount;
+    }
+
+    public static synchronized int bigCoreCount() {
+        ensureRead();
+        return sBigCoreCount;
+    }
+
+    private static void ensureRead() {
+        if (sCoreCount > 0) {
+            return;
+        }
+        final int cores = Runtime.getRuntime().availableProcessors();
+        final long[] maxFreqs = new long[cores];
+        long minFreq = Long.MAX_VALUE;
+        for (int i = 0; i < cores; i++) {
+            maxFreqs[i] = readLong(new File(CPU_DIR + "/cpu" + i + "/cpufreq/cpuinfo_max_freq"));
+            minFreq = Math.min(minFreq, maxFreqs[i]);
+        }
+        int bigCores = 0;
+        for (long freq : maxFreqs) {
+            if (minFreq <= 0 || freq > minFreq) {
+                bigCores++;
+            }
+        }
+        // Unreadable frequencies, or a symmetric SoC: every core is a big core.
+        sBigCoreCount = bigCores > 0 ? bigCores : cores;
+        sCoreCount = cores;
+    }
+
+    private static long readLong(File file) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            final String line = reader.readLine();
+            return line != null ? Long.parseLong(line.trim()) : -1;
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.pytorch.demo.objectdetection;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.pytorch.IValue;
+import org.pytorch.Module;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import androidx.annotation.WorkerThread;
+
+/**
+ * Picks the fastest {@link ExecutionProfile} for a model by timing a few forwards with each
+ * {@link ExecutionProfile#candidates() candidate}. The winner is stored per device model, asset
+ * size and APK update time, so the sweep only runs once per install of a model.
+ * Profiles are also kept in memory per asset, so reloading a model, e.g. when switching back to a
+ * variant, applies its profile without another sweep or preferences lookup.
+ */
+public class ExecutionProfileTuner {
+
+    private static final String TAG = "ExecutionProfileTuner";
+
+    private static final String PREFS_NAME = "execution_profiles";
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int MEASURED_ITERATIONS = 5;
+
+    // The APK cannot change while the process runs, so the asset name is key enough here.
+    private static final Map<String, ExecutionProfile> sTuned = new ConcurrentHashMap<>();
+
+    /** Returns the stored profile for {@code assetName}, or null if it was never tuned. */
+    public static ExecutionProfile stored(Context context, String assetName) {
+        return ExecutionProfile.decode(prefs(context).getString(prefsKey(context, assetName), null));
+    }
+
+    /**
+     * Returns the stored profile, or runs the sweep with {@code input} and stores the result.
+     * Leaves the returned profile applied.
+     */
+    @WorkerThread
+    public static ExecutionProfile tune(
+            Context context, String assetName, Module module, IValue input) {
+        ExecutionProfile best = sTuned.get(assetName);
+        if (best == null) {
+            best = stored(context, assetName);
+        }
+        if (best != null) {
+            sTuned.put(assetName, best);
+            best.apply();
+            return best;
+        }
+
+        long bestMedian = Long.MAX_VALUE;
+        for (ExecutionProfile candidate : ExecutionProfile.candidates()) {
+            final long median = medianForwardNanos(candidate, module, input);
+            Log.d(TAG, String.format(Locale.US, "%s with %s: %.2fms",
+                    assetName, candidate, median / 1e6f));
+            if (median < bestMedian) {
+                bestMedian = median;
+                best = candidate;
+            }
+        }
+        Log.i(TAG, "Tuned " + assetName + ": " + best);
+        prefs(context).edit().putString(prefsKey(context, assetName), best.encode()).apply();
+        sTuned.put(assetName, best);
+        best.apply();
+        return best;
+    }
+
+    private static long medianForwardNanos(ExecutionProfile profile, Module module, IValue input) {
+        profile.apply();
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            module.forward(input);
+        }
+        final long[] durations = new long[MEASURED_ITERATIONS];
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            final long startTime = SystemClock.elapsedRealtimeNanos();
+            module.forward(input);
+            durations[i] = SystemClock.elapsedRealtimeNanos() - startTime;
+        }
+        Arrays.sort(durations);
+        return durations[MEASURED_ITERATIONS / 2];
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static String prefsKey(Context context, String assetName) {
+        return Build.MODEL + "|" + modelKey(context, assetName);
+    }
+
+    private static String modelKey(Context context, String assetName) {
+        long length = -1;
+        try (AssetFileDescriptor afd = context.getAssets().openFd(assetName)) {
+            length = afd.getLength();
+        } catch (IOException e) {
+            // Compressed asset, the APK stamp alone has to do.
+        }
+        long lastUpdateTime = 0;
+        try {
+            lastUpdateTime = context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            // Our own package; cannot happen.
+        }
+        return assetName + ":" + length + ":" + lastUpdateTime;
+    }
+}
@@ -231,17 +231,22 @@ static {
 
     @Override
     public void run() {
+        final long convertStart = Tracer.begin();
         Bitmap resizedBitmap = Bitmap.createScaledBitmap(mBitmap, PrePostProcessor.INPUT_WIDTH, PrePostProcessor.INPUT_HEIGHT, true);
 
         final FloatBuffer floatBuffer = Tensor.allocateFloatBuffer(3 * resizedBitmap.getWidth() * resizedBitmap.getHeight());
         TensorImageUtils.bitmapToFloatBuffer(resizedBitmap, 0,0,resizedBitmap.getWidth(),resizedBitmap.getHeight(), PrePostProcessor.NO_MEAN_RGB, PrePostProcessor.NO_STD_RGB, floatBuffer, 0);
         final Tensor inputTensor =  Tensor.fromBlob(floatBuffer, new long[] {3, resizedBitmap.getHeight(), resizedBitmap.getWidth()});
+        Tracer.end(Tracer.CONVERT, convertStart);
 
         final long startTime = SystemClock.elapsedRealtime();
+        final long forwardStart = Tracer.begin();
         IValue[] outputTuple = mModule.forward(IValue.listFrom(inputTensor)).toTuple();
+        Tracer.end(Tracer.FORWARD, forwardStart);
         final long inferenceTime = SystemClock.elapsedRealtime() - startTime;
         Log.d("D2Go",  "inference time (ms): " + inferenceTime);
 
+        final long decodeStart = Tracer.begin();
         final Map<String, IValue> map = outputTuple[1].toList()[0].toDictStringKey();
         float[] boxesData = new float[]{};
         float[] scoresData = new float[]{};
@@ -271,14 +276,17 @@ static {
             }
 
             final ArrayList<Result> results = PrePostProcessor.outputsToPredictions(count, outputs, mImgScaleX, mImgScaleY, mIvScaleX, mIvScaleY, mStartX, mStartY);
+            Tracer.end(Tracer.DECODE, decodeStart);
 
             runOnUiThread(() -> {
+                final long renderStart = Tracer.begin();
                 mButtonDetect.setEnabled(true);
                 mButtonDetect.setText(getString(R.string.detect));
                 mProgressBar.setVisibility(ProgressBar.INVISIBLE);
                 mResultView.setResults(results);
                 mResultView.invalidate();
                 mResultView.setVisibility(View.VISIBLE);
+                Tracer.end(Tracer.RENDER, renderStart);
             });
         }
     }
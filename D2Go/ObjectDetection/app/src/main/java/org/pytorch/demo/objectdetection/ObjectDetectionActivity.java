@@ -3,32 +3,45 @@ package org.pytorch.demo.objectdetection;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.ImageFormat;
-import android.graphics.Matrix;
 import android.graphics.Rect;
 import android.graphics.YuvImage;
 import android.media.Image;
+import android.os.Bundle;
+import android.util.Log;
 import android.view.TextureView;
 import android.view.ViewStub;
 
 import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
+import androidx.camera.core.CameraX;
 import androidx.camera.core.ImageProxy;
 
 import org.pytorch.IValue;
 import org.pytorch.Module;
 import org.pytorch.PyTorchAndroid;
 import org.pytorch.Tensor;
-import org.pytorch.torchvision.TensorImageUtils;
 
 import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class ObjectDetectionActivity extends AbstractCameraXActivity<ObjectDetectionActivity.AnalysisResult> {
-    private Module mModule = null;
+    private static final String MODEL_ASSET_NAME = "d2go.pt";
+
+    // Loads and tunes the model off the analyzer, which skips frames until mModule is set.
+    private final ExecutorService mLoadExecutor = Executors.newSingleThreadExecutor();
+    private volatile Module mModule = null;
+    private int mSavedNumThreads;
     private ResultView mResultView;
+    private final BitmapPool<Bitmap, Bitmap.Config> mBitmapPool =
+            AndroidBitmapAllocator.newPool(BITMAP_POOL_MAX_IDLE_BYTES);
+    private int[] mPixels;
+
+    private static final long BITMAP_POOL_MAX_IDLE_BYTES = 4L * 1024 * 1024;
 
     static class AnalysisResult {
         private final ArrayList<Result> mResults;
@@ -38,6 +51,23 @@ public class ObjectDetectionActivity extends AbstractCameraXActivity<ObjectDetec
         }
     }
 
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mSavedNumThreads = ExecutionProfile.getNumThreads();
+        mLoadExecutor.execute(this::loadModule);
+    }
+
+    @WorkerThread
+    private void loadModule() {
+        final Module module = PyTorchAndroid.loadModuleFromAsset(getAssets(), MODEL_ASSET_NAME);
+        final Tensor sampleInput = Tensor.fromBlob(
+                Tensor.allocateFloatBuffer(3 * PrePostProcessor.INPUT_WIDTH * PrePostProcessor.INPUT_HEIGHT),
+                new long[] {3, PrePostProcessor.INPUT_HEIGHT, PrePostProcessor.INPUT_WIDTH});
+        ExecutionProfileTuner.tune(this, MODEL_ASSET_NAME, module, IValue.listFrom(sampleInput));
+        mModule = module;
+    }
+
     @Override
     protected int getContentViewLayoutId() {
         return R.layout.activity_object_detection;
@@ -57,6 +87,8 @@ public class ObjectDetectionActivity extends AbstractCameraXActivity<ObjectDetec
         mResultView.invalidate();
     }
 
+    // Round trip through NV21 and JPEG; the FrameScaler class doc in the ASLRecognition app says
+    // why this app has no direct YUV path.
     private Bitmap imgToBitmap(Image image) {
         Image.Plane[] planes = image.getPlanes();
         ByteBuffer yBuffer = planes[0].getBuffer();
@@ -77,7 +109,36 @@ public class ObjectDetectionActivity extends AbstractCameraXActivity<ObjectDetec
         yuvImage.compressToJpeg(new Rect(0, 0, yuvImage.getWidth(), yuvImage.getHeight()), 75, out);
 
         byte[] imageBytes = out.toByteArray();
-        return BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
+        return decodeIntoPooledBitmap(imageBytes, image.getWidth(), image.getHeight());
+    }
+
+    private Bitmap decodeIntoPooledBitmap(byte[] jpeg, int width, int height) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inMutable = true;
+        options.inBitmap = mBitmapPool.acquire(width, height, Bitmap.Config.ARGB_8888);
+        try {
+            final Bitmap bitmap = BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+            if (bitmap == null) {
+                mBitmapPool.release(options.inBitmap);
+            }
+            return bitmap;
+        } catch (IllegalArgumentException e) {
+            // The pooled bitmap does not fit this JPEG; decode into a new one.
+            mBitmapPool.release(options.inBitmap);
+            options.inBitmap = null;
+            return BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        Log.i("D2Go", mBitmapPool.toString());
+        mBitmapPool.clear();
+        final int numThreads = mSavedNumThreads;
+        // Queued behind a load still tuning, which would set the count again.
+        mLoadExecutor.execute(() -> ExecutionProfile.restoreNumThreads(numThreads));
+        mLoadExecutor.shutdown();
     }
 
     @Override
@@ -85,18 +146,32 @@ public class ObjectDetectionActivity extends AbstractCameraXActivity<ObjectDetec
     @Nullable
     protected AnalysisResult analyzeImage(ImageProxy image, int rotationDegrees) {
         if (mModule == null) {
-            mModule = PyTorchAndroid.loadModuleFromAsset(getAssets(), "d2go.pt");
+            return null;
         }
+        final long convertStart = Tracer.begin();
         Bitmap bitmap = imgToBitmap(image.getImage());
-        Matrix matrix = new Matrix();
-        matrix.postRotate(90.0f);
-        bitmap = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
-
-        final FloatBuffer floatBuffer = Tensor.allocateFloatBuffer(3 * bitmap.getWidth() * bitmap.getHeight());
-        TensorImageUtils.bitmapToFloatBuffer(bitmap, 0,0,bitmap.getWidth(),bitmap.getHeight(), PrePostProcessor.NO_MEAN_RGB, PrePostProcessor.NO_STD_RGB, floatBuffer, 0);
-        final Tensor inputTensor =  Tensor.fromBlob(floatBuffer, new long[] {3, bitmap.getHeight(), bitmap.getWidth()});
-
+        // Rotate while filling the tensor instead of making a rotated copy of the frame.
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        final int frameWidth = RotatedTensorWriter.rotatedWidth(width, height, rotationDegrees);
+        final int frameHeight = RotatedTensorWriter.rotatedHeight(width, height, rotationDegrees);
+        if (mPixels == null || mPixels.length != width * height) {
+            mPixels = new int[width * height];
+        }
+        final int[] pixels = mPixels;
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        mBitmapPool.release(bitmap);
+        final FloatBuffer floatBuffer = Tensor.allocateFloatBuffer(3 * width * height);
+        RotatedTensorWriter.write(pixels, width, height, rotationDegrees,
+                getLensFacing() == CameraX.LensFacing.FRONT,
+                PrePostProcessor.NO_MEAN_RGB, PrePostProcessor.NO_STD_RGB, floatBuffer, 0);
+        final Tensor inputTensor =  Tensor.fromBlob(floatBuffer, new long[] {3, frameHeight, frameWidth});
+        Tracer.end(Tracer.CONVERT, convertStart);
+
+        final long forwardStart = Tracer.begin();
         IValue[] outputTuple = mModule.forward(IValue.listFrom(inputTensor)).toTuple();
+        Tracer.end(Tracer.FORWARD, forwardStart);
+        final long decodeStart = Tracer.begin();
         final Map<String, IValue> map = outputTuple[1].toList()[0].toDictStringKey();
         float[] boxesData = new float[]{};
         float[] scoresData = new float[]{};
@@ -126,12 +201,13 @@ public class ObjectDetectionActivity extends AbstractCameraXActivity<ObjectDetec
                 count++;
             }
 
-            float imgScaleX = (float) bitmap.getWidth() / PrePostProcessor.INPUT_WIDTH;
-            float imgScaleY = (float) bitmap.getHeight() / PrePostProcessor.INPUT_HEIGHT;
-            float ivScaleX = (float) mResultView.getWidth() / bitmap.getWidth();
-            float ivScaleY = (float) mResultView.getHeight() / bitmap.getHeight();
+            float imgScaleX = (float) frameWidth / PrePostProcessor.INPUT_WIDTH;
+            float imgScaleY = (float) frameHeight / PrePostProcessor.INPUT_HEIGHT;
+            float ivScaleX = (float) mResultView.getWidth() / frameWidth;
+            float ivScaleY = (float) mResultView.getHeight() / frameHeight;
 
             final ArrayList<Result> results = PrePostProcessor.outputsToPredictions(count, outputs, imgScaleX, imgScaleY, ivScaleX, ivScaleY, 0, 0);
+            Tracer.end(Tracer.DECODE, decodeStart);
             return new AnalysisResult(results);
         }
         return null;
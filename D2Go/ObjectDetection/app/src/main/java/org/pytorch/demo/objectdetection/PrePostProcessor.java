@@ -28,6 +28,9 @@ public class PrePostProcessor {
     public final static float[] NO_STD_RGB = new float[] {1.0f, 1.0f, 1.0f};
 
     // model input image size
+    // The input stays planar (RotatedTensorWriter's default): d2go.pt takes a list of 3-D CHW
+    // images and batches them itself, and channels-last is a 4-D memory format, so there is no
+    // NHWC input to hand it.
     public final static int INPUT_WIDTH = 640;
     public final static int INPUT_HEIGHT = 640;
     public final static int OUTPUT_COLUMN = 6; // left, top, right, bottom, score and label
@@ -0,0 +1,161 @@
+package org.pytorch.imagesegmentation;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.pytorch.Module;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide executor for model work, split into priority lanes.
+ *
+ * <p>Each lane is one named thread with a bounded queue. Because a lane is single threaded, a
+ * {@link Module} that is only used from one lane is never called concurrently, and
+ * {@link #destroyOnLane} releases it after all work already queued on that lane.
+ * Queue depth, wait time and rejections are tracked per lane.
+ */
+public class InferenceExecutor {
+
+    private static final String TAG = "InferenceExecutor";
+
+    public enum Lane {
+        /** Camera frame analysis; frames are dropped upstream, so the queue stays short. */
+        REALTIME("InferenceRealtime", Process.THREAD_PRIORITY_DISPLAY, 2),
+        /** Work a user is waiting for, e.g. text classification. */
+        INTERACTIVE("InferenceInteractive", Process.THREAD_PRIORITY_DEFAULT, 16),
+        /** Benchmarks, bulk scoring and prefetching. */
+        BATCH("InferenceBatch", Process.THREAD_PRIORITY_BACKGROUND, 64);
+
+        final String threadName;
+        final int threadPriority;
+        final int queueCapacity;
+
+        Lane(String threadName, int threadPriority, int queueCapacity) {
+            this.threadName = threadName;
+            this.threadPriority = threadPriority;
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    public static class LaneMetrics {
+        private final LatencyHistogram mWait = new LatencyHistogram();
+        private final AtomicLong mCompleted = new AtomicLong();
+        private final AtomicLong mRejected = new AtomicLong();
+
+        public LatencyHistogram waitTime() {
+            return mWait;
+        }
+
+        public long getCompleted() {
+            return mCompleted.get();
+        }
+
+        public long getRejected() {
+            return mRejected.get();
+        }
+    }
+
+    private static InferenceExecutor sInstance;
+
+    private final ThreadPoolExecutor[] mExecutors = new ThreadPoolExecutor[Lane.values().length];
+    private final LaneMetrics[] mMetrics = new LaneMetrics[Lane.values().length];
+
+    public static synchronized InferenceExecutor get() {
+        if (sInstance == null) {
+            sInstance = new InferenceExecutor();
+        }
+        return sInstance;
+    }
+
+    private InferenceExecutor() {
+        for (Lane lane : Lane.values()) {
+            mMetrics[lane.ordinal()] = new LaneMetrics();
+            mExecutors[lane.ordinal()] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(lane.queueCapacity),
+                    r -> new Thread(() -> {
+                        Process.setThreadPriority(lane.threadPriority);
+                        r.run();
+                    }, lane.threadName));
+        }
+    }
+
+    /**
+     * Queues {@code task} on {@code lane}.
+     *
+     * @throws RejectedExecutionException if the lane's queue is full
+     */
+    public void execute(Lane lane, Runnable task) {
+        final LaneMetrics metrics = mMetrics[lane.ordinal()];
+        final long enqueueTime = SystemClock.elapsedRealtimeNanos();
+        try {
+            mExecutors[lane.ordinal()].execute(() -> {
+                metrics.mWait.recordNanos(SystemClock.elapsedRealtimeNanos() - enqueueTime);
+                try {
+                    task.run();
+                } finally {
+                    metrics.mCompleted.incrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            metrics.mRejected.incrementAndGet();
+            Log.w(TAG, "Inference lane " + lane + " is full");
+            throw e;
+        }
+    }
+
+    /** Like {@link #execute}, but returns false instead of throwing when the lane is full. */
+    public boolean tryExecute(Lane lane, Runnable task) {
+        try {
+            execute(lane, task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /** {@link Executor} view of one lane, e.g. for CameraX analyzers. */
+    public Executor executor(Lane lane) {
+        return task -> execute(lane, task);
+    }
+
+    /**
+     * Destroys {@code module} on {@code lane} once the work queued before it has finished. If the
+     * lane is full the module is left to the garbage collector, which frees it as well.
+     */
+    public void destroyOnLane(Lane lane, Module module) {
+        if (!tryExecute(lane, module::destroy)) {
+            Log.w(TAG, "Inference lane " + lane + " is full, module left to the GC");
+        }
+    }
+
+    public int getQueueDepth(Lane lane) {
+        return mExecutors[lane.ordinal()].getQueue().size();
+    }
+
+    public LaneMetrics getMetrics(Lane lane) {
+        return mMetrics[lane.ordinal()];
+    }
+
+    public String metricsToJson() {
+        final StringBuilder sb = new StringBuilder("{");
+        for (Lane lane : Lane.values()) {
+            final LaneMetrics metrics = mMetrics[lane.ordinal()];
+            if (lane.ordinal() > 0) {
+                sb.append(',');
+            }
+            sb.append(String.format(Locale.US,
+                    "\"%s\":{\"queue_depth\":%d,\"completed\":%d,\"rejected\":%d,\"wait\":%s}",
+                    lane.name().toLowerCase(Locale.US), getQueueDepth(lane), metrics.getCompleted(),
+                    metrics.getRejected(), metrics.mWait.toJson()));
+        }
+        return sb.append('}').toString();
+    }
+}
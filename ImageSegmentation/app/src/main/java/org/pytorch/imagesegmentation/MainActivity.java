@@ -12,9 +12,11 @@ import android.view.View;
 import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.ProgressBar;
+import android.widget.Toast;
 
 import org.pytorch.IValue;
 import org.pytorch.LiteModuleLoader;
+import org.pytorch.MemoryFormat;
 import org.pytorch.Module;
 import org.pytorch.Tensor;
 import org.pytorch.torchvision.TensorImageUtils;
@@ -40,6 +42,10 @@ public class MainActivity extends AppCompatActivity implements Runnable {
     private static final int DOG = 12;
     private static final int PERSON = 15;
     private static final int SHEEP = 17;
+    // Channels-last can save XNNPACK a repack of the input on every forward, but that is not
+    // measured for this model; switch only if a forward benchmark of both formats (as in
+    // PyTorchDemoApp's Model Benchmark screen) shows it faster on device
+    private static final MemoryFormat INPUT_MEMORY_FORMAT = MemoryFormat.CONTIGUOUS;
 
     public static String assetFilePath(Context context, String assetName) throws IOException {
         File file = new File(context.getFilesDir(), assetName);
@@ -101,8 +107,12 @@ public class MainActivity extends AppCompatActivity implements Runnable {
                 mProgressBar.setVisibility(ProgressBar.VISIBLE);
                 mButtonSegment.setText(getString(R.string.run_model));
 
-                Thread thread = new Thread(MainActivity.this);
-                thread.start();
+                if (!InferenceExecutor.get().tryExecute(InferenceExecutor.Lane.INTERACTIVE, MainActivity.this)) {
+                    mButtonSegment.setEnabled(true);
+                    mButtonSegment.setText(getString(R.string.segment));
+                    mProgressBar.setVisibility(ProgressBar.INVISIBLE);
+                    Toast.makeText(MainActivity.this, R.string.inference_busy, Toast.LENGTH_SHORT).show();
+                }
             }
         });
 
@@ -117,8 +127,8 @@ public class MainActivity extends AppCompatActivity implements Runnable {
     @Override
     public void run() {
         final Tensor inputTensor = TensorImageUtils.bitmapToFloat32Tensor(mBitmap,
-                TensorImageUtils.TORCHVISION_NORM_MEAN_RGB, TensorImageUtils.TORCHVISION_NORM_STD_RGB);
-        final float[] inputs = inputTensor.getDataAsFloatArray();
+                TensorImageUtils.TORCHVISION_NORM_MEAN_RGB, TensorImageUtils.TORCHVISION_NORM_STD_RGB,
+                INPUT_MEMORY_FORMAT);
 
         final long startTime = SystemClock.elapsedRealtime();
         Map<String, IValue> outTensors = mModule.forward(IValue.from(inputTensor)).toDictStringKey();
@@ -5,17 +5,22 @@ import android.app.admin.DevicePolicyManager;
 import android.content.Context;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.os.Process;
 import android.os.SystemClock;
+import android.util.Log;
 import android.util.Size;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.UiThread;
 import androidx.annotation.WorkerThread;
+import androidx.camera.core.CameraInfoUnavailableException;
 import androidx.camera.core.CameraSelector;
 import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.ImageProxy;
 import androidx.camera.core.Preview;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
 import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.camera.view.PreviewView;
 import androidx.core.app.ActivityCompat;
@@ -23,6 +28,10 @@ import androidx.core.content.ContextCompat;
 
 import com.google.common.util.concurrent.ListenableFuture;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -30,8 +39,14 @@ import java.util.concurrent.Executors;
 public abstract class AbstractCameraXActivity<R> extends BaseModuleActivity {
     private static final int REQUEST_CODE_CAMERA_PERMISSION = 200;
     private static final String[] PERMISSIONS = {Manifest.permission.CAMERA};
+    private static final String TRACE_FILE_NAME = "trace.json";
+    private static final long MAX_ACQUIRE_NANOS = 1000000000L;
+    private static final String KEY_LENS_FACING = "lens_facing";
 
     private long mLastAnalysisResultTime;
+    private volatile int mLensFacing = CameraSelector.LENS_FACING_BACK;
+    private ProcessCameraProvider mCameraProvider;
+    private PreviewView mPreviewView;
     private DevicePolicyManager devicePolicyManager;
     private ExecutorService executor;
 
@@ -39,10 +54,16 @@ public abstract class AbstractCameraXActivity<R> extends BaseModuleActivity {
 
     protected abstract PreviewView getCameraPreviewTextureView();
 
+    /** Model input size and the converters {@link #analyzeImage} has, for choosing the analysis stream. */
+    protected abstract CameraConfigNegotiator getCameraConfigNegotiator();
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(getContentViewLayoutId());
+        if (savedInstanceState != null) {
+            mLensFacing = savedInstanceState.getInt(KEY_LENS_FACING, mLensFacing);
+        }
 
         devicePolicyManager = (DevicePolicyManager) getSystemService(Context.DEVICE_POLICY_SERVICE);
 
@@ -70,9 +91,16 @@ public abstract class AbstractCameraXActivity<R> extends BaseModuleActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        writeTrace();
         executor.shutdown();
     }
 
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putInt(KEY_LENS_FACING, mLensFacing);
+    }
+
     @Override
     public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
         if (requestCode == REQUEST_CODE_CAMERA_PERMISSION) {
@@ -89,48 +117,144 @@ public abstract class AbstractCameraXActivity<R> extends BaseModuleActivity {
     }
 
     private void setupCameraX() {
-        final PreviewView previewView = getCameraPreviewTextureView();
+        mPreviewView = getCameraPreviewTextureView();
+        mPreviewView.setOnLongClickListener(v -> {
+            switchLens();
+            return true;
+        });
         final ListenableFuture<ProcessCameraProvider> cameraProviderFuture = ProcessCameraProvider.getInstance(this);
 
         cameraProviderFuture.addListener(() -> {
             try {
-                ProcessCameraProvider cameraProvider = cameraProviderFuture.get();
+                mCameraProvider = cameraProviderFuture.get();
+                bindCameraUseCases();
+            } catch (ExecutionException | InterruptedException e) {
+                Toast.makeText(this, "Error starting camera: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                e.printStackTrace();
+            }
+        }, ContextCompat.getMainExecutor(this));
+    }
 
-                Preview preview = new Preview.Builder().build();
-                preview.setSurfaceProvider(previewView.getSurfaceProvider());
+    private void bindCameraUseCases() {
+        Preview preview = new Preview.Builder().build();
+        preview.setSurfaceProvider(mPreviewView.getSurfaceProvider());
 
-                ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
-                        .setTargetResolution(new Size(480, 640))
-                        .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
-                        .build();
+        final CameraConfigNegotiator negotiator = getCameraConfigNegotiator();
+        ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
+                .setResolutionSelector(newResolutionSelector(negotiator))
+                .setOutputImageFormat(negotiator.chooseFormat() == CameraConfigNegotiator.Format.RGBA_8888
+                        ? ImageAnalysis.OUTPUT_IMAGE_FORMAT_RGBA_8888
+                        : ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888)
+                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                .build();
 
-                imageAnalysis.setAnalyzer(executor, image -> {
-                    long currentTime = SystemClock.elapsedRealtime();
-                    if (currentTime - mLastAnalysisResultTime < 500) {
-                        image.close();
-                        return;
-                    }
+        imageAnalysis.setAnalyzer(executor, image -> {
+            long currentTime = SystemClock.elapsedRealtime();
+            if (currentTime - mLastAnalysisResultTime < 500) {
+                image.close();
+                return;
+            }
 
-                    final R result = analyzeImage(image, image.getImageInfo().getRotationDegrees());
-                    if (result != null) {
-                        mLastAnalysisResultTime = currentTime;
-                        runOnUiThread(() -> applyToUiAnalyzeImageResult(result));
-                    }
-                    image.close();
+            traceAcquire(image);
+            final R result = analyzeImage(image, image.getImageInfo().getRotationDegrees());
+            if (result != null) {
+                mLastAnalysisResultTime = currentTime;
+                runOnUiThread(() -> {
+                    final long renderStart = Tracer.begin();
+                    applyToUiAnalyzeImageResult(result);
+                    Tracer.end(Tracer.RENDER, renderStart);
                 });
+            }
+            image.close();
+        });
 
-                CameraSelector cameraSelector = new CameraSelector.Builder()
-                        .requireLensFacing(CameraSelector.LENS_FACING_BACK)
-                        .build();
+        CameraSelector cameraSelector = new CameraSelector.Builder()
+                .requireLensFacing(mLensFacing)
+                .build();
 
-                cameraProvider.unbindAll();
-                cameraProvider.bindToLifecycle(this, cameraSelector, preview, imageAnalysis);
+        mCameraProvider.unbindAll();
+        mCameraProvider.bindToLifecycle(this, cameraSelector, preview, imageAnalysis);
+    }
 
-            } catch (ExecutionException | InterruptedException e) {
-                Toast.makeText(this, "Error starting camera: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                e.printStackTrace();
+    /** Ranks the supported analysis sizes with {@code negotiator}, smallest covering size first. */
+    private static ResolutionSelector newResolutionSelector(CameraConfigNegotiator negotiator) {
+        return new ResolutionSelector.Builder()
+                .setResolutionFilter((supportedSizes, rotationDegrees) -> {
+                    final List<CameraConfigNegotiator.Resolution> resolutions = new ArrayList<>();
+                    for (Size size : supportedSizes) {
+                        resolutions.add(new CameraConfigNegotiator.Resolution(size.getWidth(), size.getHeight()));
+                    }
+                    final List<Size> ranked = new ArrayList<>();
+                    for (CameraConfigNegotiator.Resolution resolution : negotiator.rank(resolutions, rotationDegrees)) {
+                        ranked.add(new Size(resolution.width, resolution.height));
+                    }
+                    return ranked;
+                })
+                .build();
+    }
+
+    /** Switches between the back and front camera, if the device has both; bound to a long press on the preview. */
+    protected void switchLens() {
+        if (mCameraProvider == null) {
+            return;
+        }
+        final int lensFacing = mLensFacing == CameraSelector.LENS_FACING_BACK
+                ? CameraSelector.LENS_FACING_FRONT
+                : CameraSelector.LENS_FACING_BACK;
+        try {
+            if (!mCameraProvider.hasCamera(new CameraSelector.Builder().requireLensFacing(lensFacing).build())) {
+                Toast.makeText(this, "No other camera to switch to", Toast.LENGTH_SHORT).show();
+                return;
             }
-        }, ContextCompat.getMainExecutor(this));
+        } catch (CameraInfoUnavailableException e) {
+            Toast.makeText(this, "Error switching camera: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            return;
+        }
+        mLensFacing = lensFacing;
+        bindCameraUseCases();
+    }
+
+    /** Camera to analyze, {@code CameraSelector.LENS_FACING_BACK} or {@code LENS_FACING_FRONT}. */
+    protected int getLensFacing() {
+        return mLensFacing;
+    }
+
+    /**
+     * Records the span from the sensor timestamp of {@code image} to now. Skipped when the timestamp
+     * is not on the {@link System#nanoTime()} clock, e.g. boot time after the device slept.
+     */
+    private static void traceAcquire(ImageProxy image) {
+        if (!Tracer.ENABLED) {
+            return;
+        }
+        final long now = System.nanoTime();
+        final long timestamp = image.getImageInfo().getTimestamp();
+        if (timestamp > 0 && timestamp <= now && now - timestamp < MAX_ACQUIRE_NANOS) {
+            Tracer.record(Tracer.ACQUIRE, timestamp, now);
+        }
+    }
+
+    /**
+     * Writes the recorded spans as Chrome trace JSON to the app's external files directory, on a
+     * thread of its own: formatting the ring and the file write would otherwise hold up onDestroy.
+     */
+    private void writeTrace() {
+        if (!Tracer.ENABLED || Tracer.getSpanCount() == 0) {
+            return;
+        }
+        new Thread(() -> {
+            final File dir = getExternalFilesDir(null);
+            if (dir == null) {
+                return;
+            }
+            final File file = new File(dir, TRACE_FILE_NAME);
+            try {
+                Tracer.writeChromeTrace(file, Process.myPid());
+                Log.i("Object Detection", "Trace written to " + file.getAbsolutePath());
+            } catch (IOException e) {
+                Log.e("Object Detection", "Error writing trace", e);
+            }
+        }, "TraceWriter").start();
     }
 
     @WorkerThread
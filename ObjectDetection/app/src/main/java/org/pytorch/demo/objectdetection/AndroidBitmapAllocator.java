@@ -0,0 +1,46 @@
+package org.pytorch.demo.objectdetection;
+
+import android.graphics.Bitmap;
+
+/** Backs a {@link BitmapPool} with mutable {@link Bitmap}s. */
+public class AndroidBitmapAllocator implements BitmapPool.Allocator<Bitmap, Bitmap.Config> {
+
+    public static BitmapPool<Bitmap, Bitmap.Config> newPool(long maxIdleBytes) {
+        return new BitmapPool<>(new AndroidBitmapAllocator(), maxIdleBytes);
+    }
+
+    @Override
+    public Bitmap allocate(int width, int height, Bitmap.Config config) {
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    @Override
+    public void recycle(Bitmap bitmap) {
+        bitmap.recycle();
+    }
+
+    @Override
+    public int getWidth(Bitmap bitmap) {
+        return bitmap.getWidth();
+    }
+
+    @Override
+    public int getHeight(Bitmap bitmap) {
+        return bitmap.getHeight();
+    }
+
+    @Override
+    public Bitmap.Config getConfig(Bitmap bitmap) {
+        return bitmap.getConfig();
+    }
+
+    @Override
+    public long getByteCount(Bitmap bitmap) {
+        return bitmap.getAllocationByteCount();
+    }
+
+    @Override
+    public boolean isReusable(Bitmap bitmap) {
+        return !bitmap.isRecycled() && bitmap.isMutable();
+    }
+}
@@ -22,6 +22,7 @@ import android.view.View;
 import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.ProgressBar;
+import android.widget.Toast;
 
 import org.pytorch.IValue;
 import org.pytorch.LiteModuleLoader;
@@ -195,8 +196,12 @@ public class MainActivity extends AppCompatActivity implements Runnable {
                 mStartX = (mImageView.getWidth() - mIvScaleX * mBitmap.getWidth()) / 2;
                 mStartY = (mImageView.getHeight() - mIvScaleY * mBitmap.getHeight()) / 2;
 
-                Thread thread = new Thread(MainActivity.this);
-                thread.start();
+                if (!InferenceExecutor.get().tryExecute(InferenceExecutor.Lane.INTERACTIVE, MainActivity.this)) {
+                    mButtonDetect.setEnabled(true);
+                    mButtonDetect.setText(getString(R.string.detect));
+                    mProgressBar.setVisibility(ProgressBar.INVISIBLE);
+                    Toast.makeText(MainActivity.this, R.string.inference_busy, Toast.LENGTH_SHORT).show();
+                }
             }
         });
 
@@ -251,7 +256,7 @@ public class MainActivity extends AppCompatActivity implements Runnable {
     @Override
     public void run() {
         Bitmap resizedBitmap = Bitmap.createScaledBitmap(mBitmap, PrePostProcessor.mInputWidth, PrePostProcessor.mInputHeight, true);
-        final Tensor inputTensor = TensorImageUtils.bitmapToFloat32Tensor(resizedBitmap, PrePostProcessor.NO_MEAN_RGB, PrePostProcessor.NO_STD_RGB);
+        final Tensor inputTensor = TensorImageUtils.bitmapToFloat32Tensor(resizedBitmap, PrePostProcessor.NO_MEAN_RGB, PrePostProcessor.NO_STD_RGB, PrePostProcessor.mInputMemoryFormat);
         IValue[] outputTuple = mModule.forward(IValue.from(inputTensor)).toTuple();
         final Tensor outputTensor = outputTuple[0].toTensor();
         final float[] outputs = outputTensor.getDataAsFloatArray();
@@ -8,6 +8,8 @@ package org.pytorch.demo.objectdetection;
 
 import android.graphics.Rect;
 
+import org.pytorch.MemoryFormat;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -33,6 +35,10 @@ public class PrePostProcessor {
     // model input image size
     static int mInputWidth = 640;
     static int mInputHeight = 640;
+    // Memory format the input is written in. Channels-last can save XNNPACK a repack of the input
+    // on every forward, but that is not measured for this model; switch only if a forward benchmark
+    // of both formats (as in PyTorchDemoApp's Model Benchmark screen) shows it faster on device
+    static MemoryFormat mInputMemoryFormat = MemoryFormat.CONTIGUOUS;
 
     // model output is of size 25200*(num_of_class+5)
     private static int mOutputRow = 25200; // as decided by the YOLOv5 model for input image of size 640*640
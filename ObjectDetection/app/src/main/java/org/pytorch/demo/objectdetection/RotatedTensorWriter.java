@@ -0,0 +1,95 @@
+package org.pytorch.demo.objectdetection;
+
+import org.pytorch.MemoryFormat;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Writes ARGB pixels of an unrotated camera frame into a planar, normalized float tensor of the
+ * frame rotated clockwise by 0, 90, 180 or 270 degrees and optionally mirrored (front camera).
+ *
+ * <p>The rotation is an index remap in the pixel-to-tensor pass: the source is read row by row and
+ * each value is stored at its rotated position, so no rotated bitmap is created. The layout matches
+ * {@code TensorImageUtils.bitmapToFloatBuffer}: R, G and B planes of the rotated image, or with
+ * {@link MemoryFormat#CHANNELS_LAST} R, G and B interleaved per pixel, for a {@code 1x3xHxW} tensor
+ * created with that memory format.
+ */
+public class RotatedTensorWriter {
+
+    public static int rotatedWidth(int width, int height, int rotationDegrees) {
+        return normalize(rotationDegrees) % 180 == 0 ? width : height;
+    }
+
+    public static int rotatedHeight(int width, int height, int rotationDegrees) {
+        return normalize(rotationDegrees) % 180 == 0 ? height : width;
+    }
+
+    /**
+     * @param argb     {@code width x height} pixels of the unrotated frame
+     * @param mirror   flip the rotated image horizontally, as the front camera preview does
+     * @param out      receives {@code 3 * width * height} floats from {@code offset}
+     */
+    public static void write(int[] argb, int width, int height, int rotationDegrees, boolean mirror,
+                             float[] mean, float[] std, FloatBuffer out, int offset) {
+        write(argb, width, height, rotationDegrees, mirror, mean, std, MemoryFormat.CONTIGUOUS, out, offset);
+    }
+
+    /** Writes planes for {@link MemoryFormat#CONTIGUOUS}, interleaved pixels for channels-last. */
+    public static void write(int[] argb, int width, int height, int rotationDegrees, boolean mirror,
+                             float[] mean, float[] std, MemoryFormat memoryFormat, FloatBuffer out, int offset) {
+        final int rotation = normalize(rotationDegrees);
+        final int outWidth = rotatedWidth(width, height, rotation);
+        final int outHeight = rotatedHeight(width, height, rotation);
+        final int origin = index(0, 0, width, height, rotation, mirror, outWidth);
+        final int stepX = index(1, 0, width, height, rotation, mirror, outWidth) - origin;
+        final int stepY = index(0, 1, width, height, rotation, mirror, outWidth) - origin;
+        final boolean channelsLast = memoryFormat == MemoryFormat.CHANNELS_LAST;
+        final int pixelStride = channelsLast ? 3 : 1;
+        final int channelStride = channelsLast ? 1 : outWidth * outHeight;
+
+        final float scale0 = 1f / (255f * std[0]), bias0 = -mean[0] / std[0];
+        final float scale1 = 1f / (255f * std[1]), bias1 = -mean[1] / std[1];
+        final float scale2 = 1f / (255f * std[2]), bias2 = -mean[2] / std[2];
+        for (int y = 0, i = 0; y < height; y++) {
+            int d = offset + (origin + y * stepY) * pixelStride;
+            for (int x = 0; x < width; x++, i++, d += stepX * pixelStride) {
+                final int c = argb[i];
+                out.put(d, ((c >> 16) & 0xff) * scale0 + bias0);
+                out.put(d + channelStride, ((c >> 8) & 0xff) * scale1 + bias1);
+                out.put(d + 2 * channelStride, (c & 0xff) * scale2 + bias2);
+            }
+        }
+    }
+
+    /** Index in the rotated (then mirrored) image of source pixel (x, y); linear in x and y. */
+    private static int index(int x, int y, int width, int height, int rotation, boolean mirror,
+                             int outWidth) {
+        int rx, ry;
+        switch (rotation) {
+            case 90:
+                rx = height - 1 - y; ry = x;
+                break;
+            case 180:
+                rx = width - 1 - x; ry = height - 1 - y;
+                break;
+            case 270:
+                rx = y; ry = width - 1 - x;
+                break;
+            default:
+                rx = x; ry = y;
+                break;
+        }
+        if (mirror) {
+            rx = outWidth - 1 - rx;
+        }
+        return ry * outWidth + rx;
+    }
+
+    private static int normalize(int rotationDegrees) {
+        final int rotation = ((rotationDegrees % 360) + 360) % 360;
+        if (rotation % 90 != 0) {
+            throw new IllegalArgumentException("Rotation must be a multiple of 90: " + rotationDegrees);
+        }
+        return rotation;
+    }
+}
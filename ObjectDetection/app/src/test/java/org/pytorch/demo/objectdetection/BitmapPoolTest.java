@@ -0,0 +1,217 @@
+package org.pytorch.demo.objectdetection;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BitmapPoolTest {
+
+    private static final String ARGB = "ARGB_8888";
+    private static final String RGB565 = "RGB_565";
+
+    /** Stand-in for {@code android.graphics.Bitmap}. */
+    private static final class FakeBitmap {
+        final int width;
+        final int height;
+        final String config;
+        boolean recycled;
+
+        FakeBitmap(int width, int height, String config) {
+            this.width = width;
+            this.height = height;
+            this.config = config;
+        }
+
+        long byteCount() {
+            return (long) width * height * (ARGB.equals(config) ? 4 : 2);
+        }
+    }
+
+    private static final class FakeAllocator implements BitmapPool.Allocator<FakeBitmap, String> {
+        final List<FakeBitmap> allocated = new ArrayList<>();
+        final List<FakeBitmap> recycled = new ArrayList<>();
+
+        @Override
+        public FakeBitmap allocate(int width, int height, String config) {
+            final FakeBitmap bitmap = new FakeBitmap(width, height, config);
+            allocated.add(bitmap);
+            return bitmap;
+        }
+
+        @Override
+        public void recycle(FakeBitmap bitmap) {
+            bitmap.recycled = true;
+            recycled.add(bitmap);
+        }
+
+        @Override
+        public int getWidth(FakeBitmap bitmap) {
+            return bitmap.width;
+        }
+
+        @Override
+        public int getHeight(FakeBitmap bitmap) {
+            return bitmap.height;
+        }
+
+        @Override
+        public String getConfig(FakeBitmap bitmap) {
+            return bitmap.config;
+        }
+
+        @Override
+        public long getByteCount(FakeBitmap bitmap) {
+            return bitmap.byteCount();
+        }
+
+        @Override
+        public boolean isReusable(FakeBitmap bitmap) {
+            return !bitmap.recycled;
+        }
+    }
+
+    // Room for two idle 10x10 ARGB bitmaps.
+    private static final long MAX_IDLE_BYTES = 2 * 10 * 10 * 4;
+
+    private FakeAllocator mAllocator;
+    private BitmapPool<FakeBitmap, String> mPool;
+
+    @Before
+    public void setUp() {
+        mAllocator = new FakeAllocator();
+        mPool = new BitmapPool<>(mAllocator, MAX_IDLE_BYTES);
+    }
+
+    @Test
+    public void reusesReleasedBitmapOfSameKey() {
+        final FakeBitmap bitmap = mPool.acquire(10, 10, ARGB);
+        mPool.release(bitmap);
+        assertEquals(400, mPool.getIdleBytes());
+
+        assertSame(bitmap, mPool.acquire(10, 10, ARGB));
+        assertEquals(1, mPool.getHits());
+        assertEquals(1, mPool.getMisses());
+        assertEquals(1, mAllocator.allocated.size());
+        assertEquals(0, mPool.getIdleBytes());
+    }
+
+    @Test
+    public void missesOnOtherSizeOrConfig() {
+        final FakeBitmap bitmap = mPool.acquire(10, 10, ARGB);
+        mPool.release(bitmap);
+
+        assertNotSame(bitmap, mPool.acquire(10, 12, ARGB));
+        assertNotSame(bitmap, mPool.acquire(12, 10, ARGB));
+        assertNotSame(bitmap, mPool.acquire(10, 10, RGB565));
+        assertEquals(0, mPool.getHits());
+        assertEquals(4, mPool.getMisses());
+        assertEquals(4, mAllocator.allocated.size());
+        // Still idle for a matching request.
+        assertSame(bitmap, mPool.acquire(10, 10, ARGB));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedKeyAtByteCap() {
+        final FakeBitmap a = mPool.acquire(10, 10, ARGB);
+        final FakeBitmap b = mPool.acquire(10, 10, RGB565);
+        final FakeBitmap c = mPool.acquire(5, 11, ARGB);
+        mPool.release(a);
+        mPool.release(b);
+        assertEquals(600, mPool.getIdleBytes());
+        assertEquals(0, mPool.getEvictions());
+
+        // 820 bytes idle would exceed the cap: the least recently used key, a's, goes.
+        mPool.release(c);
+        assertEquals(1, mPool.getEvictions());
+        assertEquals(420, mPool.getIdleBytes());
+        assertTrue(a.recycled);
+        assertFalse(b.recycled);
+        assertFalse(c.recycled);
+        assertSame(b, mPool.acquire(10, 10, RGB565));
+        assertSame(c, mPool.acquire(5, 11, ARGB));
+    }
+
+    @Test
+    public void acquireRefreshesKey() {
+        final FakeBitmap a = mPool.acquire(10, 10, ARGB);
+        final FakeBitmap b = mPool.acquire(10, 10, RGB565);
+        final FakeBitmap c = mPool.acquire(5, 11, ARGB);
+        mPool.release(a);
+        mPool.release(b);
+        // Touching a's key makes b's the least recently used one.
+        assertSame(a, mPool.acquire(10, 10, ARGB));
+        mPool.release(a);
+
+        mPool.release(c);
+        assertTrue(b.recycled);
+        assertFalse(a.recycled);
+    }
+
+    @Test
+    public void recyclesBitmapLargerThanCap() {
+        final FakeBitmap bitmap = mPool.acquire(100, 100, ARGB);
+        mPool.release(bitmap);
+
+        assertTrue(bitmap.recycled);
+        assertEquals(1, mPool.getEvictions());
+        assertEquals(0, mPool.getIdleBytes());
+    }
+
+    @Test
+    public void ignoresDoubleRelease() {
+        final FakeBitmap bitmap = mPool.acquire(10, 10, ARGB);
+        mPool.release(bitmap);
+        mPool.release(bitmap);
+        assertEquals(400, mPool.getIdleBytes());
+
+        // Handed out once only.
+        assertSame(bitmap, mPool.acquire(10, 10, ARGB));
+        assertNotSame(bitmap, mPool.acquire(10, 10, ARGB));
+        assertFalse(bitmap.recycled);
+    }
+
+    @Test
+    public void doesNotPoolRecycledBitmap() {
+        final FakeBitmap a = mPool.acquire(10, 10, ARGB);
+        final FakeBitmap b = mPool.acquire(10, 10, RGB565);
+        final FakeBitmap c = mPool.acquire(5, 11, ARGB);
+        mPool.release(a);
+        mPool.release(b);
+        mPool.release(c);
+        assertTrue(a.recycled);
+
+        // Released again after its eviction: recycled, never handed out.
+        mPool.release(a);
+        assertEquals(420, mPool.getIdleBytes());
+        assertNotSame(a, mPool.acquire(10, 10, ARGB));
+    }
+
+    @Test
+    public void clearRecyclesIdleBitmaps() {
+        final FakeBitmap a = mPool.acquire(10, 10, ARGB);
+        final FakeBitmap b = mPool.acquire(10, 10, ARGB);
+        mPool.release(a);
+        mPool.release(b);
+        mPool.clear();
+
+        assertTrue(a.recycled);
+        assertTrue(b.recycled);
+        assertEquals(0, mPool.getIdleBytes());
+        assertEquals(2, mPool.getEvictions());
+    }
+
+    @Test
+    public void ignoresNull() {
+        mPool.release(null);
+        assertEquals(0, mPool.getIdleBytes());
+        assertEquals(0, mPool.getEvictions());
+    }
+}
@@ -0,0 +1,118 @@
+package org.pytorch.demo.objectdetection;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CameraConfigNegotiatorTest {
+
+    /** Sensor-orientation sizes as a typical back camera lists them, 4:3 and 16:9 mixed. */
+    private static final List<CameraConfigNegotiator.Resolution> SUPPORTED = Arrays.asList(
+            size(1920, 1080), size(1280, 960), size(1280, 720), size(1024, 768),
+            size(960, 720), size(800, 600), size(640, 480), size(320, 240), size(176, 144));
+
+    @Test
+    public void picksSmallestCoveringSizeOfPreviewAspectRatio() {
+        final CameraConfigNegotiator negotiator = new CameraConfigNegotiator(224, 224, 1f);
+
+        assertEquals(size(320, 240), negotiator.choose(SUPPORTED, 90));
+    }
+
+    @Test
+    public void rotatesModelSizeIntoSensorOrientation() {
+        // 480 wide, 640 high upright: the sensor side along the model height must be 640.
+        final CameraConfigNegotiator negotiator = new CameraConfigNegotiator(480, 640, 1f);
+
+        assertEquals(size(640, 480), negotiator.choose(SUPPORTED, 90));
+        assertEquals(size(960, 720), negotiator.choose(SUPPORTED, 0));
+    }
+
+    @Test
+    public void cropFractionNeedsLargerFrame() {
+        final CameraConfigNegotiator negotiator = new CameraConfigNegotiator(200, 200, 0.4f);
+
+        // A region of 40% of each side must still be 200 pixels, so the short side needs 500.
+        assertFalse(negotiator.covers(size(640, 480), 90));
+        assertTrue(negotiator.covers(size(800, 600), 90));
+        assertEquals(size(800, 600), negotiator.choose(SUPPORTED, 90));
+    }
+
+    @Test
+    public void fallsBackToLargestWhenNothingCovers() {
+        final CameraConfigNegotiator negotiator = new CameraConfigNegotiator(2000, 2000, 1f);
+
+        assertEquals(size(1280, 960), negotiator.choose(SUPPORTED, 90));
+    }
+
+    @Test
+    public void prefersPreviewAspectRatioOverCoverage() {
+        final CameraConfigNegotiator negotiator = new CameraConfigNegotiator(720, 720, 1f)
+                .setAspectRatio(16, 9);
+
+        assertEquals(size(1280, 720), negotiator.choose(SUPPORTED, 90));
+        assertEquals(size(1920, 1080), negotiator.rank(SUPPORTED, 90).get(1));
+    }
+
+    @Test
+    public void maxPixelsCapsTheFrameBelowCoverage() {
+        // ObjectDetection: a 640x640 input would need 853x640, capped to the old 480x640 frame.
+        final CameraConfigNegotiator negotiator = new CameraConfigNegotiator(640, 640, 1f)
+                .setMaxPixels(480 * 640);
+
+        assertEquals(size(640, 480), negotiator.choose(SUPPORTED, 90));
+        assertEquals(size(960, 720),
+                new CameraConfigNegotiator(640, 640, 1f).choose(SUPPORTED, 90));
+    }
+
+    @Test
+    public void maxPixelsRanksLargerSizesLastSmallestFirst() {
+        final CameraConfigNegotiator negotiator = new CameraConfigNegotiator(640, 640, 1f)
+                .setMaxPixels(320 * 240);
+        final List<CameraConfigNegotiator.Resolution> ranked = negotiator.rank(SUPPORTED, 90);
+
+        assertEquals(size(320, 240), ranked.get(0));
+        assertEquals(size(960, 720), ranked.get(1));
+    }
+
+    @Test
+    public void emptyListHasNoChoice() {
+        assertNull(new CameraConfigNegotiator(224, 224, 1f)
+                .choose(Arrays.<CameraConfigNegotiator.Resolution>asList(), 0));
+    }
+
+    @Test
+    public void choosesCheapestConverter() {
+        final CameraConfigNegotiator negotiator = new CameraConfigNegotiator(224, 224, 1f)
+                .addConverter(CameraConfigNegotiator.Format.YUV_420_888, 30f)
+                .addConverter(CameraConfigNegotiator.Format.RGBA_8888, 3f);
+        assertEquals(CameraConfigNegotiator.Format.RGBA_8888, negotiator.chooseFormat());
+
+        negotiator.addConverter(CameraConfigNegotiator.Format.RGBA_8888, 45f);
+        assertEquals(CameraConfigNegotiator.Format.YUV_420_888, negotiator.chooseFormat());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void formatNeedsAConverter() {
+        new CameraConfigNegotiator(224, 224, 1f).chooseFormat();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCropFractionAboveOne() {
+        new CameraConfigNegotiator(224, 224, 1.5f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveMaxPixels() {
+        new CameraConfigNegotiator(224, 224, 1f).setMaxPixels(0);
+    }
+
+    private static CameraConfigNegotiator.Resolution size(int width, int height) {
+        return new CameraConfigNegotiator.Resolution(width, height);
+    }
+}
@@ -0,0 +1,117 @@
+package org.pytorch.demo.objectdetection;
+
+import org.junit.Test;
+import org.pytorch.MemoryFormat;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class RotatedTensorWriterTest {
+
+    private static final float[] MEAN = {0.485f, 0.456f, 0.406f};
+    private static final float[] STD = {0.229f, 0.224f, 0.225f};
+
+    @Test
+    public void planarMatchesRotatedCopy() {
+        final int width = 5;
+        final int height = 3;
+        final int[] argb = randomPixels(width, height);
+        for (int rotation : new int[]{0, 90, 180, 270}) {
+            for (boolean mirror : new boolean[]{false, true}) {
+                final FloatBuffer out = FloatBuffer.allocate(3 * width * height);
+                RotatedTensorWriter.write(argb, width, height, rotation, mirror, MEAN, STD, out, 0);
+
+                final int outWidth = RotatedTensorWriter.rotatedWidth(width, height, rotation);
+                final int outHeight = RotatedTensorWriter.rotatedHeight(width, height, rotation);
+                final int[] rotated = rotate(argb, width, height, rotation, mirror);
+                for (int i = 0; i < outWidth * outHeight; i++) {
+                    for (int c = 0; c < 3; c++) {
+                        assertEquals(rotation + " " + mirror, normalized(rotated[i], c),
+                                out.get(c * outWidth * outHeight + i), 1e-5f);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void channelsLastInterleavesPlanarOutput() {
+        final int width = 6;
+        final int height = 4;
+        final int offset = 7;
+        final int[] argb = randomPixels(width, height);
+        for (int rotation : new int[]{0, 90, 180, 270}) {
+            for (boolean mirror : new boolean[]{false, true}) {
+                final FloatBuffer planar = FloatBuffer.allocate(3 * width * height);
+                RotatedTensorWriter.write(argb, width, height, rotation, mirror, MEAN, STD,
+                        MemoryFormat.CONTIGUOUS, planar, 0);
+                final FloatBuffer interleaved = FloatBuffer.allocate(offset + 3 * width * height);
+                RotatedTensorWriter.write(argb, width, height, rotation, mirror, MEAN, STD,
+                        MemoryFormat.CHANNELS_LAST, interleaved, offset);
+
+                final int planeSize = width * height;
+                for (int i = 0; i < planeSize; i++) {
+                    for (int c = 0; c < 3; c++) {
+                        assertEquals(rotation + " " + mirror, planar.get(c * planeSize + i),
+                                interleaved.get(offset + 3 * i + c), 0f);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOddRotation() {
+        RotatedTensorWriter.write(new int[1], 1, 1, 45, false, MEAN, STD, FloatBuffer.allocate(3), 0);
+    }
+
+    /** Reference rotation: clockwise, then a horizontal flip if {@code mirror}. */
+    private static int[] rotate(int[] argb, int width, int height, int rotation, boolean mirror) {
+        final int outWidth = rotation % 180 == 0 ? width : height;
+        final int outHeight = rotation % 180 == 0 ? height : width;
+        final int[] out = new int[argb.length];
+        for (int y = 0; y < outHeight; y++) {
+            for (int x = 0; x < outWidth; x++) {
+                final int sx;
+                final int sy;
+                switch (rotation) {
+                    case 90:
+                        sx = y;
+                        sy = height - 1 - x;
+                        break;
+                    case 180:
+                        sx = width - 1 - x;
+                        sy = height - 1 - y;
+                        break;
+                    case 270:
+                        sx = width - 1 - y;
+                        sy = x;
+                        break;
+                    default:
+                        sx = x;
+                        sy = y;
+                        break;
+                }
+                final int dx = mirror ? outWidth - 1 - x : x;
+                out[y * outWidth + dx] = argb[sy * width + sx];
+            }
+        }
+        return out;
+    }
+
+    private static float normalized(int argb, int channel) {
+        final int value = (argb >> (16 - 8 * channel)) & 0xff;
+        return (value / 255f - MEAN[channel]) / STD[channel];
+    }
+
+    private static int[] randomPixels(int width, int height) {
+        final Random random = new Random(width * 31 + height);
+        final int[] argb = new int[width * height];
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = 0xff000000 | random.nextInt(0x1000000);
+        }
+        return argb;
+    }
+}
@@ -0,0 +1,171 @@
+package org.pytorch.demo.objectdetection;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TracerTest {
+
+    private static final Pattern SPAN = Pattern.compile(
+            "\\{\"name\":\"([^\"]*)\",\"ph\":\"X\",\"pid\":(\\d+),\"tid\":(\\d+),"
+                    + "\"ts\":([0-9.]+),\"dur\":([0-9.]+)\\}");
+
+    @Test
+    public void exportsSpansOldestFirstInMicroseconds() {
+        final Tracer.Ring ring = new Tracer.Ring(8);
+        ring.record(Tracer.CONVERT, 1_000, 3_500);
+        ring.record(Tracer.FORWARD, 4_000, 14_000);
+
+        final String json = ring.toChromeTraceJson(7);
+        final long tid = Thread.currentThread().getId();
+        assertEquals("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["
+                + "{\"name\":\"convert\",\"ph\":\"X\",\"pid\":7,\"tid\":" + tid
+                + ",\"ts\":1.000,\"dur\":2.500},"
+                + "{\"name\":\"forward\",\"ph\":\"X\",\"pid\":7,\"tid\":" + tid
+                + ",\"ts\":4.000,\"dur\":10.000},"
+                + "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":7,\"tid\":" + tid
+                + ",\"args\":{\"name\":\"" + Thread.currentThread().getName() + "\"}}]}", json);
+        assertEquals(2, ring.getSpanCount());
+    }
+
+    @Test
+    public void emptyRingExportsNoEvents() {
+        assertEquals("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[]}",
+                new Tracer.Ring(4).toChromeTraceJson(1));
+    }
+
+    @Test
+    public void fullRingKeepsNewestSpans() {
+        final Tracer.Ring ring = new Tracer.Ring(4);
+        for (int i = 1; i <= 10; i++) {
+            ring.record("s" + i, i * 1_000L, i * 2_000L);
+        }
+
+        assertEquals(names("s7", "s8", "s9", "s10"), spanNames(ring.toChromeTraceJson(1)));
+        assertEquals(10, ring.getSpanCount());
+    }
+
+    @Test
+    public void clearDropsSpansButKeepsCount() {
+        final Tracer.Ring ring = new Tracer.Ring(4);
+        ring.record("old", 1_000, 2_000);
+        ring.record("old", 3_000, 4_000);
+        ring.clear();
+        ring.record("new", 5_000, 6_000);
+
+        assertEquals(names("new"), spanNames(ring.toChromeTraceJson(1)));
+        assertEquals(3, ring.getSpanCount());
+    }
+
+    @Test
+    public void escapesNamesAndThreadNames() throws InterruptedException {
+        final Tracer.Ring ring = new Tracer.Ring(4);
+        final Thread thread = new Thread(() -> ring.record("a \"b\" \\c", 1_000, 2_000),
+                "worker \"1\"");
+        thread.start();
+        thread.join();
+
+        final String json = ring.toChromeTraceJson(1);
+        assertTrue(json, json.contains("\"name\":\"a \\\"b\\\" \\\\c\""));
+        assertTrue(json, json.contains("\"args\":{\"name\":\"worker \\\"1\\\"\"}"));
+    }
+
+    @Test
+    public void namesEachThreadOnce() throws InterruptedException {
+        final Tracer.Ring ring = new Tracer.Ring(16);
+        final Thread thread = new Thread(() -> {
+            ring.record(Tracer.FORWARD, 1_000, 2_000);
+            ring.record(Tracer.DECODE, 2_000, 3_000);
+        }, "inference");
+        thread.start();
+        thread.join();
+        ring.record(Tracer.RENDER, 3_000, 4_000);
+
+        final String json = ring.toChromeTraceJson(1);
+        assertEquals(2, count(json, "\"thread_name\""));
+        assertEquals(1, count(json, "\"args\":{\"name\":\"inference\"}"));
+    }
+
+    @Test
+    public void exportDuringRecordingSkipsTornSlots() throws InterruptedException {
+        // Each span's name, start and duration all encode its index, so a slot read while it was
+        // overwritten would export fields of two different spans.
+        final Tracer.Ring ring = new Tracer.Ring(64);
+        final AtomicBoolean stop = new AtomicBoolean();
+        final Thread writer = new Thread(() -> {
+            for (long i = 1; !stop.get(); i++) {
+                ring.record("s" + i, i * 1_000, i * 3_000);
+            }
+        });
+        writer.start();
+        try {
+            for (int export = 0; export < 2_000; export++) {
+                final Matcher matcher = SPAN.matcher(ring.toChromeTraceJson(1));
+                long previous = 0;
+                int spans = 0;
+                while (matcher.find()) {
+                    final long index = Long.parseLong(matcher.group(1).substring(1));
+                    assertEquals(index + ".000", matcher.group(4));
+                    assertEquals(2 * index + ".000", matcher.group(5));
+                    assertTrue(index > previous);
+                    previous = index;
+                    spans++;
+                }
+                assertTrue(spans <= 64);
+            }
+        } finally {
+            stop.set(true);
+            writer.join();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCapacityNotPowerOfTwo() {
+        new Tracer.Ring(12);
+    }
+
+    @Test
+    public void disabledTracerRecordsNothing() {
+        if (Tracer.ENABLED) {
+            return;
+        }
+        final long count = Tracer.getSpanCount();
+        Tracer.end(Tracer.CONVERT, Tracer.begin());
+        Tracer.record(Tracer.FORWARD, 1_000, 2_000);
+
+        assertEquals(0, Tracer.begin());
+        assertEquals(count, Tracer.getSpanCount());
+    }
+
+    private static List<String> spanNames(String json) {
+        final List<String> names = new ArrayList<>();
+        final Matcher matcher = SPAN.matcher(json);
+        while (matcher.find()) {
+            names.add(matcher.group(1));
+        }
+        return names;
+    }
+
+    private static List<String> names(String... names) {
+        final List<String> list = new ArrayList<>();
+        for (String name : names) {
+            list.add(name);
+        }
+        return list;
+    }
+
+    private static int count(String s, String part) {
+        int count = 0;
+        for (int i = s.indexOf(part); i >= 0; i = s.indexOf(part, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
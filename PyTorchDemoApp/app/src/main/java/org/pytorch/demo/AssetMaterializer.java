@@ -0,0 +1,79 @@
+package org.pytorch.demo;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Extracts APK assets into {@link Context#getFilesDir()} through {@link FileMaterializer}.
+ * Extractions run on a small pool so several models can be prepared in parallel off the UI thread;
+ * a {@link #materialize} call for an asset that is being prefetched waits for that extraction.
+ */
+public class AssetMaterializer {
+
+  private static final int POOL_SIZE = 2;
+
+  private static ExecutorService sExecutor;
+
+  public static File materialize(Context context, String assetName) throws IOException {
+    final Context appContext = context.getApplicationContext();
+    final FileMaterializer.Result result = FileMaterializer.materialize(
+        () -> appContext.getAssets().open(assetName),
+        new File(appContext.getFilesDir(), assetName),
+        sourceStamp(appContext),
+        null);
+    Log.d(Constants.TAG, "Asset " + result);
+    return result.file;
+  }
+
+  /**
+   * Starts extracting {@code assetNames} in the background; missing assets are logged and skipped.
+   */
+  public static List<Future<File>> prefetch(Context context, String... assetNames) {
+    final Context appContext = context.getApplicationContext();
+    final List<Future<File>> futures = new ArrayList<>(assetNames.length);
+    for (String assetName : assetNames) {
+      futures.add(executor().submit(() -> {
+        try {
+          return materialize(appContext, assetName);
+        } catch (IOException e) {
+          Log.w(Constants.TAG, "Error prefetching asset " + assetName, e);
+          return null;
+        }
+      }));
+    }
+    return futures;
+  }
+
+  private static synchronized ExecutorService executor() {
+    if (sExecutor == null) {
+      final AtomicInteger count = new AtomicInteger();
+      sExecutor = Executors.newFixedThreadPool(POOL_SIZE, r -> {
+        final Thread thread = new Thread(r, "AssetMaterializer-" + count.incrementAndGet());
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+      });
+    }
+    return sExecutor;
+  }
+
+  static String sourceStamp(Context context) {
+    try {
+      final PackageInfo info =
+          context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+      return Long.toString(info.lastUpdateTime);
+    } catch (PackageManager.NameNotFoundException e) {
+      return "0";
+    }
+  }
+}
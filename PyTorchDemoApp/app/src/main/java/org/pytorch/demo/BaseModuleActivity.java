@@ -2,11 +2,13 @@ package org.pytorch.demo;
 
 import android.os.Bundle;
 import android.os.Handler;
-import android.os.HandlerThread;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.Toast;
+
+import org.pytorch.Module;
 
 import androidx.annotation.Nullable;
 import androidx.annotation.UiThread;
@@ -17,8 +19,6 @@ import androidx.appcompat.widget.Toolbar;
 public class BaseModuleActivity extends AppCompatActivity {
   private static final int UNSET = 0;
 
-  protected HandlerThread mBackgroundThread;
-  protected Handler mBackgroundHandler;
   protected Handler mUIHandler;
 
   @Override
@@ -34,30 +34,40 @@ public class BaseModuleActivity extends AppCompatActivity {
     if (toolbar != null) {
       setSupportActionBar(toolbar);
     }
-    startBackgroundThread();
   }
 
-  protected void startBackgroundThread() {
-    mBackgroundThread = new HandlerThread("ModuleActivity");
-    mBackgroundThread.start();
-    mBackgroundHandler = new Handler(mBackgroundThread.getLooper());
+  /** Lane of the shared {@link InferenceExecutor} this screen runs its model work on. */
+  protected InferenceExecutor.Lane getInferenceLane() {
+    return InferenceExecutor.Lane.INTERACTIVE;
+  }
+
+  /**
+   * Queues {@code task} on this screen's lane. If the lane is full the task is dropped: silently on
+   * {@link InferenceExecutor.Lane#REALTIME}, where the next frame replaces it, and with a message
+   * on the other lanes, where a user is waiting for it.
+   *
+   * @return false if the task was dropped
+   */
+  protected boolean runInBackground(Runnable task) {
+    final InferenceExecutor.Lane lane = getInferenceLane();
+    if (InferenceExecutor.get().tryExecute(lane, task)) {
+      return true;
+    }
+    if (lane != InferenceExecutor.Lane.REALTIME) {
+      runOnUiThread(() -> Toast.makeText(this, R.string.inference_busy, Toast.LENGTH_SHORT).show());
+    }
+    return false;
   }
 
   @Override
   protected void onDestroy() {
-    stopBackgroundThread();
+    Log.d(Constants.TAG, "Inference lanes: " + InferenceExecutor.get().metricsToJson());
     super.onDestroy();
   }
 
-  protected void stopBackgroundThread() {
-    mBackgroundThread.quitSafely();
-    try {
-      mBackgroundThread.join();
-      mBackgroundThread = null;
-      mBackgroundHandler = null;
-    } catch (InterruptedException e) {
-      Log.e(Constants.TAG, "Error on stopping background thread", e);
-    }
+  /** Destroys {@code module} after the model work already queued by this screen. */
+  protected void destroyModuleInBackground(Module module) {
+    InferenceExecutor.get().destroyOnLane(getInferenceLane(), module);
   }
 
   @Override
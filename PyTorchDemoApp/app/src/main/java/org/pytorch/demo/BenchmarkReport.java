@@ -0,0 +1,125 @@
+package org.pytorch.demo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Results of a benchmark run, one entry per (model, thread count, input layout), serialized as JSON.
+ * Load-time entries, one per (model, load source), follow under {@code loads} when there are any.
+ */
+public class BenchmarkReport {
+
+  public static class Entry {
+    public final String model;
+    public final int threads;
+    public final String layout;
+    public final int warmupIterations;
+    public final long loadNanos;
+    public final long peakNativeHeapBytes;
+    public final BenchmarkStats forward;
+
+    public Entry(String model, int threads, String layout, int warmupIterations, long loadNanos,
+                 long peakNativeHeapBytes, BenchmarkStats forward) {
+      this.model = model;
+      this.threads = threads;
+      this.layout = layout;
+      this.warmupIterations = warmupIterations;
+      this.loadNanos = loadNanos;
+      this.peakNativeHeapBytes = peakNativeHeapBytes;
+      this.forward = forward;
+    }
+
+    String toJson() {
+      return String.format(Locale.US,
+          "{\"model\":\"%s\",\"threads\":%d,\"layout\":\"%s\",\"warmup\":%d,"
+              + "\"load_ms\":%.3f,\"peak_native_heap_bytes\":%d,\"forward\":%s}",
+          escape(model), threads, escape(layout), warmupIterations, loadNanos / 1e6, peakNativeHeapBytes,
+          forward.toJson());
+    }
+  }
+
+  /** Repeated loads of one model through one {@link ModuleLoader.Source}. */
+  public static class LoadEntry {
+    public final String model;
+    public final String source;
+    /** The first load of the run, the only one not helped by the page cache of the loads before. */
+    public final long firstLoadNanos;
+    public final BenchmarkStats load;
+
+    public LoadEntry(String model, String source, long firstLoadNanos, BenchmarkStats load) {
+      this.model = model;
+      this.source = source;
+      this.firstLoadNanos = firstLoadNanos;
+      this.load = load;
+    }
+
+    String toJson() {
+      return String.format(Locale.US,
+          "{\"model\":\"%s\",\"source\":\"%s\",\"first_ms\":%.3f,\"load\":%s}",
+          escape(model), escape(source), firstLoadNanos / 1e6, load.toJson());
+    }
+  }
+
+  private final String mDevice;
+  private final String mInput;
+  private final List<Entry> mEntries = new ArrayList<>();
+  private final List<LoadEntry> mLoadEntries = new ArrayList<>();
+
+  public BenchmarkReport(String device, String input) {
+    mDevice = device;
+    mInput = input;
+  }
+
+  public void add(Entry entry) {
+    mEntries.add(entry);
+  }
+
+  public List<Entry> getEntries() {
+    return mEntries;
+  }
+
+  public void addLoad(LoadEntry entry) {
+    mLoadEntries.add(entry);
+  }
+
+  public String toJson() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("{\"device\":\"").append(escape(mDevice))
+        .append("\",\"input\":\"").append(escape(mInput))
+        .append("\",\"results\":[");
+    for (int i = 0; i < mEntries.size(); i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append(mEntries.get(i).toJson());
+    }
+    sb.append(']');
+    if (!mLoadEntries.isEmpty()) {
+      sb.append(",\"loads\":[");
+      for (int i = 0; i < mLoadEntries.size(); i++) {
+        if (i > 0) {
+          sb.append(',');
+        }
+        sb.append(mLoadEntries.get(i).toJson());
+      }
+      sb.append(']');
+    }
+    return sb.append('}').toString();
+  }
+
+  static String escape(String s) {
+    final StringBuilder sb = new StringBuilder(s.length());
+    for (int i = 0; i < s.length(); i++) {
+      final char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c < 0x20) {
+        sb.append(String.format(Locale.US, "\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,68 @@
+package org.pytorch.demo;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Summary statistics of a set of latency samples in nanoseconds. Percentiles use the
+ * nearest-rank method on the sorted samples.
+ */
+public class BenchmarkStats {
+
+  public final int count;
+  public final double meanNanos;
+  public final double stddevNanos;
+  public final long minNanos;
+  public final long maxNanos;
+  public final long p50Nanos;
+  public final long p90Nanos;
+  public final long p99Nanos;
+
+  private BenchmarkStats(long[] sorted) {
+    count = sorted.length;
+    double sum = 0;
+    for (long v : sorted) {
+      sum += v;
+    }
+    meanNanos = count == 0 ? 0 : sum / count;
+    double squares = 0;
+    for (long v : sorted) {
+      squares += (v - meanNanos) * (v - meanNanos);
+    }
+    // Sample standard deviation; a single sample has none.
+    stddevNanos = count < 2 ? 0 : Math.sqrt(squares / (count - 1));
+    minNanos = count == 0 ? 0 : sorted[0];
+    maxNanos = count == 0 ? 0 : sorted[count - 1];
+    p50Nanos = percentile(sorted, 50);
+    p90Nanos = percentile(sorted, 90);
+    p99Nanos = percentile(sorted, 99);
+  }
+
+  public static BenchmarkStats of(long[] samplesNanos) {
+    final long[] sorted = Arrays.copyOf(samplesNanos, samplesNanos.length);
+    Arrays.sort(sorted);
+    return new BenchmarkStats(sorted);
+  }
+
+  static long percentile(long[] sorted, double percentile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    final int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+    return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+  }
+
+  public String toJson() {
+    return String.format(Locale.US,
+        "{\"count\":%d,\"mean_ms\":%.3f,\"stddev_ms\":%.3f,\"min_ms\":%.3f,\"p50_ms\":%.3f,"
+            + "\"p90_ms\":%.3f,\"p99_ms\":%.3f,\"max_ms\":%.3f}",
+        count, meanNanos / 1e6, stddevNanos / 1e6, minNanos / 1e6, p50Nanos / 1e6,
+        p90Nanos / 1e6, p99Nanos / 1e6, maxNanos / 1e6);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.US, "mean %.2fms sd %.2f, p50 %.2f, p90 %.2f, p99 %.2fms",
+        meanNanos / 1e6, stddevNanos / 1e6, p50Nanos / 1e6, p90Nanos / 1e6, p99Nanos / 1e6);
+  }
+}
@@ -0,0 +1,248 @@
+package org.pytorch.demo;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Copies a stream to a file so that the target is either absent or complete.
+ *
+ * <p>Data is written to a uniquely named temp file in the target directory, synced and renamed
+ * over the target. A small sidecar file ({@code <target>.meta}) records the size, the SHA-256
+ * computed during the copy and a caller supplied source stamp. A target is only reused when its
+ * size and stamp still match and its contents hash to the recorded digest, so a file truncated or
+ * corrupted on disk, or left over from an older APK, is extracted again. The hash is checked once
+ * per process for a given file size and modification time, so repeated loads do not reread it.
+ *
+ * <p>Calls for the same target are serialized, so a prefetch and an on-demand load of one asset
+ * extract it once.
+ *
+ * <p>Plain Java, no Android dependencies.
+ */
+public class FileMaterializer {
+
+  public static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final String META_SUFFIX = ".meta";
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private static final Map<String, Object> sLocks = new ConcurrentHashMap<>();
+  private static final Set<String> sVerified = ConcurrentHashMap.newKeySet();
+
+  public interface Source {
+    InputStream open() throws IOException;
+  }
+
+  public static class Result {
+    public final File file;
+    public final boolean extracted;
+    public final long bytes;
+    public final long durationNanos;
+    public final String sha256;
+
+    Result(File file, boolean extracted, long bytes, long durationNanos, String sha256) {
+      this.file = file;
+      this.extracted = extracted;
+      this.bytes = bytes;
+      this.durationNanos = durationNanos;
+      this.sha256 = sha256;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.US, "%s %s %d bytes in %.1fms",
+          file.getName(), extracted ? "extracted" : "reused", bytes, durationNanos / 1e6);
+    }
+  }
+
+  /**
+   * Returns {@code target}, extracting it from {@code source} unless a valid copy is already present.
+   *
+   * @param sourceStamp identifies the source version (e.g. APK update time); a change forces a re-extract
+   * @param expectedSha256 if not null, both the reused and the freshly written file must have this digest
+   */
+  public static Result materialize(Source source, File target, String sourceStamp,
+                                   String expectedSha256) throws IOException {
+    synchronized (lockFor(target)) {
+      return materializeLocked(source, target, sourceStamp, expectedSha256);
+    }
+  }
+
+  private static Result materializeLocked(Source source, File target, String sourceStamp,
+                                          String expectedSha256) throws IOException {
+    final long startTime = System.nanoTime();
+    final Meta meta = readMeta(metaFile(target));
+    if (meta != null
+        && target.isFile()
+        && target.length() == meta.size
+        && meta.stamp.equals(sourceStamp)
+        && (expectedSha256 == null || expectedSha256.equalsIgnoreCase(meta.sha256))
+        && isVerified(target, meta.sha256)) {
+      return new Result(target, false, meta.size, System.nanoTime() - startTime, meta.sha256);
+    }
+
+    final File dir = target.getAbsoluteFile().getParentFile();
+    if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Cannot create directory " + dir);
+    }
+    final File temp = File.createTempFile(target.getName(), TEMP_SUFFIX, dir);
+    final MessageDigest digest = newSha256();
+    long bytes = 0;
+    try {
+      try (InputStream is = source.open(); FileOutputStream os = new FileOutputStream(temp)) {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+          os.write(buffer, 0, read);
+          digest.update(buffer, 0, read);
+          bytes += read;
+        }
+        os.getFD().sync();
+      }
+
+      final String sha256 = toHex(digest.digest());
+      if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(sha256)) {
+        throw new IOException("Checksum mismatch for " + target.getName()
+            + ": expected " + expectedSha256 + ", got " + sha256);
+      }
+
+      // Drop the old meta before replacing the target: a crash before the new meta is
+      // written leaves no meta at all, and the target is extracted again next time.
+      deleteIfExists(metaFile(target));
+      moveAtomically(temp, target);
+      writeMeta(metaFile(target), new Meta(bytes, sha256, sourceStamp));
+      sVerified.add(verifiedKey(target, sha256));
+      return new Result(target, true, bytes, System.nanoTime() - startTime, sha256);
+    } finally {
+      deleteIfExists(temp);
+    }
+  }
+
+  /** Computes the SHA-256 of {@code file}. */
+  public static String sha256(File file) throws IOException {
+    final MessageDigest digest = newSha256();
+    try (InputStream is = new FileInputStream(file)) {
+      final byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while ((read = is.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    }
+    return toHex(digest.digest());
+  }
+
+  private static class Meta {
+    final long size;
+    final String sha256;
+    final String stamp;
+
+    Meta(long size, String sha256, String stamp) {
+      this.size = size;
+      this.sha256 = sha256;
+      this.stamp = stamp;
+    }
+  }
+
+  private static Object lockFor(File target) {
+    return sLocks.computeIfAbsent(target.getAbsolutePath(), path -> new Object());
+  }
+
+  /** True if {@code target} hashes to {@code sha256}, rehashing only when the file has changed. */
+  private static boolean isVerified(File target, String sha256) throws IOException {
+    final String key = verifiedKey(target, sha256);
+    if (sVerified.contains(key)) {
+      return true;
+    }
+    if (!sha256.equalsIgnoreCase(sha256(target))) {
+      return false;
+    }
+    sVerified.add(key);
+    return true;
+  }
+
+  private static String verifiedKey(File target, String sha256) {
+    return target.getAbsolutePath() + ":" + target.length() + ":" + target.lastModified() + ":"
+        + sha256.toLowerCase(Locale.US);
+  }
+
+  /** Forgets which files were already hashed, as a new process would. */
+  static void clearVerified() {
+    sVerified.clear();
+  }
+
+  private static File metaFile(File target) {
+    return new File(target.getPath() + META_SUFFIX);
+  }
+
+  private static Meta readMeta(File metaFile) {
+    if (!metaFile.isFile()) {
+      return null;
+    }
+    try {
+      final String[] lines =
+          new String(Files.readAllBytes(metaFile.toPath()), StandardCharsets.UTF_8).split("\n");
+      if (lines.length < 3) {
+        return null;
+      }
+      return new Meta(Long.parseLong(lines[0].trim()), lines[1].trim(), lines[2].trim());
+    } catch (IOException | NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static void writeMeta(File metaFile, Meta meta) throws IOException {
+    final File temp = File.createTempFile(
+        metaFile.getName(), TEMP_SUFFIX, metaFile.getAbsoluteFile().getParentFile());
+    try {
+      try (FileOutputStream os = new FileOutputStream(temp);
+           Writer writer = new OutputStreamWriter(os, StandardCharsets.UTF_8)) {
+        writer.write(meta.size + "\n" + meta.sha256 + "\n" + meta.stamp + "\n");
+        writer.flush();
+        os.getFD().sync();
+      }
+      moveAtomically(temp, metaFile);
+    } finally {
+      deleteIfExists(temp);
+    }
+  }
+
+  private static void moveAtomically(File from, File to) throws IOException {
+    if (!from.renameTo(to)) {
+      throw new IOException("Cannot rename " + from + " to " + to);
+    }
+  }
+
+  private static void deleteIfExists(File file) {
+    if (file.exists()) {
+      file.delete();
+    }
+  }
+
+  private static MessageDigest newSha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    final StringBuilder sb = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return sb.toString();
+  }
+}
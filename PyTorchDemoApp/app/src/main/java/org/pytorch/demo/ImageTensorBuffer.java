@@ -0,0 +1,68 @@
+package org.pytorch.demo;
+
+import android.media.Image;
+
+import org.pytorch.MemoryFormat;
+import org.pytorch.Tensor;
+import org.pytorch.torchvision.TensorImageUtils;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Reusable {@code 1x3xHxW} float input for image models, written in the model's
+ * {@link ModelManifest.Layout layout}.
+ *
+ * <p>For {@link ModelManifest.Layout#NHWC} the pixels are normalized and interleaved in the same
+ * pass that reads them from the camera image, and the tensor is marked channels-last, so the
+ * runtime does not repack the input on every forward.
+ */
+public class ImageTensorBuffer {
+
+  private final int mWidth;
+  private final int mHeight;
+  private final MemoryFormat mMemoryFormat;
+  private final FloatBuffer mBuffer;
+  private final Tensor mTensor;
+
+  public ImageTensorBuffer(int width, int height, ModelManifest.Layout layout) {
+    mWidth = width;
+    mHeight = height;
+    mMemoryFormat = toMemoryFormat(layout);
+    mBuffer = Tensor.allocateFloatBuffer(3 * width * height);
+    mTensor = Tensor.fromBlob(mBuffer, new long[]{1, 3, height, width}, mMemoryFormat);
+  }
+
+  public static MemoryFormat toMemoryFormat(ModelManifest.Layout layout) {
+    return layout == ModelManifest.Layout.NHWC
+        ? MemoryFormat.CHANNELS_LAST
+        : MemoryFormat.CONTIGUOUS;
+  }
+
+  /** Center-crops, rotates and normalizes a YUV_420_888 camera image into the tensor. */
+  public Tensor writeImage(Image image, int rotationDegrees) {
+    TensorImageUtils.imageYUV420CenterCropToFloatBuffer(
+        image, rotationDegrees, mWidth, mHeight,
+        TensorImageUtils.TORCHVISION_NORM_MEAN_RGB,
+        TensorImageUtils.TORCHVISION_NORM_STD_RGB,
+        mBuffer, 0, mMemoryFormat);
+    return mTensor;
+  }
+
+  public Tensor getTensor() {
+    return mTensor;
+  }
+
+  /**
+   * Copies planar {@code src} ({@code channels} planes of {@code height x width}) into
+   * {@code dst} interleaved, channel fastest.
+   */
+  public static void planarToInterleaved(
+      float[] src, int channels, int height, int width, FloatBuffer dst) {
+    final int planeSize = height * width;
+    for (int i = 0; i < planeSize; i++) {
+      for (int c = 0; c < channels; c++) {
+        dst.put(src[c * planeSize + i]);
+      }
+    }
+  }
+}
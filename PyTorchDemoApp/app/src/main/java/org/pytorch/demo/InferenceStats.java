@@ -0,0 +1,48 @@
+package org.pytorch.demo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Per-stage latency histograms of an inference pipeline: preprocess, forward and postprocess.
+ * Written by the analysis thread, read by the UI thread.
+ */
+public class InferenceStats {
+
+  private final String mName;
+  private final LatencyHistogram mPreprocess = new LatencyHistogram();
+  private final LatencyHistogram mForward = new LatencyHistogram();
+  private final LatencyHistogram mPostprocess = new LatencyHistogram();
+
+  public InferenceStats(String name) {
+    mName = name;
+  }
+
+  public LatencyHistogram preprocess() {
+    return mPreprocess;
+  }
+
+  public LatencyHistogram forward() {
+    return mForward;
+  }
+
+  public LatencyHistogram postprocess() {
+    return mPostprocess;
+  }
+
+  public String toJson() {
+    return String.format(Locale.US,
+        "{\"name\":\"%s\",\"preprocess\":%s,\"forward\":%s,\"postprocess\":%s}",
+        mName, mPreprocess.toJson(), mForward.toJson(), mPostprocess.toJson());
+  }
+
+  public void writeJson(File file) throws IOException {
+    try (OutputStream os = new FileOutputStream(file)) {
+      os.write(toJson().getBytes(StandardCharsets.UTF_8));
+    }
+  }
+}
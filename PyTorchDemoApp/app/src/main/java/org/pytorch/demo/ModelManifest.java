@@ -0,0 +1,140 @@
+package org.pytorch.demo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Lists the model variants available for each task, e.g. fp32 and int8 builds of a classifier, or
+ * the same model at several input resolutions.
+ *
+ * <p>The manifest is a whitespace separated table, one variant per line, {@code #} starting a
+ * comment:
+ *
+ * <pre>
+ * # task                asset            precision  input  accuracy  memory_mb  layout
+ * image_classification  resnet18.pt      fp32       224    69.76     47         nchw
+ * </pre>
+ *
+ * {@code accuracy} is the task metric in percent (top-1 for classifiers), {@code memory_mb} the
+ * approximate resident size of the loaded model. The optional {@code layout} is the memory format
+ * the model's input is prepared in, {@code nchw} when omitted.
+ */
+public class ModelManifest {
+
+  public static final String ASSET_NAME = "model_manifest.txt";
+
+  public enum Precision {
+    FP32,
+    INT8
+  }
+
+  public enum Layout {
+    /** Contiguous planar input. */
+    NCHW,
+    /** Channels-last input, which XNNPACK-backed models consume without repacking. */
+    NHWC
+  }
+
+  public static class Variant {
+    public final String task;
+    public final String assetName;
+    public final Precision precision;
+    public final int inputSize;
+    public final float accuracy;
+    public final long memoryBytes;
+    public final Layout layout;
+
+    public Variant(String task, String assetName, Precision precision, int inputSize,
+                   float accuracy, long memoryBytes, Layout layout) {
+      this.task = task;
+      this.assetName = assetName;
+      this.precision = precision;
+      this.inputSize = inputSize;
+      this.accuracy = accuracy;
+      this.memoryBytes = memoryBytes;
+      this.layout = layout;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.US, "%s (%s, %dpx)",
+          assetName, precision.name().toLowerCase(Locale.US), inputSize);
+    }
+  }
+
+  private static final int COLUMNS = 6;
+  private static final int COLUMNS_WITH_LAYOUT = 7;
+  private static final long BYTES_PER_MB = 1024 * 1024;
+
+  private final List<Variant> mVariants;
+
+  private ModelManifest(List<Variant> variants) {
+    mVariants = Collections.unmodifiableList(variants);
+  }
+
+  public static ModelManifest parse(Reader reader) throws IOException {
+    final BufferedReader in = new BufferedReader(reader);
+    final List<Variant> variants = new ArrayList<>();
+    String line;
+    int lineNumber = 0;
+    while ((line = in.readLine()) != null) {
+      lineNumber++;
+      final int comment = line.indexOf('#');
+      if (comment >= 0) {
+        line = line.substring(0, comment);
+      }
+      line = line.trim();
+      if (line.isEmpty()) {
+        continue;
+      }
+      final String[] columns = line.split("\\s+");
+      if (columns.length != COLUMNS && columns.length != COLUMNS_WITH_LAYOUT) {
+        throw new IOException(String.format(Locale.US, "Line %d: expected %d or %d columns, got %d",
+            lineNumber, COLUMNS, COLUMNS_WITH_LAYOUT, columns.length));
+      }
+      try {
+        variants.add(new Variant(
+            columns[0],
+            columns[1],
+            Precision.valueOf(columns[2].toUpperCase(Locale.US)),
+            Integer.parseInt(columns[3]),
+            Float.parseFloat(columns[4]),
+            (long) (Float.parseFloat(columns[5]) * BYTES_PER_MB),
+            columns.length == COLUMNS_WITH_LAYOUT
+                ? Layout.valueOf(columns[6].toUpperCase(Locale.US))
+                : Layout.NCHW));
+      } catch (IllegalArgumentException e) {
+        throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+      }
+    }
+    return new ModelManifest(variants);
+  }
+
+  public List<Variant> getVariants() {
+    return mVariants;
+  }
+
+  public List<Variant> getVariants(String task) {
+    final List<Variant> result = new ArrayList<>();
+    for (Variant variant : mVariants) {
+      if (variant.task.equals(task)) {
+        result.add(variant);
+      }
+    }
+    return result;
+  }
+
+  public Variant findByAsset(String assetName) {
+    for (Variant variant : mVariants) {
+      if (variant.assetName.equals(assetName)) {
+        return variant;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,74 @@
+package org.pytorch.demo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Small binary sidecar holding metadata extracted from a model (class names, input spec), so
+ * later launches do not have to call TorchScript methods to get it.
+ *
+ * <p>The file stores the key of the model it was extracted from; {@link #read} returns null when
+ * the key does not match, e.g. after the model changed.
+ */
+public class ModelMetadataCache {
+
+  private static final int MAGIC = 0x4d4d4443; // "MMDC"
+  private static final int VERSION = 1;
+
+  public static class Metadata {
+    public final String[] classNames;
+    public final String inputSpec;
+
+    public Metadata(String[] classNames, String inputSpec) {
+      this.classNames = classNames;
+      this.inputSpec = inputSpec;
+    }
+  }
+
+  public static Metadata read(File file, String modelKey) {
+    if (!file.isFile()) {
+      return null;
+    }
+    try (DataInputStream in =
+             new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION || !modelKey.equals(in.readUTF())) {
+        return null;
+      }
+      final String inputSpec = in.readUTF();
+      final String[] classNames = new String[in.readInt()];
+      for (int i = 0; i < classNames.length; i++) {
+        classNames[i] = in.readUTF();
+      }
+      return new Metadata(classNames, inputSpec);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  public static void write(File file, String modelKey, Metadata metadata) throws IOException {
+    final File temp = new File(file.getPath() + ".tmp");
+    try (FileOutputStream fos = new FileOutputStream(temp);
+         DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(modelKey);
+      out.writeUTF(metadata.inputSpec);
+      out.writeInt(metadata.classNames.length);
+      for (String className : metadata.classNames) {
+        out.writeUTF(className);
+      }
+      out.flush();
+      fos.getFD().sync();
+    }
+    if (!temp.renameTo(file)) {
+      temp.delete();
+      throw new IOException("Cannot rename " + temp + " to " + file);
+    }
+  }
+}
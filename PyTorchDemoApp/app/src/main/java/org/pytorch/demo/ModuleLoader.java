@@ -0,0 +1,115 @@
+package org.pytorch.demo;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.pytorch.IValue;
+import org.pytorch.Module;
+import org.pytorch.PyTorchAndroid;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import androidx.annotation.WorkerThread;
+
+/**
+ * Loads TorchScript modules packaged as assets.
+ *
+ * <p>Assets stored uncompressed in the APK (see {@code noCompress} in app/build.gradle) are loaded
+ * directly from the APK mapping through {@link PyTorchAndroid#loadModuleFromAsset}, without a copy
+ * in {@link Context#getFilesDir()}. Compressed assets fall back to {@link AssetMaterializer}.
+ */
+public class ModuleLoader {
+
+  /** Where a module is loaded from. */
+  public enum Source {
+    /** In place from the APK mapping; uncompressed assets only. */
+    ASSET,
+    /** From the copy in the files dir, extracted first if there is no valid one. */
+    FILE
+  }
+
+  public static Module load(Context context, String assetName) throws IOException {
+    return load(context, assetName, isUncompressed(context, assetName) ? Source.ASSET : Source.FILE);
+  }
+
+  /**
+   * Loads {@code assetName} from {@code source}; {@link org.pytorch.demo.vision.ModelBenchmarkActivity} uses this to time
+   * both paths on the same asset.
+   */
+  public static Module load(Context context, String assetName, Source source) throws IOException {
+    final long startTime = SystemClock.elapsedRealtime();
+    final Module module;
+    if (source == Source.ASSET) {
+      if (!isUncompressed(context, assetName)) {
+        throw new IOException(assetName + " is compressed and cannot be loaded in place");
+      }
+      module = PyTorchAndroid.loadModuleFromAsset(context.getAssets(), assetName);
+    } else {
+      module = Module.load(AssetMaterializer.materialize(context, assetName).getAbsolutePath());
+    }
+    Log.d(Constants.TAG, String.format(Locale.US, "Module %s loaded from %s in %dms",
+        assetName, source, SystemClock.elapsedRealtime() - startTime));
+    return module;
+  }
+
+  /** Applies {@code profile} and loads {@code assetName}. */
+  public static Module load(Context context, String assetName, ExecutionProfile profile)
+      throws IOException {
+    profile.apply();
+    return load(context, assetName);
+  }
+
+  /**
+   * Loads {@code assetName} and applies its tuned {@link ExecutionProfile}, running the
+   * {@link ExecutionProfileTuner} sweep with {@code sampleInput} the first time. The sweep runs
+   * dozens of forwards, so call this from a lane nothing latency-sensitive waits on.
+   */
+  @WorkerThread
+  public static Module loadTuned(Context context, String assetName, IValue sampleInput)
+      throws IOException {
+    final Module module = load(context, assetName);
+    ExecutionProfileTuner.tune(context, assetName, module, sampleInput);
+    return module;
+  }
+
+  /** Extracts in the background only the assets that cannot be loaded in place. */
+  public static void prefetch(Context context, String... assetNames) {
+    final List<String> toExtract = new ArrayList<>();
+    for (String assetName : assetNames) {
+      if (!isUncompressed(context, assetName)) {
+        toExtract.add(assetName);
+      }
+    }
+    if (!toExtract.isEmpty()) {
+      AssetMaterializer.prefetch(context, toExtract.toArray(new String[0]));
+    }
+  }
+
+  /**
+   * Identifies the packaged version of a model: the asset name, its size and the APK update time.
+   * Cheap to compute, and changes whenever a new APK could carry a different model.
+   */
+  public static String modelKey(Context context, String assetName) {
+    long length = -1;
+    try (AssetFileDescriptor afd = context.getAssets().openFd(assetName)) {
+      length = afd.getLength();
+    } catch (IOException e) {
+      // Compressed asset, the APK stamp alone has to do.
+    }
+    return assetName + ":" + length + ":" + AssetMaterializer.sourceStamp(context);
+  }
+
+  public static boolean isUncompressed(Context context, String assetName) {
+    // openFd only succeeds for assets stored without compression.
+    try (AssetFileDescriptor afd = context.getAssets().openFd(assetName)) {
+      return afd.getLength() > 0;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package org.pytorch.demo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Times preprocessing stages one frame at a time: latency per frame as {@link BenchmarkStats} and
+ * Java heap bytes allocated per frame, averaged over the measured frames.
+ *
+ * <p>Allocations are read from an {@link AllocationCounter} before and after the measured loop, so
+ * the stage must run on the calling thread and nothing else should allocate meanwhile. Direct
+ * buffers allocated by a stage are native memory and are not counted. Plain Java, so stages can
+ * also be timed on a desktop JVM with a counter of its own.
+ */
+public class PreprocessBenchmark {
+
+  public interface AllocationCounter {
+    /** Total bytes allocated so far, or a negative value if unknown. */
+    long allocatedBytes();
+  }
+
+  public static class Result {
+    public final String stage;
+    public final String input;
+    public final BenchmarkStats frame;
+    /** Mean Java heap bytes allocated per frame, negative if not counted. */
+    public final long bytesPerFrame;
+
+    Result(String stage, String input, BenchmarkStats frame, long bytesPerFrame) {
+      this.stage = stage;
+      this.input = input;
+      this.frame = frame;
+      this.bytesPerFrame = bytesPerFrame;
+    }
+
+    String toJson() {
+      return String.format(Locale.US,
+          "{\"stage\":\"%s\",\"input\":\"%s\",\"ns_per_frame_p50\":%d,\"ns_per_frame_mean\":%.0f,"
+              + "\"bytes_per_frame\":%d,\"frame\":%s}",
+          BenchmarkReport.escape(stage), BenchmarkReport.escape(input), frame.p50Nanos,
+          frame.meanNanos, bytesPerFrame, frame.toJson());
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.US, "%s (%s): p50 %,d ns/frame, %s",
+          stage, input, frame.p50Nanos,
+          bytesPerFrame < 0 ? "allocations not counted" : String.format(Locale.US,
+              "%,d B/frame", bytesPerFrame));
+    }
+  }
+
+  private final int mWarmupFrames;
+  private final int mFrames;
+  private final AllocationCounter mAllocationCounter;
+  private final List<Result> mResults = new ArrayList<>();
+
+  public PreprocessBenchmark(int warmupFrames, int frames, AllocationCounter allocationCounter) {
+    if (frames < 1) {
+      throw new IllegalArgumentException("frames must be positive");
+    }
+    mWarmupFrames = warmupFrames;
+    mFrames = frames;
+    mAllocationCounter = allocationCounter;
+  }
+
+  /** Runs {@code stage} once per frame and records the result. */
+  public Result run(String stageName, String input, Runnable stage) {
+    for (int i = 0; i < mWarmupFrames; i++) {
+      stage.run();
+    }
+    final long[] samples = new long[mFrames];
+    final long allocatedBefore = mAllocationCounter.allocatedBytes();
+    for (int i = 0; i < mFrames; i++) {
+      final long startTime = System.nanoTime();
+      stage.run();
+      samples[i] = System.nanoTime() - startTime;
+    }
+    final long allocatedAfter = mAllocationCounter.allocatedBytes();
+    final long bytesPerFrame = allocatedBefore < 0 || allocatedAfter < 0
+        ? -1
+        : (allocatedAfter - allocatedBefore) / mFrames;
+    final Result result = new Result(stageName, input, BenchmarkStats.of(samples), bytesPerFrame);
+    mResults.add(result);
+    return result;
+  }
+
+  public List<Result> getResults() {
+    return mResults;
+  }
+
+  public String toJson(String device) {
+    final StringBuilder sb = new StringBuilder();
+    sb.append(String.format(Locale.US, "{\"device\":\"%s\",\"warmup_frames\":%d,\"frames\":%d,"
+        + "\"results\":[", BenchmarkReport.escape(device), mWarmupFrames, mFrames));
+    for (int i = 0; i < mResults.size(); i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append(mResults.get(i).toJson());
+    }
+    return sb.append("]}").toString();
+  }
+}
@@ -0,0 +1,101 @@
+package org.pytorch.demo;
+
+/**
+ * Numerically stable softmax and log-softmax over float logits, with temperature scaling.
+ *
+ * <p>{@link #topK} fuses the normalization with {@link TopK}: dividing by a positive temperature
+ * keeps the ranking of the logits, so it needs one max pass and one sum-of-exp pass, and only the
+ * k selected probabilities are materialized.
+ */
+public class Softmax {
+
+  private static final float LOG2E = 1.44269504f;
+  private static final float MIN_EXP_ARG = -87.0f;
+
+  public static void softmax(float[] logits, float temperature, boolean fastExp, float[] out) {
+    checkTemperature(temperature);
+    final float invT = 1.0f / temperature;
+    final float max = max(logits);
+    float sum = 0.0f;
+    for (int i = 0; i < logits.length; i++) {
+      final float e = exp((logits[i] - max) * invT, fastExp);
+      out[i] = e;
+      sum += e;
+    }
+    final float invSum = 1.0f / sum;
+    for (int i = 0; i < logits.length; i++) {
+      out[i] *= invSum;
+    }
+  }
+
+  public static void logSoftmax(float[] logits, float temperature, boolean fastExp, float[] out) {
+    checkTemperature(temperature);
+    final float invT = 1.0f / temperature;
+    final float max = max(logits);
+    final float logSum = (float) Math.log(sumExp(logits, max, invT, fastExp));
+    for (int i = 0; i < logits.length; i++) {
+      out[i] = (logits[i] - max) * invT - logSum;
+    }
+  }
+
+  /**
+   * Returns the indices of the {@code k} most probable classes, best first, and writes their
+   * softmax probabilities to {@code outProbs[0..k)}.
+   */
+  public static int[] topK(float[] logits, int k, float temperature, boolean fastExp,
+                           float[] outProbs) {
+    checkTemperature(temperature);
+    final float invT = 1.0f / temperature;
+    final float max = max(logits);
+    final float invSum = 1.0f / sumExp(logits, max, invT, fastExp);
+    final int[] ixs = TopK.topK(logits, k);
+    for (int i = 0; i < ixs.length; i++) {
+      outProbs[i] = exp((logits[ixs[i]] - max) * invT, fastExp) * invSum;
+    }
+    return ixs;
+  }
+
+  private static float max(float[] a) {
+    float max = Float.NEGATIVE_INFINITY;
+    for (float v : a) {
+      if (v > max) {
+        max = v;
+      }
+    }
+    return max;
+  }
+
+  private static float sumExp(float[] logits, float max, float invT, boolean fastExp) {
+    float sum = 0.0f;
+    for (float v : logits) {
+      sum += exp((v - max) * invT, fastExp);
+    }
+    return sum;
+  }
+
+  private static float exp(float x, boolean fast) {
+    return fast ? fastExp(x) : (float) Math.exp(x);
+  }
+
+  /**
+   * exp(x) for x <= 0 via 2^(x*log2(e)): the integer part goes into the float exponent bits and
+   * the fractional part through a degree-5 polynomial. Relative error is below 2e-4.
+   */
+  static float fastExp(float x) {
+    if (x < MIN_EXP_ARG) {
+      return 0.0f;
+    }
+    final float t = x * LOG2E;
+    final float fi = (float) Math.floor(t);
+    final float f = t - fi;
+    final float p = 1.0f + f * (0.69314718f + f * (0.24022650f
+        + f * (0.05550411f + f * (0.00961813f + f * 0.00133336f))));
+    return Float.intBitsToFloat(((int) fi + 127) << 23) * p;
+  }
+
+  private static void checkTemperature(float temperature) {
+    if (!(temperature > 0.0f)) {
+      throw new IllegalArgumentException("Temperature must be positive: " + temperature);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package org.pytorch.demo;
+
+import org.pytorch.Tensor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes text as UTF-8 straight into a reusable direct buffer and wraps it as a {@code [1, N]}
+ * uint8 tensor without another copy, for byte-level text models.
+ *
+ * <p>Each thread has its own encoder and buffer. A returned tensor shares that buffer, so it is
+ * only valid until the next {@link #encode} call on the same thread.
+ */
+public class Utf8TensorEncoder {
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  private static final ThreadLocal<Utf8TensorEncoder> sInstances =
+      ThreadLocal.withInitial(Utf8TensorEncoder::new);
+
+  private final CharsetEncoder mEncoder = StandardCharsets.UTF_8.newEncoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  private ByteBuffer mBuffer = allocate(INITIAL_CAPACITY);
+
+  public static Tensor encode(CharSequence text) {
+    return sInstances.get().encodeToTensor(text);
+  }
+
+  /** The same bytes {@link #encode} wraps, copied out, e.g. to pack several texts into a batch. */
+  public static byte[] encodeToBytes(CharSequence text) {
+    final Utf8TensorEncoder encoder = sInstances.get();
+    final int length = encoder.encodeToBuffer(text);
+    final byte[] bytes = new byte[length];
+    encoder.mBuffer.position(0);
+    encoder.mBuffer.get(bytes);
+    return bytes;
+  }
+
+  private Tensor encodeToTensor(CharSequence text) {
+    final int length = encodeToBuffer(text);
+    mBuffer.position(0).limit(length);
+    final ByteBuffer data = mBuffer.slice().order(ByteOrder.nativeOrder());
+    return Tensor.fromBlobUnsigned(data, new long[]{1, length});
+  }
+
+  /** Encodes into {@code mBuffer} from position 0 and returns the number of bytes written. */
+  private int encodeToBuffer(CharSequence text) {
+    ensureCapacity((int) (text.length() * mEncoder.averageBytesPerChar()));
+    final CharBuffer in = CharBuffer.wrap(text);
+    mEncoder.reset();
+    mBuffer.clear();
+    // encode() must run once even for empty text: flush() straight after reset() throws.
+    // Malformed input is replaced, so overflow is the only result besides underflow.
+    while (mEncoder.encode(in, mBuffer, true).isOverflow()) {
+      grow();
+    }
+    while (mEncoder.flush(mBuffer).isOverflow()) {
+      grow();
+    }
+    return mBuffer.position();
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (mBuffer.capacity() < capacity) {
+      mBuffer = allocate(Math.max(capacity, mBuffer.capacity() * 2));
+    }
+  }
+
+  private void grow() {
+    final ByteBuffer grown = allocate(mBuffer.capacity() * 2);
+    mBuffer.flip();
+    grown.put(mBuffer);
+    mBuffer = grown;
+  }
+
+  private static ByteBuffer allocate(int capacity) {
+    return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+  }
+}
@@ -0,0 +1,117 @@
+package org.pytorch.demo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chooses between the {@link ModelManifest.Variant variants} of one task at runtime.
+ *
+ * <p>A variant is eligible if its accuracy is within {@code accuracyBudget} points of the most
+ * accurate variant and it fits in the free memory. Eligible variants that have not run yet are
+ * tried first, most accurate first; after that the one with the lowest measured latency wins.
+ * The current variant is only replaced by one that is clearly faster, so noise in the latency
+ * estimates does not make the selection flip back and forth.
+ */
+public class VariantSelector {
+
+  private static final float LATENCY_EMA_ALPHA = 0.2f;
+  private static final float SWITCH_LATENCY_RATIO = 0.9f;
+
+  private final List<ModelManifest.Variant> mVariants;
+  private final float mAccuracyBudget;
+  private final Map<String, Float> mLatencyMillis = new HashMap<>();
+  private ModelManifest.Variant mCurrent;
+
+  public VariantSelector(List<ModelManifest.Variant> variants, float accuracyBudget) {
+    if (variants.isEmpty()) {
+      throw new IllegalArgumentException("No variants to select from");
+    }
+    mVariants = new ArrayList<>(variants);
+    mAccuracyBudget = accuracyBudget;
+  }
+
+  public synchronized void recordLatencyNanos(ModelManifest.Variant variant, long nanos) {
+    final float millis = nanos / 1e6f;
+    final Float previous = mLatencyMillis.get(variant.assetName);
+    mLatencyMillis.put(variant.assetName, previous == null
+        ? millis
+        : previous + LATENCY_EMA_ALPHA * (millis - previous));
+  }
+
+  /** Smoothed forward latency of {@code variant}, or null if it has not run yet. */
+  public synchronized Float getLatencyMillis(ModelManifest.Variant variant) {
+    return mLatencyMillis.get(variant.assetName);
+  }
+
+  public synchronized ModelManifest.Variant getCurrent() {
+    return mCurrent;
+  }
+
+  /**
+   * Picks the variant to run next and makes it current.
+   *
+   * @param freeMemoryBytes memory available besides what the current variant already holds
+   */
+  public synchronized ModelManifest.Variant select(long freeMemoryBytes) {
+    final List<ModelManifest.Variant> eligible = eligible(freeMemoryBytes);
+    if (eligible.isEmpty()) {
+      // Nothing fits the budget: degrade to the smallest variant rather than fail.
+      mCurrent = smallest();
+      return mCurrent;
+    }
+
+    ModelManifest.Variant unmeasured = null;
+    ModelManifest.Variant fastest = null;
+    for (ModelManifest.Variant variant : eligible) {
+      final Float latency = mLatencyMillis.get(variant.assetName);
+      if (latency == null) {
+        if (unmeasured == null || variant.accuracy > unmeasured.accuracy) {
+          unmeasured = variant;
+        }
+      } else if (fastest == null || latency < mLatencyMillis.get(fastest.assetName)) {
+        fastest = variant;
+      }
+    }
+    if (unmeasured != null) {
+      mCurrent = unmeasured;
+      return mCurrent;
+    }
+
+    final Float currentLatency = mCurrent != null ? mLatencyMillis.get(mCurrent.assetName) : null;
+    if (currentLatency != null && eligible.contains(mCurrent)
+        && mLatencyMillis.get(fastest.assetName) > currentLatency * SWITCH_LATENCY_RATIO) {
+      return mCurrent;
+    }
+    mCurrent = fastest;
+    return mCurrent;
+  }
+
+  private List<ModelManifest.Variant> eligible(long freeMemoryBytes) {
+    float bestAccuracy = Float.NEGATIVE_INFINITY;
+    for (ModelManifest.Variant variant : mVariants) {
+      bestAccuracy = Math.max(bestAccuracy, variant.accuracy);
+    }
+    // Switching releases the current variant first, so its memory is available to the next one.
+    final long memoryLimit = freeMemoryBytes + (mCurrent != null ? mCurrent.memoryBytes : 0);
+    final List<ModelManifest.Variant> eligible = new ArrayList<>();
+    for (ModelManifest.Variant variant : mVariants) {
+      if (variant.accuracy >= bestAccuracy - mAccuracyBudget
+          && (variant == mCurrent || variant.memoryBytes <= memoryLimit)) {
+        eligible.add(variant);
+      }
+    }
+    return eligible;
+  }
+
+  private ModelManifest.Variant smallest() {
+    ModelManifest.Variant smallest = mVariants.get(0);
+    for (ModelManifest.Variant variant : mVariants) {
+      if (variant.memoryBytes < smallest.memoryBytes) {
+        smallest = variant;
+      }
+    }
+    return smallest;
+  }
+}
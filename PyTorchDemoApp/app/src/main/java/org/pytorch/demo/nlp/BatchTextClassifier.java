@@ -0,0 +1,241 @@
+package org.pytorch.demo.nlp;
+
+import android.os.Handler;
+import android.util.Log;
+
+import org.pytorch.IValue;
+import org.pytorch.Module;
+import org.pytorch.Tensor;
+import org.pytorch.demo.Constants;
+import org.pytorch.demo.Utf8TensorEncoder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import androidx.annotation.WorkerThread;
+
+/**
+ * Scores many texts with a byte-level text classifier using {@code [B, L]} forwards.
+ *
+ * <p>{@link #classify} scores a list at once. {@link #submit} queues single texts and flushes them
+ * as one batch when {@code maxBatchSize} is reached or the oldest one has waited
+ * {@code maxLatencyMs}. All forwards run on the given single-threaded executor, e.g. an
+ * {@link org.pytorch.demo.InferenceExecutor} lane; {@code timer} only times the latency flush and
+ * hands it to that executor.
+ *
+ * <p>A model traced with batch size 1 may reject {@code [B, L]} input or collapse the batch in its
+ * output. The first batch whose output is not {@code [B, C]} switches the classifier to one
+ * forward per text, from the next batch on.
+ */
+public class BatchTextClassifier {
+
+  public interface Callback {
+    void onScores(float[] scores);
+
+    void onError(Exception e);
+  }
+
+  private final Module mModule;
+  private final Executor mExecutor;
+  private final Handler mTimer;
+  private final int mMaxBatchSize;
+  private final int mMaxPadBytes;
+  private final long mMaxLatencyMs;
+
+  private final List<String> mPendingTexts = new ArrayList<>();
+  private final List<Callback> mPendingCallbacks = new ArrayList<>();
+  private final Runnable mLatencyFlush = this::onLatencyFlush;
+  // Held by a running flush, so that close() can wait for it.
+  private final Object mForwardLock = new Object();
+  // Guarded by mPendingTexts.
+  private boolean mLatencyFlushPosted;
+  private boolean mClosed;
+  private volatile boolean mBatchForwardSupported = true;
+
+  /**
+   * @param maxPadBytes largest length difference allowed inside a batch; keep 0 unless the model
+   *     ignores trailing zero bytes
+   */
+  public BatchTextClassifier(Module module, Executor executor, Handler timer,
+                             int maxBatchSize, int maxPadBytes, long maxLatencyMs) {
+    mModule = module;
+    mExecutor = executor;
+    mTimer = timer;
+    mMaxBatchSize = maxBatchSize;
+    mMaxPadBytes = maxPadBytes;
+    mMaxLatencyMs = maxLatencyMs;
+  }
+
+  /** Returns the scores of every text in input order; empty texts get {@code null}. */
+  @WorkerThread
+  public float[][] classify(List<String> texts) {
+    final float[][] scores = new float[texts.size()][];
+    final List<byte[]> inputs = new ArrayList<>(texts.size());
+    final List<Integer> inputPositions = new ArrayList<>(texts.size());
+    for (int i = 0; i < texts.size(); i++) {
+      final byte[] bytes = Utf8TensorEncoder.encodeToBytes(texts.get(i));
+      if (bytes.length > 0) {
+        inputs.add(bytes);
+        inputPositions.add(i);
+      }
+    }
+
+    final int maxBatchSize = mBatchForwardSupported ? mMaxBatchSize : 1;
+    for (TextBatchPlanner.Batch batch : TextBatchPlanner.plan(inputs, maxBatchSize, mMaxPadBytes)) {
+      // Checked per batch: a failed batch switches the rest of this plan to single forwards too.
+      float[][] batchScores = batch.size() > 1 && mBatchForwardSupported
+          ? forwardBatch(batch, inputs)
+          : null;
+      if (batchScores == null) {
+        batchScores = new float[batch.size()][];
+        for (int row = 0; row < batch.size(); row++) {
+          batchScores[row] = forward(texts.get(inputPositions.get(batch.inputIndices[row])));
+        }
+      }
+      for (int row = 0; row < batch.size(); row++) {
+        scores[inputPositions.get(batch.inputIndices[row])] = batchScores[row];
+      }
+    }
+    return scores;
+  }
+
+  /** Scores of each batch row, or null if the model does not handle this batch size. */
+  @WorkerThread
+  private float[][] forwardBatch(TextBatchPlanner.Batch batch, List<byte[]> inputs) {
+    final Tensor inputTensor = Tensor.fromBlobUnsigned(
+        batch.pack(inputs, (byte) 0), new long[]{batch.size(), batch.length});
+    final Tensor output;
+    try {
+      output = mModule.forward(IValue.from(inputTensor)).toTensor();
+    } catch (RuntimeException e) {
+      Log.w(Constants.TAG, "Batched text forward failed, scoring texts one by one", e);
+      mBatchForwardSupported = false;
+      return null;
+    }
+    final long[] shape = output.shape();
+    if (shape.length != 2 || shape[0] != batch.size()) {
+      Log.w(Constants.TAG, "Batched text forward returned shape " + Arrays.toString(shape)
+          + " for " + batch.size() + " texts, scoring texts one by one");
+      mBatchForwardSupported = false;
+      return null;
+    }
+    final float[] data = output.getDataAsFloatArray();
+    final int classes = (int) shape[1];
+    final float[][] scores = new float[batch.size()][];
+    for (int row = 0; row < batch.size(); row++) {
+      scores[row] = Arrays.copyOfRange(data, row * classes, (row + 1) * classes);
+    }
+    return scores;
+  }
+
+  @WorkerThread
+  private float[] forward(String text) {
+    final Tensor inputTensor = Utf8TensorEncoder.encode(text);
+    return mModule.forward(IValue.from(inputTensor)).toTensor().getDataAsFloatArray();
+  }
+
+  /**
+   * Queues {@code text}; {@code callback} is invoked on the executor thread with the scores, or
+   * with the error if the batch failed or the classifier was closed first.
+   */
+  public void submit(String text, Callback callback) {
+    synchronized (mPendingTexts) {
+      if (mClosed) {
+        callback.onError(new CancellationException("BatchTextClassifier is closed"));
+        return;
+      }
+      mPendingTexts.add(text);
+      mPendingCallbacks.add(callback);
+      if (mPendingTexts.size() >= mMaxBatchSize) {
+        cancelLatencyFlush();
+        dispatchFlush();
+      } else if (!mLatencyFlushPosted) {
+        postLatencyFlush();
+      }
+    }
+  }
+
+  private void onLatencyFlush() {
+    synchronized (mPendingTexts) {
+      mLatencyFlushPosted = false;
+      dispatchFlush();
+    }
+  }
+
+  /** Hands a flush to the executor; if it is full, tries again after another latency period. */
+  private void dispatchFlush() {
+    try {
+      mExecutor.execute(this::flush);
+    } catch (RejectedExecutionException e) {
+      if (!mClosed && !mLatencyFlushPosted) {
+        postLatencyFlush();
+      }
+    }
+  }
+
+  private void postLatencyFlush() {
+    mLatencyFlushPosted = true;
+    mTimer.postDelayed(mLatencyFlush, mMaxLatencyMs);
+  }
+
+  private void cancelLatencyFlush() {
+    if (mLatencyFlushPosted) {
+      mTimer.removeCallbacks(mLatencyFlush);
+      mLatencyFlushPosted = false;
+    }
+  }
+
+  @WorkerThread
+  private void flush() {
+    synchronized (mForwardLock) {
+      final List<String> texts;
+      final List<Callback> callbacks;
+      synchronized (mPendingTexts) {
+        if (mClosed || mPendingTexts.isEmpty()) {
+          return;
+        }
+        texts = new ArrayList<>(mPendingTexts);
+        callbacks = new ArrayList<>(mPendingCallbacks);
+        mPendingTexts.clear();
+        mPendingCallbacks.clear();
+      }
+      final float[][] scores;
+      try {
+        scores = classify(texts);
+      } catch (RuntimeException e) {
+        for (Callback callback : callbacks) {
+          callback.onError(e);
+        }
+        return;
+      }
+      for (int i = 0; i < callbacks.size(); i++) {
+        callbacks.get(i).onScores(scores[i]);
+      }
+    }
+  }
+
+  /**
+   * Fails the texts still waiting for a batch and rejects new ones. Waits for a batch that is
+   * already running, so the module can be destroyed as soon as this returns, from any thread.
+   */
+  public void close() {
+    final List<Callback> callbacks;
+    synchronized (mPendingTexts) {
+      mClosed = true;
+      cancelLatencyFlush();
+      callbacks = new ArrayList<>(mPendingCallbacks);
+      mPendingTexts.clear();
+      mPendingCallbacks.clear();
+    }
+    synchronized (mForwardLock) {
+      // Nothing to do; a flush that starts later sees mClosed and returns.
+    }
+    for (Callback callback : callbacks) {
+      callback.onError(new CancellationException("BatchTextClassifier is closed"));
+    }
+  }
+}
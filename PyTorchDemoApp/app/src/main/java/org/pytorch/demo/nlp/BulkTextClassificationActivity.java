@@ -0,0 +1,200 @@
+package org.pytorch.demo.nlp;
+
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.TextView;
+
+import org.pytorch.Module;
+import org.pytorch.demo.BaseModuleActivity;
+import org.pytorch.demo.Constants;
+import org.pytorch.demo.InferenceExecutor;
+import org.pytorch.demo.ModuleLoader;
+import org.pytorch.demo.R;
+import org.pytorch.demo.TopK;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+/**
+ * Scores every line of the input as a separate comment through {@link BatchTextClassifier}, which
+ * groups the lines into batched forwards, and lists the top topic of each.
+ */
+public class BulkTextClassificationActivity extends BaseModuleActivity {
+
+  private static final int MAX_BATCH_SIZE = 16;
+  // The Reddit model has no padding mask, so only texts of equal byte length share a batch.
+  private static final int MAX_PAD_BYTES = 0;
+  private static final long MAX_LATENCY_MS = 20;
+  private static final int MAX_TEXT_CHARS = 40;
+
+  private EditText mEditText;
+  private Button mClassifyButton;
+  private TextView mOutputText;
+
+  // Loaded on the batch lane; the batch lane or, if it is full, onDestroy releases them.
+  private final Object mModuleLock = new Object();
+  // Guarded by mModuleLock.
+  private boolean mDestroyed;
+  private Module mModule;
+  private BatchTextClassifier mClassifier;
+  // Only touched on the batch lane.
+  private String[] mModuleClasses;
+
+  @Override
+  protected void onCreate(@Nullable Bundle savedInstanceState) {
+    super.onCreate(savedInstanceState);
+    setContentView(R.layout.activity_bulk_text_classification);
+    mEditText = findViewById(R.id.bulk_text_classification_edit_text);
+    mOutputText = findViewById(R.id.bulk_text_classification_output_text);
+    mClassifyButton = findViewById(R.id.bulk_text_classification_button);
+    mClassifyButton.setOnClickListener(v -> classifyLines());
+  }
+
+  private void classifyLines() {
+    final List<String> texts = new ArrayList<>();
+    for (String line : mEditText.getText().toString().split("\n")) {
+      if (!line.trim().isEmpty()) {
+        texts.add(line.trim());
+      }
+    }
+    if (texts.isEmpty()) {
+      return;
+    }
+    mClassifyButton.setEnabled(false);
+    mOutputText.setText(String.format(Locale.US, "Classifying %d texts...\n", texts.size()));
+    final boolean queued = runInBackground(() -> {
+      final BatchTextClassifier classifier = ensureClassifier();
+      if (classifier == null) {
+        runOnUiThread(() -> {
+          mOutputText.append("Error loading model\n");
+          mClassifyButton.setEnabled(true);
+        });
+        return;
+      }
+      submitAll(classifier, texts);
+    });
+    if (!queued) {
+      mClassifyButton.setEnabled(true);
+    }
+  }
+
+  @Override
+  protected InferenceExecutor.Lane getInferenceLane() {
+    return InferenceExecutor.Lane.BATCH;
+  }
+
+  /** Loads the model on first use; null if that failed or the screen is gone. */
+  @WorkerThread
+  @Nullable
+  private BatchTextClassifier ensureClassifier() {
+    synchronized (mModuleLock) {
+      if (mClassifier != null || mDestroyed) {
+        return mClassifier;
+      }
+    }
+    final String assetName = TextClassificationActivity.DEFAULT_MODULE_ASSET_NAME;
+    final Module module;
+    try {
+      module = ModuleLoader.load(this, assetName);
+    } catch (Exception e) {
+      Log.e(Constants.TAG, "Error loading module " + assetName, e);
+      return null;
+    }
+    mModuleClasses = TextClassificationActivity.loadModuleClasses(this, module, assetName);
+    final BatchTextClassifier classifier = new BatchTextClassifier(module,
+        InferenceExecutor.get().executor(getInferenceLane()), mUIHandler,
+        MAX_BATCH_SIZE, MAX_PAD_BYTES, MAX_LATENCY_MS);
+    synchronized (mModuleLock) {
+      if (mDestroyed) {
+        module.destroy();
+        return null;
+      }
+      mModule = module;
+      mClassifier = classifier;
+    }
+    return classifier;
+  }
+
+  @WorkerThread
+  private void submitAll(BatchTextClassifier classifier, List<String> texts) {
+    final long startTime = SystemClock.elapsedRealtimeNanos();
+    final String[] lines = new String[texts.size()];
+    final AtomicInteger remaining = new AtomicInteger(texts.size());
+    for (int i = 0; i < texts.size(); i++) {
+      final int index = i;
+      final String text = texts.get(i);
+      classifier.submit(text, new BatchTextClassifier.Callback() {
+        @Override
+        public void onScores(float[] scores) {
+          final int top = TopK.topK(scores, 1)[0];
+          onLine(String.format(Locale.US, "%-16s %6.2f  %s",
+              mModuleClasses[top], scores[top], abbreviate(text)));
+        }
+
+        @Override
+        public void onError(Exception e) {
+          Log.e(Constants.TAG, "Error classifying text", e);
+          onLine("failed: " + e.getMessage() + "  " + abbreviate(text));
+        }
+
+        private void onLine(String line) {
+          lines[index] = line;
+          if (remaining.decrementAndGet() == 0) {
+            final long durationNanos = SystemClock.elapsedRealtimeNanos() - startTime;
+            runOnUiThread(() -> showResults(lines, durationNanos));
+          }
+        }
+      });
+    }
+  }
+
+  private void showResults(String[] lines, long durationNanos) {
+    final StringBuilder sb = new StringBuilder();
+    for (String line : lines) {
+      sb.append(line).append('\n');
+    }
+    sb.append(String.format(Locale.US, "%d texts in %.1fms\n", lines.length, durationNanos / 1e6));
+    mOutputText.setText(sb);
+    mClassifyButton.setEnabled(true);
+  }
+
+  private static String abbreviate(String text) {
+    return text.length() <= MAX_TEXT_CHARS ? text : text.substring(0, MAX_TEXT_CHARS - 3) + "...";
+  }
+
+  @Override
+  protected void onDestroy() {
+    super.onDestroy();
+    // Runs after the work already queued; pending texts fail instead of reaching a freed module.
+    if (!InferenceExecutor.get().tryExecute(getInferenceLane(), this::release)) {
+      // close() waits for a running batch, so releasing here is safe too.
+      release();
+    }
+  }
+
+  private void release() {
+    final BatchTextClassifier classifier;
+    final Module module;
+    synchronized (mModuleLock) {
+      mDestroyed = true;
+      classifier = mClassifier;
+      module = mModule;
+      mClassifier = null;
+      mModule = null;
+    }
+    if (classifier != null) {
+      classifier.close();
+    }
+    if (module != null) {
+      module.destroy();
+    }
+  }
+}
@@ -17,6 +17,8 @@ public class NLPListActivity extends AbstractListActivity {
       final Intent intent = new Intent(NLPListActivity.this, TextClassificationActivity.class);
       startActivity(intent);
     });
+    findViewById(R.id.nlp_card_bulk_click_area).setOnClickListener(v ->
+        startActivity(new Intent(NLPListActivity.this, BulkTextClassificationActivity.class)));
   }
 
   @Override
@@ -0,0 +1,91 @@
+package org.pytorch.demo.nlp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Groups byte-encoded inputs of different lengths into padded {@code [B, L]} batches.
+ *
+ * <p>Inputs are sorted by length and cut greedily into batches of at most {@code maxBatchSize}
+ * whose longest and shortest members differ by at most {@code maxPadBytes}. With
+ * {@code maxPadBytes == 0} only inputs of identical length share a batch, so the model sees
+ * exactly the same bytes as with one forward per input.
+ */
+public class TextBatchPlanner {
+
+  public static class Batch {
+    /** Positions of the batch rows in the caller's input list. */
+    public final int[] inputIndices;
+    /** Row length L; shorter rows are right-padded. */
+    public final int length;
+
+    Batch(int[] inputIndices, int length) {
+      this.inputIndices = inputIndices;
+      this.length = length;
+    }
+
+    public int size() {
+      return inputIndices.length;
+    }
+
+    /** Row-major {@code [size(), length]} bytes, padded with {@code padByte}. */
+    public byte[] pack(List<byte[]> inputs, byte padByte) {
+      final byte[] packed = new byte[inputIndices.length * length];
+      if (padByte != 0) {
+        Arrays.fill(packed, padByte);
+      }
+      for (int row = 0; row < inputIndices.length; row++) {
+        final byte[] input = inputs.get(inputIndices[row]);
+        System.arraycopy(input, 0, packed, row * length, input.length);
+      }
+      return packed;
+    }
+  }
+
+  public static List<Batch> plan(final List<byte[]> inputs, int maxBatchSize, int maxPadBytes) {
+    if (maxBatchSize < 1) {
+      throw new IllegalArgumentException("maxBatchSize must be positive: " + maxBatchSize);
+    }
+    final Integer[] order = new Integer[inputs.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    // Stable on index for equal lengths, so the plan is deterministic.
+    Arrays.sort(order, (a, b) -> {
+      final int byLength = Integer.compare(inputs.get(a).length, inputs.get(b).length);
+      return byLength != 0 ? byLength : Integer.compare(a, b);
+    });
+
+    final List<Batch> batches = new ArrayList<>();
+    int start = 0;
+    while (start < order.length) {
+      final int minLength = inputs.get(order[start]).length;
+      int end = start + 1;
+      while (end < order.length
+          && end - start < maxBatchSize
+          && inputs.get(order[end]).length - minLength <= maxPadBytes) {
+        end++;
+      }
+      final int[] indices = new int[end - start];
+      for (int i = 0; i < indices.length; i++) {
+        indices[i] = order[start + i];
+      }
+      batches.add(new Batch(indices, inputs.get(order[end - 1]).length));
+      start = end;
+    }
+    return Collections.unmodifiableList(batches);
+  }
+
+  /** Total padding bytes of a plan, i.e. the work wasted compared to unpadded forwards. */
+  public static long paddingBytes(List<Batch> batches, List<byte[]> inputs) {
+    long padding = 0;
+    for (Batch batch : batches) {
+      for (int index : batch.inputIndices) {
+        padding += batch.length - inputs.get(index).length;
+      }
+    }
+    return padding;
+  }
+}
@@ -1,9 +1,11 @@
 package org.pytorch.demo.nlp;
 
+import android.content.Context;
 import android.os.Bundle;
 import android.text.Editable;
 import android.text.TextUtils;
 import android.text.TextWatcher;
+import android.util.Log;
 import android.view.View;
 import android.widget.EditText;
 
@@ -11,13 +13,18 @@ import org.pytorch.IValue;
 import org.pytorch.Module;
 import org.pytorch.Tensor;
 import org.pytorch.demo.BaseModuleActivity;
+import org.pytorch.demo.Constants;
+import org.pytorch.demo.InferenceExecutor;
 import org.pytorch.demo.InfoViewFactory;
+import org.pytorch.demo.ModelMetadataCache;
+import org.pytorch.demo.ModuleLoader;
 import org.pytorch.demo.R;
+import org.pytorch.demo.Utf8TensorEncoder;
 import org.pytorch.demo.Utils;
 import org.pytorch.demo.vision.view.ResultRowView;
 
 import java.io.File;
-import java.nio.charset.Charset;
+import java.io.IOException;
 import java.util.Locale;
 
 import androidx.annotation.Nullable;
@@ -27,19 +34,27 @@ public class TextClassificationActivity extends BaseModuleActivity {
 
   public static final String INTENT_MODULE_ASSET_NAME = "INTENT_MODULE_ASSET_NAME";
 
-  private static final long EDIT_TEXT_STOP_DELAY = 600l;
+  static final String DEFAULT_MODULE_ASSET_NAME = "model-reddit16-f140225004_2.pt1";
+
+  private static final int RESULT_CACHE_CAPACITY = 64;
+  private static final Object EDIT_TEXT_STOP_TOKEN = new Object();
   private static final int TOP_K = 3;
+  private static final String METADATA_FILE_SUFFIX = ".metadata";
+  private static final String MODEL_INPUT_SPEC = "uint8[1,N] utf-8";
   private static final String SCORES_FORMAT = "%.2f";
 
   private EditText mEditText;
   private View mResultContent;
   private ResultRowView[] mResultRowViews = new ResultRowView[3];
 
+  // Used by one task at a time on the inference lane; mModuleLock lets onDestroy release it inline.
   private Module mModule;
+  private final Object mModuleLock = new Object();
   private String mModuleAssetName;
 
-  private String mLastBgHandledText;
   private String[] mModuleClasses;
+  private final TextInferenceScheduler<AnalysisResult> mScheduler =
+      new TextInferenceScheduler<>(RESULT_CACHE_CAPACITY);
 
   private static class AnalysisResult {
     private final String[] topKClassNames;
@@ -51,26 +66,30 @@ public class TextClassificationActivity extends BaseModuleActivity {
     }
   }
 
-  private Runnable mOnEditTextStopRunnable = () -> {
-    final String text = mEditText.getText().toString();
-    mBackgroundHandler.post(() -> {
-      if (TextUtils.equals(text, mLastBgHandledText)) {
+  private void onEditTextStop(final long generation, final String text) {
+    if (!mScheduler.isCurrent(generation)) {
+      return;
+    }
+    runInBackground(() -> {
+      // A newer edit arrived while this was queued.
+      if (!mScheduler.isCurrent(generation)) {
         return;
       }
 
-      if (TextUtils.isEmpty(text)) {
-        runOnUiThread(() -> applyUIEmptyTextState());
-        mLastBgHandledText = null;
-        return;
+      final AnalysisResult result;
+      synchronized (mModuleLock) {
+        result = analyzeText(text);
       }
-
-      final AnalysisResult result = analyzeText(text);
       if (result != null) {
-        runOnUiThread(() -> applyUIAnalysisResult(result));
-        mLastBgHandledText = text;
+        mScheduler.putCached(text, result);
+        runOnUiThread(() -> {
+          if (mScheduler.isCurrent(generation)) {
+            applyUIAnalysisResult(result);
+          }
+        });
       }
     });
-  };
+  }
 
   @Override
   protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -99,7 +118,7 @@ public class TextClassificationActivity extends BaseModuleActivity {
     final String moduleAssetNameFromIntent = getIntent().getStringExtra(INTENT_MODULE_ASSET_NAME);
     mModuleAssetName = !TextUtils.isEmpty(moduleAssetNameFromIntent)
         ? moduleAssetNameFromIntent
-        : "model-reddit16-f140225004_2.pt1";
+        : DEFAULT_MODULE_ASSET_NAME;
 
     return mModuleAssetName;
   }
@@ -108,27 +127,26 @@ public class TextClassificationActivity extends BaseModuleActivity {
   @Nullable
   private AnalysisResult analyzeText(final String text) {
     if (mModule == null) {
-      final String moduleFileAbsoluteFilePath = new File(
-          Utils.assetFilePath(this, getModuleAssetName())).getAbsolutePath();
-      mModule = Module.load(moduleFileAbsoluteFilePath);
-
-      final IValue getClassesOutput = mModule.runMethod("get_classes");
-
-      final IValue[] classesListIValue = getClassesOutput.toList();
-      final String[] moduleClasses = new String[classesListIValue.length];
-
-      int i = 0;
-      for (IValue iv : classesListIValue) {
-        moduleClasses[i++] = iv.toStr();
+      try {
+        // Released right away if the screen was destroyed while the model was loading.
+        mModule = mScheduler.keepUnlessShutdown(
+            ModuleLoader.load(this, getModuleAssetName()), Module::destroy);
+      } catch (IOException e) {
+        Log.e(Constants.TAG, "Error loading module " + getModuleAssetName(), e);
+        return null;
       }
-
-      mModuleClasses = moduleClasses;
+      if (mModule == null) {
+        return null;
+      }
+    }
+    if (mModuleClasses == null) {
+      mModuleClasses = loadModuleClasses(this, mModule, getModuleAssetName());
     }
-    byte[] bytes = text.getBytes(Charset.forName("UTF-8"));
-    final long[] shape = new long[]{1, bytes.length};
-    final Tensor inputTensor = Tensor.fromBlobUnsigned(bytes, shape);
+    final Tensor inputTensor = Utf8TensorEncoder.encode(text);
 
+    final long forwardStartTime = System.nanoTime();
     final Tensor outputTensor = mModule.forward(IValue.from(inputTensor)).toTensor();
+    mScheduler.recordLatencyNanos(System.nanoTime() - forwardStartTime);
     final float[] scores = outputTensor.getDataAsFloatArray();
     final int[] ixs = Utils.topK(scores, TOP_K);
 
@@ -143,6 +161,35 @@ public class TextClassificationActivity extends BaseModuleActivity {
     return new AnalysisResult(topKClassNames, topKScores);
   }
 
+  /**
+   * Reads the class names from the metadata sidecar, falling back to the model's
+   * {@code get_classes} method on a miss and caching the result for the next launch.
+   */
+  @WorkerThread
+  static String[] loadModuleClasses(Context context, Module module, String assetName) {
+    final String modelKey = ModuleLoader.modelKey(context, assetName);
+    final File metadataFile = new File(context.getFilesDir(), assetName + METADATA_FILE_SUFFIX);
+    final ModelMetadataCache.Metadata cached = ModelMetadataCache.read(metadataFile, modelKey);
+    if (cached != null) {
+      return cached.classNames;
+    }
+
+    final IValue[] classesListIValue = module.runMethod("get_classes").toList();
+    final String[] moduleClasses = new String[classesListIValue.length];
+    int i = 0;
+    for (IValue iv : classesListIValue) {
+      moduleClasses[i++] = iv.toStr();
+    }
+
+    try {
+      ModelMetadataCache.write(metadataFile, modelKey,
+          new ModelMetadataCache.Metadata(moduleClasses, MODEL_INPUT_SPEC));
+    } catch (IOException e) {
+      Log.w(Constants.TAG, "Error writing model metadata", e);
+    }
+    return moduleClasses;
+  }
+
   private void applyUIAnalysisResult(AnalysisResult result) {
     for (int i = 0; i < TOP_K; i++) {
       setUiResultRowView(
@@ -172,8 +219,21 @@ public class TextClassificationActivity extends BaseModuleActivity {
   @Override
   protected void onDestroy() {
     super.onDestroy();
-    if (mModule != null) {
-      mModule.destroy();
+    mUIHandler.removeCallbacksAndMessages(EDIT_TEXT_STOP_TOKEN);
+    mScheduler.shutdown();
+    // Runs after the work queued before it, which is all dropped by shutdown(). If the lane is
+    // full, release here instead; the lock waits for a forward that is still running.
+    if (!InferenceExecutor.get().tryExecute(getInferenceLane(), this::releaseModule)) {
+      releaseModule();
+    }
+  }
+
+  private void releaseModule() {
+    synchronized (mModuleLock) {
+      if (mModule != null) {
+        mModule.destroy();
+        mModule = null;
+      }
     }
   }
 
@@ -186,8 +246,22 @@ public class TextClassificationActivity extends BaseModuleActivity {
 
     @Override
     public void afterTextChanged(Editable s) {
-      mUIHandler.removeCallbacks(mOnEditTextStopRunnable);
-      mUIHandler.postDelayed(mOnEditTextStopRunnable, EDIT_TEXT_STOP_DELAY);
+      mUIHandler.removeCallbacksAndMessages(EDIT_TEXT_STOP_TOKEN);
+      final long generation = mScheduler.newGeneration();
+      final String text = s.toString();
+      if (TextUtils.isEmpty(text)) {
+        applyUIEmptyTextState();
+        return;
+      }
+
+      final AnalysisResult cached = mScheduler.getCached(text);
+      if (cached != null) {
+        applyUIAnalysisResult(cached);
+        return;
+      }
+
+      mUIHandler.postDelayed(() -> onEditTextStop(generation, text),
+          EDIT_TEXT_STOP_TOKEN, mScheduler.debounceMillis());
     }
   }
 
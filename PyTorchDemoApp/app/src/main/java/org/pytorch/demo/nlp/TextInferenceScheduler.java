@@ -0,0 +1,101 @@
+package org.pytorch.demo.nlp;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Bookkeeping for latest-wins inference on text input.
+ *
+ * <p>Every edit takes a new generation; work tagged with an older generation is dropped before
+ * it runs and its result is not delivered. Results are kept in an LRU cache keyed by text, so
+ * returning to an earlier text (e.g. with backspace) needs no forward. The debounce delay follows
+ * an exponential moving average of the measured forward latency.
+ *
+ * <p>After {@link #shutdown()} no generation is current any more, and resources that background
+ * work hands over through {@link #keepUnlessShutdown} are released instead of kept.
+ */
+public class TextInferenceScheduler<V> {
+
+  private static final long MIN_DEBOUNCE_MS = 50;
+  private static final long MAX_DEBOUNCE_MS = 600;
+  private static final float DEBOUNCE_LATENCY_FACTOR = 2.0f;
+  private static final float LATENCY_EMA_ALPHA = 0.2f;
+
+  private final AtomicLong mGeneration = new AtomicLong();
+  private final Map<String, V> mCache;
+  private volatile float mLatencyEmaMs = -1;
+  private boolean mShutdown;
+
+  public TextInferenceScheduler(final int cacheCapacity) {
+    mCache = new LinkedHashMap<String, V>(cacheCapacity, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+        return size() > cacheCapacity;
+      }
+    };
+  }
+
+  /** Invalidates all pending work and returns the generation for the new input. */
+  public long newGeneration() {
+    return mGeneration.incrementAndGet();
+  }
+
+  public boolean isCurrent(long generation) {
+    return mGeneration.get() == generation;
+  }
+
+  /** Drops all pending work, for when the screen goes away. */
+  public synchronized void shutdown() {
+    mShutdown = true;
+    mGeneration.incrementAndGet();
+  }
+
+  public synchronized boolean isShutdown() {
+    return mShutdown;
+  }
+
+  /**
+   * Hands over {@code resource}, e.g. a model loaded by background work. Returns it, or passes it
+   * to {@code release} and returns null if {@link #shutdown()} was called in the meantime.
+   */
+  public synchronized <R> R keepUnlessShutdown(R resource, Consumer<R> release) {
+    if (mShutdown) {
+      release.accept(resource);
+      return null;
+    }
+    return resource;
+  }
+
+  public V getCached(String text) {
+    synchronized (mCache) {
+      return mCache.get(text);
+    }
+  }
+
+  public void putCached(String text, V value) {
+    synchronized (mCache) {
+      mCache.put(text, value);
+    }
+  }
+
+  public void recordLatencyNanos(long nanos) {
+    final float ms = nanos / 1e6f;
+    final float ema = mLatencyEmaMs;
+    mLatencyEmaMs = ema < 0 ? ms : ema + LATENCY_EMA_ALPHA * (ms - ema);
+  }
+
+  /**
+   * Delay before running inference after an edit: a multiple of the typical forward latency,
+   * so fast models react quickly and slow ones are not flooded. The maximum until measured.
+   */
+  public long debounceMillis() {
+    final float ema = mLatencyEmaMs;
+    if (ema < 0) {
+      return MAX_DEBOUNCE_MS;
+    }
+    final long debounce = (long) (ema * DEBOUNCE_LATENCY_FACTOR);
+    return Math.max(MIN_DEBOUNCE_MS, Math.min(MAX_DEBOUNCE_MS, debounce));
+  }
+}
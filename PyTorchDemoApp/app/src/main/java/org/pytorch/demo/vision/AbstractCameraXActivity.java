@@ -3,22 +3,28 @@ package org.pytorch.demo.vision;
 import android.Manifest;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.HandlerThread;
+import android.os.Process;
 import android.os.SystemClock;
+import android.util.Log;
 import android.util.Size;
 import android.widget.Toast;
 
 import org.pytorch.demo.BaseModuleActivity;
+import org.pytorch.demo.Constants;
+import org.pytorch.demo.InferenceExecutor;
 import org.pytorch.demo.StatusBarUtils;
+import org.pytorch.demo.Tracer;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.UiThread;
 import androidx.annotation.WorkerThread;
+import androidx.camera.core.CameraInfoUnavailableException;
 import androidx.camera.core.CameraSelector;
 import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.ImageProxy;
 import androidx.camera.core.Preview;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
 import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.camera.view.PreviewView;
 import androidx.core.app.ActivityCompat;
@@ -26,28 +32,39 @@ import androidx.core.content.ContextCompat;
 
 import com.google.common.util.concurrent.ListenableFuture;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 public abstract class AbstractCameraXActivity<R> extends BaseModuleActivity {
     private static final int REQUEST_CODE_CAMERA_PERMISSION = 200;
     private static final String[] PERMISSIONS = {Manifest.permission.CAMERA};
+    private static final String TRACE_FILE_NAME = "trace.json";
+    private static final long MAX_ACQUIRE_NANOS = 1000000000L;
+    private static final String KEY_LENS_FACING = "lens_facing";
 
     private long mLastAnalysisResultTime;
-    private Executor mBackgroundExecutor;
+    private volatile int mLensFacing = CameraSelector.LENS_FACING_BACK;
+    private ProcessCameraProvider mCameraProvider;
+    private PreviewView mPreviewView;
 
     protected abstract int getContentViewLayoutId();
 
     protected abstract PreviewView getCameraPreviewView();
 
+    /** Model input size and the converters {@link #analyzeImage} has, for choosing the analysis stream. */
+    protected abstract CameraConfigNegotiator getCameraConfigNegotiator();
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         StatusBarUtils.setStatusBarOverlay(getWindow(), true);
         setContentView(getContentViewLayoutId());
-
-        startBackgroundThread();
+        if (savedInstanceState != null) {
+            mLensFacing = savedInstanceState.getInt(KEY_LENS_FACING, mLensFacing);
+        }
 
         if (ActivityCompat.checkSelfPermission(this, Manifest.permission.CAMERA)
                 != PackageManager.PERMISSION_GRANTED) {
@@ -60,6 +77,18 @@ public abstract class AbstractCameraXActivity<R> extends BaseModuleActivity {
         }
     }
 
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putInt(KEY_LENS_FACING, mLensFacing);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        writeTrace();
+    }
+
     @Override
     public void onRequestPermissionsResult(
             int requestCode, String[] permissions, int[] grantResults) {
@@ -77,51 +106,157 @@ public abstract class AbstractCameraXActivity<R> extends BaseModuleActivity {
         }
     }
 
-    protected void startBackgroundThread() {
-        HandlerThread handlerThread = new HandlerThread("CameraBackground");
-        handlerThread.start();
-        mBackgroundExecutor = Executors.newSingleThreadExecutor();
+    @Override
+    protected InferenceExecutor.Lane getInferenceLane() {
+        return InferenceExecutor.Lane.REALTIME;
     }
 
     private void setupCameraX() {
-        ListenableFuture<ProcessCameraProvider> cameraProviderFuture = ProcessCameraProvider.getInstance(this);
+        mPreviewView = getCameraPreviewView();
+        mPreviewView.setOnLongClickListener(v -> {
+            switchLens();
+            return true;
+        });
+        final ListenableFuture<ProcessCameraProvider> cameraProviderFuture = ProcessCameraProvider.getInstance(this);
 
         cameraProviderFuture.addListener(() -> {
             try {
-                ProcessCameraProvider cameraProvider = cameraProviderFuture.get();
+                mCameraProvider = cameraProviderFuture.get();
+                bindCameraUseCases();
+            } catch (ExecutionException | InterruptedException e) {
+                // Handle any errors (including cancellation) here.
+            }
+        }, ContextCompat.getMainExecutor(this));
+    }
 
-                PreviewView previewView = getCameraPreviewView();
-                Preview preview = new Preview.Builder().build();
-                preview.setSurfaceProvider(previewView.getSurfaceProvider());
+    private void bindCameraUseCases() {
+        Preview preview = new Preview.Builder().build();
+        preview.setSurfaceProvider(mPreviewView.getSurfaceProvider());
 
-                ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
-                        .setTargetResolution(new Size(224, 224))
-                        .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
-                        .build();
+        final CameraConfigNegotiator negotiator = getCameraConfigNegotiator();
+        ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
+                .setResolutionSelector(newResolutionSelector(negotiator))
+                .setOutputImageFormat(negotiator.chooseFormat() == CameraConfigNegotiator.Format.RGBA_8888
+                        ? ImageAnalysis.OUTPUT_IMAGE_FORMAT_RGBA_8888
+                        : ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888)
+                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                .build();
 
-                imageAnalysis.setAnalyzer(mBackgroundExecutor, (ImageProxy image) -> {
-                    if (SystemClock.elapsedRealtime() - mLastAnalysisResultTime < 500) {
-                        image.close();
-                        return;
-                    }
+        // Hand each frame to the inference lane from CameraX's thread, so a frame the full lane
+        // rejects can be closed and dropped.
+        imageAnalysis.setAnalyzer(Runnable::run, image -> {
+            if (!runInBackground(() -> analyzeFrame(image))) {
+                image.close();
+            }
+        });
 
-                    final R result = analyzeImage(image, image.getImageInfo().getRotationDegrees());
-                    if (result != null) {
-                        mLastAnalysisResultTime = SystemClock.elapsedRealtime();
-                        runOnUiThread(() -> applyToUiAnalyzeImageResult(result));
+        CameraSelector cameraSelector = new CameraSelector.Builder()
+                .requireLensFacing(mLensFacing)
+                .build();
+
+        mCameraProvider.unbindAll();
+        mCameraProvider.bindToLifecycle(this, cameraSelector, preview, imageAnalysis);
+    }
+
+    @WorkerThread
+    private void analyzeFrame(ImageProxy image) {
+        if (SystemClock.elapsedRealtime() - mLastAnalysisResultTime < 500) {
+            image.close();
+            return;
+        }
+
+        traceAcquire(image);
+        final R result = analyzeImage(image, image.getImageInfo().getRotationDegrees());
+        if (result != null) {
+            mLastAnalysisResultTime = SystemClock.elapsedRealtime();
+            runOnUiThread(() -> {
+                final long renderStart = Tracer.begin();
+                applyToUiAnalyzeImageResult(result);
+                Tracer.end(Tracer.RENDER, renderStart);
+            });
+        }
+        image.close();
+    }
+
+    /** Ranks the supported analysis sizes with {@code negotiator}, smallest covering size first. */
+    private static ResolutionSelector newResolutionSelector(CameraConfigNegotiator negotiator) {
+        return new ResolutionSelector.Builder()
+                .setResolutionFilter((supportedSizes, rotationDegrees) -> {
+                    final List<CameraConfigNegotiator.Resolution> resolutions = new ArrayList<>();
+                    for (Size size : supportedSizes) {
+                        resolutions.add(new CameraConfigNegotiator.Resolution(size.getWidth(), size.getHeight()));
+                    }
+                    final List<Size> ranked = new ArrayList<>();
+                    for (CameraConfigNegotiator.Resolution resolution : negotiator.rank(resolutions, rotationDegrees)) {
+                        ranked.add(new Size(resolution.width, resolution.height));
                     }
-                    image.close();
-                });
+                    return ranked;
+                })
+                .build();
+    }
 
-                CameraSelector cameraSelector = CameraSelector.DEFAULT_BACK_CAMERA;
+    /** Switches between the back and front camera, if the device has both; bound to a long press on the preview. */
+    protected void switchLens() {
+        if (mCameraProvider == null) {
+            return;
+        }
+        final int lensFacing = mLensFacing == CameraSelector.LENS_FACING_BACK
+                ? CameraSelector.LENS_FACING_FRONT
+                : CameraSelector.LENS_FACING_BACK;
+        try {
+            if (!mCameraProvider.hasCamera(new CameraSelector.Builder().requireLensFacing(lensFacing).build())) {
+                Toast.makeText(this, "No other camera to switch to", Toast.LENGTH_SHORT).show();
+                return;
+            }
+        } catch (CameraInfoUnavailableException e) {
+            Toast.makeText(this, "Error switching camera: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            return;
+        }
+        mLensFacing = lensFacing;
+        bindCameraUseCases();
+    }
 
-                cameraProvider.unbindAll();
-                cameraProvider.bindToLifecycle(this, cameraSelector, preview, imageAnalysis);
+    /** Camera to analyze, {@code CameraSelector.LENS_FACING_BACK} or {@code LENS_FACING_FRONT}. */
+    protected int getLensFacing() {
+        return mLensFacing;
+    }
 
-            } catch (ExecutionException | InterruptedException e) {
-                // Handle any errors (including cancellation) here.
+    /**
+     * Records the span from the sensor timestamp of {@code image} to now. Skipped when the timestamp
+     * is not on the {@link System#nanoTime()} clock, e.g. boot time after the device slept.
+     */
+    private static void traceAcquire(ImageProxy image) {
+        if (!Tracer.ENABLED) {
+            return;
+        }
+        final long now = System.nanoTime();
+        final long timestamp = image.getImageInfo().getTimestamp();
+        if (timestamp > 0 && timestamp <= now && now - timestamp < MAX_ACQUIRE_NANOS) {
+            Tracer.record(Tracer.ACQUIRE, timestamp, now);
+        }
+    }
+
+    /**
+     * Writes the recorded spans as Chrome trace JSON to the app's external files directory, on a
+     * thread of its own: formatting the ring and the file write would otherwise hold up onDestroy.
+     */
+    private void writeTrace() {
+        if (!Tracer.ENABLED || Tracer.getSpanCount() == 0) {
+            return;
+        }
+        new Thread(() -> {
+            final File dir = getExternalFilesDir(null);
+            if (dir == null) {
+                return;
             }
-        }, ContextCompat.getMainExecutor(this));
+            final File file = new File(dir, TRACE_FILE_NAME);
+            try {
+                Tracer.writeChromeTrace(file, Process.myPid());
+                Log.i(Constants.TAG, "Trace written to " + file.getAbsolutePath());
+            } catch (IOException e) {
+                Log.e(Constants.TAG, "Error writing trace", e);
+            }
+        }, "TraceWriter").start();
     }
 
     @WorkerThread
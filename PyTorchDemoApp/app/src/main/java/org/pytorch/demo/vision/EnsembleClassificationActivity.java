@@ -0,0 +1,176 @@
+package org.pytorch.demo.vision;
+
+import android.os.Bundle;
+import android.util.Log;
+import android.view.View;
+import android.widget.TextView;
+
+import org.pytorch.Module;
+import org.pytorch.demo.Constants;
+import org.pytorch.demo.CpuTopology;
+import org.pytorch.demo.ExecutionProfile;
+import org.pytorch.demo.InferenceExecutor;
+import org.pytorch.demo.ModuleLoader;
+import org.pytorch.demo.R;
+import org.pytorch.demo.vision.view.ResultRowView;
+
+import java.util.Locale;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.camera.core.ImageProxy;
+import androidx.camera.view.PreviewView;
+
+/**
+ * Runs ResNet18 and MobileNetV2 on every analyzed frame through {@link MultiModelClassifier} and
+ * shows the averaged top-3 together with each model's forward latency.
+ */
+public class EnsembleClassificationActivity
+    extends AbstractCameraXActivity<MultiModelClassifier.Result> {
+
+  private static final String[] MODEL_ASSET_NAMES = {"resnet18.pt", "mobilenet_v2.pt"};
+  private static final int INPUT_TENSOR_WIDTH = 224;
+  private static final int INPUT_TENSOR_HEIGHT = 224;
+  private static final int TOP_K = 3;
+  private static final String SCORES_FORMAT = "%.2f";
+  private static final String FORMAT_MODEL_MS = "%s:%dms";
+  private static final String FORMAT_FPS = "%.1fFPS";
+
+  private boolean mAnalyzeImageErrorState;
+  private final ResultRowView[] mResultRowViews = new ResultRowView[TOP_K];
+  private TextView mFpsText;
+  private TextView mMsText;
+  // Built on the realtime lane by the first frame, released by onDestroy.
+  private volatile MultiModelClassifier mClassifier;
+  private final Object mClassifierLock = new Object();
+  // Guarded by mClassifierLock.
+  private boolean mDestroyed;
+  private int mSavedNumThreads;
+
+  @Override
+  protected int getContentViewLayoutId() {
+    return R.layout.activity_image_classification;
+  }
+
+  @Override
+  protected PreviewView getCameraPreviewView() {
+    return findViewById(R.id.previewView);
+  }
+
+  @Override
+  protected CameraConfigNegotiator getCameraConfigNegotiator() {
+    return new CameraConfigNegotiator(INPUT_TENSOR_WIDTH, INPUT_TENSOR_HEIGHT, 1f)
+        .addConverter(CameraConfigNegotiator.Format.YUV_420_888, 1f);
+  }
+
+  @Override
+  protected void onCreate(Bundle savedInstanceState) {
+    super.onCreate(savedInstanceState);
+    final ResultRowView headerResultRowView =
+        findViewById(R.id.image_classification_result_header_row);
+    headerResultRowView.nameTextView.setText(R.string.image_classification_results_header_row_name);
+    headerResultRowView.scoreTextView.setText(R.string.image_classification_results_header_row_score);
+
+    mResultRowViews[0] = findViewById(R.id.image_classification_top1_result_row);
+    mResultRowViews[1] = findViewById(R.id.image_classification_top2_result_row);
+    mResultRowViews[2] = findViewById(R.id.image_classification_top3_result_row);
+
+    mFpsText = findViewById(R.id.image_classification_fps_text);
+    mMsText = findViewById(R.id.image_classification_ms_text);
+    mSavedNumThreads = ExecutionProfile.getNumThreads();
+  }
+
+  @Override
+  @WorkerThread
+  @Nullable
+  protected MultiModelClassifier.Result analyzeImage(ImageProxy image, int rotationDegrees) {
+    if (mAnalyzeImageErrorState) {
+      return null;
+    }
+
+    try {
+      MultiModelClassifier classifier = mClassifier;
+      if (classifier == null) {
+        synchronized (mClassifierLock) {
+          if (mDestroyed) {
+            return null;
+          }
+        }
+        // Both models share the native thread pool; keep it off the cores left to camera and UI.
+        final ExecutionProfile profile = new ExecutionProfile(
+            CpuTopology.bigCoreCount(), ExecutionProfile.Placement.BIG_CORES);
+        final Module[] modules = new Module[MODEL_ASSET_NAMES.length];
+        for (int i = 0; i < MODEL_ASSET_NAMES.length; i++) {
+          modules[i] = ModuleLoader.load(this, MODEL_ASSET_NAMES[i], profile);
+        }
+        classifier = new MultiModelClassifier(MODEL_ASSET_NAMES, modules,
+            INPUT_TENSOR_WIDTH, INPUT_TENSOR_HEIGHT, TOP_K);
+        synchronized (mClassifierLock) {
+          if (mDestroyed) {
+            // onDestroy ran while the models were loading and found nothing to release.
+            classifier.destroy();
+            return null;
+          }
+          mClassifier = classifier;
+        }
+      }
+      return classifier.classify(image.getImage(), rotationDegrees);
+    } catch (Exception e) {
+      Log.e(Constants.TAG, "Error during ensemble image analysis", e);
+      mAnalyzeImageErrorState = true;
+      runOnUiThread(() -> {
+        if (!isFinishing()) {
+          showErrorDialog(v -> EnsembleClassificationActivity.this.finish());
+        }
+      });
+      return null;
+    }
+  }
+
+  @Override
+  protected void applyToUiAnalyzeImageResult(MultiModelClassifier.Result result) {
+    for (int i = 0; i < TOP_K; i++) {
+      final ResultRowView rowView = mResultRowViews[i];
+      rowView.nameTextView.setText(Constants.IMAGENET_CLASSES[result.ensembleTopKIndices[i]]);
+      rowView.scoreTextView.setText(String.format(Locale.US, SCORES_FORMAT,
+          result.ensembleTopKProbs[i]));
+      rowView.setProgressState(false);
+    }
+
+    final StringBuilder sb = new StringBuilder();
+    for (MultiModelClassifier.ModelResult modelResult : result.modelResults) {
+      if (sb.length() > 0) {
+        sb.append(' ');
+      }
+      sb.append(String.format(Locale.US, FORMAT_MODEL_MS,
+          modelResult.name, modelResult.forwardDurationNanos / 1_000_000));
+    }
+    mMsText.setText(sb.toString());
+    mMsText.setVisibility(View.VISIBLE);
+    mFpsText.setText(String.format(Locale.US, FORMAT_FPS, 1e9f / result.totalDurationNanos));
+    mFpsText.setVisibility(View.VISIBLE);
+  }
+
+  @Override
+  protected void onDestroy() {
+    super.onDestroy();
+    final MultiModelClassifier classifier;
+    synchronized (mClassifierLock) {
+      mDestroyed = true;
+      classifier = mClassifier;
+      mClassifier = null;
+    }
+    if (classifier != null
+        && !InferenceExecutor.get().tryExecute(getInferenceLane(), classifier::destroy)) {
+      // The lane is full; destroy() waits for the running forwards before freeing the modules, so
+      // releasing here is safe, and the frame still queued fails and is dropped.
+      classifier.destroy();
+    }
+    // After the first frame's load, which applies the ensemble's profile.
+    final int numThreads = mSavedNumThreads;
+    if (!InferenceExecutor.get().tryExecute(getInferenceLane(),
+        () -> ExecutionProfile.restoreNumThreads(numThreads))) {
+      ExecutionProfile.restoreNumThreads(numThreads);
+    }
+  }
+}
@@ -1,5 +1,7 @@
 package org.pytorch.demo.vision;
 
+import android.app.ActivityManager;
+import android.content.Context;
 import android.os.Bundle;
 import android.os.SystemClock;
 import android.text.TextUtils;
@@ -11,16 +13,26 @@ import org.pytorch.IValue;
 import org.pytorch.Module;
 import org.pytorch.Tensor;
 import org.pytorch.demo.Constants;
+import org.pytorch.demo.ExecutionProfile;
+import org.pytorch.demo.ImageTensorBuffer;
+import org.pytorch.demo.InferenceExecutor;
+import org.pytorch.demo.InferenceStats;
+import org.pytorch.demo.LatencyHistogram;
+import org.pytorch.demo.ModelManifest;
+import org.pytorch.demo.ModuleLoader;
 import org.pytorch.demo.R;
-import org.pytorch.demo.Utils;
+import org.pytorch.demo.Softmax;
+import org.pytorch.demo.Tracer;
+import org.pytorch.demo.VariantSelector;
 import org.pytorch.demo.vision.view.ResultRowView;
-import org.pytorch.torchvision.TensorImageUtils;
 
 import java.io.File;
-import java.nio.FloatBuffer;
-import java.util.LinkedList;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
-import java.util.Queue;
 
 import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
@@ -31,13 +43,17 @@ public class ImageClassificationActivity extends AbstractCameraXActivity<ImageCl
 
   public static final String INTENT_MODULE_ASSET_NAME = "INTENT_MODULE_ASSET_NAME";
   public static final String INTENT_INFO_VIEW_TYPE = "INTENT_INFO_VIEW_TYPE";
+  /** Task in the {@link ModelManifest}; the model variant is then selected at runtime. */
+  public static final String INTENT_TASK = "INTENT_TASK";
 
-  private static final int INPUT_TENSOR_WIDTH = 224;
-  private static final int INPUT_TENSOR_HEIGHT = 224;
+  private static final int INPUT_TENSOR_SIZE = 224;
+  private static final float ACCURACY_BUDGET = 3.0f;
+  private static final int SELECTION_INTERVAL_FRAMES = 20;
   private static final int TOP_K = 3;
-  private static final int MOVING_AVG_PERIOD = 10;
+  private static final float SOFTMAX_TEMPERATURE = 1.0f;
+  private static final int PERCENTILES_MIN_COUNT = 10;
   private static final String FORMAT_MS = "%dms";
-  private static final String FORMAT_AVG_MS = "avg:%.0fms";
+  private static final String FORMAT_PERCENTILES_MS = "p50:%.0f p90:%.0f p99:%.0fms";
 
   private static final String FORMAT_FPS = "%.1fFPS";
   public static final String SCORES_FORMAT = "%.2f";
@@ -58,17 +74,26 @@ public class ImageClassificationActivity extends AbstractCameraXActivity<ImageCl
     }
   }
 
-  private boolean mAnalyzeImageErrorState;
+  private volatile boolean mAnalyzeImageErrorState;
   private ResultRowView[] mResultRowViews = new ResultRowView[TOP_K];
   private TextView mFpsText;
   private TextView mMsText;
   private TextView mMsAvgText;
-  private Module mModule;
+  // Loaded and tuned on the batch lane, then only used on the realtime lane.
+  private volatile Module mModule;
+  private volatile ImageTensorBuffer mInputBuffer;
+  private volatile boolean mModuleLoading;
+  private final Object mModuleLock = new Object();
+  // Guarded by mModuleLock.
+  private boolean mDestroyed;
+  private int mSavedNumThreads;
   private String mModuleAssetName;
-  private FloatBuffer mInputTensorBuffer;
-  private Tensor mInputTensor;
-  private long mMovingAvgSum = 0;
-  private Queue<Long> mMovingAvgQueue = new LinkedList<>();
+  private InferenceStats mInferenceStats;
+  private ModelManifest mManifest;
+  private String mTask;
+  private VariantSelector mVariantSelector;
+  private volatile ModelManifest.Variant mVariant;
+  private int mFramesSinceSelection;
 
   @Override
   protected int getContentViewLayoutId() {
@@ -80,6 +105,22 @@ public class ImageClassificationActivity extends AbstractCameraXActivity<ImageCl
     return findViewById(R.id.previewView);
   }
 
+  @Override
+  protected CameraConfigNegotiator getCameraConfigNegotiator() {
+    // Cover the largest variant the selector may switch to, so a switch needs no new stream.
+    int inputSize = INPUT_TENSOR_SIZE;
+    if (mTask != null && mManifest != null) {
+      for (ModelManifest.Variant variant : mManifest.getVariants(mTask)) {
+        inputSize = Math.max(inputSize, variant.inputSize);
+      }
+    } else if (mManifest != null && mManifest.findByAsset(getModuleAssetName()) != null) {
+      inputSize = mManifest.findByAsset(getModuleAssetName()).inputSize;
+    }
+    // TensorImageUtils center-crops the YUV planes, the only converter here.
+    return new CameraConfigNegotiator(inputSize, inputSize, 1f)
+        .addConverter(CameraConfigNegotiator.Format.YUV_420_888, 1f);
+  }
+
   @Override
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
@@ -95,16 +136,30 @@ public class ImageClassificationActivity extends AbstractCameraXActivity<ImageCl
     mFpsText = findViewById(R.id.image_classification_fps_text);
     mMsText = findViewById(R.id.image_classification_ms_text);
     mMsAvgText = findViewById(R.id.image_classification_ms_avg_text);
+    try {
+      mManifest = loadManifest();
+    } catch (IOException e) {
+      Log.w(Constants.TAG, "Error reading model manifest", e);
+    }
+    mTask = getIntent().getStringExtra(INTENT_TASK);
+    if (!TextUtils.isEmpty(mTask)) {
+      final List<ModelManifest.Variant> variants = mManifest != null
+          ? mManifest.getVariants(mTask)
+          : Collections.<ModelManifest.Variant>emptyList();
+      if (variants.isEmpty()) {
+        Log.e(Constants.TAG, "No model variants for task " + mTask);
+        mTask = null;
+      } else {
+        mVariantSelector = new VariantSelector(variants, ACCURACY_BUDGET);
+        mVariant = mVariantSelector.select(freeMemoryBytes());
+      }
+    }
+    mInferenceStats = new InferenceStats(getStatsName());
+    mSavedNumThreads = ExecutionProfile.getNumThreads();
   }
 
   @Override
   protected void applyToUiAnalyzeImageResult(AnalysisResult result) {
-    mMovingAvgSum += result.moduleForwardDuration;
-    mMovingAvgQueue.add(result.moduleForwardDuration);
-    if (mMovingAvgQueue.size() > MOVING_AVG_PERIOD) {
-      mMovingAvgSum -= mMovingAvgQueue.remove();
-    }
-
     for (int i = 0; i < TOP_K; i++) {
       final ResultRowView rowView = mResultRowViews[i];
       rowView.nameTextView.setText(result.topNClassNames[i]);
@@ -122,9 +177,12 @@ public class ImageClassificationActivity extends AbstractCameraXActivity<ImageCl
       mFpsText.setVisibility(View.VISIBLE);
     }
 
-    if (mMovingAvgQueue.size() == MOVING_AVG_PERIOD) {
-      float avgMs = (float) mMovingAvgSum / MOVING_AVG_PERIOD;
-      mMsAvgText.setText(String.format(Locale.US, FORMAT_AVG_MS, avgMs));
+    final LatencyHistogram forward = mInferenceStats.forward();
+    if (forward.getCount() >= PERCENTILES_MIN_COUNT) {
+      mMsAvgText.setText(String.format(Locale.US, FORMAT_PERCENTILES_MS,
+          forward.percentileMicros(50) / 1000.f,
+          forward.percentileMicros(90) / 1000.f,
+          forward.percentileMicros(99) / 1000.f));
       if (mMsAvgText.getVisibility() != View.VISIBLE) {
         mMsAvgText.setVisibility(View.VISIBLE);
       }
@@ -132,6 +190,9 @@ public class ImageClassificationActivity extends AbstractCameraXActivity<ImageCl
   }
 
   protected String getModuleAssetName() {
+    if (mVariant != null) {
+      return mVariant.assetName;
+    }
     if (!TextUtils.isEmpty(mModuleAssetName)) {
       return mModuleAssetName;
     }
@@ -156,63 +217,181 @@ public class ImageClassificationActivity extends AbstractCameraXActivity<ImageCl
       return null;
     }
 
-    try {
-      if (mModule == null) {
-        final String moduleFileAbsoluteFilePath = new File(
-                Utils.assetFilePath(this, getModuleAssetName())).getAbsolutePath();
-        mModule = Module.load(moduleFileAbsoluteFilePath);
-
-        mInputTensorBuffer =
-                Tensor.allocateFloatBuffer(3 * INPUT_TENSOR_WIDTH * INPUT_TENSOR_HEIGHT);
-        mInputTensor = Tensor.fromBlob(mInputTensorBuffer, new long[]{1, 3, INPUT_TENSOR_HEIGHT, INPUT_TENSOR_WIDTH});
+    final Module module = mModule;
+    if (module == null) {
+      if (!mModuleLoading) {
+        loadModuleInBackground();
       }
+      return null;
+    }
 
-      final long startTime = SystemClock.elapsedRealtime();
-      TensorImageUtils.imageYUV420CenterCropToFloatBuffer(
-              image.getImage(), rotationDegrees,
-              INPUT_TENSOR_WIDTH, INPUT_TENSOR_HEIGHT,
-              TensorImageUtils.TORCHVISION_NORM_MEAN_RGB,
-              TensorImageUtils.TORCHVISION_NORM_STD_RGB,
-              mInputTensorBuffer, 0);
-
-      final long moduleForwardStartTime = SystemClock.elapsedRealtime();
-      final Tensor outputTensor = mModule.forward(IValue.from(mInputTensor)).toTensor();
-      final long moduleForwardDuration = SystemClock.elapsedRealtime() - moduleForwardStartTime;
+    try {
+      final long startTime = SystemClock.elapsedRealtimeNanos();
+      final long convertStart = Tracer.begin();
+      final Tensor inputTensor = mInputBuffer.writeImage(image.getImage(), rotationDegrees);
+      Tracer.end(Tracer.CONVERT, convertStart);
+
+      final long moduleForwardStartTime = SystemClock.elapsedRealtimeNanos();
+      mInferenceStats.preprocess().recordNanos(moduleForwardStartTime - startTime);
+      final long forwardStart = Tracer.begin();
+      final Tensor outputTensor = module.forward(IValue.from(inputTensor)).toTensor();
+      Tracer.end(Tracer.FORWARD, forwardStart);
+      final long postprocessStartTime = SystemClock.elapsedRealtimeNanos();
+      mInferenceStats.forward().recordNanos(postprocessStartTime - moduleForwardStartTime);
+      if (mVariantSelector != null) {
+        mVariantSelector.recordLatencyNanos(mVariant, postprocessStartTime - moduleForwardStartTime);
+      }
 
+      final long decodeStart = Tracer.begin();
       final float[] scores = outputTensor.getDataAsFloatArray();
-      final int[] ixs = Utils.topK(scores, TOP_K);
+      final float[] topKScores = new float[TOP_K];
+      final int[] ixs = Softmax.topK(scores, TOP_K, SOFTMAX_TEMPERATURE, true, topKScores);
 
       final String[] topKClassNames = new String[TOP_K];
-      final float[] topKScores = new float[TOP_K];
       for (int i = 0; i < TOP_K; i++) {
-        final int ix = ixs[i];
-        topKClassNames[i] = Constants.IMAGENET_CLASSES[ix];
-        topKScores[i] = scores[ix];
+        topKClassNames[i] = Constants.IMAGENET_CLASSES[ixs[i]];
       }
-      final long analysisDuration = SystemClock.elapsedRealtime() - startTime;
-      return new AnalysisResult(topKClassNames, topKScores, moduleForwardDuration, analysisDuration);
+      Tracer.end(Tracer.DECODE, decodeStart);
+      final long endTime = SystemClock.elapsedRealtimeNanos();
+      mInferenceStats.postprocess().recordNanos(endTime - postprocessStartTime);
+      if (mVariantSelector != null && ++mFramesSinceSelection >= SELECTION_INTERVAL_FRAMES) {
+        reselectVariant();
+      }
+      return new AnalysisResult(topKClassNames, topKScores,
+          (postprocessStartTime - moduleForwardStartTime) / 1_000_000,
+          (endTime - startTime) / 1_000_000);
     } catch (Exception e) {
-      Log.e(Constants.TAG, "Error during image analysis", e);
-      mAnalyzeImageErrorState = true;
-      runOnUiThread(() -> {
-        if (!isFinishing()) {
-          showErrorDialog(v -> ImageClassificationActivity.this.finish());
-        }
-      });
+      onAnalyzeImageError(e);
       return null;
     }
   }
 
+  /**
+   * Loads the current variant on the batch lane, so the tuning sweep of a model's first load does
+   * not hold up the camera. Frames are skipped until the module is published.
+   */
+  @WorkerThread
+  private void loadModuleInBackground() {
+    final ModelManifest.Variant variant = mVariant != null
+        ? mVariant
+        : mManifest != null ? mManifest.findByAsset(getModuleAssetName()) : null;
+    final String assetName = getModuleAssetName();
+    final int inputSize = variant != null ? variant.inputSize : INPUT_TENSOR_SIZE;
+    final ModelManifest.Layout layout = variant != null ? variant.layout : ModelManifest.Layout.NCHW;
+    mModuleLoading = true;
+    final boolean queued = InferenceExecutor.get().tryExecute(InferenceExecutor.Lane.BATCH, () -> {
+      try {
+        final ImageTensorBuffer inputBuffer = new ImageTensorBuffer(inputSize, inputSize, layout);
+        final Module module = ModuleLoader.loadTuned(this, assetName,
+            IValue.from(inputBuffer.getTensor()));
+        synchronized (mModuleLock) {
+          if (mDestroyed) {
+            module.destroy();
+            return;
+          }
+          mInputBuffer = inputBuffer;
+          mModule = module;
+        }
+      } catch (Exception e) {
+        onAnalyzeImageError(e);
+      } finally {
+        mModuleLoading = false;
+      }
+    });
+    if (!queued) {
+      // The next frame tries again.
+      mModuleLoading = false;
+    }
+  }
+
+  private void onAnalyzeImageError(Exception e) {
+    Log.e(Constants.TAG, "Error during image analysis", e);
+    mAnalyzeImageErrorState = true;
+    runOnUiThread(() -> {
+      if (!isFinishing()) {
+        showErrorDialog(v -> ImageClassificationActivity.this.finish());
+      }
+    });
+  }
+
   @Override
   protected int getInfoViewCode() {
-    return getIntent().getIntExtra(INTENT_INFO_VIEW_TYPE, -1);
+    return getIntent().getIntExtra(INTENT_INFO_VIEW_TYPE, 0);
   }
 
   @Override
   protected void onDestroy() {
     super.onDestroy();
-    if (mModule != null) {
-      mModule.destroy();
+    final Module module;
+    synchronized (mModuleLock) {
+      mDestroyed = true;
+      module = mModule;
+      mModule = null;
+    }
+    if (module != null) {
+      destroyModuleInBackground(module);
+    }
+    // Queued behind a load still tuning on the batch lane, which would set the count again.
+    final int numThreads = mSavedNumThreads;
+    if (!InferenceExecutor.get().tryExecute(InferenceExecutor.Lane.BATCH,
+        () -> ExecutionProfile.restoreNumThreads(numThreads))) {
+      ExecutionProfile.restoreNumThreads(numThreads);
+    }
+    exportInferenceStats();
+  }
+
+  /** Switches to the selector's choice; the next frame loads it. Runs on the inference lane. */
+  @WorkerThread
+  private void reselectVariant() {
+    mFramesSinceSelection = 0;
+    final ModelManifest.Variant next = mVariantSelector.select(freeMemoryBytes());
+    if (next == mVariant) {
+      return;
+    }
+    final Module module;
+    synchronized (mModuleLock) {
+      if (mDestroyed) {
+        // onDestroy already queued the module's release.
+        return;
+      }
+      module = mModule;
+      mModule = null;
+    }
+    Log.i(Constants.TAG, "Switching " + mTask + " from " + mVariant + " to " + next);
+    module.destroy();
+    mVariant = next;
+  }
+
+  private ModelManifest loadManifest() throws IOException {
+    try (Reader reader = new InputStreamReader(getAssets().open(ModelManifest.ASSET_NAME))) {
+      return ModelManifest.parse(reader);
+    }
+  }
+
+  private long freeMemoryBytes() {
+    final ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+    ((ActivityManager) getSystemService(Context.ACTIVITY_SERVICE)).getMemoryInfo(memoryInfo);
+    return Math.max(0, memoryInfo.availMem - memoryInfo.threshold);
+  }
+
+  private String getStatsName() {
+    return mTask != null ? mTask : getModuleAssetName();
+  }
+
+  private void exportInferenceStats() {
+    if (mInferenceStats == null || mInferenceStats.forward().getCount() == 0) {
+      return;
+    }
+    final String json = mInferenceStats.toJson();
+    Log.i(Constants.TAG, "Inference stats: " + json);
+    final File dir = getExternalFilesDir(null);
+    if (dir == null) {
+      return;
+    }
+    try {
+      mInferenceStats.writeJson(new File(dir, "latency_" + getStatsName() + ".json"));
+    } catch (IOException e) {
+      Log.e(Constants.TAG, "Error writing inference stats", e);
     }
   }
 }
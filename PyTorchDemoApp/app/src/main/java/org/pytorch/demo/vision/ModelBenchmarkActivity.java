@@ -0,0 +1,279 @@
+package org.pytorch.demo.vision;
+
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+import android.widget.TextView;
+
+import org.pytorch.IValue;
+import org.pytorch.MemoryFormat;
+import org.pytorch.Module;
+import org.pytorch.Tensor;
+import org.pytorch.demo.BaseModuleActivity;
+import org.pytorch.demo.BenchmarkReport;
+import org.pytorch.demo.BenchmarkStats;
+import org.pytorch.demo.Constants;
+import org.pytorch.demo.ExecutionProfile;
+import org.pytorch.demo.ImageTensorBuffer;
+import org.pytorch.demo.InferenceExecutor;
+import org.pytorch.demo.ModelManifest;
+import org.pytorch.demo.ModuleLoader;
+import org.pytorch.demo.R;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+/**
+ * Runs every registered vision model over a fixed synthetic input for each requested thread count,
+ * once with a contiguous (NCHW) and once with a channels-last (NHWC) input, and writes the results
+ * to {@code benchmark_report.json} in the app's external files dir. Before that, each model is
+ * loaded repeatedly both in place from the APK and from the extracted file, to compare the two
+ * {@link ModuleLoader.Source}s. The first load of each is the cold one when the activity is started
+ * in a fresh process after dropping the page cache.
+ *
+ * <p>Can be started from adb for device farm runs, e.g.
+ * {@code adb shell am start -n org.pytorch.demo/.vision.ModelBenchmarkActivity --ei iterations 100}.
+ */
+public class ModelBenchmarkActivity extends BaseModuleActivity {
+
+  public static final String INTENT_MODELS = "models";
+  public static final String INTENT_WARMUP_ITERATIONS = "warmup";
+  public static final String INTENT_ITERATIONS = "iterations";
+  public static final String INTENT_THREADS = "threads";
+  public static final String INTENT_LOAD_ITERATIONS = "load_iterations";
+
+  private static final String[] DEFAULT_MODELS = {"resnet18.pt", "mobilenet_v2.pt"};
+  private static final int DEFAULT_WARMUP_ITERATIONS = 5;
+  private static final int DEFAULT_ITERATIONS = 30;
+  private static final int[] DEFAULT_THREADS = {1, 2, 4};
+  private static final int DEFAULT_LOAD_ITERATIONS = 5;
+
+  private static final int INPUT_TENSOR_WIDTH = 224;
+  private static final int INPUT_TENSOR_HEIGHT = 224;
+  private static final long INPUT_SEED = 42;
+  private static final String REPORT_FILE_NAME = "benchmark_report.json";
+
+  private TextView mOutputText;
+
+  @Override
+  protected void onCreate(@Nullable Bundle savedInstanceState) {
+    super.onCreate(savedInstanceState);
+    setContentView(R.layout.activity_model_benchmark);
+    mOutputText = findViewById(R.id.model_benchmark_output_text);
+  }
+
+  @Override
+  protected void onPostCreate(@Nullable Bundle savedInstanceState) {
+    super.onPostCreate(savedInstanceState);
+    runInBackground(this::runBenchmark);
+  }
+
+  @Override
+  protected InferenceExecutor.Lane getInferenceLane() {
+    return InferenceExecutor.Lane.BATCH;
+  }
+
+  @WorkerThread
+  private void runBenchmark() {
+    final int savedNumThreads = ExecutionProfile.getNumThreads();
+    try {
+      runBenchmarkWithThreads();
+    } finally {
+      // The thread count is process-wide; leave it as the other screens expect it.
+      ExecutionProfile.restoreNumThreads(savedNumThreads);
+    }
+  }
+
+  @WorkerThread
+  private void runBenchmarkWithThreads() {
+    String[] models = getIntent().getStringArrayExtra(INTENT_MODELS);
+    if (models == null) {
+      models = DEFAULT_MODELS;
+    }
+    int[] threadCounts = getIntent().getIntArrayExtra(INTENT_THREADS);
+    if (threadCounts == null) {
+      threadCounts = DEFAULT_THREADS;
+    }
+    final int warmup = getIntent().getIntExtra(INTENT_WARMUP_ITERATIONS, DEFAULT_WARMUP_ITERATIONS);
+    final int iterations = getIntent().getIntExtra(INTENT_ITERATIONS, DEFAULT_ITERATIONS);
+    final int loadIterations =
+        getIntent().getIntExtra(INTENT_LOAD_ITERATIONS, DEFAULT_LOAD_ITERATIONS);
+
+    final ModelManifest.Layout[] layouts = ModelManifest.Layout.values();
+    final Tensor[] inputs = newSyntheticInputs(layouts);
+    final BenchmarkReport report = new BenchmarkReport(
+        Build.MANUFACTURER + " " + Build.MODEL,
+        String.format(Locale.US, "synthetic 1x3x%dx%d seed=%d",
+            INPUT_TENSOR_HEIGHT, INPUT_TENSOR_WIDTH, INPUT_SEED));
+
+    for (String model : models) {
+      if (isFinishing()) {
+        return;
+      }
+      appendOutput(String.format(Locale.US, "%s, loading...", model));
+      try {
+        for (BenchmarkReport.LoadEntry entry : benchmarkLoads(model, loadIterations)) {
+          report.addLoad(entry);
+          appendOutput(String.format(Locale.US, "%s: first %.1fms, %s",
+              entry.source, entry.firstLoadNanos / 1e6, entry.load));
+        }
+      } catch (Exception e) {
+        Log.e(Constants.TAG, "Error loading " + model, e);
+        appendOutput("failed: " + e.getMessage());
+      }
+    }
+
+    for (String model : models) {
+      for (int threads : threadCounts) {
+        if (isFinishing()) {
+          return;
+        }
+        appendOutput(String.format(Locale.US, "%s, %d threads...", model, threads));
+        try {
+          final List<BenchmarkReport.Entry> entries =
+              benchmarkModel(model, threads, warmup, iterations, layouts, inputs);
+          for (BenchmarkReport.Entry entry : entries) {
+            report.add(entry);
+            appendOutput(entry.layout + ": " + entry.forward);
+          }
+          final BenchmarkReport.Entry nchw = findEntry(entries, ModelManifest.Layout.NCHW);
+          final BenchmarkReport.Entry nhwc = findEntry(entries, ModelManifest.Layout.NHWC);
+          if (nchw != null && nhwc != null) {
+            appendOutput(String.format(Locale.US, "NHWC vs NCHW p50: %+.1f%%",
+                100.0 * (nhwc.forward.p50Nanos - nchw.forward.p50Nanos) / nchw.forward.p50Nanos));
+          }
+        } catch (Exception e) {
+          Log.e(Constants.TAG, "Error benchmarking " + model, e);
+          appendOutput("failed: " + e.getMessage());
+        }
+      }
+    }
+
+    final String json = report.toJson();
+    Log.i(Constants.TAG, "Benchmark report: " + json);
+    final File dir = getExternalFilesDir(null);
+    if (dir != null) {
+      final File file = new File(dir, REPORT_FILE_NAME);
+      try (OutputStream os = new FileOutputStream(file)) {
+        os.write(json.getBytes(StandardCharsets.UTF_8));
+        appendOutput("Report written to " + file.getAbsolutePath());
+      } catch (IOException e) {
+        Log.e(Constants.TAG, "Error writing benchmark report", e);
+      }
+    }
+  }
+
+  @WorkerThread
+  private List<BenchmarkReport.Entry> benchmarkModel(
+      String model, int threads, int warmup, int iterations,
+      ModelManifest.Layout[] layouts, Tensor[] inputs) throws IOException {
+    ExecutionProfile.setNumThreads(threads);
+    final long loadStartTime = SystemClock.elapsedRealtimeNanos();
+    final Module module = ModuleLoader.load(this, model);
+    final long loadNanos = SystemClock.elapsedRealtimeNanos() - loadStartTime;
+    try {
+      final List<BenchmarkReport.Entry> entries = new ArrayList<>(layouts.length);
+      for (int l = 0; l < layouts.length; l++) {
+        final IValue inputValue = IValue.from(inputs[l]);
+        for (int i = 0; i < warmup; i++) {
+          module.forward(inputValue);
+        }
+        final long[] samples = new long[iterations];
+        long peakNativeHeap = Debug.getNativeHeapAllocatedSize();
+        for (int i = 0; i < iterations; i++) {
+          final long startTime = SystemClock.elapsedRealtimeNanos();
+          module.forward(inputValue);
+          samples[i] = SystemClock.elapsedRealtimeNanos() - startTime;
+          peakNativeHeap = Math.max(peakNativeHeap, Debug.getNativeHeapAllocatedSize());
+        }
+        entries.add(new BenchmarkReport.Entry(model, threads, layouts[l].name(), warmup,
+            loadNanos, peakNativeHeap, BenchmarkStats.of(samples)));
+      }
+      return entries;
+    } finally {
+      module.destroy();
+    }
+  }
+
+  /**
+   * Loads {@code model} {@code iterations} times from each source it can be loaded from, swapping
+   * the order every round so neither source always follows the other. FILE loads include checking,
+   * or on the first run extracting, the copy in the files dir, as an app start through that path does.
+   */
+  @WorkerThread
+  private List<BenchmarkReport.LoadEntry> benchmarkLoads(String model, int iterations)
+      throws IOException {
+    final List<ModuleLoader.Source> sources = new ArrayList<>(2);
+    if (ModuleLoader.isUncompressed(this, model)) {
+      sources.add(ModuleLoader.Source.ASSET);
+    }
+    sources.add(ModuleLoader.Source.FILE);
+
+    final long[][] samples = new long[sources.size()][iterations];
+    for (int i = 0; i < iterations; i++) {
+      for (int k = 0; k < sources.size(); k++) {
+        final int s = i % 2 == 0 ? k : sources.size() - 1 - k;
+        final long startTime = SystemClock.elapsedRealtimeNanos();
+        final Module module = ModuleLoader.load(this, model, sources.get(s));
+        samples[s][i] = SystemClock.elapsedRealtimeNanos() - startTime;
+        module.destroy();
+      }
+    }
+    final List<BenchmarkReport.LoadEntry> entries = new ArrayList<>(sources.size());
+    for (int s = 0; s < sources.size(); s++) {
+      entries.add(new BenchmarkReport.LoadEntry(model, sources.get(s).name(),
+          iterations > 0 ? samples[s][0] : 0, BenchmarkStats.of(samples[s])));
+    }
+    return entries;
+  }
+
+  private static BenchmarkReport.Entry findEntry(
+      List<BenchmarkReport.Entry> entries, ModelManifest.Layout layout) {
+    for (BenchmarkReport.Entry entry : entries) {
+      if (entry.layout.equals(layout.name())) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  /** The same synthetic image in each of {@code layouts}. */
+  private static Tensor[] newSyntheticInputs(ModelManifest.Layout[] layouts) {
+    final float[] planar = new float[3 * INPUT_TENSOR_WIDTH * INPUT_TENSOR_HEIGHT];
+    final Random random = new Random(INPUT_SEED);
+    for (int i = 0; i < planar.length; i++) {
+      planar[i] = (float) random.nextGaussian();
+    }
+    final long[] shape = new long[]{1, 3, INPUT_TENSOR_HEIGHT, INPUT_TENSOR_WIDTH};
+    final Tensor[] inputs = new Tensor[layouts.length];
+    for (int l = 0; l < layouts.length; l++) {
+      final FloatBuffer buffer = Tensor.allocateFloatBuffer(planar.length);
+      final MemoryFormat memoryFormat = ImageTensorBuffer.toMemoryFormat(layouts[l]);
+      if (memoryFormat == MemoryFormat.CHANNELS_LAST) {
+        ImageTensorBuffer.planarToInterleaved(
+            planar, 3, INPUT_TENSOR_HEIGHT, INPUT_TENSOR_WIDTH, buffer);
+      } else {
+        buffer.put(planar);
+      }
+      inputs[l] = Tensor.fromBlob(buffer, shape, memoryFormat);
+    }
+    return inputs;
+  }
+
+  private void appendOutput(String line) {
+    runOnUiThread(() -> mOutputText.append(line + "\n"));
+  }
+}
@@ -0,0 +1,183 @@
+package org.pytorch.demo.vision;
+
+import android.media.Image;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.pytorch.IValue;
+import org.pytorch.Module;
+import org.pytorch.Tensor;
+import org.pytorch.demo.Constants;
+import org.pytorch.demo.Softmax;
+import org.pytorch.demo.TopK;
+import org.pytorch.demo.Tracer;
+import org.pytorch.torchvision.TensorImageUtils;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.annotation.WorkerThread;
+
+/**
+ * Runs several ImageNet classifiers on the same camera frame.
+ *
+ * <p>The frame is converted once into a shared input buffer; every model reads it through its own
+ * {@link Tensor} view. The forward passes are submitted together, one thread per model, but they
+ * share PyTorch's process-wide intra-op thread pool, so they contend for the same cores and need
+ * not finish sooner than running the models in turn. Per-model probabilities are averaged into an
+ * ensemble result.
+ */
+public class MultiModelClassifier {
+
+  private static final long DESTROY_TIMEOUT_SECONDS = 10;
+
+  public static class ModelResult {
+    public final String name;
+    public final int[] topKIndices;
+    public final float[] topKProbs;
+    public final long forwardDurationNanos;
+
+    ModelResult(String name, int[] topKIndices, float[] topKProbs, long forwardDurationNanos) {
+      this.name = name;
+      this.topKIndices = topKIndices;
+      this.topKProbs = topKProbs;
+      this.forwardDurationNanos = forwardDurationNanos;
+    }
+  }
+
+  public static class Result {
+    public final List<ModelResult> modelResults;
+    public final int[] ensembleTopKIndices;
+    public final float[] ensembleTopKProbs;
+    public final long preprocessDurationNanos;
+    public final long totalDurationNanos;
+
+    Result(List<ModelResult> modelResults, int[] ensembleTopKIndices, float[] ensembleTopKProbs,
+           long preprocessDurationNanos, long totalDurationNanos) {
+      this.modelResults = modelResults;
+      this.ensembleTopKIndices = ensembleTopKIndices;
+      this.ensembleTopKProbs = ensembleTopKProbs;
+      this.preprocessDurationNanos = preprocessDurationNanos;
+      this.totalDurationNanos = totalDurationNanos;
+    }
+  }
+
+  private final String[] mNames;
+  private final Module[] mModules;
+  private final Tensor[] mInputTensors;
+  private final FloatBuffer mInputBuffer;
+  private final int mInputWidth;
+  private final int mInputHeight;
+  private final int mTopK;
+  private final ExecutorService mExecutor;
+
+  public MultiModelClassifier(String[] names, Module[] modules, int inputWidth, int inputHeight,
+                              int topK) {
+    mNames = names;
+    mModules = modules;
+    mInputWidth = inputWidth;
+    mInputHeight = inputHeight;
+    mTopK = topK;
+    mInputBuffer = Tensor.allocateFloatBuffer(3 * inputWidth * inputHeight);
+    mInputTensors = new Tensor[modules.length];
+    for (int i = 0; i < modules.length; i++) {
+      mInputTensors[i] = Tensor.fromBlob(mInputBuffer, new long[]{1, 3, inputHeight, inputWidth});
+    }
+    final AtomicInteger count = new AtomicInteger();
+    mExecutor = Executors.newFixedThreadPool(modules.length,
+        r -> new Thread(r, "MultiModelForward-" + count.incrementAndGet()));
+  }
+
+  @WorkerThread
+  public Result classify(Image image, int rotationDegrees)
+      throws InterruptedException, ExecutionException {
+    final long startTime = SystemClock.elapsedRealtimeNanos();
+    final long convertStart = Tracer.begin();
+    TensorImageUtils.imageYUV420CenterCropToFloatBuffer(
+        image, rotationDegrees,
+        mInputWidth, mInputHeight,
+        TensorImageUtils.TORCHVISION_NORM_MEAN_RGB,
+        TensorImageUtils.TORCHVISION_NORM_STD_RGB,
+        mInputBuffer, 0);
+    Tracer.end(Tracer.CONVERT, convertStart);
+    final long preprocessDuration = SystemClock.elapsedRealtimeNanos() - startTime;
+
+    final List<Future<float[]>> logits = new ArrayList<>(mModules.length);
+    final long[] forwardDurations = new long[mModules.length];
+    for (int i = 0; i < mModules.length; i++) {
+      final int modelIndex = i;
+      logits.add(mExecutor.submit((Callable<float[]>) () -> {
+        final long forwardStartTime = SystemClock.elapsedRealtimeNanos();
+        final long forwardStart = Tracer.begin();
+        final float[] scores = mModules[modelIndex]
+            .forward(IValue.from(mInputTensors[modelIndex])).toTensor().getDataAsFloatArray();
+        Tracer.end(Tracer.FORWARD, forwardStart);
+        forwardDurations[modelIndex] = SystemClock.elapsedRealtimeNanos() - forwardStartTime;
+        return scores;
+      }));
+    }
+
+    final List<ModelResult> modelResults = new ArrayList<>(mModules.length);
+    float[] ensemble = null;
+    for (int i = 0; i < mModules.length; i++) {
+      final float[] scores = logits.get(i).get();
+      final long decodeStart = Tracer.begin();
+      final float[] probs = new float[scores.length];
+      Softmax.softmax(scores, 1.0f, true, probs);
+      if (ensemble == null) {
+        ensemble = new float[probs.length];
+      }
+      for (int j = 0; j < probs.length; j++) {
+        ensemble[j] += probs[j] / mModules.length;
+      }
+      final int[] ixs = TopK.topK(probs, mTopK);
+      final float[] topKProbs = new float[ixs.length];
+      for (int j = 0; j < ixs.length; j++) {
+        topKProbs[j] = probs[ixs[j]];
+      }
+      modelResults.add(new ModelResult(mNames[i], ixs, topKProbs, forwardDurations[i]));
+      Tracer.end(Tracer.DECODE, decodeStart);
+    }
+
+    final long decodeStart = Tracer.begin();
+    final int[] ensembleIxs = TopK.topK(ensemble, mTopK);
+    final float[] ensembleProbs = new float[ensembleIxs.length];
+    for (int j = 0; j < ensembleIxs.length; j++) {
+      ensembleProbs[j] = ensemble[ensembleIxs[j]];
+    }
+    Tracer.end(Tracer.DECODE, decodeStart);
+    return new Result(modelResults, ensembleIxs, ensembleProbs, preprocessDuration,
+        SystemClock.elapsedRealtimeNanos() - startTime);
+  }
+
+  /**
+   * Stops the forward threads and releases the modules once no forward can still be running. If
+   * the threads do not stop in time the modules are left to the garbage collector instead, since
+   * freeing native memory under a running forward would crash.
+   */
+  public void destroy() {
+    mExecutor.shutdown();
+    boolean terminated;
+    try {
+      terminated = mExecutor.awaitTermination(DESTROY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      terminated = false;
+    }
+    if (!terminated) {
+      Log.w(Constants.TAG, "Forward still running, not destroying the ensemble modules");
+      return;
+    }
+    for (Module module : mModules) {
+      module.destroy();
+    }
+  }
+}
@@ -0,0 +1,352 @@
+package org.pytorch.demo.vision;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.ImageFormat;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.YuvImage;
+import android.media.Image;
+import android.media.ImageReader;
+import android.media.ImageWriter;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+import android.widget.TextView;
+
+import org.pytorch.MemoryFormat;
+import org.pytorch.Tensor;
+import org.pytorch.demo.BaseModuleActivity;
+import org.pytorch.demo.Constants;
+import org.pytorch.demo.FrameScaler;
+import org.pytorch.demo.ImageTensorBuffer;
+import org.pytorch.demo.InferenceExecutor;
+import org.pytorch.demo.ModelManifest;
+import org.pytorch.demo.PreprocessBenchmark;
+import org.pytorch.demo.R;
+import org.pytorch.demo.RotatedTensorWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.appcompat.widget.Toolbar;
+
+/**
+ * Times the per-frame preprocessing of each demo on a synthetic 640x480 YUV_420_888 camera frame
+ * (or synthetic strokes for MNIST) and writes ns/frame and heap bytes/frame to
+ * {@code preprocess_benchmark.json} in the app's external files dir.
+ *
+ * <p>The stages follow the camera paths of the demo apps: this app's 224x224 center crop, the
+ * ObjectDetection and D2Go JPEG round trip with rotation in the tensor writer, the TorchVideo
+ * 160x160 frame packing, the ASL 200x200 BGR input and the ViT4MNIST stroke rasterizer. The apps
+ * are separate projects, so their pure-Java helpers are copied here.
+ *
+ * <p>Can be started from adb, e.g.
+ * {@code adb shell am start -n org.pytorch.demo/.vision.PreprocessBenchmarkActivity --ei frames 200}.
+ */
+public class PreprocessBenchmarkActivity extends BaseModuleActivity {
+
+  public static final String INTENT_WARMUP_FRAMES = "warmup";
+  public static final String INTENT_FRAMES = "frames";
+
+  private static final int DEFAULT_WARMUP_FRAMES = 10;
+  private static final int DEFAULT_FRAMES = 100;
+
+  private static final int FRAME_WIDTH = 640;
+  private static final int FRAME_HEIGHT = 480;
+  private static final int FRAME_ROTATION = 90;
+  private static final long INPUT_SEED = 42;
+  private static final long IMAGE_TIMEOUT_MS = 1000;
+  private static final String REPORT_FILE_NAME = "preprocess_benchmark.json";
+
+  private static final int DETECTION_INPUT_SIZE = 640;
+  // ObjectDetection's PrePostProcessor.mInputMemoryFormat; D2Go writes planes as well.
+  private static final MemoryFormat DETECTION_INPUT_MEMORY_FORMAT = MemoryFormat.CONTIGUOUS;
+  private static final Paint DETECTION_SCALE_PAINT = new Paint(Paint.FILTER_BITMAP_FLAG);
+  private static final int VIDEO_FRAME_SIZE = 160;
+  private static final int VIDEO_FRAMES_PER_INFERENCE = 4;
+  private static final float[] VIDEO_MEAN_RGB = {0.45f, 0.45f, 0.45f};
+  private static final float[] VIDEO_STD_RGB = {0.225f, 0.225f, 0.225f};
+  private static final int ASL_INPUT_SIZE = 200;
+  private static final int ASL_THUMBNAIL_WIDTH = 64;
+  private static final int MNIST_IMAGE_SIZE = 28;
+  private static final int MNIST_VIEW_SIZE = 1000;
+  private static final int MNIST_STROKE_POINTS = 300;
+  private static final float[] NO_MEAN_RGB = {0f, 0f, 0f};
+  private static final float[] NO_STD_RGB = {1f, 1f, 1f};
+
+  private TextView mOutputText;
+
+  @Override
+  protected void onCreate(@Nullable Bundle savedInstanceState) {
+    super.onCreate(savedInstanceState);
+    setContentView(R.layout.activity_model_benchmark);
+    final Toolbar toolbar = findViewById(R.id.toolbar);
+    toolbar.setTitle(R.string.preprocess_benchmark_title);
+    mOutputText = findViewById(R.id.model_benchmark_output_text);
+  }
+
+  @Override
+  protected void onPostCreate(@Nullable Bundle savedInstanceState) {
+    super.onPostCreate(savedInstanceState);
+    runInBackground(this::runBenchmark);
+  }
+
+  @Override
+  protected InferenceExecutor.Lane getInferenceLane() {
+    return InferenceExecutor.Lane.BATCH;
+  }
+
+  @WorkerThread
+  private void runBenchmark() {
+    final PreprocessBenchmark benchmark = new PreprocessBenchmark(
+        getIntent().getIntExtra(INTENT_WARMUP_FRAMES, DEFAULT_WARMUP_FRAMES),
+        getIntent().getIntExtra(INTENT_FRAMES, DEFAULT_FRAMES),
+        PreprocessBenchmarkActivity::heapBytesAllocated);
+    final String frameInput = String.format(Locale.US, "yuv420 %dx%d", FRAME_WIDTH, FRAME_HEIGHT);
+
+    final Random random = new Random(INPUT_SEED);
+    final ByteBuffer yPlane = newRandomPlane(FRAME_WIDTH * FRAME_HEIGHT, random);
+    // Interleaved chroma with a pixel stride of 2, as most camera HALs deliver YUV_420_888.
+    final ByteBuffer vuPlane = newRandomPlane(FRAME_WIDTH * FRAME_HEIGHT / 2, random);
+    final ByteBuffer vPlane = vuPlane.duplicate();
+    vuPlane.position(1);
+    final ByteBuffer uPlane = vuPlane.slice();
+    final FrameScaler.Source frame = FrameScaler.yuv420(yPlane, FRAME_WIDTH, uPlane, vPlane,
+        FRAME_WIDTH, 2, FRAME_WIDTH, FRAME_HEIGHT);
+
+    ImageReader reader = null;
+    Image image = null;
+    try {
+      reader = ImageReader.newInstance(FRAME_WIDTH, FRAME_HEIGHT, ImageFormat.YUV_420_888, 1);
+      image = newSyntheticImage(reader, random);
+    } catch (RuntimeException | InterruptedException e) {
+      Log.e(Constants.TAG, "Cannot create a synthetic camera image", e);
+    }
+    try {
+      if (image != null) {
+        for (ModelManifest.Layout layout : ModelManifest.Layout.values()) {
+          final ImageTensorBuffer buffer = new ImageTensorBuffer(224, 224, layout);
+          final Image cameraImage = image;
+          final String stage =
+              "image_classification_center_crop_224_" + layout.name().toLowerCase(Locale.US);
+          report(benchmark.run(stage, frameInput,
+              () -> buffer.writeImage(cameraImage, FRAME_ROTATION)));
+        }
+      } else {
+        appendOutput("image_classification: skipped, no synthetic camera image");
+      }
+      report(benchmark.run("object_detection_jpeg_scale_640", frameInput,
+          newDetectionStage(yPlane, uPlane, vPlane, DETECTION_INPUT_SIZE)));
+      report(benchmark.run("d2go_jpeg_rotate_full_frame", frameInput,
+          newDetectionStage(yPlane, uPlane, vPlane, 0)));
+      report(benchmark.run("torchvideo_center_crop_160_of_4", frameInput, newVideoStage(frame)));
+      report(benchmark.run("asl_roi_200_bgr", frameInput, newAslStage(frame)));
+      report(benchmark.run("mnist_strokes_28", "strokes " + MNIST_STROKE_POINTS + " points",
+          newMnistStage(random)));
+    } finally {
+      if (image != null) {
+        image.close();
+      }
+      if (reader != null) {
+        reader.close();
+      }
+    }
+
+    final String json = benchmark.toJson(Build.MANUFACTURER + " " + Build.MODEL);
+    Log.i(Constants.TAG, "Preprocess benchmark report: " + json);
+    final File dir = getExternalFilesDir(null);
+    if (dir != null) {
+      final File file = new File(dir, REPORT_FILE_NAME);
+      try (OutputStream os = new FileOutputStream(file)) {
+        os.write(json.getBytes(StandardCharsets.UTF_8));
+        appendOutput("Report written to " + file.getAbsolutePath());
+      } catch (IOException e) {
+        Log.e(Constants.TAG, "Error writing preprocess benchmark report", e);
+      }
+    }
+  }
+
+  /**
+   * ObjectDetection and D2Go: NV21 copy of the planes, JPEG round trip decoded into a reused
+   * bitmap, then rotation in the tensor writer. ObjectDetection scales to {@code inputSize}
+   * first by drawing into a second reused bitmap; D2Go ({@code 0}) keeps the full frame. The
+   * reused bitmaps stand in for the apps' bitmap pools, which hand back the same two bitmaps
+   * once warm.
+   */
+  private static Runnable newDetectionStage(
+      ByteBuffer yPlane, ByteBuffer uPlane, ByteBuffer vPlane, int inputSize) {
+    final int width = inputSize > 0 ? inputSize : FRAME_WIDTH;
+    final int height = inputSize > 0 ? inputSize : FRAME_HEIGHT;
+    final BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inMutable = true;
+    options.inBitmap = Bitmap.createBitmap(FRAME_WIDTH, FRAME_HEIGHT, Bitmap.Config.ARGB_8888);
+    final Bitmap scaled = inputSize > 0
+        ? Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
+        : null;
+    final Rect scaledRect = new Rect(0, 0, width, height);
+    final int[] pixels = new int[width * height];
+    return () -> {
+      final ByteBuffer y = yPlane.duplicate();
+      final ByteBuffer u = uPlane.duplicate();
+      final ByteBuffer v = vPlane.duplicate();
+      final byte[] nv21 = new byte[y.remaining() + u.remaining() + v.remaining()];
+      final int ySize = y.remaining();
+      final int vSize = v.remaining();
+      y.get(nv21, 0, ySize);
+      v.get(nv21, ySize, vSize);
+      u.get(nv21, ySize + vSize, u.remaining());
+      final YuvImage yuvImage = new YuvImage(nv21, ImageFormat.NV21, FRAME_WIDTH, FRAME_HEIGHT, null);
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      yuvImage.compressToJpeg(new Rect(0, 0, FRAME_WIDTH, FRAME_HEIGHT), 75, out);
+      final byte[] jpeg = out.toByteArray();
+      Bitmap bitmap = BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+      if (scaled != null) {
+        new Canvas(scaled).drawBitmap(bitmap, null, scaledRect, DETECTION_SCALE_PAINT);
+        bitmap = scaled;
+      }
+      bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+      final FloatBuffer buffer = Tensor.allocateFloatBuffer(3 * width * height);
+      RotatedTensorWriter.write(pixels, width, height, FRAME_ROTATION, false,
+          NO_MEAN_RGB, NO_STD_RGB, DETECTION_INPUT_MEMORY_FORMAT, buffer, 0);
+    };
+  }
+
+  /** TorchVideo: center square scaled to 160 and rotated, normalized into a 4-frame buffer. */
+  private static Runnable newVideoStage(FrameScaler.Source frame) {
+    final int planeSize = VIDEO_FRAME_SIZE * VIDEO_FRAME_SIZE;
+    final int[] pixels = new int[planeSize];
+    final FloatBuffer buffer = Tensor.allocateFloatBuffer(3 * VIDEO_FRAMES_PER_INFERENCE * planeSize);
+    final int[] frameIndex = {0};
+    final int side = Math.min(frame.width, frame.height);
+    return () -> {
+      FrameScaler.scale(frame, (frame.width - side) / 2, (frame.height - side) / 2, side, side,
+          FRAME_ROTATION, false, FrameScaler.Mode.AUTO, VIDEO_FRAME_SIZE, VIDEO_FRAME_SIZE, pixels);
+      final int offset = (VIDEO_FRAMES_PER_INFERENCE - 1) * frameIndex[0] * planeSize;
+      for (int i = 0; i < planeSize; i++) {
+        final int c = pixels[i];
+        buffer.put(offset + i, (((c >> 16) & 0xff) / 255.0f - VIDEO_MEAN_RGB[0]) / VIDEO_STD_RGB[0]);
+        buffer.put(offset + planeSize + i,
+            (((c >> 8) & 0xff) / 255.0f - VIDEO_MEAN_RGB[1]) / VIDEO_STD_RGB[1]);
+        buffer.put(offset + 2 * planeSize + i, ((c & 0xff) / 255.0f - VIDEO_MEAN_RGB[2]) / VIDEO_STD_RGB[2]);
+      }
+      frameIndex[0] = (frameIndex[0] + 1) % VIDEO_FRAMES_PER_INFERENCE;
+    };
+  }
+
+  /**
+   * ASLRecognition: tracker thumbnail and a centered hand region scaled to 200, converted to
+   * planar BGR. The tracker itself is not included.
+   */
+  private static Runnable newAslStage(FrameScaler.Source frame) {
+    final int thumbnailHeight = ASL_THUMBNAIL_WIDTH * frame.width / frame.height;
+    final int[] thumbnail = new int[ASL_THUMBNAIL_WIDTH * thumbnailHeight];
+    final int pixelCount = ASL_INPUT_SIZE * ASL_INPUT_SIZE;
+    final int[] pixels = new int[pixelCount];
+    final float[] planar = new float[3 * pixelCount];
+    final FloatBuffer buffer = Tensor.allocateFloatBuffer(3 * pixelCount);
+    final int[] crop = FrameScaler.cropForRotatedRegion(0.2f, 0.3f, 0.8f, 0.75f,
+        frame.width, frame.height, FRAME_ROTATION, false);
+    return () -> {
+      FrameScaler.scale(frame, 0, 0, frame.width, frame.height, FRAME_ROTATION, false,
+          FrameScaler.Mode.BOX, ASL_THUMBNAIL_WIDTH, thumbnailHeight, thumbnail);
+      FrameScaler.scale(frame, crop[0], crop[1], crop[2], crop[3], FRAME_ROTATION, false,
+          FrameScaler.Mode.AUTO, ASL_INPUT_SIZE, ASL_INPUT_SIZE, pixels);
+      for (int i = 0; i < pixelCount; i++) {
+        final int colour = pixels[i];
+        planar[i] = colour & 0xff;
+        planar[pixelCount + i] = (colour >> 8) & 0xff;
+        planar[2 * pixelCount + i] = (colour >> 16) & 0xff;
+      }
+      buffer.rewind();
+      buffer.put(planar);
+    };
+  }
+
+  /** ViT4MNIST: drawn points rasterized into a 28x28 input. */
+  private static Runnable newMnistStage(Random random) {
+    final float[] xs = new float[MNIST_STROKE_POINTS];
+    final float[] ys = new float[MNIST_STROKE_POINTS];
+    for (int i = 0; i < MNIST_STROKE_POINTS; i++) {
+      xs[i] = random.nextFloat() * MNIST_VIEW_SIZE;
+      ys[i] = random.nextFloat() * MNIST_VIEW_SIZE;
+    }
+    return () -> {
+      final double[] inputs = new double[MNIST_IMAGE_SIZE * MNIST_IMAGE_SIZE];
+      for (int i = 0; i < MNIST_STROKE_POINTS; i++) {
+        final int x = MNIST_IMAGE_SIZE * (int) xs[i] / MNIST_VIEW_SIZE;
+        final int y = MNIST_IMAGE_SIZE * (int) ys[i] / MNIST_VIEW_SIZE;
+        inputs[y * MNIST_IMAGE_SIZE + x] = 1;
+      }
+      final FloatBuffer buffer = Tensor.allocateFloatBuffer(inputs.length);
+      for (double value : inputs) {
+        buffer.put((float) value);
+      }
+    };
+  }
+
+  /** A YUV_420_888 image from the camera image pipeline, filled with random pixels. */
+  @Nullable
+  private static Image newSyntheticImage(ImageReader reader, Random random)
+      throws InterruptedException {
+    try (ImageWriter writer = ImageWriter.newInstance(reader.getSurface(), 1)) {
+      final Image input = writer.dequeueInputImage();
+      for (Image.Plane plane : input.getPlanes()) {
+        final ByteBuffer buffer = plane.getBuffer();
+        final byte[] bytes = new byte[buffer.remaining()];
+        random.nextBytes(bytes);
+        buffer.put(bytes);
+      }
+      writer.queueInputImage(input);
+    }
+    final long deadline = SystemClock.elapsedRealtime() + IMAGE_TIMEOUT_MS;
+    while (SystemClock.elapsedRealtime() < deadline) {
+      final Image image = reader.acquireLatestImage();
+      if (image != null) {
+        return image;
+      }
+      Thread.sleep(5);
+    }
+    return null;
+  }
+
+  private static ByteBuffer newRandomPlane(int size, Random random) {
+    final byte[] bytes = new byte[size];
+    random.nextBytes(bytes);
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+    buffer.put(bytes);
+    buffer.rewind();
+    return buffer;
+  }
+
+  /** Bytes allocated on the Java heap by the whole process, -1 if the runtime does not say. */
+  private static long heapBytesAllocated() {
+    final String value = Debug.getRuntimeStat("art.gc.bytes-allocated");
+    try {
+      return value != null ? Long.parseLong(value) : -1;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private void report(PreprocessBenchmark.Result result) {
+    appendOutput(result.toString());
+  }
+
+  private void appendOutput(String line) {
+    runOnUiThread(() -> mOutputText.append(line + "\n"));
+  }
+}
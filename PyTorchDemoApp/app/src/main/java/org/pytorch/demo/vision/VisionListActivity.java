@@ -27,6 +27,17 @@ public class VisionListActivity extends AbstractListActivity {
           InfoViewFactory.INFO_VIEW_TYPE_IMAGE_CLASSIFICATION_RESNET);
       startActivity(intent);
     });
+    findViewById(R.id.vision_card_auto_click_area).setOnClickListener(v -> {
+      final Intent intent = new Intent(VisionListActivity.this, ImageClassificationActivity.class);
+      intent.putExtra(ImageClassificationActivity.INTENT_TASK, "image_classification");
+      startActivity(intent);
+    });
+    findViewById(R.id.vision_card_ensemble_click_area).setOnClickListener(v ->
+        startActivity(new Intent(VisionListActivity.this, EnsembleClassificationActivity.class)));
+    findViewById(R.id.vision_card_benchmark_click_area).setOnClickListener(v ->
+        startActivity(new Intent(VisionListActivity.this, ModelBenchmarkActivity.class)));
+    findViewById(R.id.vision_card_preprocess_benchmark_click_area).setOnClickListener(v ->
+        startActivity(new Intent(VisionListActivity.this, PreprocessBenchmarkActivity.class)));
   }
 
   @Override
@@ -0,0 +1,51 @@
+package org.pytorch.demo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BenchmarkReportTest {
+
+  @Test
+  public void serializesEntriesInOrder() {
+    final BenchmarkStats stats = BenchmarkStats.of(new long[]{1_000_000});
+    final BenchmarkReport report = new BenchmarkReport("Pixel 7", "synthetic");
+    report.add(new BenchmarkReport.Entry("a.pt", 2, "NCHW", 5, 12_500_000, 1024, stats));
+    report.add(new BenchmarkReport.Entry("b.pt", 4, "NHWC", 5, 0, 0, stats));
+
+    assertEquals("{\"device\":\"Pixel 7\",\"input\":\"synthetic\",\"results\":["
+            + "{\"model\":\"a.pt\",\"threads\":2,\"layout\":\"NCHW\",\"warmup\":5,"
+            + "\"load_ms\":12.500,\"peak_native_heap_bytes\":1024,\"forward\":" + stats.toJson()
+            + "},"
+            + "{\"model\":\"b.pt\",\"threads\":4,\"layout\":\"NHWC\",\"warmup\":5,"
+            + "\"load_ms\":0.000,\"peak_native_heap_bytes\":0,\"forward\":" + stats.toJson()
+            + "}]}",
+        report.toJson());
+  }
+
+  @Test
+  public void serializesLoadEntriesAfterResults() {
+    final BenchmarkStats stats = BenchmarkStats.of(new long[]{40_000_000, 20_000_000});
+    final BenchmarkReport report = new BenchmarkReport("d", "i");
+    report.addLoad(new BenchmarkReport.LoadEntry("a.pt", "ASSET", 40_000_000, stats));
+    report.addLoad(new BenchmarkReport.LoadEntry("a.pt", "FILE", 1_500_000, stats));
+
+    assertEquals("{\"device\":\"d\",\"input\":\"i\",\"results\":[],\"loads\":["
+            + "{\"model\":\"a.pt\",\"source\":\"ASSET\",\"first_ms\":40.000,\"load\":"
+            + stats.toJson() + "},"
+            + "{\"model\":\"a.pt\",\"source\":\"FILE\",\"first_ms\":1.500,\"load\":"
+            + stats.toJson() + "}]}",
+        report.toJson());
+  }
+
+  @Test
+  public void emptyReport() {
+    assertEquals("{\"device\":\"d\",\"input\":\"i\",\"results\":[]}",
+        new BenchmarkReport("d", "i").toJson());
+  }
+
+  @Test
+  public void escapesStrings() {
+    assertEquals("a\\\"b\\\\c\\u000a", BenchmarkReport.escape("a\"b\\c\n"));
+  }
+}
@@ -0,0 +1,67 @@
+package org.pytorch.demo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BenchmarkStatsTest {
+
+  @Test
+  public void nearestRankPercentiles() {
+    final long[] samples = new long[100];
+    for (int i = 0; i < samples.length; i++) {
+      // Shuffled 1..100.
+      samples[i] = (i * 37) % 100 + 1;
+    }
+    final BenchmarkStats stats = BenchmarkStats.of(samples);
+
+    assertEquals(100, stats.count);
+    assertEquals(1, stats.minNanos);
+    assertEquals(100, stats.maxNanos);
+    assertEquals(50, stats.p50Nanos);
+    assertEquals(90, stats.p90Nanos);
+    assertEquals(99, stats.p99Nanos);
+    assertEquals(50.5, stats.meanNanos, 1e-9);
+  }
+
+  @Test
+  public void sampleStandardDeviation() {
+    final BenchmarkStats stats = BenchmarkStats.of(new long[]{2, 4, 4, 4, 5, 5, 7, 9});
+
+    assertEquals(5.0, stats.meanNanos, 1e-9);
+    assertEquals(Math.sqrt(32.0 / 7), stats.stddevNanos, 1e-9);
+  }
+
+  @Test
+  public void doesNotReorderInput() {
+    final long[] samples = {3, 1, 2};
+    BenchmarkStats.of(samples);
+
+    assertEquals(3, samples[0]);
+    assertEquals(1, samples[1]);
+  }
+
+  @Test
+  public void singleAndNoSamples() {
+    final BenchmarkStats single = BenchmarkStats.of(new long[]{7});
+    assertEquals(7, single.p50Nanos);
+    assertEquals(7, single.p99Nanos);
+    assertEquals(0, single.stddevNanos, 0);
+
+    final BenchmarkStats empty = BenchmarkStats.of(new long[0]);
+    assertEquals(0, empty.count);
+    assertEquals(0, empty.p50Nanos);
+    assertEquals(0, empty.meanNanos, 0);
+  }
+
+  @Test
+  public void jsonInMilliseconds() {
+    final String json = BenchmarkStats.of(new long[]{1_000_000, 3_000_000}).toJson();
+
+    assertTrue(json, json.contains("\"count\":2"));
+    assertTrue(json, json.contains("\"mean_ms\":2.000"));
+    assertTrue(json, json.contains("\"p50_ms\":1.000"));
+    assertTrue(json, json.contains("\"max_ms\":3.000"));
+  }
+}
@@ -0,0 +1,182 @@
+package org.pytorch.demo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FileMaterializerTest {
+
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  private byte[] mData;
+  private File mTarget;
+  private CountingSource mSource;
+
+  @Before
+  public void setUp() throws IOException {
+    mData = new byte[3 * FileMaterializer.BUFFER_SIZE + 123];
+    new Random(7).nextBytes(mData);
+    mTarget = new File(mFolder.getRoot(), "model.pt");
+    mSource = new CountingSource(mData);
+    FileMaterializer.clearVerified();
+  }
+
+  @Test
+  public void freshCopy() throws IOException {
+    final FileMaterializer.Result result = FileMaterializer.materialize(mSource, mTarget, "1", null);
+
+    assertTrue(result.extracted);
+    assertEquals(mData.length, result.bytes);
+    assertEquals(FileMaterializer.sha256(mTarget), result.sha256);
+    assertArrayEquals(mData, Files.readAllBytes(mTarget.toPath()));
+    assertTrue(new File(mTarget.getPath() + ".meta").isFile());
+    assertNoTempFiles();
+  }
+
+  @Test
+  public void reusesValidCopy() throws IOException {
+    FileMaterializer.materialize(mSource, mTarget, "1", null);
+    final FileMaterializer.Result result = FileMaterializer.materialize(mSource, mTarget, "1", null);
+
+    assertFalse(result.extracted);
+    assertEquals(1, mSource.opens.get());
+  }
+
+  @Test
+  public void reusesValidCopyInNewProcess() throws IOException {
+    FileMaterializer.materialize(mSource, mTarget, "1", null);
+    FileMaterializer.clearVerified();
+    final FileMaterializer.Result result = FileMaterializer.materialize(mSource, mTarget, "1", null);
+
+    assertFalse(result.extracted);
+    assertEquals(1, mSource.opens.get());
+  }
+
+  @Test
+  public void reextractsTruncatedFile() throws IOException {
+    FileMaterializer.materialize(mSource, mTarget, "1", null);
+    try (RandomAccessFile file = new RandomAccessFile(mTarget, "rw")) {
+      file.setLength(mData.length / 2);
+    }
+    final FileMaterializer.Result result = FileMaterializer.materialize(mSource, mTarget, "1", null);
+
+    assertTrue(result.extracted);
+    assertArrayEquals(mData, Files.readAllBytes(mTarget.toPath()));
+  }
+
+  @Test
+  public void reextractsOnStaleStamp() throws IOException {
+    FileMaterializer.materialize(mSource, mTarget, "1", null);
+    final FileMaterializer.Result result = FileMaterializer.materialize(mSource, mTarget, "2", null);
+
+    assertTrue(result.extracted);
+    assertEquals(2, mSource.opens.get());
+  }
+
+  @Test
+  public void reextractsCorruptContents() throws IOException {
+    FileMaterializer.materialize(mSource, mTarget, "1", null);
+    final long lastModified = mTarget.lastModified();
+    try (RandomAccessFile file = new RandomAccessFile(mTarget, "rw")) {
+      file.seek(mData.length / 2);
+      file.write(mData[mData.length / 2] ^ 0xff);
+    }
+    // Same size; make sure the change is visible even on a coarse mtime clock.
+    assertTrue(mTarget.setLastModified(lastModified + 2000));
+    final FileMaterializer.Result result = FileMaterializer.materialize(mSource, mTarget, "1", null);
+
+    assertTrue(result.extracted);
+    assertArrayEquals(mData, Files.readAllBytes(mTarget.toPath()));
+  }
+
+  @Test
+  public void reextractsOnCorruptRecordedHash() throws IOException {
+    final FileMaterializer.Result first = FileMaterializer.materialize(mSource, mTarget, "1", null);
+    final File meta = new File(mTarget.getPath() + ".meta");
+    final String corrupt = new String(Files.readAllBytes(meta.toPath()), StandardCharsets.UTF_8)
+        .replace(first.sha256, "0000000000000000000000000000000000000000000000000000000000000000");
+    Files.write(meta.toPath(), corrupt.getBytes(StandardCharsets.UTF_8));
+    final FileMaterializer.Result result = FileMaterializer.materialize(mSource, mTarget, "1", null);
+
+    assertTrue(result.extracted);
+    assertEquals(first.sha256, result.sha256);
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsUnexpectedHash() throws IOException {
+    FileMaterializer.materialize(mSource, mTarget, "1", "00");
+  }
+
+  @Test
+  public void concurrentCallsExtractOnce() throws Exception {
+    final int threads = 4;
+    final CountDownLatch start = new CountDownLatch(1);
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      final List<Future<FileMaterializer.Result>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(() -> {
+          start.await();
+          return FileMaterializer.materialize(mSource, mTarget, "1", null);
+        }));
+      }
+      start.countDown();
+      int extracted = 0;
+      for (Future<FileMaterializer.Result> future : futures) {
+        if (future.get().extracted) {
+          extracted++;
+        }
+      }
+      assertEquals(1, extracted);
+      assertEquals(1, mSource.opens.get());
+      assertArrayEquals(mData, Files.readAllBytes(mTarget.toPath()));
+      assertNoTempFiles();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void assertNoTempFiles() {
+    for (String name : mFolder.getRoot().list()) {
+      assertFalse(name, name.endsWith(".tmp"));
+    }
+  }
+
+  private static class CountingSource implements FileMaterializer.Source {
+    final AtomicInteger opens = new AtomicInteger();
+    private final byte[] mData;
+
+    CountingSource(byte[] data) {
+      mData = data;
+    }
+
+    @Override
+    public InputStream open() {
+      opens.incrementAndGet();
+      return new ByteArrayInputStream(mData);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package org.pytorch.demo;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+  private static final long MAX_TRACKED_MICROS = (1L << 27) - 1;
+
+  @Test
+  public void smallValuesHaveExactBuckets() {
+    for (int v = 0; v < 16; v++) {
+      assertEquals(v, LatencyHistogram.bucketIndex(v));
+      assertEquals(v, LatencyHistogram.bucketLowerBound(v));
+      assertEquals(1, LatencyHistogram.bucketWidth(v));
+    }
+  }
+
+  @Test
+  public void bucketsAreContiguous() {
+    final int last = LatencyHistogram.bucketIndex(MAX_TRACKED_MICROS);
+    for (int i = 0; i < last; i++) {
+      assertEquals("index " + i,
+          LatencyHistogram.bucketLowerBound(i) + LatencyHistogram.bucketWidth(i),
+          LatencyHistogram.bucketLowerBound(i + 1));
+    }
+  }
+
+  @Test
+  public void valueFallsInsideItsBucket() {
+    final Random random = new Random(30);
+    for (int n = 0; n < 100_000; n++) {
+      final long v = (long) Math.exp(random.nextDouble() * Math.log(MAX_TRACKED_MICROS));
+      final int i = LatencyHistogram.bucketIndex(v);
+      final long lower = LatencyHistogram.bucketLowerBound(i);
+      assertTrue("v=" + v, lower <= v && v < lower + LatencyHistogram.bucketWidth(i));
+      // 16 sub-buckets per power of two bound the width to 1/16 of the lower bound.
+      assertTrue("v=" + v, LatencyHistogram.bucketWidth(i) * 16 <= Math.max(16, lower));
+    }
+  }
+
+  @Test
+  public void powerOfTwoBoundaries() {
+    assertEquals(16, LatencyHistogram.bucketIndex(16));
+    assertEquals(31, LatencyHistogram.bucketIndex(31));
+    assertEquals(32, LatencyHistogram.bucketIndex(32));
+    assertEquals(32, LatencyHistogram.bucketIndex(33));
+    assertEquals(33, LatencyHistogram.bucketIndex(34));
+    assertEquals(1024, LatencyHistogram.bucketLowerBound(LatencyHistogram.bucketIndex(1024)));
+  }
+
+  @Test
+  public void overflowClampsToLastBucket() {
+    final int last = LatencyHistogram.bucketIndex(MAX_TRACKED_MICROS);
+    assertEquals(last, LatencyHistogram.bucketIndex(MAX_TRACKED_MICROS + 1));
+    assertEquals(last, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.recordMicros(1_000_000_000L);
+    assertEquals(1_000_000_000L, histogram.getMaxMicros());
+    // Beyond ~134s every value reports the midpoint of the last bucket.
+    assertEquals(LatencyHistogram.bucketLowerBound(last) + LatencyHistogram.bucketWidth(last) / 2,
+        histogram.percentileMicros(50));
+  }
+
+  @Test
+  public void percentilesWithinResolution() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for (int v = 1; v <= 10_000; v++) {
+      histogram.recordMicros(v);
+    }
+
+    assertEquals(10_000, histogram.getCount());
+    assertEquals(5000.5, histogram.getMeanMicros(), 1e-9);
+    assertEquals(10_000, histogram.getMaxMicros());
+    assertEquals(5000, histogram.percentileMicros(50), 5000 * 0.0625);
+    assertEquals(9000, histogram.percentileMicros(90), 9000 * 0.0625);
+    assertEquals(9900, histogram.percentileMicros(99), 9900 * 0.0625);
+    assertTrue(histogram.percentileMicros(100) <= histogram.getMaxMicros());
+    assertEquals(1, histogram.percentileMicros(0));
+  }
+
+  @Test
+  public void nanosAndNegativeValues() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.recordNanos(7_999);
+    histogram.recordMicros(-5);
+
+    assertEquals(2, histogram.getCount());
+    assertEquals(7, histogram.getMaxMicros());
+    assertEquals(0, histogram.percentileMicros(50));
+    assertEquals(7, histogram.percentileMicros(100));
+  }
+
+  @Test
+  public void emptyAndReset() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.percentileMicros(99));
+    assertEquals(0.0, histogram.getMeanMicros(), 0.0);
+
+    histogram.recordMicros(1234);
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMaxMicros());
+    assertEquals(0, histogram.percentileMicros(50));
+  }
+
+  @Test
+  public void serializesToJson() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.recordMicros(10);
+    histogram.recordMicros(20);
+
+    assertEquals(
+        "{\"count\":2,\"mean_us\":15.0,\"p50_us\":10,\"p90_us\":20,\"p99_us\":20,\"max_us\":20}",
+        histogram.toJson());
+  }
+}
@@ -0,0 +1,97 @@
+package org.pytorch.demo;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ModelManifestTest {
+
+  private static final String MANIFEST = ""
+      + "# task                asset                 precision  input  accuracy  memory_mb  layout\n"
+      + "image_classification  resnet18.pt           fp32       224    69.76     47         nchw\n"
+      + "image_classification  mobilenet_v2.pt       INT8       224    71.0      4.5        nhwc\n"
+      + "\n"
+      + "   # indented comment\n"
+      + "image_classification  mobilenet_v2_160.pt   int8       160    68.5      4   # no layout\n"
+      + "text_classification   reddit.pt1            fp32       0      80        120\n";
+
+  @Test
+  public void parsesVariants() throws IOException {
+    final ModelManifest manifest = parse(MANIFEST);
+
+    assertEquals(4, manifest.getVariants().size());
+    final ModelManifest.Variant resnet = manifest.getVariants().get(0);
+    assertEquals("image_classification", resnet.task);
+    assertEquals("resnet18.pt", resnet.assetName);
+    assertEquals(ModelManifest.Precision.FP32, resnet.precision);
+    assertEquals(224, resnet.inputSize);
+    assertEquals(69.76f, resnet.accuracy, 0f);
+    assertEquals(47L * 1024 * 1024, resnet.memoryBytes);
+    assertEquals(ModelManifest.Layout.NCHW, resnet.layout);
+
+    final ModelManifest.Variant mobilenet = manifest.getVariants().get(1);
+    assertEquals(ModelManifest.Precision.INT8, mobilenet.precision);
+    assertEquals((long) (4.5f * 1024 * 1024), mobilenet.memoryBytes);
+  }
+
+  @Test
+  public void layoutColumn() throws IOException {
+    final ModelManifest manifest = parse(MANIFEST);
+
+    assertEquals(ModelManifest.Layout.NCHW, manifest.findByAsset("resnet18.pt").layout);
+    assertEquals(ModelManifest.Layout.NHWC, manifest.findByAsset("mobilenet_v2.pt").layout);
+    // Omitted, with a trailing comment.
+    assertEquals(ModelManifest.Layout.NCHW, manifest.findByAsset("mobilenet_v2_160.pt").layout);
+  }
+
+  @Test
+  public void variantsByTask() throws IOException {
+    final ModelManifest manifest = parse(MANIFEST);
+
+    final List<ModelManifest.Variant> image = manifest.getVariants("image_classification");
+    assertEquals(3, image.size());
+    assertEquals("mobilenet_v2_160.pt", image.get(2).assetName);
+    assertEquals(1, manifest.getVariants("text_classification").size());
+    assertTrue(manifest.getVariants("segmentation").isEmpty());
+    assertSame(image.get(1), manifest.findByAsset("mobilenet_v2.pt"));
+    assertNull(manifest.findByAsset("missing.pt"));
+  }
+
+  @Test
+  public void emptyManifest() throws IOException {
+    assertTrue(parse("").getVariants().isEmpty());
+    assertTrue(parse("# only a comment\n\n").getVariants().isEmpty());
+  }
+
+  @Test
+  public void rejectsBadRows() {
+    assertRejected("a.pt fp32 224 70 10\n", "Line 1");
+    assertRejected("task a.pt fp32 224 70 10 nchw extra\n", "Line 1");
+    assertRejected("# header\ntask a.pt fp16 224 70 10\n", "Line 2");
+    assertRejected("task a.pt fp32 large 70 10\n", "Line 1");
+    assertRejected("task a.pt fp32 224 high 10\n", "Line 1");
+    assertRejected("task a.pt fp32 224 70 ten\n", "Line 1");
+    assertRejected("task a.pt fp32 224 70 10 planar\n", "Line 1");
+  }
+
+  private static void assertRejected(String manifest, String messagePrefix) {
+    try {
+      parse(manifest);
+      fail("Parsed " + manifest);
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith(messagePrefix));
+    }
+  }
+
+  private static ModelManifest parse(String manifest) throws IOException {
+    return ModelManifest.parse(new StringReader(manifest));
+  }
+}
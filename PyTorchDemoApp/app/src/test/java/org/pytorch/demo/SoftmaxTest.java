@@ -0,0 +1,134 @@
+package org.pytorch.demo;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SoftmaxTest {
+
+  private static final float[] LOGITS = {2.0f, -1.0f, 0.5f, 3.0f, 0.0f, -4.0f};
+
+  @Test
+  public void fastExpRelativeError() {
+    assertEquals(1.0f, Softmax.fastExp(0.0f), 1e-6f);
+    for (float x = -87.0f; x <= 0.0f; x += 0.001f) {
+      final double expected = Math.exp(x);
+      assertEquals("x=" + x, 0.0, (Softmax.fastExp(x) - expected) / expected, 2e-4);
+    }
+  }
+
+  @Test
+  public void fastExpUnderflowsToZero() {
+    assertEquals(0.0f, Softmax.fastExp(-88.0f), 0.0f);
+    assertEquals(0.0f, Softmax.fastExp(Float.NEGATIVE_INFINITY), 0.0f);
+  }
+
+  @Test
+  public void softmaxMatchesReference() {
+    for (boolean fastExp : new boolean[]{false, true}) {
+      for (float temperature : new float[]{0.5f, 1.0f, 3.0f}) {
+        final float[] out = new float[LOGITS.length];
+        Softmax.softmax(LOGITS, temperature, fastExp, out);
+
+        final double[] expected = reference(LOGITS, temperature);
+        float sum = 0;
+        for (int i = 0; i < out.length; i++) {
+          assertEquals(fastExp + " T=" + temperature,
+              expected[i], out[i], 1e-4 * expected[i] + 1e-7);
+          sum += out[i];
+        }
+        assertEquals(1.0f, sum, 1e-5f);
+      }
+    }
+  }
+
+  @Test
+  public void temperatureSharpensAndFlattens() {
+    final float[] cold = new float[LOGITS.length];
+    final float[] warm = new float[LOGITS.length];
+    Softmax.softmax(LOGITS, 0.25f, false, cold);
+    Softmax.softmax(LOGITS, 100.0f, false, warm);
+
+    assertTrue(cold[3] > 0.98f);
+    for (float p : warm) {
+      assertEquals(1.0f / LOGITS.length, p, 0.01f);
+    }
+  }
+
+  @Test
+  public void stableForLargeLogits() {
+    final float[] out = new float[3];
+    Softmax.softmax(new float[]{1000f, 1001f, Float.NEGATIVE_INFINITY}, 1.0f, true, out);
+
+    assertEquals(1.0 / (1.0 + Math.E), out[0], 1e-4);
+    assertEquals(Math.E / (1.0 + Math.E), out[1], 1e-4);
+    assertEquals(0.0f, out[2], 0.0f);
+  }
+
+  @Test
+  public void logSoftmaxIsLogOfSoftmax() {
+    for (boolean fastExp : new boolean[]{false, true}) {
+      final float[] out = new float[LOGITS.length];
+      Softmax.logSoftmax(LOGITS, 2.0f, fastExp, out);
+
+      final double[] expected = reference(LOGITS, 2.0f);
+      for (int i = 0; i < out.length; i++) {
+        assertEquals(Math.log(expected[i]), out[i], 1e-4);
+      }
+    }
+  }
+
+  @Test
+  public void topKReturnsRankedProbabilities() {
+    final Random random = new Random(29);
+    final float[] logits = new float[1000];
+    for (int i = 0; i < logits.length; i++) {
+      logits[i] = (float) random.nextGaussian() * 4;
+    }
+    for (boolean fastExp : new boolean[]{false, true}) {
+      final float[] probs = new float[5];
+      final int[] ixs = Softmax.topK(logits, 5, 1.5f, fastExp, probs);
+
+      assertArrayEquals(TopK.topK(logits, 5), ixs);
+      final float[] all = new float[logits.length];
+      Softmax.softmax(logits, 1.5f, fastExp, all);
+      for (int i = 0; i < ixs.length; i++) {
+        assertEquals(all[ixs[i]], probs[i], 1e-6f);
+        if (i > 0) {
+          assertTrue(probs[i] <= probs[i - 1]);
+        }
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsZeroTemperature() {
+    Softmax.softmax(LOGITS, 0.0f, false, new float[LOGITS.length]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNaNTemperature() {
+    Softmax.topK(LOGITS, 1, Float.NaN, false, new float[1]);
+  }
+
+  private static double[] reference(float[] logits, float temperature) {
+    double max = Double.NEGATIVE_INFINITY;
+    for (float v : logits) {
+      max = Math.max(max, v);
+    }
+    final double[] out = new double[logits.length];
+    double sum = 0;
+    for (int i = 0; i < logits.length; i++) {
+      out[i] = Math.exp((logits[i] - max) / temperature);
+      sum += out[i];
+    }
+    for (int i = 0; i < out.length; i++) {
+      out[i] /= sum;
+    }
+    return out;
+  }
+}
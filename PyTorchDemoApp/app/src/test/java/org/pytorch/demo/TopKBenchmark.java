@@ -0,0 +1,120 @@
+package org.pytorch.demo;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Times every {@link TopK.Strategy} over Gaussian logits for n = 1k to 100k and k = 1 to 100, the
+ * grid {@link TopK}'s cut-offs come from. Not a test: run it on a desktop JVM from the compiled
+ * test classes, e.g.
+ * {@code java -cp app/build/intermediates/javac/debugUnitTest/classes:<main classes> org.pytorch.demo.TopKBenchmark}.
+ *
+ * <p>Each strategy runs in a JVM of its own, as JMH forks do: timed in one JVM, whichever strategy
+ * ran first gets the best-compiled comparisons and wins. Each strategy is warmed up on the same
+ * inputs before it is timed, and each figure is the median over rounds of the mean time per call
+ * across {@link #INPUTS} inputs, in microseconds.
+ */
+public class TopKBenchmark {
+
+  private static final int[] SIZES = {1_000, 10_000, 100_000};
+  private static final int[] KS = {1, 5, 10, 16, 24, 32, 48, 64, 100};
+  private static final TopK.Strategy[] STRATEGIES =
+      {TopK.Strategy.INSERTION, TopK.Strategy.HEAP, TopK.Strategy.QUICKSELECT};
+  private static final int INPUTS = 16;
+  private static final int ROUNDS = 15;
+  private static final long WARMUP_NANOS = 300_000_000L;
+
+  // Keeps the results alive so the calls cannot be optimized away.
+  private static volatile long sSink;
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length == 1) {
+      runFork(TopK.Strategy.valueOf(args[0]));
+      return;
+    }
+    final double[][] micros = new double[STRATEGIES.length][];
+    for (int s = 0; s < STRATEGIES.length; s++) {
+      micros[s] = fork(STRATEGIES[s]);
+    }
+    System.out.println("     n    k  insertion       heap  quickselect  auto");
+    int row = 0;
+    for (int n : SIZES) {
+      for (int k : KS) {
+        final StringBuilder line = new StringBuilder(String.format(Locale.US, "%6d  %3d", n, k));
+        for (double[] column : micros) {
+          line.append(String.format(Locale.US, "  %9.2f", column[row]));
+        }
+        System.out.println(line.append("  ").append(TopK.chooseStrategy(n, k)));
+        row++;
+      }
+    }
+  }
+
+  /** Runs {@code strategy} over the whole grid in a child JVM; one time per row. */
+  private static double[] fork(TopK.Strategy strategy) throws IOException, InterruptedException {
+    final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator
+        + "java";
+    final Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+        TopKBenchmark.class.getName(), strategy.name())
+        .redirectErrorStream(true)
+        .start();
+    final double[] micros = new double[SIZES.length * KS.length];
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+      for (int row = 0; row < micros.length; row++) {
+        micros[row] = Double.parseDouble(reader.readLine());
+      }
+    }
+    if (process.waitFor() != 0) {
+      throw new IOException(strategy + " fork failed");
+    }
+    return micros;
+  }
+
+  private static void runFork(TopK.Strategy strategy) {
+    for (int n : SIZES) {
+      final float[][] inputs = newInputs(n);
+      for (int k : KS) {
+        System.out.println(time(inputs, k, strategy));
+      }
+    }
+  }
+
+  private static double time(float[][] inputs, int k, TopK.Strategy strategy) {
+    final long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+    while (System.nanoTime() < warmupEnd) {
+      runAll(inputs, k, strategy);
+    }
+    final long[] samples = new long[ROUNDS];
+    for (int r = 0; r < ROUNDS; r++) {
+      final long startTime = System.nanoTime();
+      runAll(inputs, k, strategy);
+      samples[r] = (System.nanoTime() - startTime) / inputs.length;
+    }
+    return BenchmarkStats.of(samples).p50Nanos / 1e3;
+  }
+
+  private static void runAll(float[][] inputs, int k, TopK.Strategy strategy) {
+    long sink = 0;
+    for (float[] input : inputs) {
+      sink += TopK.topK(input, k, strategy)[0];
+    }
+    sSink += sink;
+  }
+
+  private static float[][] newInputs(int n) {
+    final Random random = new Random(n);
+    final float[][] inputs = new float[INPUTS][n];
+    for (float[] input : inputs) {
+      for (int i = 0; i < n; i++) {
+        input[i] = (float) random.nextGaussian();
+      }
+    }
+    return inputs;
+  }
+}
@@ -0,0 +1,137 @@
+package org.pytorch.demo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class VariantSelectorTest {
+
+  private static final long MB = 1024 * 1024;
+  private static final long PLENTY = 1024 * MB;
+  private static final float ACCURACY_BUDGET = 3f;
+
+  private ModelManifest.Variant mFp32;
+  private ModelManifest.Variant mInt8;
+  private ModelManifest.Variant mInt8Small;
+  private VariantSelector mSelector;
+
+  @Before
+  public void setUp() {
+    mFp32 = variant("fp32.pt", ModelManifest.Precision.FP32, 224, 71f, 50);
+    mInt8 = variant("int8.pt", ModelManifest.Precision.INT8, 224, 70f, 10);
+    // Outside the accuracy budget.
+    mInt8Small = variant("int8_160.pt", ModelManifest.Precision.INT8, 160, 66f, 5);
+    mSelector = new VariantSelector(Arrays.asList(mInt8Small, mInt8, mFp32), ACCURACY_BUDGET);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNoVariants() {
+    new VariantSelector(Collections.<ModelManifest.Variant>emptyList(), ACCURACY_BUDGET);
+  }
+
+  @Test
+  public void triesUnmeasuredMostAccurateFirst() {
+    assertSame(mFp32, mSelector.select(PLENTY));
+    assertSame(mFp32, mSelector.getCurrent());
+    mSelector.recordLatencyNanos(mFp32, ms(40));
+
+    assertSame(mInt8, mSelector.select(PLENTY));
+  }
+
+  @Test
+  public void picksFastestOnceMeasured() {
+    mSelector.recordLatencyNanos(mFp32, ms(40));
+    mSelector.recordLatencyNanos(mInt8, ms(15));
+
+    assertSame(mInt8, mSelector.select(PLENTY));
+  }
+
+  @Test
+  public void neverPicksVariantOutsideAccuracyBudget() {
+    mSelector.recordLatencyNanos(mFp32, ms(40));
+    mSelector.recordLatencyNanos(mInt8, ms(15));
+    mSelector.recordLatencyNanos(mInt8Small, ms(1));
+
+    assertSame(mInt8, mSelector.select(PLENTY));
+  }
+
+  @Test
+  public void keepsCurrentUnlessClearlyFaster() {
+    mSelector.recordLatencyNanos(mFp32, ms(20));
+    mSelector.recordLatencyNanos(mInt8, ms(21));
+    assertSame(mFp32, mSelector.select(PLENTY));
+
+    // Within 10% of the current variant: noise, no switch.
+    setLatency(mInt8, 18.5f);
+    assertSame(mFp32, mSelector.select(PLENTY));
+
+    // Clearly faster: switch, and the same margin now protects the new current variant.
+    setLatency(mInt8, 17f);
+    assertSame(mInt8, mSelector.select(PLENTY));
+    setLatency(mFp32, 16f);
+    assertSame(mInt8, mSelector.select(PLENTY));
+    setLatency(mFp32, 15f);
+    assertSame(mFp32, mSelector.select(PLENTY));
+  }
+
+  @Test
+  public void skipsVariantsThatDoNotFit() {
+    assertSame(mInt8, mSelector.select(20 * MB));
+  }
+
+  @Test
+  public void countsCurrentVariantMemoryAsFree() {
+    mSelector.recordLatencyNanos(mFp32, ms(40));
+    assertSame(mInt8, mSelector.select(20 * MB));
+    mSelector.recordLatencyNanos(mInt8, ms(60));
+
+    // 45MB free plus the 10MB the int8 variant releases fits the fp32 one.
+    assertSame(mFp32, mSelector.select(45 * MB));
+  }
+
+  @Test
+  public void keepsCurrentVariantUnderMemoryPressure() {
+    assertSame(mFp32, mSelector.select(PLENTY));
+    mSelector.recordLatencyNanos(mFp32, ms(40));
+    mSelector.recordLatencyNanos(mInt8, ms(39));
+
+    assertSame(mFp32, mSelector.select(0));
+  }
+
+  @Test
+  public void fallsBackToSmallestWhenNothingFits() {
+    assertSame(mInt8Small, mSelector.select(0));
+  }
+
+  @Test
+  public void smoothsLatency() {
+    assertNull(mSelector.getLatencyMillis(mFp32));
+    mSelector.recordLatencyNanos(mFp32, ms(10));
+    assertEquals(10f, mSelector.getLatencyMillis(mFp32), 1e-4f);
+    mSelector.recordLatencyNanos(mFp32, ms(20));
+    assertEquals(12f, mSelector.getLatencyMillis(mFp32), 1e-4f);
+  }
+
+  /** Records enough samples that the smoothed latency of {@code variant} converges to {@code millis}. */
+  private void setLatency(ModelManifest.Variant variant, float millis) {
+    for (int i = 0; i < 200; i++) {
+      mSelector.recordLatencyNanos(variant, (long) (millis * 1e6f));
+    }
+  }
+
+  private static long ms(long millis) {
+    return millis * 1_000_000;
+  }
+
+  private static ModelManifest.Variant variant(String assetName, ModelManifest.Precision precision,
+                                               int inputSize, float accuracy, long memoryMb) {
+    return new ModelManifest.Variant("image_classification", assetName, precision, inputSize,
+        accuracy, memoryMb * MB, ModelManifest.Layout.NCHW);
+  }
+}
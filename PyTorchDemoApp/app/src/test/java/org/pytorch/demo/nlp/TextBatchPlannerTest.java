@@ -0,0 +1,99 @@
+package org.pytorch.demo.nlp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TextBatchPlannerTest {
+
+  @Test
+  public void equalLengthsShareABatchWithoutPadding() {
+    final List<byte[]> inputs = inputs("abc", "de", "fgh", "ij", "klm");
+    final List<TextBatchPlanner.Batch> batches = TextBatchPlanner.plan(inputs, 8, 0);
+
+    assertEquals(2, batches.size());
+    assertArrayEquals(new int[]{1, 3}, batches.get(0).inputIndices);
+    assertEquals(2, batches.get(0).length);
+    assertArrayEquals(new int[]{0, 2, 4}, batches.get(1).inputIndices);
+    assertEquals(3, batches.get(1).length);
+    assertEquals(0, TextBatchPlanner.paddingBytes(batches, inputs));
+  }
+
+  @Test
+  public void respectsMaxBatchSize() {
+    final List<byte[]> inputs = inputs("a", "b", "c", "d", "e");
+    final List<TextBatchPlanner.Batch> batches = TextBatchPlanner.plan(inputs, 2, 0);
+
+    assertEquals(3, batches.size());
+    assertArrayEquals(new int[]{0, 1}, batches.get(0).inputIndices);
+    assertArrayEquals(new int[]{2, 3}, batches.get(1).inputIndices);
+    assertArrayEquals(new int[]{4}, batches.get(2).inputIndices);
+  }
+
+  @Test
+  public void padsWithinMaxPadBytes() {
+    final List<byte[]> inputs = inputs("aaaa", "b", "cc", "ddddddd");
+    final List<TextBatchPlanner.Batch> batches = TextBatchPlanner.plan(inputs, 8, 3);
+
+    // Sorted by length 1, 2, 4, 7: {1, 2, 4} differ by at most 3, 7 starts a new batch.
+    assertEquals(2, batches.size());
+    assertArrayEquals(new int[]{1, 2, 0}, batches.get(0).inputIndices);
+    assertEquals(4, batches.get(0).length);
+    assertArrayEquals(new int[]{3}, batches.get(1).inputIndices);
+    assertEquals((4 - 1) + (4 - 2), TextBatchPlanner.paddingBytes(batches, inputs));
+  }
+
+  @Test
+  public void everyInputIsPlannedOnce() {
+    final List<byte[]> inputs = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      inputs.add(new byte[(i * 7) % 13 + 1]);
+    }
+    final boolean[] seen = new boolean[inputs.size()];
+    for (TextBatchPlanner.Batch batch : TextBatchPlanner.plan(inputs, 5, 2)) {
+      for (int index : batch.inputIndices) {
+        assertEquals(false, seen[index]);
+        seen[index] = true;
+        assertEquals(true, batch.length >= inputs.get(index).length);
+        assertEquals(true, batch.length - inputs.get(index).length <= 2);
+      }
+      assertEquals(true, batch.size() <= 5);
+    }
+    for (boolean s : seen) {
+      assertEquals(true, s);
+    }
+  }
+
+  @Test
+  public void packsRowMajorRightPadded() {
+    final List<byte[]> inputs = inputs("ab", "c");
+    final TextBatchPlanner.Batch batch = TextBatchPlanner.plan(inputs, 8, 1).get(0);
+
+    assertArrayEquals(new int[]{1, 0}, batch.inputIndices);
+    assertArrayEquals(new byte[]{'c', 0, 'a', 'b'}, batch.pack(inputs, (byte) 0));
+    assertArrayEquals(new byte[]{'c', '_', 'a', 'b'}, batch.pack(inputs, (byte) '_'));
+  }
+
+  @Test
+  public void emptyInput() {
+    assertEquals(0, TextBatchPlanner.plan(new ArrayList<>(), 4, 0).size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNonPositiveBatchSize() {
+    TextBatchPlanner.plan(inputs("a"), 0, 0);
+  }
+
+  private static List<byte[]> inputs(String... texts) {
+    final List<byte[]> inputs = new ArrayList<>();
+    for (String text : Arrays.asList(texts)) {
+      inputs.add(text.getBytes());
+    }
+    return inputs;
+  }
+}
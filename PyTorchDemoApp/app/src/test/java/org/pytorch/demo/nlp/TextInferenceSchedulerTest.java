@@ -0,0 +1,97 @@
+package org.pytorch.demo.nlp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TextInferenceSchedulerTest {
+
+  private static final long MS = 1_000_000L;
+
+  @Test
+  public void onlyLatestGenerationIsCurrent() {
+    final TextInferenceScheduler<String> scheduler = new TextInferenceScheduler<>(4);
+    final long first = scheduler.newGeneration();
+    assertTrue(scheduler.isCurrent(first));
+
+    final long second = scheduler.newGeneration();
+    assertTrue(second > first);
+    assertFalse(scheduler.isCurrent(first));
+    assertTrue(scheduler.isCurrent(second));
+  }
+
+  @Test
+  public void shutdownInvalidatesCurrentGeneration() {
+    final TextInferenceScheduler<String> scheduler = new TextInferenceScheduler<>(4);
+    final long generation = scheduler.newGeneration();
+    assertFalse(scheduler.isShutdown());
+
+    scheduler.shutdown();
+    assertTrue(scheduler.isShutdown());
+    assertFalse(scheduler.isCurrent(generation));
+  }
+
+  @Test
+  public void keepUnlessShutdownReleasesLateResources() {
+    final TextInferenceScheduler<String> scheduler = new TextInferenceScheduler<>(4);
+    final List<Object> released = new ArrayList<>();
+    final Object early = new Object();
+    assertSame(early, scheduler.keepUnlessShutdown(early, released::add));
+    assertTrue(released.isEmpty());
+
+    scheduler.shutdown();
+    final Object late = new Object();
+    assertNull(scheduler.keepUnlessShutdown(late, released::add));
+    assertEquals(1, released.size());
+    assertSame(late, released.get(0));
+  }
+
+  @Test
+  public void cacheEvictsLeastRecentlyUsed() {
+    final TextInferenceScheduler<String> scheduler = new TextInferenceScheduler<>(2);
+    scheduler.putCached("a", "A");
+    scheduler.putCached("b", "B");
+    // Reading "a" makes "b" the eldest.
+    assertEquals("A", scheduler.getCached("a"));
+    scheduler.putCached("c", "C");
+
+    assertEquals("A", scheduler.getCached("a"));
+    assertNull(scheduler.getCached("b"));
+    assertEquals("C", scheduler.getCached("c"));
+  }
+
+  @Test
+  public void debounceIsMaximalUntilMeasured() {
+    final TextInferenceScheduler<String> scheduler = new TextInferenceScheduler<>(4);
+    assertEquals(600, scheduler.debounceMillis());
+  }
+
+  @Test
+  public void debounceFollowsLatency() {
+    final TextInferenceScheduler<String> scheduler = new TextInferenceScheduler<>(4);
+    scheduler.recordLatencyNanos(100 * MS);
+    assertEquals(200, scheduler.debounceMillis());
+
+    // EMA with alpha 0.2: 100 + 0.2 * (200 - 100) = 120ms.
+    scheduler.recordLatencyNanos(200 * MS);
+    assertEquals(240, scheduler.debounceMillis());
+  }
+
+  @Test
+  public void debounceIsClamped() {
+    final TextInferenceScheduler<String> fast = new TextInferenceScheduler<>(4);
+    fast.recordLatencyNanos(5 * MS);
+    assertEquals(50, fast.debounceMillis());
+
+    final TextInferenceScheduler<String> slow = new TextInferenceScheduler<>(4);
+    slow.recordLatencyNanos(2_000 * MS);
+    assertEquals(600, slow.debounceMillis());
+  }
+}
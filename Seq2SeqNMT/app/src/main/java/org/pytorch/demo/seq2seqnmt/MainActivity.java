@@ -13,6 +13,7 @@ import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
@@ -83,8 +84,10 @@ public class MainActivity extends AppCompatActivity implements Runnable{
         mButton.setOnClickListener(new View.OnClickListener() {
             public void onClick(View v) {
                 mButton.setEnabled(false);
-                Thread thread = new Thread(MainActivity.this);
-                thread.start();
+                if (!InferenceExecutor.get().tryExecute(InferenceExecutor.Lane.INTERACTIVE, MainActivity.this)) {
+                    mButton.setEnabled(true);
+                    Toast.makeText(MainActivity.this, R.string.inference_busy, Toast.LENGTH_SHORT).show();
+                }
             }
         });
     }
@@ -12,6 +12,7 @@ import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
@@ -91,8 +92,12 @@ public class MainActivity extends AppCompatActivity implements Runnable {
                 mButton.setText(String.format("Listening - %ds left", AUDIO_LEN_IN_SECOND));
                 mButton.setEnabled(false);
 
-                Thread thread = new Thread(MainActivity.this);
-                thread.start();
+                if (!InferenceExecutor.get().tryExecute(InferenceExecutor.Lane.INTERACTIVE, MainActivity.this)) {
+                    mButton.setEnabled(true);
+                    mButton.setText("Start");
+                    Toast.makeText(MainActivity.this, R.string.inference_busy, Toast.LENGTH_SHORT).show();
+                    return;
+                }
 
                 mTimerThread = new HandlerThread("Timer");
                 mTimerThread.start();
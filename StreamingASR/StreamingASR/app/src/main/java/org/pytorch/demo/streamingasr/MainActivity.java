@@ -129,6 +129,7 @@ public class MainActivity extends AppCompatActivity implements Runnable {
         while (mListening) {
             long shortsRead = 0;
             short[] audioBuffer = new short[bufferSize / 2];
+            final long acquireStart = Tracer.begin();
 
             while (shortsRead < chunkToRead * CHUNK_SIZE) {
                 // for every segment of 5 chunks of data, we perform transcription
@@ -143,10 +144,13 @@ public class MainActivity extends AppCompatActivity implements Runnable {
 
                 recordingOffset += numberOfShort;
             }
+            Tracer.end(Tracer.ACQUIRE, acquireStart);
 
+            final long convertStart = Tracer.begin();
             for (int i = 0; i < CHUNK_TO_READ * CHUNK_SIZE; ++i) {
                 floatInputBuffer[i] = recordingBuffer[i] / (float)Short.MAX_VALUE;
             }
+            Tracer.end(Tracer.CONVERT, convertStart);
 
             final String result = recognize(floatInputBuffer);
             if (result.length() > 0)
@@ -156,31 +160,57 @@ public class MainActivity extends AppCompatActivity implements Runnable {
             recordingOffset = CHUNK_SIZE;
             System.arraycopy(recordingBuffer, chunkToRead * CHUNK_SIZE, recordingBuffer, 0, CHUNK_SIZE);
 
-            runOnUiThread(() -> showTranslationResult(all_result));
+            runOnUiThread(() -> {
+                final long renderStart = Tracer.begin();
+                showTranslationResult(all_result);
+                Tracer.end(Tracer.RENDER, renderStart);
+            });
         }
 
         record.stop();
         record.release();
+        writeTrace();
+    }
+
+    /** Writes the recorded spans as Chrome trace JSON to the app's external files directory. */
+    private void writeTrace() {
+        final File dir = getExternalFilesDir(null);
+        if (!Tracer.ENABLED || Tracer.getSpanCount() == 0 || dir == null) {
+            return;
+        }
+        final File file = new File(dir, "trace.json");
+        try {
+            Tracer.writeChromeTrace(file, android.os.Process.myPid());
+            Log.i(TAG, "Trace written to " + file.getAbsolutePath());
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing trace", e);
+        }
     }
 
     private String recognize(double[] inputBuffer) {
+        final long convertStart = Tracer.begin();
         FloatBuffer inTensorBuffer = Tensor.allocateFloatBuffer(INPUT_SIZE);
         for (int i = 0; i < inputBuffer.length - 1; i++) {
             inTensorBuffer.put((float) inputBuffer[i]);
         }
 
         final Tensor inTensor = Tensor.fromBlob(inTensorBuffer, new long[]{INPUT_SIZE});
+        Tracer.end(Tracer.CONVERT, convertStart);
         final long startTime = SystemClock.elapsedRealtime();
+        final long forwardStart = Tracer.begin();
         IValue[] outputTuple;
         if (hypo == null && state == null)
             outputTuple = mModuleEncoder.forward(IValue.from(inTensor)).toTuple();
         else
             outputTuple = mModuleEncoder.forward(IValue.from(inTensor), hypo, state).toTuple();
+        Tracer.end(Tracer.FORWARD, forwardStart);
         final long inferenceTime = SystemClock.elapsedRealtime() - startTime;
         Log.d(TAG, "inference time (ms): " + inferenceTime);
+        final long decodeStart = Tracer.begin();
         final String transcript = outputTuple[0].toStr().replace("▁", "");;
         hypo = outputTuple[1];
         state = outputTuple[2];
+        Tracer.end(Tracer.DECODE, decodeStart);
         if (transcript.length() > 0)
             Log.d(TAG, "transcript=" + transcript);
         return transcript;
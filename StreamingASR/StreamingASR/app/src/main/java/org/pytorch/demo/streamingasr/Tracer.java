@@ -0,0 +1,205 @@
+package org.pytorch.demo.streamingasr;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Per-stage tracing spans, kept in a fixed ring buffer and exported as Chrome trace-event JSON,
+ * which chrome://tracing and ui.perfetto.dev open.
+ *
+ * <pre>
+ * final long start = Tracer.begin();
+ * ...
+ * Tracer.end(Tracer.FORWARD, start);
+ * </pre>
+ *
+ * <p>Recording takes no lock and allocates nothing: a span claims a slot with one atomic increment
+ * and writes name, thread, start and duration into preallocated arrays. A slot's sequence number is
+ * cleared while it is written and set afterwards, so an export running at the same time skips
+ * slots it would read half written. Once the ring is full the oldest spans are overwritten.
+ *
+ * <p>With {@link #ENABLED} false javac compiles the span bodies out, leaving empty methods the
+ * runtime inlines away; {@link #setRecording} pauses recording at run time for the cost of a field
+ * read. Tracing is off by default; set {@link #ENABLED} to true in a local build to record.
+ * Timestamps are {@link System#nanoTime()}, the monotonic clock atrace uses. Thread ids are Java
+ * thread ids; each span keeps its thread's name, so the export names only threads still in the ring.
+ */
+public final class Tracer {
+
+    /** Set to true to compile tracing in. */
+    public static final boolean ENABLED = false;
+
+    public static final String ACQUIRE = "audio acquire";
+    public static final String CONVERT = "convert";
+    public static final String FORWARD = "forward";
+    public static final String DECODE = "decode";
+    public static final String NMS = "nms";
+    public static final String RENDER = "render";
+
+    private static final int CAPACITY = 1 << 13;
+
+    private static final Ring sRing = new Ring(CAPACITY);
+    private static final ThreadLocal<ThreadInfo> sThread = new ThreadLocal<ThreadInfo>() {
+        @Override
+        protected ThreadInfo initialValue() {
+            final Thread thread = Thread.currentThread();
+            return new ThreadInfo(thread.getId(), thread.getName());
+        }
+    };
+
+    private static volatile boolean sRecording = true;
+
+    private static final class ThreadInfo {
+        final long id;
+        final String name;
+
+        ThreadInfo(long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    /**
+     * The span ring behind the static methods. Package-private so tests can record into one of
+     * their own, whatever {@link #ENABLED} is.
+     */
+    static final class Ring {
+        private final int mMask;
+        private final AtomicLong mNext = new AtomicLong();
+        private final AtomicLongArray mSequences;
+        private final AtomicReferenceArray<String> mNames;
+        private final AtomicReferenceArray<ThreadInfo> mThreads;
+        private final AtomicLongArray mStarts;
+        private final AtomicLongArray mDurations;
+
+        /** @param capacity a power of two */
+        Ring(int capacity) {
+            if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+                throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+            }
+            mMask = capacity - 1;
+            mSequences = new AtomicLongArray(capacity);
+            mNames = new AtomicReferenceArray<>(capacity);
+            mThreads = new AtomicReferenceArray<>(capacity);
+            mStarts = new AtomicLongArray(capacity);
+            mDurations = new AtomicLongArray(capacity);
+        }
+
+        void record(String name, long startNanos, long endNanos) {
+            final long index = mNext.getAndIncrement();
+            final int slot = (int) index & mMask;
+            mSequences.set(slot, 0);
+            mNames.lazySet(slot, name);
+            mThreads.lazySet(slot, sThread.get());
+            mStarts.lazySet(slot, startNanos);
+            mDurations.lazySet(slot, endNanos - startNanos);
+            mSequences.lazySet(slot, index + 1);
+        }
+
+        void clear() {
+            for (int i = 0; i <= mMask; i++) {
+                mSequences.set(i, 0);
+            }
+        }
+
+        long getSpanCount() {
+            return mNext.get();
+        }
+
+        String toChromeTraceJson(int pid) {
+            final StringBuilder sb = new StringBuilder();
+            sb.append("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+            final Map<Long, String> threadNames = new LinkedHashMap<>();
+            boolean first = true;
+            final long next = mNext.get();
+            for (long index = Math.max(0, next - mMask - 1); index < next; index++) {
+                final int slot = (int) index & mMask;
+                if (mSequences.get(slot) != index + 1) {
+                    continue;
+                }
+                final String name = mNames.get(slot);
+                final ThreadInfo thread = mThreads.get(slot);
+                final long start = mStarts.get(slot);
+                final long duration = mDurations.get(slot);
+                if (mSequences.get(slot) != index + 1) {
+                    // Overwritten while reading.
+                    continue;
+                }
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                threadNames.put(thread.id, thread.name);
+                sb.append(String.format(Locale.US,
+                        "{\"name\":\"%s\",\"ph\":\"X\",\"pid\":%d,\"tid\":%d,\"ts\":%.3f,\"dur\":%.3f}",
+                        escape(name), pid, thread.id, start / 1000.0, duration / 1000.0));
+            }
+            for (Map.Entry<Long, String> thread : threadNames.entrySet()) {
+                sb.append(String.format(Locale.US,
+                        ",{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":%d,\"tid\":%d,\"args\":{\"name\":\"%s\"}}",
+                        pid, thread.getKey(), escape(thread.getValue())));
+            }
+            return sb.append("]}").toString();
+        }
+    }
+
+    private Tracer() {
+    }
+
+    public static void setRecording(boolean recording) {
+        sRecording = recording;
+    }
+
+    /** Start time of a span, to pass to {@link #end}. */
+    public static long begin() {
+        return ENABLED && sRecording ? System.nanoTime() : 0;
+    }
+
+    /** Records the span {@code name} from {@code startNanos}, a value from {@link #begin}, to now. */
+    public static void end(String name, long startNanos) {
+        if (ENABLED && sRecording && startNanos != 0) {
+            record(name, startNanos, System.nanoTime());
+        }
+    }
+
+    /** Records a span whose times were taken elsewhere, on the {@link System#nanoTime()} clock. */
+    public static void record(String name, long startNanos, long endNanos) {
+        if (ENABLED && sRecording) {
+            sRing.record(name, startNanos, endNanos);
+        }
+    }
+
+    /** Drops every recorded span. */
+    public static void clear() {
+        sRing.clear();
+    }
+
+    /** Number of spans recorded since start, including overwritten ones. */
+    public static long getSpanCount() {
+        return sRing.getSpanCount();
+    }
+
+    /** The spans still in the ring, oldest first, as a Chrome trace-event JSON object. */
+    public static String toChromeTraceJson(int pid) {
+        return sRing.toChromeTraceJson(pid);
+    }
+
+    public static void writeChromeTrace(File file, int pid) throws IOException {
+        try (OutputStream os = new FileOutputStream(file)) {
+            os.write(toChromeTraceJson(pid).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
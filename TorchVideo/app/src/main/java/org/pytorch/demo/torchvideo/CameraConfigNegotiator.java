@@ -0,0 +1,171 @@
+package org.pytorch.demo.torchvideo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Picks the image analysis configuration for a model: the smallest analysis resolution that still
+ * covers the model input after cropping, and the output format with the cheapest converter.
+ *
+ * <p>A frame covers the model when the region the analyzer crops from it is at least the model
+ * input in both dimensions, so the converter only ever scales down. {@code minCropFraction} is the
+ * smallest share of each frame side that region takes: 1 for the full frame or a center crop, less
+ * for a region of interest. Sizes are in sensor orientation, as CameraX lists them, so the model
+ * size is rotated into it. Sizes of the preview aspect ratio come first, so results drawn over the
+ * preview line up; among those the smallest covering size wins, or the largest if none covers.
+ * {@link #setMaxPixels} ranks larger sizes after all others, for an analyzer whose converter
+ * costs more than the detail of a covering size is worth.
+ *
+ * <p>Plain Java, so the choice can be checked off device.
+ */
+public class CameraConfigNegotiator {
+
+    public enum Format {YUV_420_888, RGBA_8888}
+
+    public static final class Resolution {
+        public final int width;
+        public final int height;
+
+        public Resolution(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        long area() {
+            return (long) width * height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Resolution)) {
+                return false;
+            }
+            final Resolution resolution = (Resolution) o;
+            return width == resolution.width && height == resolution.height;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * width + height;
+        }
+
+        @Override
+        public String toString() {
+            return width + "x" + height;
+        }
+    }
+
+    private static final float ASPECT_RATIO_TOLERANCE = 0.01f;
+
+    private final int mModelWidth;
+    private final int mModelHeight;
+    private final float mMinCropFraction;
+    private final Map<Format, Float> mNanosPerPixel = new EnumMap<>(Format.class);
+    private float mAspectRatio = 4f / 3f;
+    private long mMaxPixels = Long.MAX_VALUE;
+
+    public CameraConfigNegotiator(int modelWidth, int modelHeight, float minCropFraction) {
+        if (modelWidth <= 0 || modelHeight <= 0) {
+            throw new IllegalArgumentException("Model size must be positive");
+        }
+        if (!(minCropFraction > 0f && minCropFraction <= 1f)) {
+            throw new IllegalArgumentException("minCropFraction must be in (0, 1]: " + minCropFraction);
+        }
+        mModelWidth = modelWidth;
+        mModelHeight = modelHeight;
+        mMinCropFraction = minCropFraction;
+    }
+
+    /**
+     * Declares a converter the analyzer has for {@code format}, with its estimated cost per analysis
+     * pixel, including any conversion CameraX does before handing the frame over.
+     */
+    public CameraConfigNegotiator addConverter(Format format, float nanosPerPixel) {
+        mNanosPerPixel.put(format, nanosPerPixel);
+        return this;
+    }
+
+    /** Aspect ratio of the preview, 4:3 by default as in CameraX. */
+    public CameraConfigNegotiator setAspectRatio(int width, int height) {
+        mAspectRatio = (float) Math.max(width, height) / Math.min(width, height);
+        return this;
+    }
+
+    /** Prefers sizes of at most {@code maxPixels}, even if none of them covers the model input. */
+    public CameraConfigNegotiator setMaxPixels(long maxPixels) {
+        if (maxPixels <= 0) {
+            throw new IllegalArgumentException("maxPixels must be positive: " + maxPixels);
+        }
+        mMaxPixels = maxPixels;
+        return this;
+    }
+
+    public Format chooseFormat() {
+        Format best = null;
+        for (Map.Entry<Format, Float> entry : mNanosPerPixel.entrySet()) {
+            if (best == null || entry.getValue() < mNanosPerPixel.get(best)) {
+                best = entry.getKey();
+            }
+        }
+        if (best == null) {
+            throw new IllegalStateException("No converter declared");
+        }
+        return best;
+    }
+
+    /** True if {@code resolution}, rotated by {@code rotationDegrees}, covers the model input. */
+    public boolean covers(Resolution resolution, int rotationDegrees) {
+        final boolean swap = (((rotationDegrees % 360) + 360) % 360) % 180 != 0;
+        final int modelWidth = swap ? mModelHeight : mModelWidth;
+        final int modelHeight = swap ? mModelWidth : mModelHeight;
+        return resolution.width * mMinCropFraction >= modelWidth
+                && resolution.height * mMinCropFraction >= modelHeight;
+    }
+
+    /** {@code supported} in order of preference, best first. */
+    public List<Resolution> rank(List<Resolution> supported, int rotationDegrees) {
+        final List<Resolution> ranked = new ArrayList<>(supported);
+        Collections.sort(ranked, (a, b) -> {
+            final boolean aspectA = matchesAspectRatio(a);
+            final boolean aspectB = matchesAspectRatio(b);
+            if (aspectA != aspectB) {
+                return aspectA ? -1 : 1;
+            }
+            final boolean fitsA = a.area() <= mMaxPixels;
+            final boolean fitsB = b.area() <= mMaxPixels;
+            if (fitsA != fitsB) {
+                return fitsA ? -1 : 1;
+            }
+            final boolean coversA = covers(a, rotationDegrees);
+            final boolean coversB = covers(b, rotationDegrees);
+            if (coversA != coversB) {
+                return coversA ? -1 : 1;
+            }
+            // Smallest of the covering sizes, largest of the others.
+            return coversA ? Long.compare(a.area(), b.area()) : Long.compare(b.area(), a.area());
+        });
+        return ranked;
+    }
+
+    /** The preferred size, or null if {@code supported} is empty. */
+    public Resolution choose(List<Resolution> supported, int rotationDegrees) {
+        final List<Resolution> ranked = rank(supported, rotationDegrees);
+        return ranked.isEmpty() ? null : ranked.get(0);
+    }
+
+    private boolean matchesAspectRatio(Resolution resolution) {
+        final float aspectRatio = (float) Math.max(resolution.width, resolution.height)
+                / Math.min(resolution.width, resolution.height);
+        return Math.abs(aspectRatio - mAspectRatio) <= ASPECT_RATIO_TOLERANCE * mAspectRatio;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "CameraConfigNegotiator model %dx%d, crop %.2f, converters %s",
+                mModelWidth, mModelHeight, mMinCropFraction, mNanosPerPixel);
+    }
+}
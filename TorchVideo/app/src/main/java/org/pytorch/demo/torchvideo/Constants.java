@@ -6,6 +6,8 @@ public final class Constants {
     public final static float[] STD_RGB = new float[] {0.225f, 0.225f, 0.225f};
     public final static int COUNT_OF_FRAMES_PER_INFERENCE = 4;
     public final static int TARGET_VIDEO_SIZE = 160;
+    // The clip stays planar: it feeds 3-D convolutions, which XNNPACK does not run. PyTorch's own
+    // conv3d kernels want contiguous input, so a channels-last-3d clip would only be repacked back.
     public final static int MODEL_INPUT_SIZE = COUNT_OF_FRAMES_PER_INFERENCE * 3 * TARGET_VIDEO_SIZE * TARGET_VIDEO_SIZE;
     public final static int TOP_COUNT = 5;
 }
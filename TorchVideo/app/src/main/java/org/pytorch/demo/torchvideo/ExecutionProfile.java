@@ -0,0 +1,142 @@
+package org.pytorch.demo.torchvideo;
+
+import org.pytorch.PyTorchAndroid;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Native intra-op threading for a model: a thread count and the cores it is meant to run on.
+ *
+ * <p>The runtime does not expose thread pinning, so {@link Placement#BIG_CORES} is applied by
+ * capping the thread count at the number of big cores, which keeps the pool off the little cluster
+ * under the default scheduler. The thread count is process-wide in PyTorch, so {@link #apply()}
+ * affects every module until another profile is applied. A screen that changes it saves
+ * {@link #getNumThreads()} first and hands it back to {@link #restoreNumThreads} when it is done.
+ */
+public class ExecutionProfile {
+
+    public enum Placement {
+        ALL_CORES,
+        BIG_CORES
+    }
+
+    public final int threads;
+    public final Placement placement;
+
+    // PyTorch has no getter for its thread count, so the value last set is tracked here;
+    // 0 while the runtime default is in effect.
+    private static int sNumThreads;
+
+    public ExecutionProfile(int threads, Placement placement) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        this.threads = threads;
+        this.placement = placement;
+    }
+
+    public int effectiveThreads() {
+        final int cores = placement == Placement.BIG_CORES
+                ? CpuTopology.bigCoreCount()
+                : CpuTopology.coreCount();
+        return Math.min(threads, cores);
+    }
+
+    public void apply() {
+        setNumThreads(effectiveThreads());
+    }
+
+    /** Sets PyTorch's process-wide intra-op thread count. */
+    public static synchronized void setNumThreads(int threads) {
+        PyTorchAndroid.setNumThreads(threads);
+        sNumThreads = threads;
+    }
+
+    /** The thread count last set through this class, or 0 if the runtime default is in effect. */
+    public static synchronized int getNumThreads() {
+        return sNumThreads;
+    }
+
+    /** Sets the thread count back to {@code numThreads}, a value from {@link #getNumThreads()}. */
+    public static synchronized void restoreNumThreads(int numThreads) {
+        if (numThreads == sNumThreads) {
+            return;
+        }
+        PyTorchAndroid.setNumThreads(numThreads > 0 ? numThreads : defaultNumThreads());
+        sNumThreads = numThreads;
+    }
+
+    /**
+     * The thread count PyTorch starts with on Android: every core on small SoCs, and about the big
+     * cluster on big.LITTLE ones (its own table: 5 cores use 4, 6 use 2, 8 and 10 use 4, any other
+     * count above 4 uses half).
+     */
+    static int defaultNumThreads() {
+        final int cores = CpuTopology.coreCount();
+        switch (cores) {
+            case 5:
+            case 8:
+            case 10:
+                return 4;
+            case 6:
+                return 2;
+            default:
+                return cores > 4 ? cores / 2 : cores;
+        }
+    }
+
+    /**
+     * Profiles worth trying on this device: one thread, then powers of two up to the big-core and
+     * all-core counts, without repeating a thread count.
+     */
+    public static List<ExecutionProfile> candidates() {
+        final int cores = CpuTopology.coreCount();
+        final int bigCores = CpuTopology.bigCoreCount();
+        final Set<Integer> seen = new LinkedHashSet<>();
+        final List<ExecutionProfile> candidates = new ArrayList<>();
+        for (int threads = 1; threads < bigCores; threads *= 2) {
+            addCandidate(candidates, seen, new ExecutionProfile(threads, Placement.BIG_CORES));
+        }
+        addCandidate(candidates, seen, new ExecutionProfile(bigCores, Placement.BIG_CORES));
+        addCandidate(candidates, seen, new ExecutionProfile(cores, Placement.ALL_CORES));
+        return candidates;
+    }
+
+    private static void addCandidate(
+            List<ExecutionProfile> candidates, Set<Integer> seen, ExecutionProfile profile) {
+        if (seen.add(profile.threads)) {
+            candidates.add(profile);
+        }
+    }
+
+    public String encode() {
+        return threads + ":" + placement.name();
+    }
+
+    /** Parses {@link #encode()} output; returns null for anything else. */
+    public static ExecutionProfile decode(String s) {
+        if (s == null) {
+            return null;
+        }
+        final int sep = s.indexOf(':');
+        if (sep <= 0) {
+            return null;
+        }
+        try {
+            return new ExecutionProfile(
+                    Integer.parseInt(s.substring(0, sep)), Placement.valueOf(s.substring(sep + 1)));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%d thread(s) on %s",
+                threads, placement == Placement.BIG_CORES ? "big cores" : "all cores");
+    }
+}
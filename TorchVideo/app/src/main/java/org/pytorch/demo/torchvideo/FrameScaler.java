@@ -0,0 +1,389 @@
+package org.pytorch.demo.torchvideo;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Crops, scales and rotates a camera frame into a small ARGB array in one pass, reading the
+ * YUV_420_888 planes or an ARGB array directly, so no full-size bitmap or rotated copy is made.
+ *
+ * <p>Downscaling by 2x or more uses {@link Mode#AREA} (each output pixel is the exact area-weighted
+ * mean of the source pixels it covers) and smaller ratios use {@link Mode#BILINEAR}.
+ * {@link Mode#BOX} averages whole source pixels only, which is cheaper and close to AREA when the
+ * ratio is large. YUV sources are averaged per channel and converted to RGB once per output pixel.
+ * Large outputs are split into row bands scaled on a shared pool. The per-axis sampling tables
+ * are cached by source size, output size and mode, so a fixed crop builds them once.
+ *
+ * <p>Plain Java; {@code Image.Plane} buffers are passed in as {@link ByteBuffer}s.
+ *
+ * <p>The ObjectDetection and D2Go apps do not have a copy and still convert YUV frames through
+ * NV21 and JPEG. ObjectDetection asks the camera for RGBA_8888 frames and only takes that path
+ * on devices that cannot deliver them; D2Go passes the full-size frame to a model that resizes
+ * it, so only the YUV conversion here would apply. Two more copies to keep in sync were not
+ * worth that until the JPEG step shows up in their traces.
+ */
+public class FrameScaler {
+
+    public enum Mode {
+        AUTO,
+        BOX,
+        AREA,
+        BILINEAR
+    }
+
+    /** Pixels whose three channels are averaged independently, then turned into ARGB. */
+    public abstract static class Source {
+        public final int width;
+        public final int height;
+
+        Source(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        /** The three 8-bit channels of pixel (x, y), packed as {@code 0x00AABBCC}. */
+        abstract int channels(int x, int y);
+
+        abstract int toArgb(int c0, int c1, int c2);
+    }
+
+    private static final int AREA_MIN_RATIO = 2;
+    private static final int BAND_MIN_SOURCE_PIXELS = 640 * 480;
+    private static final int BAND_MIN_ROWS = 16;
+    // Enough for the x and y tables of a few streams scaled alternately.
+    private static final int TAPS_CACHE_SIZE = 8;
+
+    private static ExecutorService sExecutor;
+    private static final Map<Long, Taps> sTapsCache = new LinkedHashMap<Long, Taps>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Taps> eldest) {
+            return size() > TAPS_CACHE_SIZE;
+        }
+    };
+
+    public static Source argb(int[] pixels, int width, int height) {
+        return new Source(width, height) {
+            @Override
+            int channels(int x, int y) {
+                return pixels[y * width + x] & 0xffffff;
+            }
+
+            @Override
+            int toArgb(int r, int g, int b) {
+                return 0xff000000 | (r << 16) | (g << 8) | b;
+            }
+        };
+    }
+
+    /** YUV_420_888 planes, with the row and pixel strides reported by {@code Image.Plane}. */
+    public static Source yuv420(ByteBuffer yPlane, int yRowStride,
+                                ByteBuffer uPlane, ByteBuffer vPlane, int uvRowStride, int uvPixelStride,
+                                int width, int height) {
+        return new Source(width, height) {
+            @Override
+            int channels(int x, int y) {
+                final int uvIndex = (y >> 1) * uvRowStride + (x >> 1) * uvPixelStride;
+                return ((yPlane.get(y * yRowStride + x) & 0xff) << 16)
+                        | ((uPlane.get(uvIndex) & 0xff) << 8)
+                        | (vPlane.get(uvIndex) & 0xff);
+            }
+
+            @Override
+            int toArgb(int y, int u, int v) {
+                // BT.601 full range, as produced by Android camera YUV_420_888.
+                final int c = y << 10;
+                final int d = u - 128;
+                final int e = v - 128;
+                final int r = clamp8((c + 1436 * e) >> 10);
+                final int g = clamp8((c - 352 * d - 731 * e) >> 10);
+                final int b = clamp8((c + 1815 * d) >> 10);
+                return 0xff000000 | (r << 16) | (g << 8) | b;
+            }
+        };
+    }
+
+    /**
+     * Scales the crop {@code (cropLeft, cropTop, cropWidth, cropHeight)} of {@code source},
+     * rotated clockwise by {@code rotationDegrees} and then flipped horizontally if {@code mirror},
+     * into {@code dst} as {@code dstWidth x dstHeight} ARGB pixels. The output size is after rotation.
+     * If the calling thread is interrupted while row bands run on the pool, the bands the pool has
+     * not started are scaled on the calling thread, the running ones are waited for, and the
+     * interrupt flag is left set: {@code dst} is complete and no longer written to on return.
+     */
+    public static void scale(Source source, int cropLeft, int cropTop, int cropWidth, int cropHeight,
+                             int rotationDegrees, boolean mirror, Mode mode,
+                             int dstWidth, int dstHeight, int[] dst) {
+        final int rotation = ((rotationDegrees % 360) + 360) % 360;
+        if (rotation % 90 != 0) {
+            throw new IllegalArgumentException("Rotation must be a multiple of 90: " + rotationDegrees);
+        }
+        if (cropLeft < 0 || cropTop < 0 || cropWidth <= 0 || cropHeight <= 0
+                || cropLeft + cropWidth > source.width || cropTop + cropHeight > source.height) {
+            throw new IllegalArgumentException("Crop outside of the source frame");
+        }
+        final boolean swap = rotation == 90 || rotation == 270;
+        final int scaledWidth = swap ? dstHeight : dstWidth;
+        final int scaledHeight = swap ? dstWidth : dstHeight;
+        if (mode == Mode.AUTO) {
+            mode = cropWidth >= AREA_MIN_RATIO * scaledWidth || cropHeight >= AREA_MIN_RATIO * scaledHeight
+                    ? Mode.AREA
+                    : Mode.BILINEAR;
+        }
+        final Taps xTaps = Taps.get(mode, cropWidth, scaledWidth);
+        final Taps yTaps = Taps.get(mode, cropHeight, scaledHeight);
+
+        final long sourcePixels = (long) cropWidth * cropHeight;
+        final int bands = sourcePixels >= BAND_MIN_SOURCE_PIXELS
+                ? Math.min(Runtime.getRuntime().availableProcessors(), dstHeight / BAND_MIN_ROWS)
+                : 1;
+        if (bands <= 1) {
+            scaleRows(source, cropLeft, cropTop, xTaps, yTaps, rotation, mirror, scaledWidth,
+                    scaledHeight, dstWidth, 0, dstHeight, dst);
+            return;
+        }
+        // A band is scaled by whichever thread claims it first: a pool thread, or the calling
+        // thread once interrupted.
+        final AtomicIntegerArray claimed = new AtomicIntegerArray(bands);
+        final List<Future<?>> futures = new ArrayList<>(bands);
+        for (int band = 0; band < bands; band++) {
+            final int index = band;
+            final int rowStart = dstHeight * band / bands;
+            final int rowEnd = dstHeight * (band + 1) / bands;
+            futures.add(executor().submit(() -> {
+                if (claimed.compareAndSet(index, 0, 1)) {
+                    scaleRows(source, cropLeft, cropTop, xTaps, yTaps, rotation, mirror,
+                            scaledWidth, scaledHeight, dstWidth, rowStart, rowEnd, dst);
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            // Never return a partly written frame, nor while a pool thread still writes into dst.
+            for (int band = 0; band < bands; band++) {
+                if (claimed.compareAndSet(band, 0, 1)) {
+                    futures.get(band).cancel(false);
+                    scaleRows(source, cropLeft, cropTop, xTaps, yTaps, rotation, mirror, scaledWidth,
+                            scaledHeight, dstWidth, dstHeight * band / bands,
+                            dstHeight * (band + 1) / bands, dst);
+                } else {
+                    awaitUninterruptibly(futures.get(band));
+                }
+            }
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /** Waits for a band claimed by the pool, keeping any further interrupt for the caller. */
+    private static void awaitUninterruptibly(Future<?> future) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    future.get();
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Maps a region given in coordinates normalized to the rotated (and mirrored) frame back to a
+     * pixel crop {@code {left, top, width, height}} of the unrotated source.
+     */
+    public static int[] cropForRotatedRegion(float left, float top, float right, float bottom,
+                                             int sourceWidth, int sourceHeight, int rotationDegrees,
+                                             boolean mirror) {
+        if (mirror) {
+            final float mirroredLeft = 1f - right;
+            right = 1f - left;
+            left = mirroredLeft;
+        }
+        final float x0, y0, x1, y1;
+        switch (((rotationDegrees % 360) + 360) % 360) {
+            case 90:
+                x0 = top; x1 = bottom; y0 = 1f - right; y1 = 1f - left;
+                break;
+            case 180:
+                x0 = 1f - right; x1 = 1f - left; y0 = 1f - bottom; y1 = 1f - top;
+                break;
+            case 270:
+                x0 = 1f - bottom; x1 = 1f - top; y0 = left; y1 = right;
+                break;
+            default:
+                x0 = left; x1 = right; y0 = top; y1 = bottom;
+                break;
+        }
+        final int cropLeft = Math.max(0, Math.round(x0 * sourceWidth));
+        final int cropTop = Math.max(0, Math.round(y0 * sourceHeight));
+        final int cropRight = Math.min(sourceWidth, Math.max(cropLeft + 1, Math.round(x1 * sourceWidth)));
+        final int cropBottom = Math.min(sourceHeight, Math.max(cropTop + 1, Math.round(y1 * sourceHeight)));
+        return new int[]{cropLeft, cropTop, cropRight - cropLeft, cropBottom - cropTop};
+    }
+
+    private static void scaleRows(Source source, int cropLeft, int cropTop, Taps xTaps, Taps yTaps,
+                                  int rotation, boolean mirror, int scaledWidth, int scaledHeight,
+                                  int dstWidth, int rowStart, int rowEnd, int[] dst) {
+        for (int oy = rowStart; oy < rowEnd; oy++) {
+            for (int x = 0; x < dstWidth; x++) {
+                // Rotating clockwise maps scaled pixel (x, y) to (h - 1 - y, x) for 90 degrees.
+                final int ox = mirror ? dstWidth - 1 - x : x;
+                final int sx, sy;
+                switch (rotation) {
+                    case 90:
+                        sx = oy; sy = scaledHeight - 1 - ox;
+                        break;
+                    case 180:
+                        sx = scaledWidth - 1 - ox; sy = scaledHeight - 1 - oy;
+                        break;
+                    case 270:
+                        sx = scaledWidth - 1 - oy; sy = ox;
+                        break;
+                    default:
+                        sx = ox; sy = oy;
+                        break;
+                }
+                dst[oy * dstWidth + x] = sample(source, cropLeft, cropTop, xTaps, sx, yTaps, sy);
+            }
+        }
+    }
+
+    private static int sample(Source source, int cropLeft, int cropTop,
+                              Taps xTaps, int sx, Taps yTaps, int sy) {
+        float c0 = 0, c1 = 0, c2 = 0;
+        final int xStart = cropLeft + xTaps.start[sx];
+        final int xCount = xTaps.count[sx];
+        final int xWeights = sx * xTaps.maxTaps;
+        final int yStart = cropTop + yTaps.start[sy];
+        final int yCount = yTaps.count[sy];
+        final int yWeights = sy * yTaps.maxTaps;
+        for (int j = 0; j < yCount; j++) {
+            final float wy = yTaps.weights[yWeights + j];
+            final int y = yStart + j;
+            for (int i = 0; i < xCount; i++) {
+                final float w = wy * xTaps.weights[xWeights + i];
+                final int channels = source.channels(xStart + i, y);
+                c0 += w * (channels >> 16);
+                c1 += w * ((channels >> 8) & 0xff);
+                c2 += w * (channels & 0xff);
+            }
+        }
+        return source.toArgb(Math.round(c0), Math.round(c1), Math.round(c2));
+    }
+
+    /**
+     * Source pixels, relative to the crop, and normalized weights contributing to each output pixel
+     * along one axis. Never modified once built, so cached tables are shared between threads.
+     */
+    static class Taps {
+        final int[] start;
+        final int[] count;
+        final float[] weights;
+        final int maxTaps;
+
+        private Taps(int outSize, int maxTaps) {
+            this.start = new int[outSize];
+            this.count = new int[outSize];
+            this.weights = new float[outSize * maxTaps];
+            this.maxTaps = maxTaps;
+        }
+
+        /** The cached table for {@code mode} and the sizes, built on first use. */
+        static Taps get(Mode mode, int inSize, int outSize) {
+            final Long key = ((long) inSize << 32) | ((long) outSize << 2) | mode.ordinal();
+            synchronized (sTapsCache) {
+                final Taps cached = sTapsCache.get(key);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            final Taps taps = of(mode, inSize, outSize);
+            synchronized (sTapsCache) {
+                sTapsCache.put(key, taps);
+            }
+            return taps;
+        }
+
+        static Taps of(Mode mode, int inSize, int outSize) {
+            final double scale = (double) inSize / outSize;
+            if (mode == Mode.BILINEAR) {
+                final Taps taps = new Taps(outSize, 2);
+                for (int o = 0; o < outSize; o++) {
+                    final double center = Math.max(0, Math.min(inSize - 1, (o + 0.5) * scale - 0.5));
+                    final int i0 = (int) center;
+                    final int i1 = Math.min(i0 + 1, inSize - 1);
+                    final float f = (float) (center - i0);
+                    taps.start[o] = i0;
+                    taps.count[o] = i1 > i0 ? 2 : 1;
+                    taps.weights[2 * o] = i1 > i0 ? 1f - f : 1f;
+                    taps.weights[2 * o + 1] = f;
+                }
+                return taps;
+            }
+
+            final Taps taps = new Taps(outSize, (int) Math.ceil(scale) + 1);
+            for (int o = 0; o < outSize; o++) {
+                final double from = o * scale;
+                final double to = Math.min(inSize, (o + 1) * scale);
+                final int first;
+                final int last;
+                if (mode == Mode.BOX) {
+                    first = (int) from;
+                    last = Math.min(inSize - 1, Math.max(first, (int) Math.ceil(to) - 1));
+                } else {
+                    first = (int) Math.floor(from);
+                    last = Math.min(inSize - 1, (int) Math.ceil(to) - 1);
+                }
+                taps.start[o] = first;
+                taps.count[o] = last - first + 1;
+                float total = 0;
+                for (int i = first; i <= last; i++) {
+                    final float w = mode == Mode.BOX
+                            ? 1f
+                            : (float) (Math.min(to, i + 1) - Math.max(from, i));
+                    taps.weights[o * taps.maxTaps + i - first] = w;
+                    total += w;
+                }
+                for (int i = 0; i < taps.count[o]; i++) {
+                    taps.weights[o * taps.maxTaps + i] /= total;
+                }
+            }
+            return taps;
+        }
+    }
+
+    private static synchronized ExecutorService executor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+                final Thread thread = new Thread(r, "FrameScaler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return sExecutor;
+    }
+
+    private static int clamp8(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+}
@@ -1,12 +1,7 @@
 package org.pytorch.demo.torchvideo;
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.ImageFormat;
-import android.graphics.Matrix;
-import android.graphics.Rect;
-import android.graphics.YuvImage;
 import android.media.Image;
+import android.os.Bundle;
 import android.os.SystemClock;
 import android.util.Log;
 import android.view.ViewStub;
@@ -14,6 +9,7 @@ import android.widget.TextView;
 
 import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
+import androidx.camera.core.CameraSelector;
 import androidx.camera.core.ImageProxy;
 import androidx.camera.view.PreviewView;
 
@@ -21,20 +17,23 @@ import org.pytorch.IValue;
 import org.pytorch.LiteModuleLoader;
 import org.pytorch.Module;
 import org.pytorch.Tensor;
-import org.pytorch.torchvision.TensorImageUtils;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class LiveVideoClassificationActivity extends AbstractCameraXActivity<LiveVideoClassificationActivity.AnalysisResult> {
-    private Module mModule = null;
+    private static final String MODEL_ASSET_NAME = "video_classification.ptl";
+
+    // Loads and tunes the model off the analyzer, which skips frames until mModule is set.
+    private final ExecutorService mLoadExecutor = Executors.newSingleThreadExecutor();
+    private volatile Module mModule = null;
+    private int mSavedNumThreads;
     private TextView mResultView;
     private int mFrameCount = 0;
     private FloatBuffer inTensorBuffer;
+    private final int[] mFramePixels = new int[Constants.TARGET_VIDEO_SIZE * Constants.TARGET_VIDEO_SIZE];
 
     static class AnalysisResult {
         private final String mResults;
@@ -44,6 +43,35 @@ public class LiveVideoClassificationActivity extends AbstractCameraXActivity<Liv
         }
     }
 
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mSavedNumThreads = ExecutionProfile.getNumThreads();
+        mLoadExecutor.execute(this::loadModule);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        final int numThreads = mSavedNumThreads;
+        // Queued behind a load still tuning, which would set the count again.
+        mLoadExecutor.execute(() -> ExecutionProfile.restoreNumThreads(numThreads));
+        mLoadExecutor.shutdown();
+    }
+
+    @WorkerThread
+    private void loadModule() {
+        try {
+            final Module module = LiteModuleLoader.load(MainActivity.assetFilePath(getApplicationContext(), MODEL_ASSET_NAME));
+            final Tensor sampleInput = Tensor.fromBlob(Tensor.allocateFloatBuffer(Constants.MODEL_INPUT_SIZE),
+                    new long[]{1, 3, Constants.COUNT_OF_FRAMES_PER_INFERENCE, Constants.TARGET_VIDEO_SIZE, Constants.TARGET_VIDEO_SIZE});
+            ExecutionProfileTuner.tune(this, MODEL_ASSET_NAME, module, IValue.from(sampleInput));
+            mModule = module;
+        } catch (IOException e) {
+            Log.e("TorchVideo", "Error loading model", e);
+        }
+    }
+
     @Override
     protected int getContentViewLayoutId() {
         return R.layout.activity_live_video_classification;
@@ -57,65 +85,45 @@ public class LiveVideoClassificationActivity extends AbstractCameraXActivity<Liv
                 .findViewById(R.id.object_detection_texture_view);
     }
 
+    @Override
+    protected CameraConfigNegotiator getCameraConfigNegotiator() {
+        // Center square crop straight from the YUV planes, the only converter here.
+        return new CameraConfigNegotiator(Constants.TARGET_VIDEO_SIZE, Constants.TARGET_VIDEO_SIZE, 1f)
+                .addConverter(CameraConfigNegotiator.Format.YUV_420_888, 1f);
+    }
+
     @Override
     protected void applyToUiAnalyzeImageResult(AnalysisResult result) {
         mResultView.setText(result.mResults);
         mResultView.invalidate();
     }
 
-    private Bitmap imgToBitmap(Image image) {
-        Image.Plane[] planes = image.getPlanes();
-        ByteBuffer yBuffer = planes[0].getBuffer();
-        ByteBuffer uBuffer = planes[1].getBuffer();
-        ByteBuffer vBuffer = planes[2].getBuffer();
-
-        int ySize = yBuffer.remaining();
-        int uSize = uBuffer.remaining();
-        int vSize = vBuffer.remaining();
-
-        byte[] nv21 = new byte[ySize + uSize + vSize];
-        yBuffer.get(nv21, 0, ySize);
-        vBuffer.get(nv21, ySize, vSize);
-        uBuffer.get(nv21, ySize + vSize, uSize);
-
-        YuvImage yuvImage = new YuvImage(nv21, ImageFormat.NV21, image.getWidth(), image.getHeight(), null);
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        yuvImage.compressToJpeg(new Rect(0, 0, yuvImage.getWidth(), yuvImage.getHeight()), 75, out);
-
-        byte[] imageBytes = out.toByteArray();
-        return BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
-    }
-
     @Override
     @WorkerThread
     @Nullable
     protected AnalysisResult analyzeImage(ImageProxy image, int rotationDegrees) {
         if (mModule == null) {
-            try {
-                mModule = LiteModuleLoader.load(MainActivity.assetFilePath(getApplicationContext(), "video_classification.ptl"));
-            } catch (IOException e) {
-                return null;
-            }
+            return null;
         }
 
         if (mFrameCount == 0)
             inTensorBuffer = Tensor.allocateFloatBuffer(Constants.MODEL_INPUT_SIZE);
 
-        Bitmap bitmap = imgToBitmap(image.getImage());
-        Matrix matrix = new Matrix();
-        matrix.postRotate(90.0f);
-        bitmap = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
-
-        float ratio = Math.min(bitmap.getWidth(), bitmap.getHeight()) / 160.0f;
-        Bitmap resizedBitmap = Bitmap.createScaledBitmap(bitmap, (int)(bitmap.getWidth() / ratio), (int)(bitmap.getHeight() / ratio), true);
-        Bitmap centerCroppedBitmap = Bitmap.createBitmap(resizedBitmap,
-                resizedBitmap.getWidth() > resizedBitmap.getHeight() ? (resizedBitmap.getWidth() - resizedBitmap.getHeight()) / 2 : 0,
-                resizedBitmap.getHeight() > resizedBitmap.getWidth() ? (resizedBitmap.getHeight() - resizedBitmap.getWidth()) / 2 : 0,
-                Constants.TARGET_VIDEO_SIZE, Constants.TARGET_VIDEO_SIZE);
-
-        TensorImageUtils.bitmapToFloatBuffer(centerCroppedBitmap, 0, 0,
-                Constants.TARGET_VIDEO_SIZE, Constants.TARGET_VIDEO_SIZE, Constants.MEAN_RGB, Constants.STD_RGB, inTensorBuffer,
+        // Center square of the frame, scaled to 160x160 and rotated in one pass over the YUV planes.
+        final long convertStart = Tracer.begin();
+        final Image.Plane[] planes = image.getImage().getPlanes();
+        final FrameScaler.Source frame = FrameScaler.yuv420(
+                planes[0].getBuffer(), planes[0].getRowStride(),
+                planes[1].getBuffer(), planes[2].getBuffer(),
+                planes[1].getRowStride(), planes[1].getPixelStride(),
+                image.getWidth(), image.getHeight());
+        final int side = Math.min(frame.width, frame.height);
+        FrameScaler.scale(frame, (frame.width - side) / 2, (frame.height - side) / 2, side, side,
+                rotationDegrees, getLensFacing() == CameraSelector.LENS_FACING_FRONT, FrameScaler.Mode.AUTO,
+                Constants.TARGET_VIDEO_SIZE, Constants.TARGET_VIDEO_SIZE, mFramePixels);
+        argbToFloatBuffer(mFramePixels, Constants.MEAN_RGB, Constants.STD_RGB, inTensorBuffer,
                 (Constants.COUNT_OF_FRAMES_PER_INFERENCE - 1) * mFrameCount * Constants.TARGET_VIDEO_SIZE * Constants.TARGET_VIDEO_SIZE);
+        Tracer.end(Tracer.CONVERT, convertStart);
 
         mFrameCount++;
         if (mFrameCount < 4) {
@@ -126,24 +134,31 @@ public class LiveVideoClassificationActivity extends AbstractCameraXActivity<Liv
         Tensor inputTensor = Tensor.fromBlob(inTensorBuffer, new long[]{1, 3, Constants.COUNT_OF_FRAMES_PER_INFERENCE, 160, 160});
 
         final long startTime = SystemClock.elapsedRealtime();
+        final long forwardStart = Tracer.begin();
         Tensor outputTensor = mModule.forward(IValue.from(inputTensor)).toTensor();
+        Tracer.end(Tracer.FORWARD, forwardStart);
         final long inferenceTime = SystemClock.elapsedRealtime() - startTime;
 
+        final long decodeStart = Tracer.begin();
         final float[] scores = outputTensor.getDataAsFloatArray();
-        Integer scoresIdx[] = new Integer[scores.length];
-        for (int i = 0; i < scores.length; i++)
-            scoresIdx[i] = i;
-
-        Arrays.sort(scoresIdx, new Comparator<Integer>() {
-            @Override public int compare(final Integer o1, final Integer o2) {
-                return Float.compare(scores[o2], scores[o1]);
-            }
-        });
+        final int[] scoresIdx = TopK.topK(scores, Constants.TOP_COUNT);
 
         String tops[] = new String[Constants.TOP_COUNT];
         for (int j = 0; j < Constants.TOP_COUNT; j++)
             tops[j] = MainActivity.getClasses()[scoresIdx[j]];
         final String result = String.join(", ", tops);
+        Tracer.end(Tracer.DECODE, decodeStart);
         return new AnalysisResult(String.format("%s - %dms", result, inferenceTime));
     }
+
+    /** Same layout as {@code TensorImageUtils.bitmapToFloatBuffer}: R, G and B planes from {@code offset}. */
+    private static void argbToFloatBuffer(int[] argb, float[] mean, float[] std, FloatBuffer out, int offset) {
+        final int pixels = argb.length;
+        for (int i = 0; i < pixels; i++) {
+            final int c = argb[i];
+            out.put(offset + i, (((c >> 16) & 0xff) / 255.0f - mean[0]) / std[0]);
+            out.put(offset + pixels + i, (((c >> 8) & 0xff) / 255.0f - mean[1]) / std[1]);
+            out.put(offset + 2 * pixels + i, ((c & 0xff) / 255.0f - mean[2]) / std[2]);
+        }
+    }
 }
@@ -32,8 +32,6 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Comparator;
 import java.util.List;
 
 
@@ -215,8 +213,8 @@ public class MainActivity extends AppCompatActivity implements Runnable {
             if (i == durationTo - 1)
                 to = (int) Math.ceil(durationMs) - (i * 1000);
 
-            final Pair<Integer[], Long> pair = getResult(from, to, mmr);
-            final Integer[] scoresIdx = pair.first;
+            final Pair<int[], Long> pair = getResult(from, to, mmr);
+            final int[] scoresIdx = pair.first;
             String tops[] = new String[Constants.TOP_COUNT];
             for (int j = 0; j < Constants.TOP_COUNT; j++)
                 tops[j] = mClasses[scoresIdx[j]];
@@ -259,7 +257,7 @@ public class MainActivity extends AppCompatActivity implements Runnable {
     }
 
 
-    private Pair<Integer[], Long> getResult(int fromMs, int toMs, MediaMetadataRetriever mmr) {
+    private Pair<int[], Long> getResult(int fromMs, int toMs, MediaMetadataRetriever mmr) {
 
         FloatBuffer inTensorBuffer = Tensor.allocateFloatBuffer(Constants.MODEL_INPUT_SIZE);
 
@@ -286,15 +284,7 @@ public class MainActivity extends AppCompatActivity implements Runnable {
         final long inferenceTime = SystemClock.elapsedRealtime() - startTime;
 
         final float[] scores = outputTensor.getDataAsFloatArray();
-        Integer scoresIdx[] = new Integer[scores.length];
-        for (int i = 0; i < scores.length; i++)
-            scoresIdx[i] = i;
-
-        Arrays.sort(scoresIdx, new Comparator<Integer>() {
-            @Override public int compare(final Integer o1, final Integer o2) {
-                return Float.compare(scores[o2], scores[o1]);
-            }
-        });
+        final int[] scoresIdx = TopK.topK(scores, Constants.TOP_COUNT);
 
         return new Pair<>(scoresIdx, inferenceTime);
     }
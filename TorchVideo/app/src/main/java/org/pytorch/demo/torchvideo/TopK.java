@@ -0,0 +1,218 @@
+package org.pytorch.demo.torchvideo;
+
+/**
+ * Indices of the k largest values of a {@code float[]}, best first.
+ *
+ * <p>The order is total and deterministic: larger values rank higher, NaN ranks below every
+ * number, and equal values are ordered by ascending index. All strategies return the same result;
+ * {@link Strategy#AUTO} picks one from (n, k).
+ */
+public class TopK {
+
+    public enum Strategy {
+        AUTO,
+        /** Sorted insertion into a k-array, O(n*k). Rarely faster than the heap; AUTO skips it. */
+        INSERTION,
+        /** Bounded min-heap of size k, O(n*log k). */
+        HEAP,
+        /** Quickselect over an index array, O(n + k*log k) but allocates n ints. */
+        QUICKSELECT
+    }
+
+    // Cut-offs from TopKBenchmark in PyTorchDemoApp's test sources, which times the same code:
+    // Gaussian logits, n = 1k to 100k, k = 1 to 100, each strategy in its own JVM. The heap matches
+    // or beats insertion at every k up to 16 (n = 10k, k = 5: 18us against 39us) and at every k
+    // from n = 10k on; insertion leads only at n = 1000, k = 24 to 48, by under 30%, so AUTO never
+    // picks it. Quickselect wins once n / k drops below about 16 (n = 1000, k = 64: 15us against
+    // the heap's 21us; k = 32: heap 10us, quickselect 13us).
+    private static final int HEAP_MAX_K_RATIO = 16;
+    private static final int SORT_CUTOFF = 8;
+
+    public static int[] topK(float[] a, int k) {
+        return topK(a, k, Strategy.AUTO);
+    }
+
+    public static int[] topK(float[] a, int k, Strategy strategy) {
+        k = Math.min(k, a.length);
+        if (k <= 0) {
+            return new int[0];
+        }
+        switch (strategy == Strategy.AUTO ? chooseStrategy(a.length, k) : strategy) {
+            case INSERTION:
+                return insertion(a, k);
+            case HEAP:
+                return heap(a, k);
+            default:
+                return quickselect(a, k);
+        }
+    }
+
+    static Strategy chooseStrategy(int n, int k) {
+        if ((long) k * HEAP_MAX_K_RATIO <= n) {
+            return Strategy.HEAP;
+        }
+        return Strategy.QUICKSELECT;
+    }
+
+    /** True if {@code a[i]} ranks strictly above {@code a[j]}. */
+    static boolean ranksAbove(float[] a, int i, int j) {
+        final float x = a[i];
+        final float y = a[j];
+        if (x > y) {
+            return true;
+        }
+        if (x < y) {
+            return false;
+        }
+        final boolean xNaN = x != x;
+        final boolean yNaN = y != y;
+        if (xNaN != yNaN) {
+            return yNaN;
+        }
+        return i < j;
+    }
+
+    private static int[] insertion(float[] a, int k) {
+        final int[] ixs = new int[k];
+        int size = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (size == k && !ranksAbove(a, i, ixs[k - 1])) {
+                continue;
+            }
+            int j = size < k ? size++ : k - 1;
+            while (j > 0 && ranksAbove(a, i, ixs[j - 1])) {
+                ixs[j] = ixs[j - 1];
+                j--;
+            }
+            ixs[j] = i;
+        }
+        return ixs;
+    }
+
+    private static int[] heap(float[] a, int k) {
+        // Min-heap on rank: heap[0] is the lowest ranked of the current top k.
+        final int[] heap = new int[k];
+        for (int i = 0; i < k; i++) {
+            heap[i] = i;
+            siftUp(a, heap, i);
+        }
+        for (int i = k; i < a.length; i++) {
+            if (ranksAbove(a, i, heap[0])) {
+                heap[0] = i;
+                siftDown(a, heap, 0, k);
+            }
+        }
+        // Heap sort in place: repeatedly move the lowest ranked to the end.
+        for (int end = k - 1; end > 0; end--) {
+            swap(heap, 0, end);
+            siftDown(a, heap, 0, end);
+        }
+        return heap;
+    }
+
+    private static void siftUp(float[] a, int[] heap, int pos) {
+        while (pos > 0) {
+            final int parent = (pos - 1) >>> 1;
+            if (!ranksAbove(a, heap[parent], heap[pos])) {
+                return;
+            }
+            swap(heap, parent, pos);
+            pos = parent;
+        }
+    }
+
+    private static void siftDown(float[] a, int[] heap, int pos, int size) {
+        while (true) {
+            final int left = 2 * pos + 1;
+            if (left >= size) {
+                return;
+            }
+            int lowest = left;
+            final int right = left + 1;
+            if (right < size && ranksAbove(a, heap[left], heap[right])) {
+                lowest = right;
+            }
+            if (!ranksAbove(a, heap[pos], heap[lowest])) {
+                return;
+            }
+            swap(heap, pos, lowest);
+            pos = lowest;
+        }
+    }
+
+    private static int[] quickselect(float[] a, int k) {
+        final int[] ixs = new int[a.length];
+        for (int i = 0; i < ixs.length; i++) {
+            ixs[i] = i;
+        }
+        int lo = 0;
+        int hi = ixs.length - 1;
+        while (lo < hi) {
+            final int p = partition(a, ixs, lo, hi);
+            if (p == k - 1) {
+                break;
+            } else if (p < k - 1) {
+                lo = p + 1;
+            } else {
+                hi = p - 1;
+            }
+        }
+        sort(a, ixs, 0, k - 1);
+        final int[] result = new int[k];
+        System.arraycopy(ixs, 0, result, 0, k);
+        return result;
+    }
+
+    /** Partitions {@code ixs[lo..hi]} around a median-of-three pivot; returns its final position. */
+    private static int partition(float[] a, int[] ixs, int lo, int hi) {
+        final int mid = (lo + hi) >>> 1;
+        if (ranksAbove(a, ixs[mid], ixs[lo])) {
+            swap(ixs, lo, mid);
+        }
+        if (ranksAbove(a, ixs[hi], ixs[lo])) {
+            swap(ixs, lo, hi);
+        }
+        if (ranksAbove(a, ixs[hi], ixs[mid])) {
+            swap(ixs, mid, hi);
+        }
+        swap(ixs, mid, hi);
+        final int pivot = ixs[hi];
+        int store = lo;
+        for (int i = lo; i < hi; i++) {
+            if (ranksAbove(a, ixs[i], pivot)) {
+                swap(ixs, i, store++);
+            }
+        }
+        swap(ixs, store, hi);
+        return store;
+    }
+
+    private static void sort(float[] a, int[] ixs, int lo, int hi) {
+        while (hi - lo > SORT_CUTOFF) {
+            final int p = partition(a, ixs, lo, hi);
+            // Recurse into the smaller side to bound stack depth.
+            if (p - lo < hi - p) {
+                sort(a, ixs, lo, p - 1);
+                lo = p + 1;
+            } else {
+                sort(a, ixs, p + 1, hi);
+                hi = p - 1;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            final int ix = ixs[i];
+            int j = i;
+            while (j > lo && ranksAbove(a, ix, ixs[j - 1])) {
+                ixs[j] = ixs[j - 1];
+                j--;
+            }
+            ixs[j] = ix;
+        }
+    }
+
+    private static void swap(int[] ixs, int i, int j) {
+        final int t = ixs[i];
+        ixs[i] = ixs[j];
+        ixs[j] = t;
+    }
+}
@@ -0,0 +1,127 @@
+package org.pytorch.demo.torchvideo;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TopKTest {
+
+    private static final TopK.Strategy[] STRATEGIES = TopK.Strategy.values();
+
+    @Test
+    public void matchesFullSortAcrossStrategyThresholds() {
+        final Random random = new Random(42);
+        final int[] sizes = {1, 2, 7, 16, 17, 100, 400, 1000};
+        final int[] ks = {1, 2, 5, 8, 15, 16, 17, 24, 62, 63, 64, 65, 200, 1000};
+        for (int n : sizes) {
+            for (int trial = 0; trial < 4; trial++) {
+                final float[] a = randomScores(random, n, trial);
+                for (int k : ks) {
+                    assertAllStrategiesMatch(a, k);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void nanRanksLast() {
+        final float[] a = {Float.NaN, 1f, Float.NaN, -1f, Float.NEGATIVE_INFINITY};
+        for (TopK.Strategy strategy : STRATEGIES) {
+            assertArrayEquals(strategy.name(), new int[]{1, 3, 4, 0, 2}, TopK.topK(a, 5, strategy));
+        }
+    }
+
+    @Test
+    public void tiesGoToLowerIndex() {
+        final float[] a = {0.5f, 1f, 0.5f, 1f, -0f, 0f, 0.5f};
+        for (TopK.Strategy strategy : STRATEGIES) {
+            assertArrayEquals(strategy.name(), new int[]{1, 3, 0, 2, 6, 4, 5},
+                    TopK.topK(a, 7, strategy));
+        }
+    }
+
+    @Test
+    public void clampsK() {
+        final float[] a = {3f, 1f, 2f};
+        for (TopK.Strategy strategy : STRATEGIES) {
+            assertArrayEquals(new int[]{0, 2, 1}, TopK.topK(a, 10, strategy));
+            assertEquals(0, TopK.topK(a, 0, strategy).length);
+            assertEquals(0, TopK.topK(new float[0], 3, strategy).length);
+        }
+    }
+
+    @Test
+    public void chooseStrategyThresholds() {
+        assertEquals(TopK.Strategy.HEAP, TopK.chooseStrategy(400, 1));
+        assertEquals(TopK.Strategy.HEAP, TopK.chooseStrategy(400, 25));
+        assertEquals(TopK.Strategy.QUICKSELECT, TopK.chooseStrategy(400, 26));
+        assertEquals(TopK.Strategy.HEAP, TopK.chooseStrategy(100_000, 100));
+        assertEquals(TopK.Strategy.HEAP, TopK.chooseStrategy(4000, 250));
+        assertEquals(TopK.Strategy.QUICKSELECT, TopK.chooseStrategy(4000, 251));
+        assertEquals(TopK.Strategy.QUICKSELECT, TopK.chooseStrategy(16, 2));
+    }
+
+    private static void assertAllStrategiesMatch(float[] a, int k) {
+        final int[] expected = fullSort(a, k);
+        for (TopK.Strategy strategy : STRATEGIES) {
+            assertArrayEquals(strategy + " n=" + a.length + " k=" + k + " " + Arrays.toString(a),
+                    expected, TopK.topK(a, k, strategy));
+        }
+    }
+
+    /** Scores with NaNs, repeated values and, for some trials, sorted runs. */
+    private static float[] randomScores(Random random, int n, int trial) {
+        final float[] a = new float[n];
+        for (int i = 0; i < n; i++) {
+            switch (random.nextInt(10)) {
+                case 0:
+                    a[i] = Float.NaN;
+                    break;
+                case 1:
+                case 2:
+                    a[i] = random.nextInt(3);
+                    break;
+                default:
+                    a[i] = (float) random.nextGaussian();
+            }
+        }
+        if (trial == 1) {
+            Arrays.sort(a);
+        } else if (trial == 2) {
+            Arrays.sort(a);
+            for (int i = 0; i < n / 2; i++) {
+                final float t = a[i];
+                a[i] = a[n - 1 - i];
+                a[n - 1 - i] = t;
+            }
+        }
+        return a;
+    }
+
+    private static int[] fullSort(float[] a, int k) {
+        final Integer[] ixs = new Integer[a.length];
+        for (int i = 0; i < ixs.length; i++) {
+            ixs[i] = i;
+        }
+        Arrays.sort(ixs, (i, j) -> {
+            final boolean iNaN = Float.isNaN(a[i]);
+            final boolean jNaN = Float.isNaN(a[j]);
+            if (iNaN != jNaN) {
+                return iNaN ? 1 : -1;
+            }
+            if (!iNaN && a[i] != a[j]) {
+                return a[i] > a[j] ? -1 : 1;
+            }
+            return Integer.compare(i, j);
+        });
+        final int[] result = new int[Math.min(k, a.length)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ixs[i];
+        }
+        return result;
+    }
+}
@@ -19,6 +19,7 @@ import android.util.Pair;
 import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
@@ -82,8 +83,9 @@ public class MainActivity extends AppCompatActivity implements Runnable {
 
         mRecognizeButton.setOnClickListener(new View.OnClickListener() {
             public void onClick(View v) {
-                Thread thread = new Thread(MainActivity.this);
-                thread.start();
+                if (!InferenceExecutor.get().tryExecute(InferenceExecutor.Lane.INTERACTIVE, MainActivity.this)) {
+                    Toast.makeText(MainActivity.this, R.string.inference_busy, Toast.LENGTH_SHORT).show();
+                }
             }
         });
 
@@ -145,12 +147,7 @@ public class MainActivity extends AppCompatActivity implements Runnable {
         final Tensor outTensor = mModule.forward(IValue.from(inTensor)).toTensor();
         final float[] outputs = outTensor.getDataAsFloatArray();
 
-        float sum = 0.0f;
-        for (float val : outputs)
-            sum += Math.exp(val);
-        for (int i = 0; i < outputs.length; i++)
-            outputs[i] = (float)(Math.exp(outputs[i]) / sum);
-
+        // softmax is monotonic, so the argmax of the raw logits is the predicted digit
         float maxScore = -Float.MAX_VALUE;
         int maxScoreIdx = -1;
         for (int i = 0; i < outputs.length; i++) {